@@ -1,5 +1,6 @@
 package prefuse;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
@@ -51,11 +52,17 @@ import prefuse.util.collections.CopyOnWriteArrayList;
 import prefuse.util.display.BackgroundPainter;
 import prefuse.util.display.Clip;
 import prefuse.util.display.DebugStatsPainter;
+import prefuse.util.display.DensityRaster;
 import prefuse.util.display.ExportDisplayAction;
 import prefuse.util.display.ItemBoundsListener;
 import prefuse.util.display.PaintListener;
+import prefuse.util.display.RenderLayer;
 import prefuse.util.display.RenderingQueue;
+import prefuse.util.display.SpatialIndex;
+import prefuse.util.display.TiledImageRenderer;
+import prefuse.visual.EdgeItem;
 import prefuse.visual.VisualItem;
+import prefuse.visual.expression.InGroupPredicate;
 import prefuse.visual.expression.VisiblePredicate;
 import prefuse.visual.sort.ItemSorter;
 
@@ -132,6 +139,17 @@ public class Display extends JComponent {
     protected RenderingQueue m_queue = new RenderingQueue();
     protected int            m_visibleCount = 0;
     
+    // optional spatial index of items, null if disabled
+    protected SpatialIndex   m_index = null;
+    
+    // level-of-detail rendering, disabled if the threshold is zero
+    protected double         m_lodThreshold = 0;
+    protected DensityRaster  m_lodRaster = null;
+    protected int            m_lodCount = 0;
+    
+    // cached render layers, in rendering order, null if none
+    protected RenderLayer[]  m_layers = null;
+    
     // transform variables
     protected AffineTransform   m_transform  = new AffineTransform();
     protected AffineTransform   m_itransform = new AffineTransform();
@@ -216,7 +234,7 @@ public class Display extends JComponent {
         
         // invalidate the display when the filter changes
         m_predicate.addExpressionListener(new UpdateListener() {
-            public void update(Object src) { damageReport(); }
+            public void update(Object src) { invalidateSpatialIndex(); }
         });
         
         setVisualization(visualization);
@@ -232,6 +250,8 @@ public class Display extends JComponent {
     public void reset() {
     	m_offscreen = null;
     	m_queue.clean();
+    	if ( m_index != null )
+    	    m_index.clear();
     }
     
     /**
@@ -385,6 +405,7 @@ public class Display extends JComponent {
         m_vis = vis;
         if ( m_vis != null )
             m_vis.addDisplay(this);
+        invalidateSpatialIndex();
     }
     
     /**
@@ -437,6 +458,16 @@ public class Display extends JComponent {
         return m_visibleCount;
     }
     
+    /**
+     * Returns the number of items drawn at a reduced level of detail during
+     * the last repaint, rather than by their renderers.
+     * @return the count of reduced items
+     * @see #setLevelOfDetailThreshold(double)
+     */
+    public int getReducedItemCount() {
+        return m_lodCount;
+    }
+    
     /**
      * Get the ItemSorter that determines the rendering order of the
      * VisualItems. Items are drawn in ascending order of the scores provided
@@ -599,7 +630,7 @@ public class Display extends JComponent {
      */
     public synchronized void setDamageRedraw(boolean b) {
         m_damageRedraw = b;
-        m_clip.invalidate();
+        damageReport();
     }
     
     /**
@@ -607,8 +638,11 @@ public class Display extends JComponent {
      * @param region the damaged region, in absolute coordinates
      */
     public synchronized void damageReport(Rectangle2D region) {
-        if ( m_damageRedraw )
+        if ( m_damageRedraw ) {
             m_clip.union(region);
+            for ( int i=0; m_layers != null && i<m_layers.length; ++i )
+                m_layers[i].damageReport(region);
+        }
     }
     
     /**
@@ -616,6 +650,42 @@ public class Display extends JComponent {
      */
     public synchronized void damageReport() {
         m_clip.invalidate();
+        for ( int i=0; m_layers != null && i<m_layers.length; ++i )
+            m_layers[i].invalidate();
+    }
+    
+    /**
+     * Reports damage caused by the given item within the specified region.
+     * Damage is recorded only if the item passes this Display's filtering
+     * predicate, but the item is always marked as changed in the spatial
+     * index, if one is in use. If the item belongs to a render layer, only
+     * that layer is damaged. Any render layer whose image still holds a
+     * drawing of the item, such as a layer the item has since left, is
+     * damaged as well, whether or not the item passes the predicate. This
+     * method is called by the {@link Visualization} when item bounds are
+     * (in)validated.
+     * @param item the item responsible for the damage
+     * @param region the damaged region, in absolute coordinates
+     */
+    public synchronized void damageReport(VisualItem item, Rectangle2D region) {
+        if ( m_index != null )
+            m_index.markDirty(item);
+        if ( m_layers != null && m_damageRedraw ) {
+            for ( int i=0; i<m_layers.length; ++i ) {
+                if ( m_layers[i].damageReport(item, region) )
+                    m_clip.union(region);
+            }
+        }
+        if ( !getPredicate().getBoolean(item) )
+            return;
+        if ( m_layers == null ) {
+            damageReport(region);
+        } else if ( m_damageRedraw ) {
+            m_clip.union(region);
+            RenderLayer layer = getRenderLayer(item);
+            if ( layer != null )
+                layer.damageReport(region);
+        }
     }
    
     /**
@@ -629,6 +699,188 @@ public class Display extends JComponent {
             m_clip.reset();
     }
     
+    /**
+     * Indicates if this Display uses a spatial index to determine which items
+     * to render and pick.
+     * @return true if spatial indexing is enabled, false otherwise
+     * @see #setSpatialIndexEnabled(boolean)
+     */
+    public synchronized boolean isSpatialIndexEnabled() {
+        return m_index != null;
+    }
+    
+    /**
+     * <p>Sets if this Display uses a spatial index to determine which items
+     * to render and pick. Without an index, every repaint visits every item
+     * passing the Display's predicate, and picking tests every interactive
+     * item, regardless of the damaged region or the mouse location. With an
+     * index enabled, rendering visits only items whose bounds intersect the
+     * damaged region and picking tests only items whose bounds contain the
+     * mouse location. The index is kept current through the damage reports
+     * issued as item bounds are (in)validated. By default, the spatial index
+     * is disabled.</p>
+     * 
+     * <p>The index assumes that changes to an item's filter status result in
+     * a damage report for that item, which holds for predicates over
+     * VisualItem data fields. If the Display's predicate depends on external
+     * state (for example, focus group membership), call
+     * {@link #invalidateSpatialIndex()} whenever that state changes.</p>
+     * @param b true to enable a spatial index, false to disable it
+     */
+    public synchronized void setSpatialIndexEnabled(boolean b) {
+        if ( b == (m_index != null) )
+            return;
+        m_index = b ? new SpatialIndex() : null;
+        damageReport();
+    }
+    
+    /**
+     * Returns the level-of-detail threshold, in pixels.
+     * @return the level-of-detail threshold, zero if disabled
+     * @see #setLevelOfDetailThreshold(double)
+     */
+    public synchronized double getLevelOfDetailThreshold() {
+        return m_lodThreshold;
+    }
+    
+    /**
+     * <p>Sets the size, in screen pixels, below which items are drawn at a
+     * reduced level of detail instead of being passed to their renderers.
+     * Sizes are measured at the current zoom level, so that zooming out
+     * moves more items below the threshold. Items whose bounds are smaller
+     * than the threshold in both dimensions are drawn as single pixels of
+     * their fill color (or, if transparent, their stroke or text color), and
+     * edges whose line width is below the threshold are drawn as one pixel
+     * lines of their stroke color. These edges are always straight lines
+     * from the position of the source item to that of the target item,
+     * with no arrowheads or curves, whatever their renderer would draw.
+     * Each is weighted by the fraction of a pixel it covers and accumulated
+     * into a {@link prefuse.util.display.DensityRaster}, so that dense
+     * regions of small items appear as a density image. Accumulated pixels
+     * are drawn before the next fully rendered item, preserving the
+     * rendering order. By default, the threshold is zero and every item is
+     * fully rendered.</p>
+     * 
+     * <p>This bounds the cost of rendering large, zoomed out views, at the
+     * expense of the detail of the smallest items.</p>
+     * @param threshold the level-of-detail threshold in pixels, or zero to
+     * render all items in full
+     */
+    public synchronized void setLevelOfDetailThreshold(double threshold) {
+        if ( threshold < 0 )
+            throw new IllegalArgumentException(
+                "Threshold must not be negative");
+        m_lodThreshold = threshold;
+        if ( threshold == 0 )
+            m_lodRaster = null;
+        damageReport();
+    }
+    
+    /**
+     * Returns the spatial index used by this Display, if enabled.
+     * @return the {@link prefuse.util.display.SpatialIndex}, or null if
+     * spatial indexing is disabled
+     */
+    public SpatialIndex getSpatialIndex() {
+        return m_index;
+    }
+    
+    /**
+     * <p>Adds a render layer containing the items that satisfy the given
+     * predicate. Each render layer keeps its items in an offscreen image,
+     * which is only re-rendered within the regions damaged by items in the
+     * layer. Damage to other items just composites the cached image again.
+     * Layers are drawn in the order they are added, and items belonging to
+     * no layer are drawn directly, on top of all layers. Items are assigned
+     * to the first layer whose predicate they satisfy. Within each layer,
+     * and among the items in no layer, items are drawn in the order given
+     * by the Display's {@link prefuse.visual.sort.ItemSorter}.</p>
+     * 
+     * <p>Layers are best suited to large numbers of items that change less
+     * often than the rest, such as aggregates, axis grid lines, or the
+     * edges of a graph whose nodes are being highlighted. Layers assume
+     * that changes to an item's layer membership result in a damage report
+     * for that item, as is the case for predicates over VisualItem data
+     * fields. Otherwise, call {@link #damageReport()} when the membership
+     * changes. Layer images are not used when damage/redraw is disabled, or
+     * when painting into a scaled or rotated graphics context. Translucent
+     * colors are blended within the layer before being composited, so they
+     * may differ slightly, due to rounding, from direct rendering.</p>
+     * @param p the predicate determining the items in the layer
+     * @return the added {@link prefuse.util.display.RenderLayer}
+     */
+    public synchronized RenderLayer addRenderLayer(Predicate p) {
+        RenderLayer layer = new RenderLayer(p);
+        int n = ( m_layers == null ? 0 : m_layers.length );
+        RenderLayer[] layers = new RenderLayer[n+1];
+        if ( n > 0 )
+            System.arraycopy(m_layers, 0, layers, 0, n);
+        layers[n] = layer;
+        m_layers = layers;
+        damageReport();
+        return layer;
+    }
+    
+    /**
+     * Adds a render layer containing the items in the given group.
+     * @param group the data group whose items make up the layer
+     * @return the added {@link prefuse.util.display.RenderLayer}
+     * @see #addRenderLayer(Predicate)
+     */
+    public RenderLayer addRenderLayer(String group) {
+        return addRenderLayer(new InGroupPredicate(group));
+    }
+    
+    /**
+     * Removes all render layers, so that every item is drawn directly.
+     */
+    public synchronized void clearRenderLayers() {
+        m_layers = null;
+        damageReport();
+    }
+    
+    /**
+     * Returns the number of render layers used by this Display.
+     * @return the number of render layers
+     */
+    public synchronized int getRenderLayerCount() {
+        return ( m_layers == null ? 0 : m_layers.length );
+    }
+    
+    /**
+     * Returns a render layer used by this Display.
+     * @param i the index of the layer, in rendering order
+     * @return the requested {@link prefuse.util.display.RenderLayer}
+     */
+    public synchronized RenderLayer getRenderLayer(int i) {
+        return m_layers[i];
+    }
+    
+    /**
+     * Returns the render layer an item belongs to.
+     * @param item the item to look up
+     * @return the first {@link prefuse.util.display.RenderLayer} containing
+     * the item, or null if the item belongs to no layer
+     */
+    public synchronized RenderLayer getRenderLayer(VisualItem item) {
+        for ( int i=0; m_layers != null && i<m_layers.length; ++i ) {
+            if ( m_layers[i].contains(item) )
+                return m_layers[i];
+        }
+        return null;
+    }
+    
+    /**
+     * Invalidates the spatial index, if enabled, causing it to be rebuilt
+     * in full upon the next repaint. Also reports damage to the entire
+     * Display.
+     */
+    public synchronized void invalidateSpatialIndex() {
+        if ( m_index != null )
+            m_index.invalidate();
+        damageReport();
+    }
+    
     /**
      * Returns the bounds, in absolute (item-space) coordinates, of the total
      * bounds occupied by all currently visible VisualItems. This method
@@ -720,6 +972,44 @@ public class Display extends JComponent {
         }
     }
 
+    /**
+     * Saves a copy of this display as an image to the specified output
+     * stream, rendering the image using multiple threads. The image is
+     * split into tiles that are rendered concurrently by a
+     * {@link TiledImageRenderer}, producing the same image as
+     * {@link #saveImage(OutputStream, String, double)}. This method does
+     * not require the display to be shown on screen.
+     * @param output the output stream to write to.
+     * @param format the image format (e.g., "JPG", "PNG"). The number and kind
+     * of available formats varies by platform. See
+     * {@link javax.imageio.ImageIO} and related classes for more.
+     * @param scale how much to scale the image by. For example, a value of 2.0
+     * will result in an image with twice the pixel width and height of this
+     * Display.
+     * @param threads the number of threads to render with. If one, the
+     * image is rendered in the calling thread without tiling.
+     * @return true if image was successfully saved, false if an error occurred.
+     */
+    public boolean saveImage(OutputStream output, String format,
+                             double scale, int threads)
+    {
+        if ( threads <= 1 )
+            return saveImage(output, format, scale);
+        try {
+            // get an image to draw into
+            BufferedImage img = getNewOffscreenBuffer(
+                (int)(scale*getWidth()), (int)(scale*getHeight()));
+            new TiledImageRenderer(this, threads).render(img, scale);
+            
+            // save the image and return
+            ImageIO.write(img, format, output);
+            return true;
+        } catch ( Exception e ) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     /**
      * @see java.awt.Component#update(java.awt.Graphics)
      */
@@ -829,6 +1119,24 @@ public class Display extends JComponent {
         synchronized ( m_vis ) {
         synchronized ( this ) {
             
+            // use layer images only if tracking damage, and if layer pixels
+            // map directly to the graphics context
+            AffineTransform base = g2D.getTransform();
+            boolean layered = m_layers != null && m_damageRedraw
+                && (base.getType() & ~AffineTransform.TYPE_TRANSLATION) == 0
+                && base.getTranslateX() == Math.rint(base.getTranslateX())
+                && base.getTranslateY() == Math.rint(base.getTranslateY());
+            if ( layered ) {
+                // include damaged layers not yet redrawn
+                for ( int i=0; i<m_layers.length; ++i ) {
+                    Clip c = m_layers[i].getDamage();
+                    if ( c.isInvalid() )
+                        m_clip.invalidate();
+                    else if ( !c.isEmpty() )
+                        m_clip.union(c);
+                }
+            }
+            
             if ( m_clip.isEmpty() )
                 return; // no damage, no render
             
@@ -894,24 +1202,39 @@ public class Display extends JComponent {
             
             // fill the rendering and picking queues
             m_queue.clear();   // clear the queue
-            Iterator items = m_vis.items(m_predicate);
-            for ( m_visibleCount=0; items.hasNext(); ++m_visibleCount ) {
-                VisualItem item = (VisualItem)items.next();
-                Rectangle2D bounds = item.getBounds();
-                m_bounds.union(bounds); // add to item bounds
-                
-                if ( m_clip.intersects(bounds, pixel) )
-                    m_queue.addToRenderQueue(item);
-                if ( item.isInteractive() )
-                    m_queue.addToPickingQueue(item);
+            if ( m_index != null ) {
+                // bring the index up-to-date, then query only the items
+                // intersecting the clip. picking queries the index directly.
+                if ( m_index.isInvalid() )
+                    m_index.rebuild(m_vis.items(m_predicate));
+                else
+                    m_index.validate(m_predicate);
+                m_index.getBounds(m_bounds);
+                m_visibleCount = m_index.size();
+                m_index.queryRender(m_clip, pixel, m_queue);
+            } else {
+                Iterator items = m_vis.items(m_predicate);
+                for ( m_visibleCount=0; items.hasNext(); ++m_visibleCount ) {
+                    VisualItem item = (VisualItem)items.next();
+                    Rectangle2D bounds = item.getBounds();
+                    m_bounds.union(bounds); // add to item bounds
+                    
+                    if ( m_clip.intersects(bounds, pixel) )
+                        m_queue.addToRenderQueue(item);
+                    if ( item.isInteractive() )
+                        m_queue.addToPickingQueue(item);
+                }
             }
             
             // sort the rendering queue
             m_queue.sortRenderQueue();
             
             // render each visual item
-            for ( int i=0; i<m_queue.rsize; ++i ) {
-                m_queue.ritems[i].render(g2D);
+            m_lodCount = 0;
+            if ( layered ) {
+                renderLayers(g2D, base, d, pixel);
+            } else {
+                renderItems(g2D, m_queue.ritems, m_queue.rsize, d);
             }
             
             // no more damage so reset the clip
@@ -924,6 +1247,158 @@ public class Display extends JComponent {
         }} // end synchronized block
     }
     
+    /**
+     * Render items in order, at a reduced level of detail if enabled.
+     */
+    private void renderItems(Graphics2D g2D, VisualItem[] items, int n,
+                             Dimension d)
+    {
+        if ( m_lodThreshold > 0 ) {
+            renderLevelOfDetail(g2D, items, n, d);
+        } else {
+            for ( int i=0; i<n; ++i ) {
+                items[i].render(g2D);
+            }
+        }
+    }
+    
+    /**
+     * Render the items in the rendering queue through the render layers.
+     * The image of each layer is redrawn within its damaged region and
+     * composited, and then the items in no layer are drawn on top.
+     */
+    private void renderLayers(Graphics2D g2D, AffineTransform base,
+                              Dimension d, double pixel)
+    {
+        // determine the damaged region of each layer
+        for ( int l=0; l<m_layers.length; ++l ) {
+            RenderLayer layer = m_layers[l];
+            layer.getImage(d.width, d.height); // invalidates on resize
+            Clip c = layer.getDamage();
+            if ( c.isInvalid() ) {
+                c.setClip(m_screen);
+            } else if ( !c.isEmpty() ) {
+                c.intersection(m_screen);
+                if ( c.getWidth() < 0 || c.getHeight() < 0 )
+                    c.reset(); // damage is off-screen
+                else
+                    c.expand(pixel);
+            }
+        }
+        
+        // assign items to layers. items in no layer are moved to the
+        // front of the rendering queue, which is rebuilt on each repaint
+        int ntop = 0;
+        for ( int i=0; i<m_queue.rsize; ++i ) {
+            VisualItem item = m_queue.ritems[i];
+            RenderLayer layer = getRenderLayer(item);
+            if ( layer == null ) {
+                m_queue.ritems[ntop++] = item;
+            } else {
+                Clip c = layer.getDamage();
+                if ( !c.isEmpty() && c.intersects(item.getBounds(), pixel) )
+                    layer.addItem(item);
+            }
+        }
+        
+        // redraw the damaged region of each layer
+        Rectangle2D r = new Rectangle2D.Double();
+        for ( int l=0; l<m_layers.length; ++l ) {
+            RenderLayer layer = m_layers[l];
+            Clip c = layer.getDamage();
+            if ( c.isEmpty() )
+                continue;
+            
+            Graphics2D lg = layer.getImage().createGraphics();
+            prepareGraphics(lg);
+            r.setFrameFromDiagonal(c.getMinX(), c.getMinY(),
+                                   c.getMaxX(), c.getMaxY());
+            lg.setClip(r);
+            // clear a slightly larger area, as for the display itself
+            r.setFrameFromDiagonal(c.getMinX()-pixel, c.getMinY()-pixel,
+                                   c.getMaxX()+pixel, c.getMaxY()+pixel);
+            lg.setComposite(AlphaComposite.Clear);
+            lg.fill(r);
+            lg.setComposite(AlphaComposite.SrcOver);
+            renderItems(lg, layer.items, layer.size, d);
+            lg.dispose();
+            
+            layer.clear();
+            c.reset();
+        }
+        
+        // composite the layers, then draw the remaining items
+        AffineTransform at = g2D.getTransform();
+        g2D.setTransform(base);
+        for ( int l=0; l<m_layers.length; ++l )
+            g2D.drawImage(m_layers[l].getImage(), 0, 0, null);
+        g2D.setTransform(at);
+        renderItems(g2D, m_queue.ritems, ntop, d);
+    }
+    
+    /**
+     * Render items, accumulating items below the level-of-detail threshold
+     * into a density raster.
+     */
+    private void renderLevelOfDetail(Graphics2D g2D, VisualItem[] items,
+                                     int n, Dimension d)
+    {
+        if ( m_lodRaster == null )
+            m_lodRaster = new DensityRaster();
+        m_lodRaster.reset(d.width, d.height);
+        
+        double scale = Math.sqrt(Math.abs(m_transform.getDeterminant()));
+        double lod = m_lodThreshold / scale; // threshold in absolute units
+        double[] pts = new double[4];
+        
+        for ( int i=0; i<n; ++i ) {
+            VisualItem item = items[i];
+            if ( item instanceof EdgeItem ) {
+                if ( item.getSize() < lod ) {
+                    VisualItem s = ((EdgeItem)item).getSourceItem();
+                    VisualItem t = ((EdgeItem)item).getTargetItem();
+                    pts[0] = s.getX(); pts[1] = s.getY();
+                    pts[2] = t.getX(); pts[3] = t.getY();
+                    m_transform.transform(pts, 0, pts, 0, 2);
+                    m_lodRaster.addLine(pts[0], pts[1], pts[2], pts[3],
+                        item.getStrokeColor(), item.getSize()*scale);
+                    ++m_lodCount;
+                    continue;
+                }
+            } else {
+                Rectangle2D b = item.getBounds();
+                if ( b.getWidth() < lod && b.getHeight() < lod ) {
+                    pts[0] = b.getCenterX(); pts[1] = b.getCenterY();
+                    m_transform.transform(pts, 0, pts, 0, 1);
+                    int color = item.getFillColor();
+                    if ( ColorLib.alpha(color) == 0 )
+                        color = item.getStrokeColor();
+                    if ( ColorLib.alpha(color) == 0 )
+                        color = item.getTextColor();
+                    m_lodRaster.addPoint(pts[0], pts[1], color,
+                        b.getWidth()*b.getHeight()*scale*scale);
+                    ++m_lodCount;
+                    continue;
+                }
+            }
+            paintRaster(g2D);
+            item.render(g2D);
+        }
+        paintRaster(g2D);
+    }
+    
+    /**
+     * Draw and clear the level-of-detail raster, in device coordinates.
+     */
+    private void paintRaster(Graphics2D g2D) {
+        if ( m_lodRaster.isEmpty() )
+            return;
+        AffineTransform at = g2D.getTransform();
+        g2D.transform(m_itransform);
+        m_lodRaster.paint(g2D);
+        g2D.setTransform(at);
+    }
+    
     /**
      * Immediately render the given VisualItem to the screen. This method
      * bypasses the Display's offscreen buffer.
@@ -1503,6 +1978,9 @@ public class Display extends JComponent {
         // transform mouse point from screen space to item space
         Point2D p2 = (m_itransform==null ? p : 
                       m_itransform.transform(p, m_tmpPoint));
+        // with a spatial index, pick only from the items under the point
+        if ( m_index != null )
+            m_index.queryPick(p2, 1.0 + 1.0/getScale(), m_queue);
         // ensure that the picking queue has been z-sorted
         if ( !m_queue.psorted )
             m_queue.sortPickingQueue();
@@ -1327,10 +1327,7 @@ public class Visualization {
      */
     public void damageReport(VisualItem item, Rectangle2D region) {
         for ( int i=0; i<m_displays.size(); ++i ) {
-            Display d = getDisplay(i);
-            if ( d.getPredicate().getBoolean(item) ) {
-                d.damageReport(region);
-            }
+            getDisplay(i).damageReport(item, region);
         }
     }
     
@@ -4,16 +4,30 @@ import java.util.Iterator;
 
 import prefuse.Visualization;
 import prefuse.action.GroupAction;
+import prefuse.data.expression.CompiledExpression;
+import prefuse.data.expression.ExpressionCompiler;
 import prefuse.data.expression.OrPredicate;
 import prefuse.data.expression.Predicate;
+import prefuse.data.tuple.TupleSet;
 import prefuse.util.PrefuseLib;
+import prefuse.util.collections.IntIterator;
 import prefuse.visual.VisualItem;
+import prefuse.visual.VisualTable;
 import prefuse.visual.expression.VisiblePredicate;
 
 /**
  * Filter Action that sets visible all items that meet a given Predicate
  * condition and sets all other items invisible.
  * 
+ * <p>If expression compilation is
+ * {@link ExpressionCompiler#isEnabled() enabled} and the group is a
+ * {@link VisualTable}, the predicate is compiled and evaluated over
+ * batches of table rows, without creating VisualItem instances. This is
+ * done only if the compiled predicate
+ * {@link CompiledExpression#isConcurrent() depends only on the values of
+ * each row}, so that updating the visibility of some rows can not affect
+ * the predicate values of other rows.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class VisibilityFilter extends GroupAction {
@@ -63,11 +77,54 @@ public class VisibilityFilter extends GroupAction {
      * @see prefuse.action.Action#run(double)
      */
     public void run(double frac) {
+        if ( ExpressionCompiler.isEnabled() ) {
+            TupleSet ts = m_vis.getGroup(m_group);
+            if ( ts instanceof VisualTable ) {
+                VisualTable vt = (VisualTable)ts;
+                CompiledExpression p =
+                    ExpressionCompiler.compile(m_predicate, vt);
+                if ( p.isConcurrent() ) {
+                    run(vt, p);
+                    return;
+                }
+            }
+        }
+        
         Iterator items = m_vis.items(m_group, m_filter);
         while ( items.hasNext() ) {
             VisualItem item = (VisualItem)items.next();
             PrefuseLib.updateVisible(item, m_predicate.getBoolean(item));
         }
     }
+    
+    /**
+     * Update the visibility of the rows of a visual table, evaluating the
+     * compiled predicate for a batch of rows at a time. As with the
+     * item-based filter, only rows that pass the predicate or are currently
+     * visible are updated.
+     */
+    private void run(VisualTable vt, CompiledExpression p) {
+        int[] rows = new int[CompiledExpression.BATCH_SIZE];
+        int[] sel = new int[rows.length];
+        IntIterator iter = vt.rows();
+        while ( iter.hasNext() ) {
+            int n = 0;
+            while ( n < rows.length && iter.hasNext() )
+                rows[n++] = iter.nextInt();
+            int m = p.select(rows, n, sel);
+            
+            for ( int i=0, k=0; i<n; ++i ) {
+                int r = rows[i];
+                boolean val = ( k < m && sel[k] == r );
+                if ( val ) ++k;
+                boolean visible = vt.isVisible(r);
+                if ( val || visible ) {
+                    vt.setStartVisible(r, visible);
+                    vt.setVisible(r, val);
+                    vt.setEndVisible(r, val);
+                }
+            }
+        }
+    }
 
 } // end of class VisibilityAction
@@ -38,7 +38,10 @@ import prefuse.visual.VisualItem;
  * {@link prefuse.util.force.Force} components. Each node in the layout is
  * mapped to a {@link prefuse.util.force.ForceItem} instance and each edge
  * to a {@link prefuse.util.force.Spring} instance for storing the state
- * of the simulation. See the {@link prefuse.util.force} package for more.</p>
+ * of the simulation. For large graphs, an
+ * {@link prefuse.util.force.ArrayForceSimulator} can be supplied to run the
+ * simulation over contiguous primitive arrays. See the
+ * {@link prefuse.util.force} package for more.</p>
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
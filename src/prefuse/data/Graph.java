@@ -1,5 +1,6 @@
 package prefuse.data;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import prefuse.data.column.Column;
@@ -104,6 +105,13 @@ public class Graph extends CompositeTupleSet {
     
     /** Table containing the adjacency lists for the graph */
     protected Table m_links;
+    /** Compressed adjacency list offsets, indexed by direction and node id,
+     *  or null if the adjacency lists are not compacted */
+    protected int[][] m_csrOffsets;
+    /** Compressed adjacency list edge ids, indexed by direction */
+    protected int[][] m_csrEdges;
+    /** Compressed adjacency list neighbor node ids, indexed by direction */
+    protected int[][] m_csrNodes;
     /** TupleManager for managing Node tuple instances */
     protected TupleManager m_nodeTuples;
     /** TupleManager for managing Edge tuple instances */
@@ -124,6 +132,8 @@ public class Graph extends CompositeTupleSet {
     protected Index m_nidx;
     /** Indicates if the key values are of type long */
     protected boolean m_longKey = false;
+    /** Indicates if a bulk edge load is in progress */
+    private boolean m_bulkLoad = false;
     /** Update listener */
     private Listener m_listener;
     /** Listener list */
@@ -346,12 +356,22 @@ public class Graph extends CompositeTupleSet {
      */
     protected void initLinkTable() {
         // set up cache of node data
+        m_csrOffsets = m_csrEdges = m_csrNodes = null;
         m_links = createLinkTable();
-                
-        IntIterator edges = getEdgeTable().rows();
+        
+        // collect the valid edges, then link them all in one pass
+        Table edgeTable = getEdgeTable();
+        int nedges = edgeTable.getRowCount();
+        int[] e = new int[nedges], s = new int[nedges], t = new int[nedges];
+        int len = 0;
+        IntIterator edges = edgeTable.rows();
         while ( edges.hasNext() ) {
-            updateDegrees(edges.nextInt(), 1);
+            int r = edges.nextInt();
+            int sn = getSourceNode(r), tn = getTargetNode(r);
+            if ( sn < 0 || tn < 0 ) continue;
+            e[len] = r; s[len] = sn; t[len] = tn; ++len;
         }
+        addLinks(e, s, t, len);
     }
     
     /**
@@ -388,6 +408,7 @@ public class Graph extends CompositeTupleSet {
      * -1 for a removed link
      */
     protected void updateDegrees(int e, int s, int t, int incr) {
+        decompact();
         int od = m_links.getInt(s, OUTDEGREE);
         int id = m_links.getInt(t, INDEGREE);
         // update adjacency lists
@@ -407,6 +428,77 @@ public class Graph extends CompositeTupleSet {
         m_spanning = null;
     }
     
+    /**
+     * Internal method for adding a batch of links to the graph linkage.
+     * This has the same result as calling
+     * {@link #updateDegrees(int, int, int, int)} for each link in turn,
+     * but grows each adjacency list at most once.
+     * @param e the edge ids of the added links
+     * @param s the source node ids of the added links
+     * @param t the target node ids of the added links
+     * @param len the number of links to add
+     */
+    protected void addLinks(int[] e, int[] s, int[] t, int len) {
+        decompact();
+        int nrows = m_links.getMaximumRow()+1;
+        
+        // count the new links for each node
+        int[] od = new int[nrows], id = new int[nrows];
+        for ( int i=0; i<len; ++i ) {
+            ++od[s[i]]; ++id[t[i]];
+        }
+        
+        // grow each adjacency list to its final size, and then record
+        // the current degree as the position of the next link
+        int[][] out = new int[nrows][], in = new int[nrows][];
+        for ( int n=0; n<nrows; ++n ) {
+            if ( od[n] > 0 ) {
+                int deg = m_links.getInt(n, OUTDEGREE);
+                out[n] = growLinks(OUTLINKS, deg, n, od[n]);
+                od[n] = deg;
+            }
+            if ( id[n] > 0 ) {
+                int deg = m_links.getInt(n, INDEGREE);
+                in[n] = growLinks(INLINKS, deg, n, id[n]);
+                id[n] = deg;
+            }
+        }
+        
+        // append the links
+        for ( int i=0; i<len; ++i ) {
+            out[s[i]][od[s[i]]++] = e[i];
+            in[t[i]][id[t[i]]++] = e[i];
+        }
+        
+        // update degree counts
+        for ( int n=0; n<nrows; ++n ) {
+            if ( out[n] != null ) m_links.setInt(n, OUTDEGREE, od[n]);
+            if ( in[n]  != null ) m_links.setInt(n, INDEGREE,  id[n]);
+        }
+        // link structure changed, invalidate spanning tree
+        m_spanning = null;
+    }
+    
+    /**
+     * Internal method for ensuring the capacity of an adjacency list
+     * @param field which adjacency list (inlinks or outlinks) to use
+     * @param len the length of the adjacency list
+     * @param n the node id of the adjacency list to use
+     * @param incr the number of links to make room for
+     * @return the adjacency list array
+     */
+    private int[] growLinks(String field, int len, int n, int incr) {
+        int[] array = (int[])m_links.get(n, field);
+        if ( array == null || array.length < len+incr ) {
+            int[] narray = new int[len+incr];
+            if ( array != null )
+                System.arraycopy(array, 0, narray, 0, len);
+            array = narray;
+            m_links.set(n, field, array);
+        }
+        return array;
+    }
+    
     /**
      * Internal method for adding a link to an adjacency list
      * @param field which adjacency list (inlinks or outlinks) to use
@@ -454,6 +546,7 @@ public class Graph extends CompositeTupleSet {
      * @param added indicates if a node was added or removed
      */
     protected void updateNodeData(int r, boolean added) {
+        decompact();
         if ( added ) {
             m_links.addRow();
         } else {
@@ -462,6 +555,117 @@ public class Graph extends CompositeTupleSet {
         }
     }
     
+    /**
+     * Internal method for retrieving an entry of an adjacency list.
+     * @param node the node id of the adjacency list to use
+     * @param direction which adjacency list to use, either
+     * {@link #INEDGES} or {@link #OUTEDGES}
+     * @param i the index into the adjacency list
+     * @return the edge id at the given index of the adjacency list
+     */
+    protected int getLink(int node, int direction, int i) {
+        if ( m_csrOffsets != null ) {
+            return m_csrEdges[direction][m_csrOffsets[direction][node]+i];
+        } else {
+            String field = (direction==OUTEDGES ? OUTLINKS : INLINKS);
+            return ((int[])m_links.get(node, field))[i];
+        }
+    }
+    
+    /**
+     * Compacts the adjacency lists of this graph into a compressed sparse
+     * row representation. The adjacency lists of all nodes are copied into
+     * a few flat arrays of edge ids and neighbor node ids, which are then
+     * used to serve degree, incident edge, and neighbor queries without
+     * per-node array objects or table lookups. This is best suited to
+     * graphs that are queried heavily but rarely modified: the compacted
+     * representation is discarded, and the standard per-node adjacency
+     * lists restored, upon the first subsequent change to the graph
+     * structure.
+     * @see #isCompact()
+     */
+    public void compact() {
+        if ( m_csrOffsets != null )
+            return;
+        Table nodes = getNodeTable();
+        int nrows = m_links.getMaximumRow()+1;
+        
+        int[][] offsets = new int[2][nrows+1];
+        int[][] edges = new int[2][];
+        int[][] adjacent = new int[2][];
+        for ( int d=INEDGES; d<=OUTEDGES; ++d ) {
+            String degree = (d==OUTEDGES ? OUTDEGREE : INDEGREE);
+            String field  = (d==OUTEDGES ? OUTLINKS : INLINKS);
+            int[] off = offsets[d];
+            
+            // compute offsets from the node degrees
+            for ( int n=0; n<nrows; ++n ) {
+                int len = nodes.isValidRow(n) ? m_links.getInt(n, degree) : 0;
+                off[n+1] = off[n] + len;
+            }
+            
+            // copy the adjacency lists, resolving the adjacent nodes
+            int[] e = edges[d] = new int[off[nrows]];
+            int[] a = adjacent[d] = new int[off[nrows]];
+            for ( int n=0; n<nrows; ++n ) {
+                int len = off[n+1]-off[n];
+                if ( len == 0 ) continue;
+                int[] links = (int[])m_links.get(n, field);
+                System.arraycopy(links, 0, e, off[n], len);
+                for ( int i=off[n]; i<off[n+1]; ++i )
+                    a[i] = (d==OUTEDGES ? getTargetNode(e[i])
+                                        : getSourceNode(e[i]));
+            }
+        }
+        
+        // release the per-node adjacency lists
+        for ( int n=0; n<nrows; ++n ) {
+            if ( nodes.isValidRow(n) ) {
+                m_links.set(n, INLINKS, null);
+                m_links.set(n, OUTLINKS, null);
+            }
+        }
+        m_csrOffsets = offsets;
+        m_csrEdges = edges;
+        m_csrNodes = adjacent;
+    }
+    
+    /**
+     * Indicates if the adjacency lists of this graph are currently
+     * compacted.
+     * @return true if the adjacency lists are compacted, false otherwise
+     * @see #compact()
+     */
+    public boolean isCompact() {
+        return m_csrOffsets != null;
+    }
+    
+    /**
+     * Internal method for restoring the per-node adjacency lists from the
+     * compacted representation, if needed. This is called before any
+     * change to the graph structure.
+     */
+    protected void decompact() {
+        if ( m_csrOffsets == null )
+            return;
+        int[][] offsets = m_csrOffsets;
+        m_csrOffsets = null;
+        
+        Table nodes = getNodeTable();
+        for ( int d=INEDGES; d<=OUTEDGES; ++d ) {
+            String field = (d==OUTEDGES ? OUTLINKS : INLINKS);
+            int[] off = offsets[d];
+            for ( int n=0; n<off.length-1; ++n ) {
+                int len = off[n+1]-off[n];
+                if ( len == 0 || !nodes.isValidRow(n) ) continue;
+                int[] links = new int[len];
+                System.arraycopy(m_csrEdges[d], off[n], links, 0, len);
+                m_links.set(n, field, links);
+            }
+        }
+        m_csrEdges = m_csrNodes = null;
+    }
+    
     // ------------------------------------------------------------------------
     // Key Transforms
     
@@ -559,6 +763,55 @@ public class Graph extends CompositeTupleSet {
         return r;
     }
     
+    /**
+     * Add a batch of edges to the graph. This is much faster than adding
+     * each edge individually: the adjacency lists of the graph are built
+     * in a single pass once all edge rows have been added, and registered
+     * {@link prefuse.data.event.GraphListener} instances are notified with
+     * a single insert event for each contiguous range of new edge rows
+     * (usually just one), rather than once per edge. Listeners registered
+     * directly on the edge table still receive the usual per-row events.
+     * @param s the source node ids
+     * @param t the target node ids, parallel to the source node ids
+     * @return the edge ids (edge table row numbers) of the added edges,
+     * in the order of the input arrays
+     */
+    public int[] addEdges(int[] s, int[] t) {
+        if ( s.length != t.length ) {
+            throw new IllegalArgumentException(
+                "Source and target arrays must have the same length.");
+        }
+        Table nodes = getNodeTable();
+        for ( int i=0; i<s.length; ++i ) {
+            if ( !nodes.isValidRow(s[i]) || !nodes.isValidRow(t[i]) ) {
+                throw new IllegalArgumentException(
+                    "Invalid node id for edge at index "+i+".");
+            }
+        }
+        
+        // add the edge rows without per-edge linkage updates
+        int[] rows = new int[s.length];
+        m_bulkLoad = true;
+        try {
+            for ( int i=0; i<rows.length; ++i )
+                rows[i] = addEdge(s[i], t[i]);
+        } finally {
+            m_bulkLoad = false;
+        }
+        addLinks(rows, s, t, rows.length);
+        
+        // fire one event per contiguous range of edge rows
+        int[] sorted = rows.clone();
+        Arrays.sort(sorted);
+        Table edges = getEdgeTable();
+        for ( int i=0, j; i<sorted.length; i=j ) {
+            for ( j=i+1; j<sorted.length && sorted[j]==sorted[j-1]+1; ++j );
+            fireGraphEvent(edges, sorted[i], sorted[j-1],
+                EventConstants.ALL_COLUMNS, EventConstants.INSERT);
+        }
+        return rows;
+    }
+    
     /**
      * Add an edge to the graph.
      * @param s the source Node
@@ -581,6 +834,7 @@ public class Graph extends CompositeTupleSet {
     public boolean removeNode(int node) {
         Table nodeTable = getNodeTable();
         if ( nodeTable.isValidRow(node) ) {
+            decompact();
             int id = getInDegree(node);
             if ( id > 0 ) {
                 int[] links = (int[])m_links.get(node, INLINKS);
@@ -719,6 +973,10 @@ public class Graph extends CompositeTupleSet {
      * @return the in-degree of the node
      */
     public int getInDegree(int node) {
+        if ( m_csrOffsets != null ) {
+            int[] off = m_csrOffsets[INEDGES];
+            return off[node+1] - off[node];
+        }
         return m_links.getInt(node, INDEGREE);
     }
     
@@ -740,6 +998,10 @@ public class Graph extends CompositeTupleSet {
      * @return the out-degree of the node
      */
     public int getOutDegree(int node) {
+        if ( m_csrOffsets != null ) {
+            int[] off = m_csrOffsets[OUTEDGES];
+            return off[node+1] - off[node];
+        }
         return m_links.getInt(node, OUTDEGREE);
     }
     
@@ -851,6 +1113,15 @@ public class Graph extends CompositeTupleSet {
      * edges there may be more.
      */
     public int getEdge(int source, int target) {
+        if ( m_csrOffsets != null ) {
+            int[] off = m_csrOffsets[OUTEDGES];
+            int[] adj = m_csrNodes[OUTEDGES];
+            for ( int i=off[source]; i<off[source+1]; ++i ) {
+                if ( adj[i] == target )
+                    return m_csrEdges[OUTEDGES][i];
+            }
+            return -1;
+        }
         int outd = getOutDegree(source); 
         if ( outd > 0 ) {
             int[] edges = (int[])m_links.get(source, OUTLINKS);
@@ -995,7 +1266,13 @@ public class Graph extends CompositeTupleSet {
      * node
      */
     public IntIterator edgeRows(int node, int direction) {
-        if ( direction==OUTEDGES ) {
+        if ( m_csrOffsets != null && 
+             (direction==OUTEDGES || direction==INEDGES) )
+        {
+            int[] off = m_csrOffsets[direction];
+            return new IntArrayIterator(m_csrEdges[direction],
+                                        off[node], off[node+1]-off[node]);
+        } else if ( direction==OUTEDGES ) {
             int[] outedges = (int[])m_links.get(node, OUTLINKS);
             return new IntArrayIterator(outedges, 0, getOutDegree(node));
         } else if ( direction==INEDGES ) {
@@ -1031,6 +1308,36 @@ public class Graph extends CompositeTupleSet {
         return edgeRows(node, OUTEDGES);
     }
     
+    /**
+     * Get an iterator over the node ids of all nodes adjacent to the given
+     * node. Nodes connected by multiple edges are included once per edge.
+     * @param node a node id (node table row number)
+     * @param direction the directionality of the edges to follow. One of
+     * {@link #INEDGES} (for in-linking neighbors),
+     * {@link #OUTEDGES} (for out-linking neighbors), or
+     * {@link #UNDIRECTED} (for all neighbors).
+     * @return an iterator over the node ids of all adjacent nodes
+     */
+    public IntIterator neighborRows(int node, int direction) {
+        if ( direction==UNDIRECTED ) {
+            return new CompositeIntIterator(
+                neighborRows(node, OUTEDGES), neighborRows(node, INEDGES));
+        } else if ( m_csrOffsets != null && 
+                    (direction==OUTEDGES || direction==INEDGES) )
+        {
+            int[] off = m_csrOffsets[direction];
+            return new IntArrayIterator(m_csrNodes[direction],
+                                        off[node], off[node+1]-off[node]);
+        } else {
+            int[] adj = new int[direction==OUTEDGES ? getOutDegree(node)
+                                                    : getInDegree(node)];
+            IntIterator edges = edgeRows(node, direction);
+            for ( int i=0; edges.hasNext(); ++i )
+                adj[i] = getAdjacentNode(edges.nextInt(), node);
+            return new IntArrayIterator(adj, 0, adj.length);
+        }
+    }
+    
     // -- tuple iterators --
     
     /**
@@ -1047,6 +1354,10 @@ public class Graph extends CompositeTupleSet {
      * @return an iterator over all Nodes connected to the input node
      */
     public Iterator neighbors(Node n) {
+        if ( m_csrOffsets != null ) {
+            nodeCheck(n, true);
+            return m_nodeTuples.iterator(neighborRows(n.getRow(), UNDIRECTED));
+        }
         return new NeighborIterator(n, edges(n));
     }
 
@@ -1056,6 +1367,10 @@ public class Graph extends CompositeTupleSet {
      * @return an iterator over all Nodes that point to the input target node
      */
     public Iterator inNeighbors(Node n) {
+        if ( m_csrOffsets != null ) {
+            nodeCheck(n, true);
+            return m_nodeTuples.iterator(neighborRows(n.getRow(), INEDGES));
+        }
         return new NeighborIterator(n, inEdges(n));
     }
 
@@ -1065,6 +1380,10 @@ public class Graph extends CompositeTupleSet {
      * @return an iterator over all Nodes pointed to by the input source node
      */
     public Iterator outNeighbors(Node n) {
+        if ( m_csrOffsets != null ) {
+            nodeCheck(n, true);
+            return m_nodeTuples.iterator(neighborRows(n.getRow(), OUTEDGES));
+        }
         return new NeighborIterator(n, outEdges(n));
     }
     
@@ -1118,6 +1437,7 @@ public class Graph extends CompositeTupleSet {
         m_nodeTuples.invalidateAll();
         m_edgeTuples.invalidateAll();
         super.clear();
+        m_csrOffsets = m_csrEdges = m_csrNodes = null;
         m_links.clear();
     }
     
@@ -1321,6 +1641,8 @@ public class Graph extends CompositeTupleSet {
             if ( !containsSet(t) )
                 throw new IllegalStateException(
                      "Graph shouldn't be listening to an unrelated table");
+            if ( m_bulkLoad && t == m_edges )
+                return; // linkage and events are handled by addEdges
             
             if ( type != EventConstants.UPDATE ) {
                 if ( t == getNodeTable() ) {
@@ -1349,7 +1671,9 @@ public class Graph extends CompositeTupleSet {
         }
 
         public void columnChanged(Column src, int idx, long prev) {
-            if ( src==m_scol || src==m_tcol ) {
+            if ( m_bulkLoad ) {
+                return; // linkage is handled by addEdges
+            } else if ( src==m_scol || src==m_tcol ) {
                 boolean isSrc = src==m_scol;
                 int e = m_edges.getTableRow(idx, isSrc?m_sidx:m_tidx);
                 if ( e == -1 )
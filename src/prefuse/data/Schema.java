@@ -2,6 +2,7 @@ package prefuse.data;
 
 import java.util.HashMap;
 
+import prefuse.data.column.ColumnFactory;
 import prefuse.util.PrefuseLib;
 
 /**
@@ -24,6 +25,7 @@ public class Schema implements Cloneable {
     private String[] m_names;
     private Class[]  m_types;
     private Object[] m_dflts;
+    private int[]    m_store;
     private HashMap  m_lookup;
     private int      m_size;
     private boolean  m_locked;
@@ -47,6 +49,7 @@ public class Schema implements Cloneable {
         m_names = new String[ncols];
         m_types = new Class[ncols];
         m_dflts = new Object[ncols];
+        m_store = new int[ncols];
         m_size = 0;
         m_locked = false;
     }
@@ -101,6 +104,7 @@ public class Schema implements Cloneable {
         Schema s = new Schema(m_size);
         for ( int i=0; i<m_size; ++i ) {
             s.addColumn(m_names[i], m_types[i], m_dflts[i]);
+            s.m_store[i] = m_store[i];
         }
         return s;
     }
@@ -185,17 +189,21 @@ public class Schema implements Cloneable {
             String[] names = new String[capacity];
             Class[]  types = new Class[capacity];
             Object[] dflts = new Object[capacity];
+            int[]    store = new int[capacity];
             System.arraycopy(m_names, 0, names, 0, m_size);
             System.arraycopy(m_types, 0, types, 0, m_size);
             System.arraycopy(m_dflts, 0, dflts, 0, m_size);
+            System.arraycopy(m_store, 0, store, 0, m_size);
             m_names = names;
             m_types = types;
             m_dflts = dflts;
+            m_store = store;
         }
         
         m_names[m_size] = name;
         m_types[m_size] = type;
         m_dflts[m_size] = defaultValue;
+        m_store[m_size] = ColumnFactory.HEAP_STORAGE;
         
         if ( m_lookup != null )
             m_lookup.put(name, new Integer(m_size));
@@ -305,6 +313,63 @@ public class Schema implements Cloneable {
         return ( idx<0 ? null : m_dflts[idx] );
     }
     
+    /**
+     * The storage type of the column at the given position.
+     * @param col the column index
+     * @return the column's storage type, one of
+     * {@link ColumnFactory#HEAP_STORAGE},
+     * {@link ColumnFactory#DIRECT_STORAGE},
+     * {@link ColumnFactory#MAPPED_STORAGE}, or
+     * {@link ColumnFactory#DICTIONARY_STORAGE}
+     */
+    public int getStorage(int col) {
+        return m_store[col];
+    }
+    
+    /**
+     * The storage type of the column with the given name.
+     * @param field the column name
+     * @return the column's storage type, or -1 if the column is not found
+     */
+    public int getStorage(String field) {
+        int idx = getColumnIndex(field);
+        return ( idx<0 ? -1 : m_store[idx] );
+    }
+    
+    /**
+     * Set the storage type to use for the given field when this schema is
+     * instantiated as a table. Off-heap storage types only apply to
+     * columns of primitive numeric or boolean type, and dictionary storage
+     * only applies to columns of Object type. Other columns are always
+     * stored on the Java heap.
+     * @param field the name of the column to set the storage type for
+     * @param storage the storage type, one of
+     * {@link ColumnFactory#HEAP_STORAGE},
+     * {@link ColumnFactory#DIRECT_STORAGE},
+     * {@link ColumnFactory#MAPPED_STORAGE}, or
+     * {@link ColumnFactory#DICTIONARY_STORAGE}
+     * @see prefuse.data.column.BufferColumn
+     */
+    public void setStorage(String field, int storage) {
+        // check lock status
+        if ( m_locked ) {
+            throw new IllegalStateException(
+                "Can not update storage types of a locked Schema.");
+        }
+        if ( storage < ColumnFactory.HEAP_STORAGE ||
+             storage > ColumnFactory.DICTIONARY_STORAGE )
+        {
+            throw new IllegalArgumentException(
+                "Unrecognized storage type: "+storage);
+        }
+        int idx = getColumnIndex(field);
+        if ( idx < 0 ) {
+            throw new IllegalArgumentException(
+                "Unrecognized column name: "+field);
+        }
+        m_store[idx] = storage;
+    }
+    
     /**
      * Set the default value for the given field.
      * @param col the column index of the field to set the default for
@@ -548,7 +613,7 @@ public class Schema implements Cloneable {
     public Table instantiate(int nrows) {
         Table t = new Table(nrows, m_size);
         for ( int i=0; i<m_size; ++i ) {
-            t.addColumn(m_names[i], m_types[i], m_dflts[i]);
+            t.addColumn(m_names[i], m_types[i], m_dflts[i], m_store[i]);
         }
         return t;
     }
@@ -19,6 +19,7 @@ import prefuse.data.expression.parser.ExpressionParser;
 import prefuse.data.tuple.AbstractTupleSet;
 import prefuse.data.tuple.TableTuple;
 import prefuse.data.tuple.TupleManager;
+import prefuse.data.util.BitmapIndex;
 import prefuse.data.util.FilterIteratorFactory;
 import prefuse.data.util.Index;
 import prefuse.data.util.RowManager;
@@ -490,6 +491,27 @@ public class Table extends AbstractTupleSet implements ColumnListener {
         addColumn(name, col);
     }
     
+    /**
+     * Add a column with the given name and data type to this table, using
+     * the given storage type for the column values.
+     * @param name the data field name for the column
+     * @param type the data type, as a Java Class, for the column
+     * @param defaultValue the default value for column data values
+     * @param storage the storage type for the column, one of
+     * {@link ColumnFactory#HEAP_STORAGE},
+     * {@link ColumnFactory#DIRECT_STORAGE},
+     * {@link ColumnFactory#MAPPED_STORAGE}, or
+     * {@link ColumnFactory#DICTIONARY_STORAGE}
+     * @see prefuse.data.column.ColumnFactory#getColumn(Class, int, Object, int)
+     */
+    public void addColumn(String name, Class type, Object defaultValue,
+                          int storage)
+    {
+        Column col = ColumnFactory.getColumn(type, 
+                        m_rows.getMaximumRow()+1, defaultValue, storage);
+        addColumn(name, col);
+    }
+    
     /**
      * Add a derived column to this table, using an Expression instance to
      * dynamically calculate the column data values.
@@ -530,7 +552,9 @@ public class Table extends AbstractTupleSet implements ColumnListener {
      * @param dflt the default value for column data values
      */
     public void addConstantColumn(String name, Class type, Object dflt) {
-        addColumn(name, ColumnFactory.getConstantColumn(type, dflt));
+        Column col = ColumnFactory.getConstantColumn(type, dflt);
+        col.setMaximumRow(m_rows.getMaximumRow()+1);
+        addColumn(name, col);
     }
     
     /**
@@ -698,6 +722,37 @@ public class Table extends AbstractTupleSet implements ColumnListener {
         return e.index;
     }
     
+    /**
+     * Create (if necessary) and return an index of the given kind over the
+     * given data field. Bitmap indices store a bit vector of rows for each
+     * distinct data value, and are most effective for boolean columns and
+     * columns with few distinct values. Tree indices store a tree node for
+     * each row, and are suitable for columns with many distinct values. If
+     * the field is already indexed using the other kind of index, the
+     * existing index is replaced.
+     * @param field the data field name of the column to index
+     * @param bitmap true to create a {@link BitmapIndex}, false to create a
+     * {@link TreeIndex}
+     * @return the index over the specified data column
+     */
+    public Index index(String field, boolean bitmap) {
+        ColumnEntry e = (ColumnEntry)m_entries.get(field);
+        if ( e == null ) {
+            throw new IllegalArgumentException("Unknown column name: "+field);
+        } else if ( e.index != null ) {
+            if ( (e.index instanceof BitmapIndex) == bitmap )
+                return e.index; // already indexed
+            removeIndex(field);
+        }
+        
+        if ( bitmap ) {
+            e.index = new BitmapIndex(this, m_rows, e.column, null);
+            return e.index;
+        } else {
+            return index(field);
+        }
+    }
+    
     /**
      * Retrieve, without creating, an index for the given data field.
      * @param field the data field name of the column
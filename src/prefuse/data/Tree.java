@@ -1,5 +1,6 @@
 package prefuse.data;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.logging.Logger;
 
@@ -152,6 +153,22 @@ public class Tree extends Graph {
         }
     }
     
+    /**
+     * @see prefuse.data.Graph#addLinks(int[], int[], int[], int)
+     */
+    protected void addLinks(int[] e, int[] s, int[] t, int len) {
+        // each added child is appended to the end of its parent's child array
+        int[] next = new int[m_links.getMaximumRow()+1];
+        Arrays.fill(next, -1);
+        for ( int i=0; i<len; ++i ) {
+            if ( next[s[i]] < 0 ) next[s[i]] = getOutDegree(s[i]);
+        }
+        super.addLinks(e, s, t, len);
+        for ( int i=0; i<len; ++i ) {
+            m_links.setInt(t[i], CHILDINDEX, next[s[i]]++);
+        }
+    }
+    
     // ------------------------------------------------------------------------
     // Tree Mutators
     
@@ -295,8 +312,7 @@ public class Tree extends Graph {
     public int getChildRow(int node, int idx) {
         int cc = getChildCount(node);
         if ( idx < 0 || idx >= cc ) return -1;
-        int[] links = (int[])m_links.get(node, OUTLINKS);
-        return getTargetNode(links[idx]);
+        return getTargetNode(getLink(node, OUTEDGES, idx));
     }
     
     /**
@@ -384,9 +400,8 @@ public class Tree extends Graph {
         int p = getParent(node);
         if ( p < 0 )
             return -1;
-        int[] links = (int[])m_links.get(p, OUTLINKS);
         int idx = m_links.getInt(node, CHILDINDEX);
-        return ( idx<=0 ? -1 : getTargetNode(links[idx-1]));
+        return ( idx<=0 ? -1 : getTargetNode(getLink(p, OUTEDGES, idx-1)));
     }
     
     /**
@@ -409,10 +424,10 @@ public class Tree extends Graph {
         int p = getParent(node);
         if ( p < 0 )
             return -1;
-        int[] links = (int[])m_links.get(p, OUTLINKS);
         int idx = m_links.getInt(node, CHILDINDEX);
         int max = getChildCount(p)-1;
-        return ( idx<0 || idx>=max ? -1 : getTargetNode(links[idx+1]));
+        return ( idx<0 || idx>=max ? -1
+                 : getTargetNode(getLink(p, OUTEDGES, idx+1)) );
     }
     
     /**
@@ -459,8 +474,7 @@ public class Tree extends Graph {
      */
     public int getParentEdge(int node) {
         if ( getInDegree(node) > 0 ) {
-            int[] inlinks = (int[])m_links.get(node, INLINKS);
-            return inlinks[0];
+            return getLink(node, INEDGES, 0);
         } else {
             return -1;
         }
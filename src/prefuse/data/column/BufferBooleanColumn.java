@@ -0,0 +1,113 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * Column implementation for storing boolean values in direct or
+ * memory-mapped buffers outside of the Java heap. Each value is stored
+ * in a single byte.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see BufferColumn
+ */
+public class BufferBooleanColumn extends BufferColumn {
+
+    /**
+     * Create a new BufferBooleanColumn backed by direct buffers.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferBooleanColumn(int nrows, boolean defaultValue) {
+        this(nrows, defaultValue, false);
+    }
+
+    /**
+     * Create a new BufferBooleanColumn.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     * @param mapped true if the column should be backed by a memory-mapped
+     * temporary file, false to use direct buffers
+     */
+    public BufferBooleanColumn(int nrows, boolean defaultValue, boolean mapped)
+    {
+        super(boolean.class, new Boolean(defaultValue), 1, mapped);
+        setMaximumRow(nrows);
+    }
+
+    /**
+     * @see prefuse.data.column.BufferColumn#initSegment(java.nio.ByteBuffer)
+     */
+    protected void initSegment(ByteBuffer seg) {
+        if ( !((Boolean)m_defaultValue).booleanValue() ) return;
+        for ( int i=0; i<SEGMENT_ROWS; ++i )
+            seg.put(i, (byte)1);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return new Boolean(getBoolean(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Boolean ) {
+                setBoolean(((Boolean)val).booleanValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#getBoolean(int)
+     */
+    public boolean getBoolean(int row) throws DataTypeException {
+        checkRow(row);
+        return m_segments[row >>> SEGMENT_SHIFT].get(row & SEGMENT_MASK) != 0;
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setBoolean(boolean, int)
+     */
+    public void setBoolean(boolean val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        }
+        checkRow(row);
+        ByteBuffer seg = m_segments[row >>> SEGMENT_SHIFT];
+        int idx = row & SEGMENT_MASK;
+
+        // get the previous value
+        boolean prev = seg.get(idx) != 0;
+
+        // exit early if no change
+        if ( prev == val ) return;
+
+        // set the new value
+        seg.put(idx, (byte)(val ? 1 : 0));
+
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+
+} // end of class BufferBooleanColumn
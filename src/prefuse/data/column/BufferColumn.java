@@ -0,0 +1,169 @@
+package prefuse.data.column;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>Abstract base class for Column implementations that store primitive
+ * values outside of the Java heap, in a sequence of fixed-size
+ * {@link java.nio.ByteBuffer} segments. Each segment holds
+ * {@link #SEGMENT_ROWS} values. When the column grows, new segments are
+ * allocated and the existing segments are left untouched, so growing a
+ * column never copies its data and never needs more memory than the new
+ * segments.</p>
+ *
+ * <p>Segments are either allocated as direct buffers, or mapped from a
+ * temporary file, in which case the operating system can page the column
+ * data in and out of memory as needed. Temporary files are deleted when
+ * the column is {@link #dispose() disposed} or the virtual machine exits.
+ * </p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public abstract class BufferColumn extends AbstractColumn {
+
+    /** The number of rows stored in each buffer segment. */
+    public static final int SEGMENT_ROWS = 1 << 16;
+
+    /** Shift used to compute the segment of a row. */
+    protected static final int SEGMENT_SHIFT = 16;
+    /** Mask used to compute the position of a row within a segment. */
+    protected static final int SEGMENT_MASK = SEGMENT_ROWS-1;
+
+    /** The buffer segments, indexed by row >>> SEGMENT_SHIFT. */
+    protected ByteBuffer[] m_segments = new ByteBuffer[8];
+    /** The number of rows in the column. */
+    protected int m_size;
+
+    private int m_width;
+    private int m_nsegs = 0;
+
+    private File m_file;
+    private RandomAccessFile m_raf;
+    private FileChannel m_channel;
+
+    /**
+     * Create a new BufferColumn.
+     * @param type the data type of the column
+     * @param defaultValue the default value of the column
+     * @param width the number of bytes used to store each value
+     * @param mapped true if the column should be backed by a memory-mapped
+     * temporary file, false to use direct buffers
+     */
+    protected BufferColumn(Class type, Object defaultValue, int width,
+                           boolean mapped)
+    {
+        super(type, defaultValue);
+        m_width = width;
+        if ( mapped ) {
+            try {
+                m_file = File.createTempFile("prefuse", ".col");
+                m_file.deleteOnExit();
+                m_raf = new RandomAccessFile(m_file, "rw");
+                m_channel = m_raf.getChannel();
+            } catch ( IOException e ) {
+                throw new IllegalStateException(
+                    "Could not create column file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Indicates if this column is backed by a memory-mapped file.
+     * @return true if the column is memory-mapped, false otherwise
+     */
+    public boolean isMapped() {
+        return m_channel != null;
+    }
+
+    /**
+     * Release the temporary file backing a memory-mapped column. The
+     * column can not be used after this method has been called. Direct
+     * buffers are released by the garbage collector, so this method has
+     * no effect for columns that are not memory-mapped.
+     */
+    public void dispose() {
+        if ( m_channel == null ) return;
+        m_segments = new ByteBuffer[0];
+        m_nsegs = 0;
+        m_size = 0;
+        try {
+            m_raf.close();
+        } catch ( IOException e ) {
+            // nothing more to do
+        }
+        m_file.delete();
+        m_channel = null;
+    }
+
+    // ------------------------------------------------------------------------
+    // Column Metadata
+
+    /**
+     * @see prefuse.data.column.Column#getRowCount()
+     */
+    public int getRowCount() {
+        return m_size;
+    }
+
+    /**
+     * @see prefuse.data.column.Column#setMaximumRow(int)
+     */
+    public void setMaximumRow(int nrows) {
+        int nsegs = (nrows + SEGMENT_MASK) >>> SEGMENT_SHIFT;
+        if ( nsegs > m_segments.length ) {
+            int capacity = Math.max((3*m_segments.length)/2 + 1, nsegs);
+            ByteBuffer[] segments = new ByteBuffer[capacity];
+            System.arraycopy(m_segments, 0, segments, 0, m_nsegs);
+            m_segments = segments;
+        }
+        for ( ; m_nsegs < nsegs; ++m_nsegs ) {
+            ByteBuffer seg = allocate(m_nsegs);
+            initSegment(seg);
+            m_segments[m_nsegs] = seg;
+        }
+        m_size = nrows;
+    }
+
+    /**
+     * Allocate a new segment.
+     */
+    private ByteBuffer allocate(int seg) {
+        int bytes = SEGMENT_ROWS*m_width;
+        ByteBuffer buf;
+        if ( m_channel == null ) {
+            buf = ByteBuffer.allocateDirect(bytes);
+        } else {
+            try {
+                buf = m_channel.map(FileChannel.MapMode.READ_WRITE,
+                                    (long)seg*bytes, bytes);
+            } catch ( IOException e ) {
+                throw new IllegalStateException(
+                    "Could not map column file: " + e.getMessage());
+            }
+        }
+        return buf.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Initialize all values of a newly allocated segment to the default
+     * value. Newly allocated segments contain all zero bytes.
+     * @param seg the segment to initialize
+     */
+    protected abstract void initSegment(ByteBuffer seg);
+
+    /**
+     * Check that the given row is a valid row of this column.
+     * @param row the row to check
+     */
+    protected final void checkRow(int row) {
+        if ( row < 0 || row >= m_size ) {
+            throw new IllegalArgumentException("Row index out of bounds: "+row);
+        }
+    }
+
+} // end of class BufferColumn
@@ -0,0 +1,157 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * Column implementation for storing double values in direct or memory-mapped
+ * buffers outside of the Java heap.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see BufferColumn
+ */
+public class BufferDoubleColumn extends BufferColumn {
+
+    /**
+     * Create a new BufferDoubleColumn backed by direct buffers.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferDoubleColumn(int nrows, double defaultValue) {
+        this(nrows, defaultValue, false);
+    }
+
+    /**
+     * Create a new BufferDoubleColumn.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     * @param mapped true if the column should be backed by a memory-mapped
+     * temporary file, false to use direct buffers
+     */
+    public BufferDoubleColumn(int nrows, double defaultValue, boolean mapped) {
+        super(double.class, new Double(defaultValue), 8, mapped);
+        setMaximumRow(nrows);
+    }
+
+    /**
+     * @see prefuse.data.column.BufferColumn#initSegment(java.nio.ByteBuffer)
+     */
+    protected void initSegment(ByteBuffer seg) {
+        double dflt = ((Double)m_defaultValue).doubleValue();
+        if ( Double.doubleToRawLongBits(dflt) == 0L ) return;
+        for ( int i=0; i<SEGMENT_ROWS; ++i )
+            seg.putDouble(i*8, dflt);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return new Double(getDouble(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Number ) {
+                setDouble(((Number)val).doubleValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#getDouble(int)
+     */
+    public double getDouble(int row) throws DataTypeException {
+        checkRow(row);
+        return m_segments[row >>> SEGMENT_SHIFT]
+                   .getDouble((row & SEGMENT_MASK)*8);
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setDouble(double, int)
+     */
+    public void setDouble(double val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        }
+        checkRow(row);
+        ByteBuffer seg = m_segments[row >>> SEGMENT_SHIFT];
+        int idx = (row & SEGMENT_MASK)*8;
+
+        // get the previous value
+        double prev = seg.getDouble(idx);
+
+        // exit early if no change
+        if ( prev == val ) return;
+
+        // set the new value
+        seg.putDouble(idx, val);
+
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.data.column.Column#getInt(int)
+     */
+    public int getInt(int row) throws DataTypeException {
+        return (int)getDouble(row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#setInt(int, int)
+     */
+    public void setInt(int val, int row) throws DataTypeException {
+        setDouble(val, row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#getLong(int)
+     */
+    public long getLong(int row) throws DataTypeException {
+        return (long)getDouble(row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#setLong(long, int)
+     */
+    public void setLong(long val, int row) throws DataTypeException {
+        setDouble(val, row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#getFloat(int)
+     */
+    public float getFloat(int row) throws DataTypeException {
+        return (float)getDouble(row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#setFloat(float, int)
+     */
+    public void setFloat(float val, int row) throws DataTypeException {
+        setDouble(val, row);
+    }
+
+} // end of class BufferDoubleColumn
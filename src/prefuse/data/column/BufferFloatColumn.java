@@ -0,0 +1,136 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * Column implementation for storing float values in direct or memory-mapped
+ * buffers outside of the Java heap.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see BufferColumn
+ */
+public class BufferFloatColumn extends BufferColumn {
+
+    /**
+     * Create a new BufferFloatColumn backed by direct buffers.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferFloatColumn(int nrows, float defaultValue) {
+        this(nrows, defaultValue, false);
+    }
+
+    /**
+     * Create a new BufferFloatColumn.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     * @param mapped true if the column should be backed by a memory-mapped
+     * temporary file, false to use direct buffers
+     */
+    public BufferFloatColumn(int nrows, float defaultValue, boolean mapped) {
+        super(float.class, new Float(defaultValue), 4, mapped);
+        setMaximumRow(nrows);
+    }
+
+    /**
+     * @see prefuse.data.column.BufferColumn#initSegment(java.nio.ByteBuffer)
+     */
+    protected void initSegment(ByteBuffer seg) {
+        float dflt = ((Float)m_defaultValue).floatValue();
+        if ( Float.floatToRawIntBits(dflt) == 0 ) return;
+        for ( int i=0; i<SEGMENT_ROWS; ++i )
+            seg.putFloat(i*4, dflt);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return new Float(getFloat(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Number ) {
+                setFloat(((Number)val).floatValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#getFloat(int)
+     */
+    public float getFloat(int row) throws DataTypeException {
+        checkRow(row);
+        return m_segments[row >>> SEGMENT_SHIFT]
+                   .getFloat((row & SEGMENT_MASK)*4);
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setFloat(float, int)
+     */
+    public void setFloat(float val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        }
+        checkRow(row);
+        ByteBuffer seg = m_segments[row >>> SEGMENT_SHIFT];
+        int idx = (row & SEGMENT_MASK)*4;
+
+        // get the previous value
+        float prev = seg.getFloat(idx);
+
+        // exit early if no change
+        if ( prev == val ) return;
+
+        // set the new value
+        seg.putFloat(idx, val);
+
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.data.column.Column#getInt(int)
+     */
+    public int getInt(int row) throws DataTypeException {
+        return (int)getFloat(row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#getLong(int)
+     */
+    public long getLong(int row) throws DataTypeException {
+        return (long)getFloat(row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#getDouble(int)
+     */
+    public double getDouble(int row) throws DataTypeException {
+        return getFloat(row);
+    }
+
+} // end of class BufferFloatColumn
@@ -0,0 +1,136 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * Column implementation for storing int values in direct or memory-mapped
+ * buffers outside of the Java heap.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see BufferColumn
+ */
+public class BufferIntColumn extends BufferColumn {
+
+    /**
+     * Create a new BufferIntColumn backed by direct buffers.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferIntColumn(int nrows, int defaultValue) {
+        this(nrows, defaultValue, false);
+    }
+
+    /**
+     * Create a new BufferIntColumn.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     * @param mapped true if the column should be backed by a memory-mapped
+     * temporary file, false to use direct buffers
+     */
+    public BufferIntColumn(int nrows, int defaultValue, boolean mapped) {
+        super(int.class, new Integer(defaultValue), 4, mapped);
+        setMaximumRow(nrows);
+    }
+
+    /**
+     * @see prefuse.data.column.BufferColumn#initSegment(java.nio.ByteBuffer)
+     */
+    protected void initSegment(ByteBuffer seg) {
+        int dflt = ((Integer)m_defaultValue).intValue();
+        if ( dflt == 0 ) return;
+        for ( int i=0; i<SEGMENT_ROWS; ++i )
+            seg.putInt(i*4, dflt);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return new Integer(getInt(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Number ) {
+                setInt(((Number)val).intValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#getInt(int)
+     */
+    public int getInt(int row) throws DataTypeException {
+        checkRow(row);
+        return m_segments[row >>> SEGMENT_SHIFT]
+                   .getInt((row & SEGMENT_MASK)*4);
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setInt(int, int)
+     */
+    public void setInt(int val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        }
+        checkRow(row);
+        ByteBuffer seg = m_segments[row >>> SEGMENT_SHIFT];
+        int idx = (row & SEGMENT_MASK)*4;
+
+        // get the previous value
+        int prev = seg.getInt(idx);
+
+        // exit early if no change
+        if ( prev == val ) return;
+
+        // set the new value
+        seg.putInt(idx, val);
+
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.data.column.Column#getLong(int)
+     */
+    public long getLong(int row) throws DataTypeException {
+        return getInt(row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#getFloat(int)
+     */
+    public float getFloat(int row) throws DataTypeException {
+        return getInt(row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#getDouble(int)
+     */
+    public double getDouble(int row) throws DataTypeException {
+        return getInt(row);
+    }
+
+} // end of class BufferIntColumn
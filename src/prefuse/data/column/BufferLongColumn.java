@@ -0,0 +1,136 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * Column implementation for storing long values in direct or memory-mapped
+ * buffers outside of the Java heap.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see BufferColumn
+ */
+public class BufferLongColumn extends BufferColumn {
+
+    /**
+     * Create a new BufferLongColumn backed by direct buffers.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferLongColumn(int nrows, long defaultValue) {
+        this(nrows, defaultValue, false);
+    }
+
+    /**
+     * Create a new BufferLongColumn.
+     * @param nrows the initial size of the column
+     * @param defaultValue the default value for the column
+     * @param mapped true if the column should be backed by a memory-mapped
+     * temporary file, false to use direct buffers
+     */
+    public BufferLongColumn(int nrows, long defaultValue, boolean mapped) {
+        super(long.class, new Long(defaultValue), 8, mapped);
+        setMaximumRow(nrows);
+    }
+
+    /**
+     * @see prefuse.data.column.BufferColumn#initSegment(java.nio.ByteBuffer)
+     */
+    protected void initSegment(ByteBuffer seg) {
+        long dflt = ((Long)m_defaultValue).longValue();
+        if ( dflt == 0L ) return;
+        for ( int i=0; i<SEGMENT_ROWS; ++i )
+            seg.putLong(i*8, dflt);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return new Long(getLong(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Number ) {
+                setLong(((Number)val).longValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#getLong(int)
+     */
+    public long getLong(int row) throws DataTypeException {
+        checkRow(row);
+        return m_segments[row >>> SEGMENT_SHIFT]
+                   .getLong((row & SEGMENT_MASK)*8);
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setLong(long, int)
+     */
+    public void setLong(long val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        }
+        checkRow(row);
+        ByteBuffer seg = m_segments[row >>> SEGMENT_SHIFT];
+        int idx = (row & SEGMENT_MASK)*8;
+
+        // get the previous value
+        long prev = seg.getLong(idx);
+
+        // exit early if no change
+        if ( prev == val ) return;
+
+        // set the new value
+        seg.putLong(idx, val);
+
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.data.column.Column#getInt(int)
+     */
+    public int getInt(int row) throws DataTypeException {
+        return (int)getLong(row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#getFloat(int)
+     */
+    public float getFloat(int row) throws DataTypeException {
+        return getLong(row);
+    }
+
+    /**
+     * @see prefuse.data.column.Column#getDouble(int)
+     */
+    public double getDouble(int row) throws DataTypeException {
+        return getLong(row);
+    }
+
+} // end of class BufferLongColumn
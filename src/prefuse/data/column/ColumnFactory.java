@@ -5,6 +5,7 @@ import java.util.Date;
 import prefuse.data.DataTypeException;
 import prefuse.data.Table;
 import prefuse.data.expression.Expression;
+import prefuse.util.PrefuseConfig;
 
 /**
  * Factory class for generating appropriate column instances. Used by
@@ -14,6 +15,18 @@ import prefuse.data.expression.Expression;
  */
 public class ColumnFactory {
     
+    /** Storage type for columns whose values are kept on the Java heap. */
+    public static final int HEAP_STORAGE   = 0;
+    /** Storage type for columns whose values are kept in direct buffers
+     *  outside of the Java heap. */
+    public static final int DIRECT_STORAGE = 1;
+    /** Storage type for columns whose values are kept in buffers mapped
+     *  from a temporary file. */
+    public static final int MAPPED_STORAGE = 2;
+    /** Storage type for columns whose values are encoded as integer codes
+     *  into a dictionary of distinct values. */
+    public static final int DICTIONARY_STORAGE = 3;
+    
     /**
      * Get a new column of the given type.
      * @param type the column data type
@@ -134,6 +147,92 @@ public class ColumnFactory {
         }
     }
     
+    /**
+     * Get a new column of the given type, using the given storage type.
+     * Off-heap storage is available for int, long, float, double, and
+     * boolean columns. Dictionary storage is available for columns of
+     * Object types other than Dates. Columns of any other type are always
+     * stored on the Java heap, regardless of the requested storage type.
+     * @param type the column data type
+     * @param nrows the number of rows to include in the column
+     * @param defaultValue the default value for the column
+     * @param storage the storage type, one of {@link #HEAP_STORAGE},
+     * {@link #DIRECT_STORAGE}, {@link #MAPPED_STORAGE}, or
+     * {@link #DICTIONARY_STORAGE}
+     * @return the new column
+     * @see BufferColumn
+     * @see DictionaryColumn
+     */
+    public static final Column getColumn(Class type, int nrows,
+                                         Object defaultValue, int storage)
+    {
+        if ( storage == HEAP_STORAGE ) {
+            return getColumn(type, nrows, nrows, defaultValue);
+        } else if ( storage == DICTIONARY_STORAGE ) {
+            if ( type.isPrimitive() || Date.class.isAssignableFrom(type) )
+                return getColumn(type, nrows, nrows, defaultValue);
+            return new DictionaryColumn(type, nrows, nrows, defaultValue);
+        } else if ( storage != DIRECT_STORAGE && storage != MAPPED_STORAGE ) {
+            throw new IllegalArgumentException(
+                "Unrecognized storage type: "+storage);
+        }
+        boolean mapped = (storage == MAPPED_STORAGE);
+        
+        if ( type == int.class )
+        {
+            int def = defaultValue==null ? -1
+                        : ((Number)defaultValue).intValue();
+            return new BufferIntColumn(nrows, def, mapped);
+        }
+        else if ( type == long.class )
+        {
+            long def = defaultValue==null ? 0L
+                        : ((Number)defaultValue).longValue();
+            return new BufferLongColumn(nrows, def, mapped);
+        }
+        else if ( type == float.class )
+        {
+            float def = defaultValue==null ? 0f
+                        : ((Number)defaultValue).floatValue();
+            return new BufferFloatColumn(nrows, def, mapped);
+        }
+        else if ( type == double.class )
+        {
+            double def = defaultValue==null ? 0
+                        : ((Number)defaultValue).doubleValue();
+            return new BufferDoubleColumn(nrows, def, mapped);
+        }
+        else if ( type == boolean.class )
+        {
+            boolean def = defaultValue==null ? false
+                        : ((Boolean)defaultValue).booleanValue();
+            return new BufferBooleanColumn(nrows, def, mapped);
+        }
+        else
+        {
+            return getColumn(type, nrows, nrows, defaultValue);
+        }
+    }
+    
+    /**
+     * Get the storage type that data readers should use for columns of the
+     * given type. String columns are dictionary encoded if the
+     * <code>data.io.dictionaryStrings</code> configuration property is
+     * true, all other columns use heap storage.
+     * @param type the column data type
+     * @return the storage type to use for the column
+     * @see prefuse.util.PrefuseConfig
+     */
+    public static final int getDefaultStorage(Class type) {
+        if ( type == String.class &&
+             PrefuseConfig.getBoolean("data.io.dictionaryStrings") )
+        {
+            return DICTIONARY_STORAGE;
+        } else {
+            return HEAP_STORAGE;
+        }
+    }
+    
     /**
      * Get a new column based on the given expression.
      * @param t the table the column should be added to
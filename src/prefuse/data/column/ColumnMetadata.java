@@ -1,5 +1,6 @@
 package prefuse.data.column;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
@@ -9,6 +10,7 @@ import prefuse.data.event.ColumnListener;
 import prefuse.data.util.Index;
 import prefuse.util.DataLib;
 import prefuse.util.TypeLib;
+import prefuse.util.collections.IntIterator;
 import prefuse.util.collections.DefaultLiteralComparator;
 
 /**
@@ -217,6 +219,8 @@ public class ColumnMetadata implements ColumnListener {
             Index idx = m_table.getIndex(m_field);
             if ( idx != null ) {
                 m_unique = idx.uniqueCount();
+            } else if ( m_table.getColumn(m_field) instanceof DictionaryColumn ) {
+                m_unique = getOrdinalArray().length;
             } else {
                 m_unique = DataLib.uniqueCount(m_table.tuples(), m_field);
             }
@@ -274,11 +278,53 @@ public class ColumnMetadata implements ColumnListener {
     public Object[] getOrdinalArray() {
         accessCheck();
         if ( m_ordinalA == null && m_dynamic ) {
-            m_ordinalA = DataLib.ordinalArray(m_table.tuples(),m_field,m_cmp);
+            Object[] values = getDistinctValues();
+            if ( values != null ) {
+                Arrays.sort(values, m_cmp);
+                m_ordinalA = values;
+            } else {
+                m_ordinalA = DataLib.ordinalArray(
+                                m_table.tuples(), m_field, m_cmp);
+            }
         }
         return m_ordinalA;
     }
     
+    /**
+     * Get the distinct values of a dictionary encoded column, visiting the
+     * column dictionary rather than every value where possible.
+     * @return the distinct values of the column, or null if the column is
+     * not dictionary encoded
+     */
+    private Object[] getDistinctValues() {
+        int col = m_table.getColumnNumber(m_field);
+        Column c = m_table.getColumn(col);
+        if ( !(c instanceof DictionaryColumn) )
+            return null;
+        DictionaryColumn dc = (DictionaryColumn)c;
+        
+        // if every column row belongs to a table row, the dictionary
+        // contains exactly the distinct values of the table
+        if ( m_table.getRowCount() == dc.getRowCount() )
+            return dc.getDistinctValues();
+        
+        // otherwise mark the codes used by valid rows
+        boolean[] used = new boolean[dc.getCodeLimit()];
+        int count = 0;
+        for ( IntIterator rows = m_table.rows(); rows.hasNext(); ) {
+            int code = dc.getCode(m_table.getColumnRow(rows.nextInt(), col));
+            if ( !used[code] ) {
+                used[code] = true;
+                ++count;
+            }
+        }
+        Object[] values = new Object[count];
+        for ( int i=0, j=0; i<used.length; ++i ) {
+            if ( used[i] ) values[j++] = dc.getValue(i);
+        }
+        return values;
+    }
+    
     /**
      * Get a map between all unique column values and their integer index
      * in the sort order of those values. For example, the minimum value
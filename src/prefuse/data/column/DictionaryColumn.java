@@ -0,0 +1,361 @@
+package prefuse.data.column;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * <p>Column implementation that stores Object values using dictionary
+ * encoding. Each distinct value is stored once in a dictionary and assigned
+ * an integer code, and the column itself stores only the code for each
+ * row. This greatly reduces memory usage for columns with many repeated
+ * values, such as category labels, and allows the set of distinct values
+ * in the column to be retrieved by visiting the dictionary rather than
+ * every row of the column.</p>
+ *
+ * <p>Values are considered equal if their equals() methods say so, in
+ * which case the dictionary instance is returned for every row holding the
+ * value. As a result, this column type is intended for immutable values
+ * such as Strings. Unlike {@link ObjectColumn}, default values are never
+ * cloned.</p>
+ *
+ * <p>Codes are assigned in the order values are first added to the column.
+ * When no row references a value any longer, its entry is removed from the
+ * dictionary and its code may be reused for a different value.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class DictionaryColumn extends AbstractColumn {
+
+    private int[]    m_codes;
+    private int      m_size;
+
+    // the dictionary: values and row counts, indexed by code. released
+    // codes have a count of -1.
+    private Object[] m_dict;
+    private int[]    m_counts;
+    private int      m_ncodes;
+    private int      m_nvalues;
+
+    // released codes available for reuse
+    private int[]    m_free;
+    private int      m_nfree;
+
+    // open addressing hash table of code+1 values, 0 marks an empty slot
+    private int[]    m_hash;
+
+    /**
+     * Create a new empty DictionaryColumn. The type is assumed to be String.
+     */
+    public DictionaryColumn() {
+        this(String.class);
+    }
+
+    /**
+     * Create a new DictionaryColumn.
+     * @param type the data type of Objects in this column
+     */
+    public DictionaryColumn(Class type) {
+        this(type, 0, 10, null);
+    }
+
+    /**
+     * Create a new DictionaryColumn.
+     * @param type the data type of Objects in this column
+     * @param nrows the initial size of the column
+     */
+    public DictionaryColumn(Class type, int nrows) {
+        this(type, nrows, nrows, null);
+    }
+
+    /**
+     * Create a new DictionaryColumn.
+     * @param type the data type of Objects in this column
+     * @param nrows the initial size of the column
+     * @param capacity the initial capacity of the column
+     * @param defaultValue the default value for the column
+     */
+    public DictionaryColumn(Class type, int nrows, int capacity,
+                            Object defaultValue)
+    {
+        super(type, defaultValue);
+        if ( capacity < nrows ) {
+            throw new IllegalArgumentException(
+                "Capacity value can not be less than the row count.");
+        }
+        m_codes = new int[capacity];
+        m_dict = new Object[8];
+        m_counts = new int[8];
+        m_free = new int[8];
+        m_hash = new int[16];
+        m_size = 0;
+        setMaximumRow(nrows);
+    }
+
+    // ------------------------------------------------------------------------
+    // Column Metadata
+
+    /**
+     * @see prefuse.data.column.Column#getRowCount()
+     */
+    public int getRowCount() {
+        return m_size;
+    }
+
+    /**
+     * @see prefuse.data.column.Column#setMaximumRow(int)
+     */
+    public void setMaximumRow(int nrows) {
+        if ( nrows > m_codes.length ) {
+            int capacity = Math.max((3*m_codes.length)/2 + 1, nrows);
+            int[] codes = new int[capacity];
+            System.arraycopy(m_codes, 0, codes, 0, m_size);
+            m_codes = codes;
+        }
+        if ( nrows > m_size ) {
+            int code = intern(m_defaultValue);
+            for ( int i=m_size; i<nrows; ++i )
+                m_codes[i] = code;
+            m_counts[code] += nrows-m_size;
+        } else {
+            for ( int i=nrows; i<m_size; ++i )
+                unref(m_codes[i]);
+        }
+        m_size = nrows;
+    }
+
+    // ------------------------------------------------------------------------
+    // Dictionary Access
+
+    /**
+     * Get the dictionary code for the value at the given row.
+     * @param row the row to retrieve the code for
+     * @return the dictionary code of the row's value
+     */
+    public int getCode(int row) {
+        if ( row < 0 || row >= m_size ) {
+            throw new IllegalArgumentException(
+                "Row index out of bounds: "+row);
+        }
+        return m_codes[row];
+    }
+
+    /**
+     * Get the dictionary code for the given value.
+     * @param value the value to look up
+     * @return the dictionary code of the value, or -1 if the value is not
+     * contained in this column
+     */
+    public int getCode(Object value) {
+        int slot = slot(value);
+        return ( slot < 0 ? -1 : m_hash[slot]-1 );
+    }
+
+    /**
+     * Get the value for the given dictionary code.
+     * @param code the dictionary code
+     * @return the value for the code, or null if the code is not in use
+     */
+    public Object getValue(int code) {
+        return m_dict[code];
+    }
+
+    /**
+     * Get the number of rows holding the value with the given code.
+     * @param code the dictionary code
+     * @return the number of rows with the value
+     */
+    public int getCount(int code) {
+        return Math.max(0, m_counts[code]);
+    }
+
+    /**
+     * Get an upper bound on the dictionary codes in use. All codes are
+     * non-negative integers less than this value, and so can be used to
+     * index arrays of this size.
+     * @return an upper bound on the dictionary codes
+     */
+    public int getCodeLimit() {
+        return m_ncodes;
+    }
+
+    /**
+     * Get the number of distinct values in this column.
+     * @return the number of distinct values
+     */
+    public int getDistinctCount() {
+        return m_nvalues;
+    }
+
+    /**
+     * Get the distinct values in this column, in dictionary code order.
+     * @return an array of the distinct values
+     */
+    public Object[] getDistinctValues() {
+        Object[] values = new Object[m_nvalues];
+        for ( int c=0, i=0; c<m_ncodes; ++c ) {
+            if ( m_counts[c] > 0 )
+                values[i++] = m_dict[c];
+        }
+        return values;
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    /**
+     * Get the data value at the specified row
+     * @param row the row from which to retrieve the value
+     * @return the data value
+     */
+    public Object get(int row) {
+        if ( row < 0 || row >= m_size ) {
+            throw new IllegalArgumentException(
+                "Row index out of bounds: "+row);
+        }
+        return m_dict[m_codes[row]];
+    }
+
+    /**
+     * Set the data value at the specified row
+     * @param val the value to set
+     * @param row the row at which to set the value
+     */
+    public void set(Object val, int row) {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( row < 0 || row >= m_size ) {
+            throw new IllegalArgumentException(
+                "Row index out of bounds: "+row);
+        } else if ( val == null || canSet(val.getClass()) ) {
+            // get the previous value
+            int prevCode = m_codes[row];
+            Object prev = m_dict[prevCode];
+
+            // exit early if no change
+            int code = intern(val);
+            if ( code == prevCode ) return;
+
+            // set the new value
+            m_codes[row] = code;
+            ++m_counts[code];
+            unref(prevCode);
+
+            // fire a change event
+            fireColumnEvent(row, prev);
+        } else {
+            throw new DataTypeException(val.getClass());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Dictionary Maintenance
+
+    private static int hash(Object value) {
+        if ( value == null ) return 0;
+        int h = value.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    /**
+     * Get the hash table slot holding the given value, or -1 if the value
+     * is not in the dictionary.
+     */
+    private int slot(Object value) {
+        int mask = m_hash.length-1;
+        for ( int i = hash(value) & mask; ; i = (i+1) & mask ) {
+            int c = m_hash[i];
+            if ( c == 0 )
+                return -1;
+            else if ( equals(m_dict[c-1], value) )
+                return i;
+        }
+    }
+
+    /**
+     * Get the code for a value, adding the value to the dictionary with a
+     * zero row count if it is not already present.
+     */
+    private int intern(Object value) {
+        int slot = slot(value);
+        if ( slot >= 0 ) return m_hash[slot]-1;
+
+        int code;
+        if ( m_nfree > 0 ) {
+            code = m_free[--m_nfree];
+        } else {
+            if ( m_ncodes == m_dict.length ) {
+                int capacity = 2*m_ncodes;
+                Object[] dict = new Object[capacity];
+                int[] counts = new int[capacity];
+                System.arraycopy(m_dict, 0, dict, 0, m_ncodes);
+                System.arraycopy(m_counts, 0, counts, 0, m_ncodes);
+                m_dict = dict;
+                m_counts = counts;
+            }
+            code = m_ncodes++;
+        }
+        m_dict[code] = value;
+        m_counts[code] = 0;
+        ++m_nvalues;
+
+        if ( 2*m_nvalues > m_hash.length ) {
+            rehash(2*m_hash.length);
+        } else {
+            insert(code);
+        }
+        return code;
+    }
+
+    private void insert(int code) {
+        int mask = m_hash.length-1;
+        int i = hash(m_dict[code]) & mask;
+        while ( m_hash[i] != 0 )
+            i = (i+1) & mask;
+        m_hash[i] = code+1;
+    }
+
+    private void rehash(int capacity) {
+        m_hash = new int[capacity];
+        for ( int c=0; c<m_ncodes; ++c ) {
+            if ( m_counts[c] >= 0 )
+                insert(c);
+        }
+    }
+
+    /**
+     * Decrement the row count for a code, removing the value from the
+     * dictionary if no rows reference it.
+     */
+    private void unref(int code) {
+        if ( --m_counts[code] > 0 ) return;
+
+        // remove the hash table entry, shifting back later entries
+        int mask = m_hash.length-1;
+        int i = slot(m_dict[code]);
+        for ( int j = (i+1) & mask; m_hash[j] != 0; j = (j+1) & mask ) {
+            int k = hash(m_dict[m_hash[j]-1]) & mask;
+            // entries whose home slot lies cyclically in (i, j] stay put
+            if ( i <= j ? (i < k && k <= j) : (i < k || k <= j) )
+                continue;
+            m_hash[i] = m_hash[j];
+            i = j;
+        }
+        m_hash[i] = 0;
+
+        // release the code for reuse
+        m_dict[code] = null;
+        m_counts[code] = -1;
+        if ( m_nfree == m_free.length ) {
+            int[] free = new int[2*m_nfree];
+            System.arraycopy(m_free, 0, free, 0, m_nfree);
+            m_free = free;
+        }
+        m_free[m_nfree++] = code;
+        --m_nvalues;
+    }
+
+} // end of class DictionaryColumn
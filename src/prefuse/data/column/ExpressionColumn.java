@@ -10,15 +10,30 @@ import prefuse.data.event.ColumnListener;
 import prefuse.data.event.EventConstants;
 import prefuse.data.event.ExpressionListener;
 import prefuse.data.expression.Expression;
+import prefuse.data.expression.CompiledExpression;
 import prefuse.data.expression.ExpressionAnalyzer;
+import prefuse.data.expression.ExpressionCompiler;
 
 /**
  * <p>Column instance that stores values provided by an Expression
  * instance. These expressions can reference other column values within the
  * same table. Values are evaluated when first requested and then cached to
  * increase performance. This column maintains listeners for all referenced
- * columns discovered in the expression and for the expression itself,
- * invalidating all cached entries when an update to either occurs.</p>
+ * columns discovered in the expression and for the expression itself.
+ * When a referenced column changes, only the cache entries for the changed
+ * rows are invalidated; an update to the expression invalidates all
+ * entries. If expression compilation is
+ * {@link ExpressionCompiler#isEnabled() enabled}, values are computed
+ * using a compiled form of the expression.</p>
+ * 
+ * <p>When a requested value is not in the cache, it is computed together
+ * with the invalid entries in the rows that immediately follow it, so
+ * that scanning the column evaluates the expression in batches of rows
+ * rather than one row at a time. Optionally, large invalidations can be
+ * recomputed eagerly, using multiple threads where the compiled expression
+ * {@link CompiledExpression#isConcurrent() supports it}; see
+ * {@link #setEagerThreshold(int)}. The number of cache hits and misses
+ * are tracked to help tune the use of expression columns.</p>
  * 
  * <p>
  * WARNING: Infinite recursion, eventually resulting in a StackOverflowError,
@@ -35,6 +50,7 @@ import prefuse.data.expression.ExpressionAnalyzer;
 public class ExpressionColumn extends AbstractColumn {
     
     private Expression m_expr;
+    private CompiledExpression m_compiled;
     private Table m_table;
     private Set m_columns;
     
@@ -42,6 +58,16 @@ public class ExpressionColumn extends AbstractColumn {
     private Column m_cache;
     private Listener m_lstnr;
     
+    private int m_eagerThreshold = -1;
+    private long m_hits;
+    private long m_misses;
+    
+    /** The maximum number of rows computed for a single cache miss. */
+    private static final int BATCH_SIZE = 128;
+    /** The minimum number of rows computed by each thread when
+     * recomputing the cache in parallel. */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    
     /**
      * Create a new ExpressionColumn.
      * @param table the table this column is a member of
@@ -55,7 +81,7 @@ public class ExpressionColumn extends AbstractColumn {
         
         init();
         
-        int nrows = m_table.getRowCount();
+        int nrows = m_table.getMaximumRow()+1;
         m_cache = ColumnFactory.getColumn(getColumnType(), nrows);
         m_valid = new BitSet(nrows);
         m_expr.addExpressionListener(m_lstnr);
@@ -92,6 +118,18 @@ public class ExpressionColumn extends AbstractColumn {
             Column col = m_table.getColumn(field);
             col.addColumnListener(m_lstnr);
         }
+        
+        // compile the expression, if requested
+        m_compiled = ExpressionCompiler.isEnabled()
+            ? ExpressionCompiler.compile(m_expr, m_table) : null;
+    }
+    
+    /**
+     * Get the expression used to compute the values of this column.
+     * @return the column's expression
+     */
+    public Expression getExpression() {
+        return m_expr;
     }
     
     // ------------------------------------------------------------------------
@@ -133,6 +171,211 @@ public class ExpressionColumn extends AbstractColumn {
         m_valid.clear(start, end+1);
     }
     
+    /**
+     * Compute and cache the values for all invalid entries in a range of
+     * the cache. Large ranges of numeric values are computed using
+     * multiple threads if more than one processor is available and the
+     * expression is compiled and supports concurrent evaluation.
+     * @param start the start of the range to compute
+     * @param end the end of the range to compute, inclusive
+     */
+    public void computeCache(int start, int end) {
+        start = Math.max(start, 0);
+        end = Math.min(end, getRowCount()-1);
+        int threads = 1;
+        Class type = m_columnType;
+        if ( m_compiled != null && m_compiled.isConcurrent() &&
+             (int.class == type || long.class == type ||
+              float.class == type || double.class == type) )
+        {
+            threads = Math.min(Runtime.getRuntime().availableProcessors(),
+                               (end-start+1) / PARALLEL_THRESHOLD);
+        }
+        if ( threads > 1 ) {
+            computeParallel(start, end+1, threads);
+            return;
+        }
+        for ( int i = m_valid.nextClearBit(start); i <= end; ) {
+            int j = Math.min(m_valid.nextSetBit(i) & Integer.MAX_VALUE, end+1);
+            compute(i, j, m_valid);
+            i = m_valid.nextClearBit(j);
+        }
+    }
+    
+    /**
+     * Get the row count at or above which invalidated cache entries are
+     * recomputed immediately, rather than when their values are requested.
+     * @return the eager recomputation threshold, or a negative value if
+     * cache entries are only computed on request
+     */
+    public int getEagerThreshold() {
+        return m_eagerThreshold;
+    }
+    
+    /**
+     * Set the row count at or above which invalidated cache entries are
+     * recomputed immediately, rather than when their values are requested.
+     * Eager recomputation allows updates that invalidate large parts of the
+     * column to be processed in parallel, at the cost of computing values
+     * that might not be accessed. It is disabled by default.
+     * @param rows the eager recomputation threshold, or a negative value to
+     * compute cache entries only on request
+     */
+    public void setEagerThreshold(int rows) {
+        m_eagerThreshold = rows;
+    }
+    
+    /**
+     * Get the number of value requests answered from the cache since the
+     * cache statistics were last reset.
+     * @return the number of cache hits
+     */
+    public long getCacheHits() {
+        return m_hits;
+    }
+    
+    /**
+     * Get the number of value requests that required the expression to be
+     * evaluated since the cache statistics were last reset.
+     * @return the number of cache misses
+     */
+    public long getCacheMisses() {
+        return m_misses;
+    }
+    
+    /**
+     * Reset the cache hit and miss counts to zero.
+     */
+    public void resetCacheStatistics() {
+        m_hits = 0;
+        m_misses = 0;
+    }
+    
+    /**
+     * Check the cache entry for a row, computing the entry and those of
+     * the invalid rows that follow it if needed.
+     * @return true if the row has a valid cache entry
+     */
+    private boolean validate(int row) {
+        if ( m_valid.get(row) ) {
+            ++m_hits;
+            return true;
+        }
+        ++m_misses;
+        int end = Math.min(row+BATCH_SIZE, getRowCount());
+        int next = m_valid.nextSetBit(row);
+        if ( next >= 0 && next < end ) end = next;
+        compute(row, end, m_valid);
+        return m_valid.get(row);
+    }
+    
+    /**
+     * Compute the values for the valid table rows in a range, storing them
+     * in the cache and marking the cached rows in the given bit set.
+     * @param start the start of the range, inclusive
+     * @param end the end of the range, exclusive
+     * @param valid the bit set in which to mark cached rows
+     */
+    private void compute(int start, int end, BitSet valid) {
+        Class type = m_columnType;
+        CompiledExpression ce = m_compiled;
+        
+        if ( int.class == type || byte.class == type ) {
+            for ( int row=start; row<end; ++row ) {
+                if ( !m_table.isValidRow(row) ) continue;
+                m_cache.setInt( ce != null ? ce.getInt(row)
+                    : m_expr.getInt(m_table.getTuple(row)), row );
+                valid.set(row);
+            }
+        } else if ( long.class == type ) {
+            for ( int row=start; row<end; ++row ) {
+                if ( !m_table.isValidRow(row) ) continue;
+                m_cache.setLong( ce != null ? ce.getLong(row)
+                    : m_expr.getLong(m_table.getTuple(row)), row );
+                valid.set(row);
+            }
+        } else if ( float.class == type ) {
+            for ( int row=start; row<end; ++row ) {
+                if ( !m_table.isValidRow(row) ) continue;
+                m_cache.setFloat( ce != null ? ce.getFloat(row)
+                    : m_expr.getFloat(m_table.getTuple(row)), row );
+                valid.set(row);
+            }
+        } else if ( double.class == type ) {
+            for ( int row=start; row<end; ++row ) {
+                if ( !m_table.isValidRow(row) ) continue;
+                m_cache.setDouble( ce != null ? ce.getDouble(row)
+                    : m_expr.getDouble(m_table.getTuple(row)), row );
+                valid.set(row);
+            }
+        } else if ( boolean.class == type ) {
+            for ( int row=start; row<end; ++row ) {
+                if ( !m_table.isValidRow(row) ) continue;
+                m_cache.setBoolean( ce != null ? ce.getBoolean(row)
+                    : m_expr.getBoolean(m_table.getTuple(row)), row );
+                valid.set(row);
+            }
+        } else {
+            for ( int row=start; row<end; ++row ) {
+                if ( !m_table.isValidRow(row) ) continue;
+                Object val = ( ce != null ? ce.get(row)
+                               : m_expr.get(m_table.getTuple(row)) );
+                Class vtype = val==null ? Object.class : val.getClass();
+                if ( m_cache.canSet(vtype) ) {
+                    m_cache.set(val, row);
+                    valid.set(row);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compute the values for a range of rows using multiple threads. Each
+     * thread marks its rows in its own bit set, which are merged into the
+     * cache's valid rows once all threads complete.
+     */
+    private void computeParallel(int start, int end, int threads) {
+        final BitSet[] valid = new BitSet[threads];
+        final RuntimeException[] error = new RuntimeException[threads];
+        Thread[] workers = new Thread[threads-1];
+        int chunk = (end-start+threads-1) / threads;
+        
+        for ( int t=0; t<threads-1; ++t ) {
+            final int idx = t;
+            final int lo = start + t*chunk, hi = lo + chunk;
+            valid[t] = new BitSet(end);
+            workers[t] = new Thread() {
+                public void run() {
+                    try {
+                        compute(lo, hi, valid[idx]);
+                    } catch ( RuntimeException e ) {
+                        error[idx] = e;
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        valid[threads-1] = new BitSet(end);
+        compute(start + (threads-1)*chunk, end, valid[threads-1]);
+        
+        boolean interrupted = false;
+        for ( int t=0; t<workers.length; ) {
+            try {
+                workers[t].join();
+                ++t;
+            } catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if ( interrupted )
+            Thread.currentThread().interrupt();
+        for ( int t=0; t<threads; ++t ) {
+            if ( error[t] != null )
+                throw error[t];
+            m_valid.or(valid[t]);
+        }
+    }
+    
     // ------------------------------------------------------------------------
     // Data Access Methods    
 
@@ -156,16 +399,12 @@ public class ExpressionColumn extends AbstractColumn {
      */
     public Object get(int row) {
         rangeCheck(row);
-        if ( isCacheValid(row) ) {
+        if ( validate(row) ) {
             return m_cache.get(row);
         }
-        Object val = m_expr.get(m_table.getTuple(row));
-        Class type = val==null ? Object.class : val.getClass();
-        if ( m_cache.canSet(type) ) {
-            m_cache.set(val, row);
-            m_valid.set(row);
-        }
-        return val;
+        // the value could not be cached
+        return ( m_compiled != null ? m_compiled.get(row)
+                 : m_expr.get(m_table.getTuple(row)) );
     }
 
     /**
@@ -190,29 +429,14 @@ public class ExpressionColumn extends AbstractColumn {
             throw new DataTypeException(boolean.class);
         rangeCheck(row);
         
-        if ( isCacheValid(row) ) {
+        if ( validate(row) ) {
             return m_cache.getBoolean(row);
         } else {
-            boolean value = m_expr.getBoolean(m_table.getTuple(row));
-            m_cache.setBoolean(value, row);
-            m_valid.set(row);
-            return value;
+            return ( m_compiled != null ? m_compiled.getBoolean(row)
+                     : m_expr.getBoolean(m_table.getTuple(row)) );
         }
     }
 
-    private void computeNumber(int row) {
-        if ( m_columnType == int.class || m_columnType == byte.class ) {
-            m_cache.setInt(m_expr.getInt(m_table.getTuple(row)), row);
-        } else if ( m_columnType == long.class ) {
-            m_cache.setLong(m_expr.getLong(m_table.getTuple(row)), row);
-        } else if ( m_columnType == float.class ) {
-            m_cache.setFloat(m_expr.getFloat(m_table.getTuple(row)), row);
-        } else {
-            m_cache.setDouble(m_expr.getDouble(m_table.getTuple(row)), row);
-        }
-        m_valid.set(row);
-    }
-    
     /**
      * @see prefuse.data.column.Column#getInt(int)
      */
@@ -221,9 +445,12 @@ public class ExpressionColumn extends AbstractColumn {
             throw new DataTypeException(int.class);
         rangeCheck(row);
         
-        if ( !isCacheValid(row) )
-            computeNumber(row);
-        return m_cache.getInt(row);
+        if ( validate(row) ) {
+            return m_cache.getInt(row);
+        } else {
+            return ( m_compiled != null ? m_compiled.getInt(row)
+                     : m_expr.getInt(m_table.getTuple(row)) );
+        }
     }
 
     /**
@@ -234,9 +461,12 @@ public class ExpressionColumn extends AbstractColumn {
             throw new DataTypeException(double.class);
         rangeCheck(row);
         
-        if ( !isCacheValid(row) )
-            computeNumber(row);
-        return m_cache.getDouble(row);
+        if ( validate(row) ) {
+            return m_cache.getDouble(row);
+        } else {
+            return ( m_compiled != null ? m_compiled.getDouble(row)
+                     : m_expr.getDouble(m_table.getTuple(row)) );
+        }
     }
 
     /**
@@ -247,9 +477,12 @@ public class ExpressionColumn extends AbstractColumn {
             throw new DataTypeException(float.class);
         rangeCheck(row);
         
-        if ( !isCacheValid(row) )
-            computeNumber(row);
-        return m_cache.getFloat(row);
+        if ( validate(row) ) {
+            return m_cache.getFloat(row);
+        } else {
+            return ( m_compiled != null ? m_compiled.getFloat(row)
+                     : m_expr.getFloat(m_table.getTuple(row)) );
+        }
     }
 
     /**
@@ -260,9 +493,12 @@ public class ExpressionColumn extends AbstractColumn {
             throw new DataTypeException(long.class);
         rangeCheck(row);
         
-        if ( !isCacheValid(row) )
-            computeNumber(row);
-        return m_cache.getLong(row);
+        if ( validate(row) ) {
+            return m_cache.getLong(row);
+        } else {
+            return ( m_compiled != null ? m_compiled.getLong(row)
+                     : m_expr.getLong(m_table.getTuple(row)) );
+        }
     }
     
     // ------------------------------------------------------------------------
@@ -298,6 +534,9 @@ public class ExpressionColumn extends AbstractColumn {
             } else {
                 // invalidate cache indices
                 invalidateCache(start, end);
+                // recompute large invalidations up front, if requested
+                if ( m_eagerThreshold >= 0 && end-start+1 >= m_eagerThreshold )
+                    computeCache(start, end);
                 // fire change event
                 fireColumnEvent(EventConstants.UPDATE, start, end);
             }
@@ -332,10 +571,10 @@ public class ExpressionColumn extends AbstractColumn {
         }
     
         public void expressionChanged(Expression expr) {
-            // mark everything as changed
-            columnChanged(0, m_cache.getRowCount()-1);
             // re-initialize our setup
             init();
+            // mark everything as changed
+            columnChanged(0, m_cache.getRowCount()-1);
         }
     }
     
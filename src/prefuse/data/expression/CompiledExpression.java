@@ -0,0 +1,350 @@
+package prefuse.data.expression;
+
+import java.util.BitSet;
+
+import prefuse.data.Schema;
+import prefuse.data.Table;
+import prefuse.data.Tuple;
+
+/**
+ * <p>An Expression that has been compiled by the {@link ExpressionCompiler}
+ * for evaluation over the rows of a specific {@link prefuse.data.Table}.
+ * In addition to the standard Tuple-based evaluation methods, compiled
+ * expressions provide evaluation methods that take a table row number
+ * directly, such as {@link #getInt(int)} and {@link #getBoolean(int)}.
+ * These read data values straight from the table's columns, without
+ * looking up Tuple instances or resolving field names.</p>
+ *
+ * <p>Compiled expressions can also evaluate a batch of rows at once, given
+ * as an array of row numbers or as a bitmap of rows. Batch evaluation
+ * fills an array of primitive results, such as
+ * {@link #getDouble(int[], int, double[])}, or selects the rows for which
+ * a predicate holds, using {@link #select(int[], int, int[])} or
+ * {@link #select(BitSet)}. The built-in expression types process whole
+ * batches in tight loops over primitive arrays; for example, a conjunction
+ * evaluates each clause only for the rows that passed the clauses before
+ * it. This avoids both the creation of Tuple instances and the cost of
+ * evaluating the expression tree separately for every row.</p>
+ *
+ * <p>The Tuple-based evaluation methods use the compiled form when given a
+ * Tuple from the compiled table, and otherwise defer to the source
+ * expression. A compiled expression is bound to the columns of its table
+ * at the time of compilation. If columns referenced by the expression are
+ * later added to or removed from the table, the expression should be
+ * compiled again. If the source expression is modified while this
+ * expression has listeners registered, it is compiled again
+ * automatically.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class CompiledExpression extends AbstractExpression
+    implements Predicate
+{
+    /** The number of rows evaluated at once by batch operations, such as
+     * selecting the rows of a bitmap. */
+    public static final int BATCH_SIZE = 256;
+
+    private Expression m_source;
+    private Table m_table;
+    private ExpressionCompiler.Node m_root;
+
+    /**
+     * Create a new CompiledExpression.
+     * @param source the source expression
+     * @param t the table the expression is compiled for
+     * @param root the root of the compiled evaluation tree
+     */
+    CompiledExpression(Expression source, Table t, ExpressionCompiler.Node root)
+    {
+        m_source = source;
+        m_table = t;
+        m_root = root;
+    }
+
+    /**
+     * Get the source expression that was compiled.
+     * @return the source expression
+     */
+    public Expression getSourceExpression() {
+        return m_source;
+    }
+
+    /**
+     * Get the table this expression was compiled for.
+     * @return the compiled table
+     */
+    public Table getTable() {
+        return m_table;
+    }
+
+    // ------------------------------------------------------------------------
+    // Row-based Evaluation
+
+    /**
+     * Evaluate the expression on the given table row.
+     * @param row the table row
+     * @return the expression return value, as an Object
+     */
+    public Object get(int row) {
+        return m_root.get(row);
+    }
+
+    /**
+     * Evaluate the expression on the given table row.
+     * @param row the table row
+     * @return the expression return value, as an int
+     */
+    public int getInt(int row) {
+        return m_root.getInt(row);
+    }
+
+    /**
+     * Evaluate the expression on the given table row.
+     * @param row the table row
+     * @return the expression return value, as a long
+     */
+    public long getLong(int row) {
+        return m_root.getLong(row);
+    }
+
+    /**
+     * Evaluate the expression on the given table row.
+     * @param row the table row
+     * @return the expression return value, as a float
+     */
+    public float getFloat(int row) {
+        return m_root.getFloat(row);
+    }
+
+    /**
+     * Evaluate the expression on the given table row.
+     * @param row the table row
+     * @return the expression return value, as a double
+     */
+    public double getDouble(int row) {
+        return m_root.getDouble(row);
+    }
+
+    /**
+     * Evaluate the expression on the given table row.
+     * @param row the table row
+     * @return the expression return value, as a boolean
+     */
+    public boolean getBoolean(int row) {
+        return m_root.getBoolean(row);
+    }
+
+    /**
+     * Indicates if the row-based evaluation methods of this expression may
+     * be called by multiple threads at once. This is the case when the
+     * compiled expression reads data only from columns that store their
+     * values, rather than through Tuple instances or derived columns.
+     * Such expressions also depend only on the values of the row being
+     * evaluated.
+     * @return true if the expression supports concurrent evaluation
+     */
+    public boolean isConcurrent() {
+        return m_root.isConcurrent();
+    }
+
+    // ------------------------------------------------------------------------
+    // Batch Evaluation
+
+    /**
+     * Evaluate the expression on a batch of table rows.
+     * @param rows the table rows to evaluate
+     * @param n the number of rows, from the start of the rows array
+     * @param values the array in which to store the int values
+     */
+    public void getInt(int[] rows, int n, int[] values) {
+        m_root.getInt(rows, n, values);
+    }
+
+    /**
+     * Evaluate the expression on a batch of table rows.
+     * @param rows the table rows to evaluate
+     * @param n the number of rows, from the start of the rows array
+     * @param values the array in which to store the long values
+     */
+    public void getLong(int[] rows, int n, long[] values) {
+        m_root.getLong(rows, n, values);
+    }
+
+    /**
+     * Evaluate the expression on a batch of table rows.
+     * @param rows the table rows to evaluate
+     * @param n the number of rows, from the start of the rows array
+     * @param values the array in which to store the float values
+     */
+    public void getFloat(int[] rows, int n, float[] values) {
+        m_root.getFloat(rows, n, values);
+    }
+
+    /**
+     * Evaluate the expression on a batch of table rows.
+     * @param rows the table rows to evaluate
+     * @param n the number of rows, from the start of the rows array
+     * @param values the array in which to store the double values
+     */
+    public void getDouble(int[] rows, int n, double[] values) {
+        m_root.getDouble(rows, n, values);
+    }
+
+    /**
+     * Evaluate the expression on a batch of table rows.
+     * @param rows the table rows to evaluate
+     * @param n the number of rows, from the start of the rows array
+     * @param values the array in which to store the boolean values
+     */
+    public void getBoolean(int[] rows, int n, boolean[] values) {
+        int[] sel = new int[n];
+        int m = m_root.select(rows, n, sel);
+        for ( int i=0, k=0; i<n; ++i ) {
+            values[i] = ( k < m && sel[k] == rows[i] );
+            if ( values[i] ) ++k;
+        }
+    }
+
+    /**
+     * Select the rows of a batch for which the expression evaluates to
+     * true. The selected rows are stored in the result array in the order
+     * they appear in the rows array.
+     * @param rows the table rows to evaluate
+     * @param n the number of rows, from the start of the rows array
+     * @param result the array in which to store the selected rows. This
+     * may be the rows array itself.
+     * @return the number of selected rows
+     */
+    public int select(int[] rows, int n, int[] result) {
+        return m_root.select(rows, n, result);
+    }
+
+    /**
+     * Select the rows of a bitmap for which the expression evaluates to
+     * true.
+     * @param rows a bitmap of the table rows to evaluate
+     * @return a new bitmap of the selected rows
+     */
+    public BitSet select(BitSet rows) {
+        BitSet result = new BitSet(rows.length());
+        int[] batch = new int[BATCH_SIZE];
+        for ( int r = rows.nextSetBit(0); r >= 0; ) {
+            int n = 0;
+            for ( ; r >= 0 && n < BATCH_SIZE; r = rows.nextSetBit(r+1) )
+                batch[n++] = r;
+            int m = m_root.select(batch, n, batch);
+            for ( int i=0; i<m; ++i )
+                result.set(batch[i]);
+        }
+        return result;
+    }
+
+    // ------------------------------------------------------------------------
+    // Expression Interface
+
+    /**
+     * @see prefuse.data.expression.Expression#getType(prefuse.data.Schema)
+     */
+    public Class getType(Schema s) {
+        return m_source.getType(s);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#get(prefuse.data.Tuple)
+     */
+    public Object get(Tuple t) {
+        if ( t != null && t.getTable() == m_table )
+            return m_root.get(t.getRow());
+        else
+            return m_source.get(t);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getInt(prefuse.data.Tuple)
+     */
+    public int getInt(Tuple t) {
+        if ( t != null && t.getTable() == m_table )
+            return m_root.getInt(t.getRow());
+        else
+            return m_source.getInt(t);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getLong(prefuse.data.Tuple)
+     */
+    public long getLong(Tuple t) {
+        if ( t != null && t.getTable() == m_table )
+            return m_root.getLong(t.getRow());
+        else
+            return m_source.getLong(t);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getFloat(prefuse.data.Tuple)
+     */
+    public float getFloat(Tuple t) {
+        if ( t != null && t.getTable() == m_table )
+            return m_root.getFloat(t.getRow());
+        else
+            return m_source.getFloat(t);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getDouble(prefuse.data.Tuple)
+     */
+    public double getDouble(Tuple t) {
+        if ( t != null && t.getTable() == m_table )
+            return m_root.getDouble(t.getRow());
+        else
+            return m_source.getDouble(t);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getBoolean(prefuse.data.Tuple)
+     */
+    public boolean getBoolean(Tuple t) {
+        if ( t != null && t.getTable() == m_table )
+            return m_root.getBoolean(t.getRow());
+        else
+            return m_source.getBoolean(t);
+    }
+
+    /**
+     * Visits the source expression.
+     * @see prefuse.data.expression.Expression#visit(prefuse.data.expression.ExpressionVisitor)
+     */
+    public void visit(ExpressionVisitor v) {
+        m_source.visit(v);
+    }
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#addChildListeners()
+     */
+    protected void addChildListeners() {
+        m_source.addExpressionListener(this);
+    }
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#removeChildListeners()
+     */
+    protected void removeChildListeners() {
+        m_source.removeExpressionListener(this);
+    }
+
+    /**
+     * Compiles the source expression again, then notifies listeners.
+     * @see prefuse.data.event.ExpressionListener#expressionChanged(prefuse.data.expression.Expression)
+     */
+    public void expressionChanged(Expression expr) {
+        m_root = ExpressionCompiler.compileNode(m_source, m_table);
+        fireExpressionChange();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return m_source.toString();
+    }
+
+} // end of class CompiledExpression
@@ -0,0 +1,1345 @@
+package prefuse.data.expression;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import prefuse.data.CascadedTable;
+import prefuse.data.Schema;
+import prefuse.data.Table;
+import prefuse.data.column.BooleanColumn;
+import prefuse.data.column.Column;
+import prefuse.data.column.DictionaryColumn;
+import prefuse.data.column.DoubleColumn;
+import prefuse.data.column.FloatColumn;
+import prefuse.data.column.IntColumn;
+import prefuse.data.column.LongColumn;
+import prefuse.data.column.ObjectColumn;
+import prefuse.util.PrefuseConfig;
+import prefuse.util.TypeLib;
+import prefuse.util.collections.DefaultLiteralComparator;
+import prefuse.util.collections.LiteralComparator;
+
+/**
+ * <p>Compiles Expression trees into {@link CompiledExpression} instances
+ * that evaluate the expression directly over the rows of a Table.</p>
+ *
+ * <p>Interpreted expressions are evaluated node by node for each Tuple:
+ * column references resolve the field name on every call, comparisons
+ * determine their operand types on every call, and so on. The compiler
+ * resolves all of this once, for the schema and columns of a specific
+ * table, and builds a tree of evaluation nodes specialized for the
+ * resulting data types. Column references read values from the table's
+ * Column instances by row number, and constant values are unboxed ahead
+ * of time.</p>
+ *
+ * <p>Columns, literals, arithmetic, comparisons, ranges, conditionals, and
+ * the boolean predicates are compiled. Any other expression, including
+ * all {@link FunctionExpression} instances, is evaluated by the original
+ * expression on the Tuple for the row, so that compiled expressions
+ * always return the same values as their source expressions.</p>
+ *
+ * <p>Other components, such as
+ * {@link prefuse.data.util.FilterIteratorFactory} and
+ * {@link prefuse.data.column.ExpressionColumn}, compile expressions
+ * automatically if compilation is {@link #isEnabled() enabled}. By default
+ * this is determined by the <code>data.expression.compile</code>
+ * configuration property.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class ExpressionCompiler {
+
+    private static boolean s_enabled
+        = PrefuseConfig.getBoolean("data.expression.compile");
+
+    /**
+     * Indicates if expressions should be compiled automatically by
+     * components that evaluate expressions over large tables.
+     * @return true if automatic compilation is enabled, false otherwise
+     */
+    public static boolean isEnabled() {
+        return s_enabled;
+    }
+
+    /**
+     * Sets if expressions should be compiled automatically by
+     * components that evaluate expressions over large tables.
+     * @param b true to enable automatic compilation, false to disable it
+     */
+    public static void setEnabled(boolean b) {
+        s_enabled = b;
+    }
+
+    /**
+     * Compile an expression for evaluation over the rows of a table. If the
+     * expression is already compiled for the given table, it is returned
+     * unchanged.
+     * @param expr the expression to compile
+     * @param t the table the expression will be evaluated over
+     * @return the compiled expression
+     */
+    public static CompiledExpression compile(Expression expr, Table t) {
+        if ( expr instanceof CompiledExpression ) {
+            CompiledExpression ce = (CompiledExpression)expr;
+            if ( ce.getTable() == t ) return ce;
+            expr = ce.getSourceExpression();
+        }
+        return new CompiledExpression(expr, t, compileNode(expr, t));
+    }
+
+    // ------------------------------------------------------------------------
+    // Compilation
+
+    /**
+     * Compile an expression into an evaluation node.
+     * @param expr the expression to compile
+     * @param t the table the expression will be evaluated over
+     * @return the evaluation node
+     */
+    static Node compileNode(Expression expr, Table t) {
+        try {
+            Node n = compileSpecialized(expr, t);
+            if ( n != null ) return n;
+        } catch ( RuntimeException e ) {
+            // fall through, the interpreted expression reports the error
+        }
+        return new InterpretedNode(expr, t);
+    }
+
+    private static Node compileSpecialized(Expression expr, Table t) {
+        Schema s = t.getSchema();
+
+        if ( expr instanceof CompiledExpression ) {
+            return compileNode(
+                ((CompiledExpression)expr).getSourceExpression(), t);
+        }
+        else if ( expr instanceof ColumnExpression ) {
+            return compileColumn(((ColumnExpression)expr).getColumnName(), t);
+        }
+        else if ( expr instanceof NumericLiteral ) {
+            return new NumberNode(expr);
+        }
+        else if ( expr instanceof BooleanLiteral ) {
+            return new BooleanNode(((BooleanLiteral)expr).getBoolean(null));
+        }
+        else if ( expr instanceof ObjectLiteral ) {
+            return new ObjectNode(expr.get(null));
+        }
+        else if ( expr instanceof ArithmeticExpression ) {
+            ArithmeticExpression ae = (ArithmeticExpression)expr;
+            Class type = ae.getType(s);
+            if ( !TypeLib.isNumericType(type) ) return null;
+            return new ArithmeticNode(ae.getOperation(), type,
+                compileNode(ae.getLeftExpression(), t),
+                compileNode(ae.getRightExpression(), t));
+        }
+        else if ( expr instanceof ComparisonPredicate ) {
+            return compileComparison((ComparisonPredicate)expr, t, s);
+        }
+        else if ( expr instanceof RangePredicate ) {
+            return compileRange((RangePredicate)expr, t, s);
+        }
+        else if ( expr instanceof NotPredicate ) {
+            return new NotNode(
+                compileNode(((NotPredicate)expr).getPredicate(), t));
+        }
+        else if ( expr instanceof AndPredicate ||
+                  expr instanceof OrPredicate ||
+                  expr instanceof XorPredicate )
+        {
+            CompositePredicate cp = (CompositePredicate)expr;
+            Node[] clauses = new Node[cp.size()];
+            for ( int i=0; i<clauses.length; ++i )
+                clauses[i] = compileNode(cp.get(i), t);
+            if ( expr instanceof AndPredicate )
+                return new AndNode(clauses);
+            else if ( expr instanceof OrPredicate )
+                return new OrNode(clauses);
+            else
+                return new XorNode(clauses);
+        }
+        else if ( expr instanceof IfExpression ) {
+            IfExpression ie = (IfExpression)expr;
+            return new IfNode(compileNode(ie.getTestPredicate(), t),
+                compileNode(ie.getThenExpression(), t),
+                compileNode(ie.getElseExpression(), t));
+        }
+        return null;
+    }
+
+    private static Node compileColumn(String field, Table t) {
+        int idx = t.getColumnNumber(field);
+        if ( idx < 0 ) return null;
+        Column col = t.getColumn(idx);
+
+        // cascaded tables must map table rows to column rows
+        if ( t instanceof CascadedTable )
+            return new MappedColumnNode(t, idx, col);
+
+        if ( col.getClass() == IntColumn.class )
+            return new IntColumnNode((IntColumn)col);
+        else if ( col.getClass() == LongColumn.class )
+            return new LongColumnNode((LongColumn)col);
+        else if ( col.getClass() == FloatColumn.class )
+            return new FloatColumnNode((FloatColumn)col);
+        else if ( col.getClass() == DoubleColumn.class )
+            return new DoubleColumnNode((DoubleColumn)col);
+        else if ( col.getClass() == BooleanColumn.class )
+            return new BooleanColumnNode((BooleanColumn)col);
+        else
+            return new ColumnNode(col);
+    }
+
+    private static Node compileComparison(ComparisonPredicate cp,
+                                          Table t, Schema s)
+    {
+        Expression l = cp.getLeftExpression(), r = cp.getRightExpression();
+        Class lType = l.getType(s), rType = r.getType(s);
+        Node left = compileNode(l, t), right = compileNode(r, t);
+        Comparator cmp = cp.getComparator();
+        int op = cp.getOperation();
+
+        if ( TypeLib.isNumericType(lType) && TypeLib.isNumericType(rType) ) {
+            LiteralComparator lc = (LiteralComparator)cmp;
+            if ( lc == DefaultLiteralComparator.getInstance() )
+                lc = null; // compare inline
+            Class type = TypeLib.getNumericType(lType, rType);
+            if ( type == int.class || type == byte.class ) {
+                return new IntCompareNode(op, left, right, lc);
+            } else if ( type == long.class ) {
+                return new LongCompareNode(op, left, right, lc);
+            } else if ( type == float.class ) {
+                return new FloatCompareNode(op, left, right, lc);
+            } else if ( type == double.class ) {
+                return new DoubleCompareNode(op, left, right, lc);
+            } else {
+                return null;
+            }
+        } else {
+            return new ObjectCompareNode(op, left, right, cmp);
+        }
+    }
+
+    private static Node compileRange(RangePredicate rp, Table t, Schema s) {
+        Class lType = rp.getLeftExpression().getType(s);
+        Class rType = rp.getRightExpression().getType(s);
+        Class mType = rp.getMiddleExpression().getType(s);
+        Class sType = null;
+
+        // see if we can match the end-points' type
+        if ( lType.isAssignableFrom(rType) ) {
+            sType = lType;
+        } else if ( rType.isAssignableFrom(lType) ) {
+            sType = rType;
+        }
+
+        Class type = Object.class;
+        if ( sType != null && TypeLib.isNumericType(sType) &&
+             TypeLib.isNumericType(mType) )
+        {
+            type = TypeLib.getNumericType(sType, mType);
+            if ( type != int.class && type != long.class &&
+                 type != float.class && type != double.class )
+            {
+                return null;
+            }
+        }
+        return new RangeNode(rp.getOperation(), type,
+            compileNode(rp.getLeftExpression(), t),
+            compileNode(rp.getMiddleExpression(), t),
+            compileNode(rp.getRightExpression(), t),
+            rp.getComparator());
+    }
+
+    // ------------------------------------------------------------------------
+    // Evaluation Nodes
+
+    /**
+     * Base class for compiled evaluation nodes. Unsupported evaluation
+     * methods throw an UnsupportedOperationException, as with
+     * {@link AbstractExpression}.
+     */
+    static abstract class Node {
+        Object get(int row) {
+            throw new UnsupportedOperationException();
+        }
+        int getInt(int row) {
+            throw new UnsupportedOperationException();
+        }
+        long getLong(int row) {
+            throw new UnsupportedOperationException();
+        }
+        float getFloat(int row) {
+            throw new UnsupportedOperationException();
+        }
+        double getDouble(int row) {
+            throw new UnsupportedOperationException();
+        }
+        boolean getBoolean(int row) {
+            throw new UnsupportedOperationException();
+        }
+        /**
+         * Indicates if this node may be evaluated by several threads at
+         * once. This holds for nodes that read data only from primitive
+         * column arrays, and not through Tuples or derived columns.
+         */
+        boolean isConcurrent() {
+            return false;
+        }
+
+        // -- batch evaluation: each method evaluates the node for the
+        // first n entries of the rows array, writing the results to the
+        // output array. subclasses override these to process a batch of
+        // rows at a time, rather than dispatching on every row.
+
+        void getInt(int[] rows, int n, int[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = getInt(rows[i]);
+        }
+        void getLong(int[] rows, int n, long[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = getLong(rows[i]);
+        }
+        void getFloat(int[] rows, int n, float[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = getFloat(rows[i]);
+        }
+        void getDouble(int[] rows, int n, double[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = getDouble(rows[i]);
+        }
+        /**
+         * Copy the rows for which this node evaluates to true to the output
+         * array, in order, and return their number. The output array may be
+         * the same as the rows array.
+         */
+        int select(int[] rows, int n, int[] out) {
+            int m = 0;
+            for ( int i=0; i<n; ++i ) {
+                int r = rows[i];
+                if ( getBoolean(r) ) out[m++] = r;
+            }
+            return m;
+        }
+    }
+
+    /**
+     * Copy the rows that are not in the selected subsequence of the rows
+     * array to the output array, and return their number. The output array
+     * may be the same as the rows array.
+     */
+    static int complement(int[] rows, int n, int[] sel, int m, int[] out) {
+        int k = 0, c = 0;
+        for ( int i=0; i<n; ++i ) {
+            int r = rows[i];
+            if ( k < m && sel[k] == r )
+                ++k;
+            else
+                out[c++] = r;
+        }
+        return c;
+    }
+
+    /**
+     * Indicates if a column simply stores its values, so that it may be
+     * read by multiple threads at once.
+     */
+    static boolean isStored(Column col) {
+        Class c = col.getClass();
+        return c == IntColumn.class || c == LongColumn.class
+            || c == FloatColumn.class || c == DoubleColumn.class
+            || c == BooleanColumn.class || c == ObjectColumn.class
+            || c == DictionaryColumn.class;
+    }
+
+    static boolean allConcurrent(Node[] nodes) {
+        for ( int i=0; i<nodes.length; ++i ) {
+            if ( !nodes[i].isConcurrent() )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates an expression using the interpreter.
+     */
+    private static final class InterpretedNode extends Node {
+        private final Expression m_expr;
+        private final Table m_table;
+        InterpretedNode(Expression expr, Table t) {
+            m_expr = expr; m_table = t;
+        }
+        Object get(int row) {
+            return m_expr.get(m_table.getTuple(row));
+        }
+        int getInt(int row) {
+            return m_expr.getInt(m_table.getTuple(row));
+        }
+        long getLong(int row) {
+            return m_expr.getLong(m_table.getTuple(row));
+        }
+        float getFloat(int row) {
+            return m_expr.getFloat(m_table.getTuple(row));
+        }
+        double getDouble(int row) {
+            return m_expr.getDouble(m_table.getTuple(row));
+        }
+        boolean getBoolean(int row) {
+            return m_expr.getBoolean(m_table.getTuple(row));
+        }
+    }
+
+    // -- columns -------------------------------------------------------------
+
+    private static class ColumnNode extends Node {
+        private final Column m_col;
+        ColumnNode(Column col) {
+            m_col = col;
+        }
+        Object get(int row) {
+            return m_col.get(row);
+        }
+        int getInt(int row) {
+            return m_col.getInt(row);
+        }
+        long getLong(int row) {
+            return m_col.getLong(row);
+        }
+        float getFloat(int row) {
+            return m_col.getFloat(row);
+        }
+        double getDouble(int row) {
+            return m_col.getDouble(row);
+        }
+        boolean getBoolean(int row) {
+            return m_col.getBoolean(row);
+        }
+        boolean isConcurrent() {
+            return isStored(m_col);
+        }
+    }
+
+    private static final class MappedColumnNode extends Node {
+        private final Table m_table;
+        private final int m_idx;
+        private final Column m_col;
+        MappedColumnNode(Table t, int idx, Column col) {
+            m_table = t; m_idx = idx; m_col = col;
+        }
+        Object get(int row) {
+            return m_col.get(m_table.getColumnRow(row, m_idx));
+        }
+        int getInt(int row) {
+            return m_col.getInt(m_table.getColumnRow(row, m_idx));
+        }
+        long getLong(int row) {
+            return m_col.getLong(m_table.getColumnRow(row, m_idx));
+        }
+        float getFloat(int row) {
+            return m_col.getFloat(m_table.getColumnRow(row, m_idx));
+        }
+        double getDouble(int row) {
+            return m_col.getDouble(m_table.getColumnRow(row, m_idx));
+        }
+        boolean getBoolean(int row) {
+            return m_col.getBoolean(m_table.getColumnRow(row, m_idx));
+        }
+        boolean isConcurrent() {
+            return isStored(m_col);
+        }
+    }
+
+    private static final class IntColumnNode extends ColumnNode {
+        private final IntColumn m_col;
+        IntColumnNode(IntColumn col) {
+            super(col); m_col = col;
+        }
+        int getInt(int row) {
+            return m_col.getInt(row);
+        }
+        long getLong(int row) {
+            return m_col.getInt(row);
+        }
+        float getFloat(int row) {
+            return m_col.getInt(row);
+        }
+        double getDouble(int row) {
+            return m_col.getInt(row);
+        }
+        void getInt(int[] rows, int n, int[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getInt(rows[i]);
+        }
+        void getLong(int[] rows, int n, long[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getInt(rows[i]);
+        }
+        void getFloat(int[] rows, int n, float[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getInt(rows[i]);
+        }
+        void getDouble(int[] rows, int n, double[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getInt(rows[i]);
+        }
+    }
+
+    private static final class LongColumnNode extends ColumnNode {
+        private final LongColumn m_col;
+        LongColumnNode(LongColumn col) {
+            super(col); m_col = col;
+        }
+        int getInt(int row) {
+            return (int)m_col.getLong(row);
+        }
+        long getLong(int row) {
+            return m_col.getLong(row);
+        }
+        float getFloat(int row) {
+            return m_col.getLong(row);
+        }
+        double getDouble(int row) {
+            return m_col.getLong(row);
+        }
+        void getInt(int[] rows, int n, int[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = (int)m_col.getLong(rows[i]);
+        }
+        void getLong(int[] rows, int n, long[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getLong(rows[i]);
+        }
+        void getFloat(int[] rows, int n, float[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getLong(rows[i]);
+        }
+        void getDouble(int[] rows, int n, double[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getLong(rows[i]);
+        }
+    }
+
+    private static final class FloatColumnNode extends ColumnNode {
+        private final FloatColumn m_col;
+        FloatColumnNode(FloatColumn col) {
+            super(col); m_col = col;
+        }
+        int getInt(int row) {
+            return (int)m_col.getFloat(row);
+        }
+        long getLong(int row) {
+            return (long)m_col.getFloat(row);
+        }
+        float getFloat(int row) {
+            return m_col.getFloat(row);
+        }
+        double getDouble(int row) {
+            return m_col.getFloat(row);
+        }
+        void getInt(int[] rows, int n, int[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = (int)m_col.getFloat(rows[i]);
+        }
+        void getLong(int[] rows, int n, long[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = (long)m_col.getFloat(rows[i]);
+        }
+        void getFloat(int[] rows, int n, float[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getFloat(rows[i]);
+        }
+        void getDouble(int[] rows, int n, double[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getFloat(rows[i]);
+        }
+    }
+
+    private static final class DoubleColumnNode extends ColumnNode {
+        private final DoubleColumn m_col;
+        DoubleColumnNode(DoubleColumn col) {
+            super(col); m_col = col;
+        }
+        int getInt(int row) {
+            return (int)m_col.getDouble(row);
+        }
+        long getLong(int row) {
+            return (long)m_col.getDouble(row);
+        }
+        float getFloat(int row) {
+            return (float)m_col.getDouble(row);
+        }
+        double getDouble(int row) {
+            return m_col.getDouble(row);
+        }
+        void getInt(int[] rows, int n, int[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = (int)m_col.getDouble(rows[i]);
+        }
+        void getLong(int[] rows, int n, long[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = (long)m_col.getDouble(rows[i]);
+        }
+        void getFloat(int[] rows, int n, float[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = (float)m_col.getDouble(rows[i]);
+        }
+        void getDouble(int[] rows, int n, double[] out) {
+            for ( int i=0; i<n; ++i )
+                out[i] = m_col.getDouble(rows[i]);
+        }
+    }
+
+    private static final class BooleanColumnNode extends ColumnNode {
+        private final BooleanColumn m_col;
+        BooleanColumnNode(BooleanColumn col) {
+            super(col); m_col = col;
+        }
+        boolean getBoolean(int row) {
+            return m_col.getBoolean(row);
+        }
+        int select(int[] rows, int n, int[] out) {
+            int m = 0;
+            for ( int i=0; i<n; ++i ) {
+                int r = rows[i];
+                if ( m_col.getBoolean(r) ) out[m++] = r;
+            }
+            return m;
+        }
+    }
+
+    // -- literals ------------------------------------------------------------
+
+    private static final class NumberNode extends Node {
+        private final Object m_value;
+        private final int    m_int;
+        private final long   m_long;
+        private final float  m_float;
+        private final double m_double;
+        NumberNode(Expression lit) {
+            m_value  = lit.get(null);
+            m_int    = lit.getInt(null);
+            m_long   = lit.getLong(null);
+            m_float  = lit.getFloat(null);
+            m_double = lit.getDouble(null);
+        }
+        Object get(int row) {
+            return m_value;
+        }
+        int getInt(int row) {
+            return m_int;
+        }
+        long getLong(int row) {
+            return m_long;
+        }
+        float getFloat(int row) {
+            return m_float;
+        }
+        double getDouble(int row) {
+            return m_double;
+        }
+        void getInt(int[] rows, int n, int[] out) {
+            Arrays.fill(out, 0, n, m_int);
+        }
+        void getLong(int[] rows, int n, long[] out) {
+            Arrays.fill(out, 0, n, m_long);
+        }
+        void getFloat(int[] rows, int n, float[] out) {
+            Arrays.fill(out, 0, n, m_float);
+        }
+        void getDouble(int[] rows, int n, double[] out) {
+            Arrays.fill(out, 0, n, m_double);
+        }
+        boolean isConcurrent() {
+            return true;
+        }
+    }
+
+    private static final class BooleanNode extends Node {
+        private final boolean m_value;
+        BooleanNode(boolean value) {
+            m_value = value;
+        }
+        Object get(int row) {
+            return ( m_value ? Boolean.TRUE : Boolean.FALSE );
+        }
+        boolean getBoolean(int row) {
+            return m_value;
+        }
+        int select(int[] rows, int n, int[] out) {
+            if ( !m_value ) return 0;
+            if ( out != rows ) System.arraycopy(rows, 0, out, 0, n);
+            return n;
+        }
+        boolean isConcurrent() {
+            return true;
+        }
+    }
+
+    private static final class ObjectNode extends Node {
+        private final Object m_value;
+        ObjectNode(Object value) {
+            m_value = value;
+        }
+        Object get(int row) {
+            return m_value;
+        }
+        boolean isConcurrent() {
+            return true;
+        }
+    }
+
+    // -- arithmetic ----------------------------------------------------------
+
+    private static final class ArithmeticNode extends Node {
+        private final int m_op;
+        private final Class m_type;
+        private final Node m_left, m_right;
+        ArithmeticNode(int op, Class type, Node left, Node right) {
+            m_op = op; m_type = type; m_left = left; m_right = right;
+        }
+        boolean isConcurrent() {
+            return m_left.isConcurrent() && m_right.isConcurrent();
+        }
+        Object get(int row) {
+            if ( int.class == m_type || byte.class == m_type ) {
+                return new Integer(getInt(row));
+            } else if ( long.class == m_type ) {
+                return new Long(getLong(row));
+            } else if ( float.class == m_type ) {
+                return new Float(getFloat(row));
+            } else {
+                return new Double(getDouble(row));
+            }
+        }
+        int getInt(int row) {
+            int x = m_left.getInt(row);
+            int y = m_right.getInt(row);
+            switch ( m_op ) {
+            case ArithmeticExpression.ADD:
+                return x+y;
+            case ArithmeticExpression.SUB:
+                return x-y;
+            case ArithmeticExpression.MUL:
+                return x*y;
+            case ArithmeticExpression.DIV:
+                return x/y;
+            case ArithmeticExpression.POW:
+                return (int)Math.pow(x,y);
+            case ArithmeticExpression.MOD:
+                return x%y;
+            }
+            throw new IllegalStateException("Unknown operation type.");
+        }
+        long getLong(int row) {
+            long x = m_left.getLong(row);
+            long y = m_right.getLong(row);
+            switch ( m_op ) {
+            case ArithmeticExpression.ADD:
+                return x+y;
+            case ArithmeticExpression.SUB:
+                return x-y;
+            case ArithmeticExpression.MUL:
+                return x*y;
+            case ArithmeticExpression.DIV:
+                return x/y;
+            case ArithmeticExpression.POW:
+                return (long)Math.pow(x,y);
+            case ArithmeticExpression.MOD:
+                return x%y;
+            }
+            throw new IllegalStateException("Unknown operation type.");
+        }
+        float getFloat(int row) {
+            float x = m_left.getFloat(row);
+            float y = m_right.getFloat(row);
+            switch ( m_op ) {
+            case ArithmeticExpression.ADD:
+                return x+y;
+            case ArithmeticExpression.SUB:
+                return x-y;
+            case ArithmeticExpression.MUL:
+                return x*y;
+            case ArithmeticExpression.DIV:
+                return x/y;
+            case ArithmeticExpression.POW:
+                return (float)Math.pow(x,y);
+            case ArithmeticExpression.MOD:
+                return (float)Math.IEEEremainder(x,y);
+            }
+            throw new IllegalStateException("Unknown operation type.");
+        }
+        double getDouble(int row) {
+            double x = m_left.getDouble(row);
+            double y = m_right.getDouble(row);
+            switch ( m_op ) {
+            case ArithmeticExpression.ADD:
+                return x+y;
+            case ArithmeticExpression.SUB:
+                return x-y;
+            case ArithmeticExpression.MUL:
+                return x*y;
+            case ArithmeticExpression.DIV:
+                return x/y;
+            case ArithmeticExpression.POW:
+                return Math.pow(x,y);
+            case ArithmeticExpression.MOD:
+                return Math.IEEEremainder(x,y);
+            }
+            throw new IllegalStateException("Unknown operation type.");
+        }
+        void getInt(int[] rows, int n, int[] out) {
+            int[] y = new int[n];
+            m_left.getInt(rows, n, out);
+            m_right.getInt(rows, n, y);
+            switch ( m_op ) {
+            case ArithmeticExpression.ADD:
+                for ( int i=0; i<n; ++i ) out[i] += y[i];
+                return;
+            case ArithmeticExpression.SUB:
+                for ( int i=0; i<n; ++i ) out[i] -= y[i];
+                return;
+            case ArithmeticExpression.MUL:
+                for ( int i=0; i<n; ++i ) out[i] *= y[i];
+                return;
+            case ArithmeticExpression.DIV:
+                for ( int i=0; i<n; ++i ) out[i] /= y[i];
+                return;
+            case ArithmeticExpression.POW:
+                for ( int i=0; i<n; ++i )
+                    out[i] = (int)Math.pow(out[i], y[i]);
+                return;
+            case ArithmeticExpression.MOD:
+                for ( int i=0; i<n; ++i )
+                    out[i] = out[i] % y[i];
+                return;
+            }
+            throw new IllegalStateException("Unknown operation type.");
+        }
+        void getLong(int[] rows, int n, long[] out) {
+            long[] y = new long[n];
+            m_left.getLong(rows, n, out);
+            m_right.getLong(rows, n, y);
+            switch ( m_op ) {
+            case ArithmeticExpression.ADD:
+                for ( int i=0; i<n; ++i ) out[i] += y[i];
+                return;
+            case ArithmeticExpression.SUB:
+                for ( int i=0; i<n; ++i ) out[i] -= y[i];
+                return;
+            case ArithmeticExpression.MUL:
+                for ( int i=0; i<n; ++i ) out[i] *= y[i];
+                return;
+            case ArithmeticExpression.DIV:
+                for ( int i=0; i<n; ++i ) out[i] /= y[i];
+                return;
+            case ArithmeticExpression.POW:
+                for ( int i=0; i<n; ++i )
+                    out[i] = (long)Math.pow(out[i], y[i]);
+                return;
+            case ArithmeticExpression.MOD:
+                for ( int i=0; i<n; ++i )
+                    out[i] = out[i] % y[i];
+                return;
+            }
+            throw new IllegalStateException("Unknown operation type.");
+        }
+        void getFloat(int[] rows, int n, float[] out) {
+            float[] y = new float[n];
+            m_left.getFloat(rows, n, out);
+            m_right.getFloat(rows, n, y);
+            switch ( m_op ) {
+            case ArithmeticExpression.ADD:
+                for ( int i=0; i<n; ++i ) out[i] += y[i];
+                return;
+            case ArithmeticExpression.SUB:
+                for ( int i=0; i<n; ++i ) out[i] -= y[i];
+                return;
+            case ArithmeticExpression.MUL:
+                for ( int i=0; i<n; ++i ) out[i] *= y[i];
+                return;
+            case ArithmeticExpression.DIV:
+                for ( int i=0; i<n; ++i ) out[i] /= y[i];
+                return;
+            case ArithmeticExpression.POW:
+                for ( int i=0; i<n; ++i )
+                    out[i] = (float)Math.pow(out[i], y[i]);
+                return;
+            case ArithmeticExpression.MOD:
+                for ( int i=0; i<n; ++i )
+                    out[i] = (float)Math.IEEEremainder(out[i], y[i]);
+                return;
+            }
+            throw new IllegalStateException("Unknown operation type.");
+        }
+        void getDouble(int[] rows, int n, double[] out) {
+            double[] y = new double[n];
+            m_left.getDouble(rows, n, out);
+            m_right.getDouble(rows, n, y);
+            switch ( m_op ) {
+            case ArithmeticExpression.ADD:
+                for ( int i=0; i<n; ++i ) out[i] += y[i];
+                return;
+            case ArithmeticExpression.SUB:
+                for ( int i=0; i<n; ++i ) out[i] -= y[i];
+                return;
+            case ArithmeticExpression.MUL:
+                for ( int i=0; i<n; ++i ) out[i] *= y[i];
+                return;
+            case ArithmeticExpression.DIV:
+                for ( int i=0; i<n; ++i ) out[i] /= y[i];
+                return;
+            case ArithmeticExpression.POW:
+                for ( int i=0; i<n; ++i )
+                    out[i] = Math.pow(out[i], y[i]);
+                return;
+            case ArithmeticExpression.MOD:
+                for ( int i=0; i<n; ++i )
+                    out[i] = Math.IEEEremainder(out[i], y[i]);
+                return;
+            }
+            throw new IllegalStateException("Unknown operation type.");
+        }
+    }
+
+    // -- comparisons ---------------------------------------------------------
+
+    /**
+     * Base class for comparison nodes, which evaluate a comparison
+     * operation given the result of comparing the two operands.
+     */
+    private static abstract class CompareNode extends Node {
+        protected final int m_op;
+        protected final Node m_left, m_right;
+        CompareNode(int op, Node left, Node right) {
+            m_op = op; m_left = left; m_right = right;
+        }
+        boolean isConcurrent() {
+            return m_left.isConcurrent() && m_right.isConcurrent();
+        }
+        abstract int compare(int row);
+        /**
+         * Compare the operands for a batch of rows, writing the comparison
+         * results to the output array.
+         */
+        void compare(int[] rows, int n, int[] c) {
+            for ( int i=0; i<n; ++i )
+                c[i] = compare(rows[i]);
+        }
+        Object get(int row) {
+            return ( getBoolean(row) ? Boolean.TRUE : Boolean.FALSE );
+        }
+        int select(int[] rows, int n, int[] out) {
+            int[] c = new int[n];
+            compare(rows, n, c);
+            int m = 0;
+            switch ( m_op ) {
+            case ComparisonPredicate.LT:
+                for ( int i=0; i<n; ++i )
+                    if ( c[i] == -1 ) out[m++] = rows[i];
+                return m;
+            case ComparisonPredicate.GT:
+                for ( int i=0; i<n; ++i )
+                    if ( c[i] == 1 ) out[m++] = rows[i];
+                return m;
+            case ComparisonPredicate.EQ:
+                for ( int i=0; i<n; ++i )
+                    if ( c[i] == 0 ) out[m++] = rows[i];
+                return m;
+            case ComparisonPredicate.NEQ:
+                for ( int i=0; i<n; ++i )
+                    if ( c[i] != 0 ) out[m++] = rows[i];
+                return m;
+            case ComparisonPredicate.LTEQ:
+                for ( int i=0; i<n; ++i )
+                    if ( c[i] <= 0 ) out[m++] = rows[i];
+                return m;
+            case ComparisonPredicate.GTEQ:
+                for ( int i=0; i<n; ++i )
+                    if ( c[i] >= 0 ) out[m++] = rows[i];
+                return m;
+            default:
+                throw new IllegalStateException("Unknown operation.");
+            }
+        }
+        boolean getBoolean(int row) {
+            int c = compare(row);
+            switch ( m_op ) {
+            case ComparisonPredicate.LT:
+                return ( c == -1 );
+            case ComparisonPredicate.GT:
+                return ( c == 1 );
+            case ComparisonPredicate.EQ:
+                return ( c == 0 );
+            case ComparisonPredicate.NEQ:
+                return ( c != 0 );
+            case ComparisonPredicate.LTEQ:
+                return ( c <= 0 );
+            case ComparisonPredicate.GTEQ:
+                return ( c >= 0 );
+            default:
+                throw new IllegalStateException("Unknown operation.");
+            }
+        }
+    }
+
+    private static final class IntCompareNode extends CompareNode {
+        private final LiteralComparator m_cmp;
+        IntCompareNode(int op, Node l, Node r, LiteralComparator cmp) {
+            super(op, l, r); m_cmp = cmp;
+        }
+        int compare(int row) {
+            int x = m_left.getInt(row);
+            int y = m_right.getInt(row);
+            if ( m_cmp != null )
+                return m_cmp.compare(x,y);
+            return ( x < y ? -1 : x > y ? 1 : 0 );
+        }
+        void compare(int[] rows, int n, int[] c) {
+            int[] x = new int[n], y = new int[n];
+            m_left.getInt(rows, n, x);
+            m_right.getInt(rows, n, y);
+            if ( m_cmp != null ) {
+                for ( int i=0; i<n; ++i )
+                    c[i] = m_cmp.compare(x[i], y[i]);
+            } else {
+                for ( int i=0; i<n; ++i )
+                    c[i] = ( x[i] < y[i] ? -1 : x[i] > y[i] ? 1 : 0 );
+            }
+        }
+    }
+
+    private static final class LongCompareNode extends CompareNode {
+        private final LiteralComparator m_cmp;
+        LongCompareNode(int op, Node l, Node r, LiteralComparator cmp) {
+            super(op, l, r); m_cmp = cmp;
+        }
+        int compare(int row) {
+            long x = m_left.getLong(row);
+            long y = m_right.getLong(row);
+            if ( m_cmp != null )
+                return m_cmp.compare(x,y);
+            return ( x < y ? -1 : x > y ? 1 : 0 );
+        }
+        void compare(int[] rows, int n, int[] c) {
+            long[] x = new long[n], y = new long[n];
+            m_left.getLong(rows, n, x);
+            m_right.getLong(rows, n, y);
+            if ( m_cmp != null ) {
+                for ( int i=0; i<n; ++i )
+                    c[i] = m_cmp.compare(x[i], y[i]);
+            } else {
+                for ( int i=0; i<n; ++i )
+                    c[i] = ( x[i] < y[i] ? -1 : x[i] > y[i] ? 1 : 0 );
+            }
+        }
+    }
+
+    private static final class FloatCompareNode extends CompareNode {
+        private final LiteralComparator m_cmp;
+        FloatCompareNode(int op, Node l, Node r, LiteralComparator cmp) {
+            super(op, l, r); m_cmp = cmp;
+        }
+        int compare(int row) {
+            float x = m_left.getFloat(row);
+            float y = m_right.getFloat(row);
+            if ( m_cmp != null )
+                return m_cmp.compare(x,y);
+            return Float.compare(x, y);
+        }
+        void compare(int[] rows, int n, int[] c) {
+            float[] x = new float[n], y = new float[n];
+            m_left.getFloat(rows, n, x);
+            m_right.getFloat(rows, n, y);
+            if ( m_cmp != null ) {
+                for ( int i=0; i<n; ++i )
+                    c[i] = m_cmp.compare(x[i], y[i]);
+            } else {
+                for ( int i=0; i<n; ++i )
+                    c[i] = Float.compare(x[i], y[i]);
+            }
+        }
+    }
+
+    private static final class DoubleCompareNode extends CompareNode {
+        private final LiteralComparator m_cmp;
+        DoubleCompareNode(int op, Node l, Node r, LiteralComparator cmp) {
+            super(op, l, r); m_cmp = cmp;
+        }
+        int compare(int row) {
+            double x = m_left.getDouble(row);
+            double y = m_right.getDouble(row);
+            if ( m_cmp != null )
+                return m_cmp.compare(x,y);
+            return Double.compare(x, y);
+        }
+        void compare(int[] rows, int n, int[] c) {
+            double[] x = new double[n], y = new double[n];
+            m_left.getDouble(rows, n, x);
+            m_right.getDouble(rows, n, y);
+            if ( m_cmp != null ) {
+                for ( int i=0; i<n; ++i )
+                    c[i] = m_cmp.compare(x[i], y[i]);
+            } else {
+                for ( int i=0; i<n; ++i )
+                    c[i] = Double.compare(x[i], y[i]);
+            }
+        }
+    }
+
+    private static final class ObjectCompareNode extends CompareNode {
+        private final Comparator m_cmp;
+        ObjectCompareNode(int op, Node l, Node r, Comparator cmp) {
+            super(op, l, r); m_cmp = cmp;
+        }
+        int compare(int row) {
+            return m_cmp.compare(m_left.get(row), m_right.get(row));
+        }
+    }
+
+    private static final class RangeNode extends Node {
+        private final int m_op;
+        private final Class m_type;
+        private final Node m_lo, m_mid, m_hi;
+        private final Comparator m_cmp;
+        RangeNode(int op, Class type, Node lo, Node mid, Node hi,
+                  Comparator cmp)
+        {
+            m_op = op; m_type = type;
+            m_lo = lo; m_mid = mid; m_hi = hi;
+            m_cmp = cmp;
+        }
+        boolean isConcurrent() {
+            return m_lo.isConcurrent() && m_mid.isConcurrent()
+                && m_hi.isConcurrent();
+        }
+        Object get(int row) {
+            return ( getBoolean(row) ? Boolean.TRUE : Boolean.FALSE );
+        }
+        boolean getBoolean(int row) {
+            int c1, c2;
+            if ( m_type == int.class ) {
+                LiteralComparator lc = (LiteralComparator)m_cmp;
+                int x = m_mid.getInt(row);
+                c1 = lc.compare(x, m_lo.getInt(row));
+                c2 = lc.compare(x, m_hi.getInt(row));
+            } else if ( m_type == long.class ) {
+                LiteralComparator lc = (LiteralComparator)m_cmp;
+                long x = m_mid.getLong(row);
+                c1 = lc.compare(x, m_lo.getLong(row));
+                c2 = lc.compare(x, m_hi.getLong(row));
+            } else if ( m_type == float.class ) {
+                LiteralComparator lc = (LiteralComparator)m_cmp;
+                float x = m_mid.getFloat(row);
+                c1 = lc.compare(x, m_lo.getFloat(row));
+                c2 = lc.compare(x, m_hi.getFloat(row));
+            } else if ( m_type == double.class ) {
+                LiteralComparator lc = (LiteralComparator)m_cmp;
+                double x = m_mid.getDouble(row);
+                c1 = lc.compare(x, m_lo.getDouble(row));
+                c2 = lc.compare(x, m_hi.getDouble(row));
+            } else {
+                Object x = m_mid.get(row);
+                c1 = m_cmp.compare(x, m_lo.get(row));
+                c2 = m_cmp.compare(x, m_hi.get(row));
+            }
+            return inRange(c1, c2);
+        }
+        private boolean inRange(int c1, int c2) {
+            switch ( m_op ) {
+            case RangePredicate.IN_IN:
+                return ( c1 >= 0 && c2 <= 0 );
+            case RangePredicate.IN_EX:
+                return ( c1 >= 0 && c2 < 0 );
+            case RangePredicate.EX_IN:
+                return ( c1 > 0 && c2 <= 0 );
+            case RangePredicate.EX_EX:
+                return ( c1 > 0 && c2 < 0 );
+            default:
+                throw new IllegalStateException("Unknown operation.");
+            }
+        }
+        int select(int[] rows, int n, int[] out) {
+            if ( m_type == Object.class )
+                return super.select(rows, n, out);
+            LiteralComparator lc = (LiteralComparator)m_cmp;
+            int m = 0;
+            if ( m_type == int.class ) {
+                int[] x = new int[n], lo = new int[n], hi = new int[n];
+                m_mid.getInt(rows, n, x);
+                m_lo.getInt(rows, n, lo);
+                m_hi.getInt(rows, n, hi);
+                for ( int i=0; i<n; ++i ) {
+                    if ( inRange(lc.compare(x[i], lo[i]),
+                                 lc.compare(x[i], hi[i])) )
+                        out[m++] = rows[i];
+                }
+            } else if ( m_type == long.class ) {
+                long[] x = new long[n], lo = new long[n], hi = new long[n];
+                m_mid.getLong(rows, n, x);
+                m_lo.getLong(rows, n, lo);
+                m_hi.getLong(rows, n, hi);
+                for ( int i=0; i<n; ++i ) {
+                    if ( inRange(lc.compare(x[i], lo[i]),
+                                 lc.compare(x[i], hi[i])) )
+                        out[m++] = rows[i];
+                }
+            } else if ( m_type == float.class ) {
+                float[] x = new float[n], lo = new float[n], hi = new float[n];
+                m_mid.getFloat(rows, n, x);
+                m_lo.getFloat(rows, n, lo);
+                m_hi.getFloat(rows, n, hi);
+                for ( int i=0; i<n; ++i ) {
+                    if ( inRange(lc.compare(x[i], lo[i]),
+                                 lc.compare(x[i], hi[i])) )
+                        out[m++] = rows[i];
+                }
+            } else {
+                double[] x = new double[n], lo = new double[n],
+                         hi = new double[n];
+                m_mid.getDouble(rows, n, x);
+                m_lo.getDouble(rows, n, lo);
+                m_hi.getDouble(rows, n, hi);
+                for ( int i=0; i<n; ++i ) {
+                    if ( inRange(lc.compare(x[i], lo[i]),
+                                 lc.compare(x[i], hi[i])) )
+                        out[m++] = rows[i];
+                }
+            }
+            return m;
+        }
+    }
+
+    // -- predicates and conditionals -----------------------------------------
+
+    private static final class NotNode extends Node {
+        private final Node m_node;
+        NotNode(Node node) {
+            m_node = node;
+        }
+        boolean isConcurrent() {
+            return m_node.isConcurrent();
+        }
+        Object get(int row) {
+            return ( getBoolean(row) ? Boolean.TRUE : Boolean.FALSE );
+        }
+        boolean getBoolean(int row) {
+            return !m_node.getBoolean(row);
+        }
+        int select(int[] rows, int n, int[] out) {
+            int[] sel = new int[n];
+            int m = m_node.select(rows, n, sel);
+            return complement(rows, n, sel, m, out);
+        }
+    }
+
+    private static final class AndNode extends Node {
+        private final Node[] m_clauses;
+        AndNode(Node[] clauses) {
+            m_clauses = clauses;
+        }
+        boolean isConcurrent() {
+            return allConcurrent(m_clauses);
+        }
+        Object get(int row) {
+            return ( getBoolean(row) ? Boolean.TRUE : Boolean.FALSE );
+        }
+        boolean getBoolean(int row) {
+            if ( m_clauses.length == 0 )
+                return false;
+            for ( int i=0; i<m_clauses.length; ++i ) {
+                if ( !m_clauses[i].getBoolean(row) )
+                    return false;
+            }
+            return true;
+        }
+        int select(int[] rows, int n, int[] out) {
+            // each clause only visits the rows that passed the previous ones
+            if ( m_clauses.length == 0 )
+                return 0;
+            int m = m_clauses[0].select(rows, n, out);
+            for ( int i=1; i<m_clauses.length && m > 0; ++i )
+                m = m_clauses[i].select(out, m, out);
+            return m;
+        }
+    }
+
+    private static final class OrNode extends Node {
+        private final Node[] m_clauses;
+        OrNode(Node[] clauses) {
+            m_clauses = clauses;
+        }
+        boolean isConcurrent() {
+            return allConcurrent(m_clauses);
+        }
+        Object get(int row) {
+            return ( getBoolean(row) ? Boolean.TRUE : Boolean.FALSE );
+        }
+        boolean getBoolean(int row) {
+            for ( int i=0; i<m_clauses.length; ++i ) {
+                if ( m_clauses[i].getBoolean(row) )
+                    return true;
+            }
+            return false;
+        }
+        int select(int[] rows, int n, int[] out) {
+            // each clause only visits the rows that failed the previous ones
+            int[] rest = new int[n], sel = new int[n];
+            System.arraycopy(rows, 0, rest, 0, n);
+            int r = n;
+            for ( int i=0; i<m_clauses.length && r > 0; ++i ) {
+                int m = m_clauses[i].select(rest, r, sel);
+                r = complement(rest, r, sel, m, rest);
+            }
+            return complement(rows, n, rest, r, out);
+        }
+    }
+
+    private static final class XorNode extends Node {
+        private final Node[] m_clauses;
+        XorNode(Node[] clauses) {
+            m_clauses = clauses;
+        }
+        boolean isConcurrent() {
+            return allConcurrent(m_clauses);
+        }
+        Object get(int row) {
+            return ( getBoolean(row) ? Boolean.TRUE : Boolean.FALSE );
+        }
+        boolean getBoolean(int row) {
+            boolean val = false;
+            for ( int i=0; i<m_clauses.length; ++i )
+                val ^= m_clauses[i].getBoolean(row);
+            return val;
+        }
+    }
+
+    private static final class IfNode extends Node {
+        private final Node m_test, m_then, m_else;
+        IfNode(Node test, Node thenNode, Node elseNode) {
+            m_test = test; m_then = thenNode; m_else = elseNode;
+        }
+        boolean isConcurrent() {
+            return m_test.isConcurrent() && m_then.isConcurrent()
+                && m_else.isConcurrent();
+        }
+        Object get(int row) {
+            return (m_test.getBoolean(row) ? m_then : m_else).get(row);
+        }
+        int getInt(int row) {
+            return (m_test.getBoolean(row) ? m_then : m_else).getInt(row);
+        }
+        long getLong(int row) {
+            return (m_test.getBoolean(row) ? m_then : m_else).getLong(row);
+        }
+        float getFloat(int row) {
+            return (m_test.getBoolean(row) ? m_then : m_else).getFloat(row);
+        }
+        double getDouble(int row) {
+            return (m_test.getBoolean(row) ? m_then : m_else).getDouble(row);
+        }
+        boolean getBoolean(int row) {
+            return (m_test.getBoolean(row) ? m_then : m_else).getBoolean(row);
+        }
+    }
+
+} // end of class ExpressionCompiler
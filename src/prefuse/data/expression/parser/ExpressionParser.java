@@ -2,6 +2,10 @@
 package prefuse.data.expression.parser;
 
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import prefuse.data.expression.AndPredicate;
@@ -9,8 +13,11 @@ import prefuse.data.expression.ArithmeticExpression;
 import prefuse.data.expression.BooleanLiteral;
 import prefuse.data.expression.ColumnExpression;
 import prefuse.data.expression.ComparisonPredicate;
+import prefuse.data.expression.CompositePredicate;
 import prefuse.data.expression.Expression;
+import prefuse.data.expression.ExpressionVisitor;
 import prefuse.data.expression.Function;
+import prefuse.data.expression.FunctionExpression;
 import prefuse.data.expression.FunctionTable;
 import prefuse.data.expression.IfExpression;
 import prefuse.data.expression.NotPredicate;
@@ -19,7 +26,9 @@ import prefuse.data.expression.ObjectLiteral;
 import prefuse.data.expression.OrPredicate;
 import prefuse.data.expression.Predicate;
 import prefuse.data.expression.XorPredicate;
+import prefuse.util.PrefuseConfig;
 import prefuse.util.StringLib;
+import prefuse.visual.expression.GroupExpression;
 
 /**
  * Parser for statements written in the prefuse expression language. Text
@@ -472,8 +481,25 @@ public class ExpressionParser implements ExpressionParserConstants {
     private static boolean s_init = false;
     private static Throwable s_error;
 
+    private static int s_cacheSize
+        = PrefuseConfig.getInt("data.expression.cacheSize");
+    private static long s_hits, s_misses;
+
+    // parsed expressions, keyed by expression text in least recently used
+    // order. cached expressions are never returned, only copies of them.
+    private static final LinkedHashMap s_cache
+        = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > s_cacheSize;
+            }
+        };
+
     /**
-     * Parse an expression.
+     * Parse an expression. Parsed expressions are cached by their text, so
+     * repeated requests for the same text are answered with a copy of the
+     * cached expression rather than by running the parser again. Each call
+     * returns a new Expression instance, which may be modified or listened
+     * to without affecting the results of other calls.
      * @param expr the expression text to parse
      * @param throwsException true if this method should throw an
      * exception if an error occurs or should fail quietly
@@ -483,6 +509,15 @@ public class ExpressionParser implements ExpressionParserConstants {
     public synchronized static Expression parse(String expr,
                                                 boolean throwsException)
     {
+        // check the cache of parsed expressions
+        Expression e = (Expression)s_cache.get(expr);
+        if ( e != null ) {
+            ++s_hits;
+            s_error = null;
+            return copy(e);
+        }
+        ++s_misses;
+
         // initialize the parser
         if ( !s_init ) {
             new ExpressionParser(new StringReader(expr));
@@ -492,9 +527,13 @@ public class ExpressionParser implements ExpressionParserConstants {
         }
         // attempt to parse the expression
         try {
-            Expression e = Parse();
+            e = Parse();
             s_error = null;
             s_logger.info("Parsed Expression: "+e);
+            if ( s_cacheSize > 0 && expr != null ) {
+                Expression c = copy(e);
+                if ( c != null ) s_cache.put(expr, c);
+            }
             return e;
         } catch ( ParseException t ) {
             s_error = t;
@@ -546,6 +585,198 @@ public class ExpressionParser implements ExpressionParserConstants {
         return s_error;
     }
 
+    // ------------------------------------------------------------------------
+    // Expression Cache
+
+    /**
+     * Get the maximum number of parsed expressions kept in the cache.
+     * @return the maximum size of the expression cache
+     */
+    public synchronized static int getCacheSize() {
+        return s_cacheSize;
+    }
+
+    /**
+     * Set the maximum number of parsed expressions kept in the cache. When
+     * the cache is full, the least recently used expression is removed. A
+     * size of zero disables caching. The default is determined by the
+     * <code>data.expression.cacheSize</code> configuration property.
+     * @param size the maximum size of the expression cache
+     */
+    public synchronized static void setCacheSize(int size) {
+        s_cacheSize = Math.max(0, size);
+        trimCache(s_cacheSize);
+    }
+
+    /**
+     * Remove all parsed expressions from the cache.
+     */
+    public synchronized static void clearCache() {
+        trimCache(0);
+    }
+
+    /**
+     * Remove the least recently used expressions until at most the given
+     * number of expressions remain in the cache.
+     */
+    private static void trimCache(int size) {
+        Iterator iter = s_cache.values().iterator();
+        for ( int n = s_cache.size(); n > size; --n ) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Get the number of parse requests answered from the cache.
+     * @return the number of cache hits
+     */
+    public synchronized static long getCacheHits() {
+        return s_hits;
+    }
+
+    /**
+     * Get the number of parse requests that required the expression text
+     * to be parsed.
+     * @return the number of cache misses
+     */
+    public synchronized static long getCacheMisses() {
+        return s_misses;
+    }
+
+    /**
+     * Get the fraction of parse requests answered from the cache.
+     * @return the cache hit rate, between 0 and 1
+     */
+    public synchronized static double getCacheHitRate() {
+        long total = s_hits + s_misses;
+        return ( total == 0 ? 0 : s_hits / (double)total );
+    }
+
+    /**
+     * Reset the cache hit and miss counts to zero.
+     */
+    public synchronized static void resetCacheStatistics() {
+        s_hits = 0;
+        s_misses = 0;
+    }
+
+    /**
+     * Create a copy of a parsed expression that shares no sub-expressions
+     * with the original. Only the expression types created by the parser
+     * are supported.
+     * @param e the expression to copy
+     * @return the copied expression, or null if the expression contains
+     * a sub-expression that can not be copied
+     */
+    private static Expression copy(Expression e) {
+        if ( e instanceof CompositePredicate ) {
+            CompositePredicate p = (CompositePredicate)e, c;
+            if ( e instanceof AndPredicate ) {
+                c = new AndPredicate();
+            } else if ( e instanceof OrPredicate ) {
+                c = new OrPredicate();
+            } else if ( e instanceof XorPredicate ) {
+                c = new XorPredicate();
+            } else {
+                return null;
+            }
+            for ( int i=0; i<p.size(); ++i ) {
+                Predicate sub = (Predicate)copy(p.get(i));
+                if ( sub == null ) return null;
+                c.add(sub);
+            }
+            return c;
+        } else if ( e instanceof ComparisonPredicate ) {
+            ComparisonPredicate p = (ComparisonPredicate)e;
+            Expression l = copy(p.getLeftExpression());
+            Expression r = copy(p.getRightExpression());
+            if ( l == null || r == null ) return null;
+            return new ComparisonPredicate(p.getOperation(), l, r,
+                                           p.getComparator());
+        } else if ( e instanceof ArithmeticExpression ) {
+            ArithmeticExpression a = (ArithmeticExpression)e;
+            Expression l = copy(a.getLeftExpression());
+            Expression r = copy(a.getRightExpression());
+            if ( l == null || r == null ) return null;
+            return new ArithmeticExpression(a.getOperation(), l, r);
+        } else if ( e instanceof NotPredicate ) {
+            Predicate p = (Predicate)copy(((NotPredicate)e).getPredicate());
+            return ( p == null ? null : new NotPredicate(p) );
+        } else if ( e instanceof IfExpression ) {
+            IfExpression ie = (IfExpression)e;
+            Predicate p = (Predicate)copy(ie.getTestPredicate());
+            Expression t = copy(ie.getThenExpression());
+            Expression f = copy(ie.getElseExpression());
+            if ( p == null || t == null || f == null ) return null;
+            return new IfExpression(p, t, f);
+        } else if ( e instanceof Function ) {
+            // copy the parameters into a new instance of the function. the
+            // parameters are found by visiting the function, so only
+            // functions known to visit all of their parameters are copied.
+            Function f = (Function)e;
+            if ( !(f instanceof FunctionExpression ||
+                   f instanceof GroupExpression ||
+                   f.getParameterCount() == 0) ||
+                 !FunctionTable.hasFunction(f.getName()) )
+            {
+                return null;
+            }
+            Function c = FunctionTable.createFunction(f.getName());
+            if ( c.getClass() != f.getClass() ||
+                 getParameters(c).size() > 0 )
+            {
+                return null;
+            }
+            ArrayList params = getParameters(f);
+            for ( int i=0; i<params.size(); ++i ) {
+                Expression param = copy((Expression)params.get(i));
+                if ( param == null ) return null;
+                c.addParameter(param);
+            }
+            return c;
+        } else if ( e.getClass() == ColumnExpression.class ) {
+            return new ColumnExpression(((ColumnExpression)e).getColumnName());
+        } else if ( e.getClass() == NumericLiteral.class ) {
+            return new NumericLiteral(e.get(null));
+        } else if ( e.getClass() == ObjectLiteral.class ) {
+            return new ObjectLiteral(e.get(null));
+        } else if ( e.getClass() == BooleanLiteral.class ) {
+            return new BooleanLiteral(e.getBoolean(null));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Get the parameters of a function, the sub-expressions visited one
+     * level below the function itself.
+     */
+    private static ArrayList getParameters(Expression f) {
+        ParameterCollector pc = new ParameterCollector();
+        f.visit(pc);
+        return pc.params;
+    }
+
+    /**
+     * ExpressionVisitor that collects the sub-expressions visited one level
+     * below the visited expression.
+     */
+    private static class ParameterCollector implements ExpressionVisitor {
+        ArrayList params = new ArrayList();
+        private int m_depth = 0;
+        public void visitExpression(Expression expr) {
+            if ( m_depth == 1 )
+                params.add(expr);
+        }
+        public void down() {
+            ++m_depth;
+        }
+        public void up() {
+            --m_depth;
+        }
+    }
+
     /**
      * Replace escape sequences with represented characters. This
      * includes newlines, tabs, and quotes.
@@ -1,10 +1,12 @@
 package prefuse.data.io;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 
 import prefuse.data.Table;
+import prefuse.data.column.ColumnFactory;
 import prefuse.data.parser.DataParseException;
 import prefuse.data.parser.DataParser;
 import prefuse.data.parser.ParserFactory;
@@ -16,12 +18,28 @@ import prefuse.util.io.IOLib;
  * Abstract base class for TableReader instances that read in a table
  * from a textual data file.
  * 
+ * <p>By default, a data file is read in two passes: the first determines
+ * the table dimensions and the column data types, the second parses the
+ * values into the table. When reading from a local file, a memory-mapped
+ * mode can be enabled with {@link #setMemoryMapped(boolean)}. In this mode
+ * the file is split into chunks at line boundaries, which are tokenized
+ * in a single pass on {@link #setThreadCount(int) multiple threads}
+ * directly into primitive column buffers, with the column types inferred
+ * from a {@link #setSampleSize(int) sample} of the leading records. If the
+ * file turns out not to be readable this way, for example because a later
+ * value does not match a type inferred from the sample, the standard two
+ * pass routine is used instead. Subclasses support this mode by
+ * implementing {@link #split(char[], int, int, int[])}.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public abstract class AbstractTextTableReader extends AbstractTableReader {
 
     private ParserFactory m_pfactory;
     private boolean m_hasHeader;
+    private boolean m_mapped = false;
+    private int m_threads = 1;
+    private int m_sampleSize = 1000;
     
     /**
      * Create a new AbstractTextTableReader using a default ParserFactory.
@@ -49,6 +67,95 @@ public abstract class AbstractTextTableReader extends AbstractTableReader {
         m_hasHeader = hasHeaderRow;
     }
     
+    /**
+     * Indicates if local files are read using the memory-mapped mode.
+     * @return true if memory-mapped reading is enabled, false otherwise
+     */
+    public boolean isMemoryMapped() {
+        return m_mapped;
+    }
+    
+    /**
+     * Set whether local files are read using the memory-mapped mode,
+     * which reads large files considerably faster. The default is false.
+     * @param b true to enable memory-mapped reading, false otherwise
+     */
+    public void setMemoryMapped(boolean b) {
+        m_mapped = b;
+    }
+    
+    /**
+     * Get the number of threads used in memory-mapped mode.
+     * @return the number of threads
+     */
+    public int getThreadCount() {
+        return m_threads;
+    }
+    
+    /**
+     * Set the number of threads used in memory-mapped mode. The default
+     * value is one.
+     * @param n the number of threads to use
+     */
+    public void setThreadCount(int n) {
+        if ( n < 1 )
+            throw new IllegalArgumentException(
+                "Thread count must be at least one");
+        m_threads = n;
+    }
+    
+    /**
+     * Get the number of records sampled to infer column types in
+     * memory-mapped mode.
+     * @return the sample size
+     */
+    public int getSampleSize() {
+        return m_sampleSize;
+    }
+    
+    /**
+     * Set the number of records sampled to infer column types in
+     * memory-mapped mode. The default value is 1000.
+     * @param n the number of records to sample
+     */
+    public void setSampleSize(int n) {
+        if ( n < 1 )
+            throw new IllegalArgumentException(
+                "Sample size must be at least one");
+        m_sampleSize = n;
+    }
+    
+    /**
+     * @see prefuse.data.io.TableReader#readTable(java.lang.String)
+     */
+    public Table readTable(String location) throws DataIOException {
+        if ( m_mapped && !IOLib.isUrlString(location) &&
+             !IOLib.isGZipFile(location) )
+        {
+            File f = new File(location);
+            if ( f.isFile() )
+                return readTable(f);
+        }
+        return super.readTable(location);
+    }
+    
+    /**
+     * @see prefuse.data.io.TableReader#readTable(java.io.File)
+     */
+    public Table readTable(File f) throws DataIOException {
+        if ( m_mapped ) {
+            try {
+                Table t = new MappedTextTableLoader(this, m_pfactory,
+                        m_hasHeader, m_sampleSize, m_threads).load(f);
+                if ( t != null )
+                    return t;
+            } catch ( IOException ioe ) {
+                throw new DataIOException(ioe);
+            }
+        }
+        return super.readTable(f);
+    }
+    
     /**
      * @see prefuse.data.io.AbstractTableReader#readTable(java.io.InputStream)
      */
@@ -122,7 +229,9 @@ public abstract class AbstractTextTableReader extends AbstractTableReader {
             } else {
                 header = getDefaultHeader(i);
             }
-            table.addColumn(header, di.getType(i));
+            Class type = di.getType(i);
+            table.addColumn(header, type, null,
+                            ColumnFactory.getDefaultStorage(type));
             table.getColumn(i).setParser(di.getParser(i));
         }
         
@@ -219,5 +328,27 @@ public abstract class AbstractTextTableReader extends AbstractTableReader {
      */
     protected abstract void read(InputStream is, TableReadListener trl)
         throws IOException, DataParseException;
+    
+    /**
+     * Splits a single line of a data file into its column values, for use
+     * by the memory-mapped reading mode. Implementations must produce the
+     * same values as {@link #read(InputStream, TableReadListener)} would
+     * for the line, and may rewrite the characters of the line in place,
+     * for example to remove quotes. The default implementation returns
+     * -1, causing the standard reading routine to be used. Empty lines
+     * are skipped by both reading routines, and are never split.
+     * @param c the character data
+     * @param start the index of the first character of the line
+     * @param end the index just past the last character of the line,
+     * excluding the line terminator
+     * @param fields array receiving the start and end indices of each
+     * value, with value i stored at fields[2*i] and fields[2*i+1]. Values
+     * that do not fit into the array are counted but not stored.
+     * @return the number of values in the line, or -1 if the line can not
+     * be split independently of the rest of the file
+     */
+    protected int split(char[] c, int start, int end, int[] fields) {
+        return -1;
+    }
 
 } // end of abstract class AbstractTextTableReader
@@ -0,0 +1,621 @@
+package prefuse.data.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Date;
+
+import prefuse.data.Graph;
+import prefuse.data.Table;
+import prefuse.data.Tree;
+import prefuse.data.column.Column;
+import prefuse.data.column.ConstantColumn;
+import prefuse.data.column.ExpressionColumn;
+import prefuse.data.expression.parser.ExpressionParser;
+
+/**
+ * Reading and writing routines for the binary columnar snapshot format
+ * used by {@link BinaryTableReader}, {@link BinaryTableWriter},
+ * {@link BinaryGraphReader} and {@link BinaryGraphWriter}.
+ *
+ * <p>All values are stored in little-endian byte order. A file starts with
+ * a magic number, a format version and the kind of data structure stored.
+ * A table is stored as its number of rows, the list of deleted rows, and
+ * the schema and data of each column in turn. The values of primitive and
+ * date columns are stored as contiguous blocks of raw values, which are
+ * read back with bulk buffer transfers. Strings are stored as UTF-8 and
+ * other objects using Java serialization. Derived columns are stored as
+ * their expression, and the names of indexed columns are stored so that
+ * their indices can be rebuilt. A graph is stored as its directedness and
+ * key fields, followed by the node and edge tables.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+final class BinaryFormat {
+
+    static final int MAGIC   = 0x42464650; // "PFFB"
+    static final int VERSION = 1;
+
+    static final byte TABLE = 0;
+    static final byte GRAPH = 1;
+    static final byte TREE  = 2;
+
+    // column kinds
+    private static final byte BYTE       = 0;
+    private static final byte INT        = 1;
+    private static final byte LONG       = 2;
+    private static final byte FLOAT      = 3;
+    private static final byte DOUBLE     = 4;
+    private static final byte BOOLEAN    = 5;
+    private static final byte DATE       = 6;
+    private static final byte STRING     = 7;
+    private static final byte OBJECT     = 8;
+    private static final byte CONSTANT   = 9;
+    private static final byte EXPRESSION = 10;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private BinaryFormat() {
+        // prevent instantiation
+    }
+
+    // ------------------------------------------------------------------------
+    // Writing
+
+    /**
+     * Write the file header.
+     */
+    static void writeHeader(Output out, byte kind) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(kind);
+    }
+
+    /**
+     * Write a graph's settings and its node and edge tables.
+     */
+    static void writeGraph(Output out, Graph g) throws IOException {
+        out.writeByte(g.isDirected() ? 1 : 0);
+        out.writeString(g.getNodeKeyField());
+        out.writeString(g.getEdgeSourceField());
+        out.writeString(g.getEdgeTargetField());
+        writeTable(out, g.getNodeTable());
+        writeTable(out, g.getEdgeTable());
+    }
+
+    /**
+     * Write a table's rows, columns and indexed columns.
+     */
+    static void writeTable(Output out, Table t) throws IOException {
+        int nrows = t.getMaximumRow()+1;
+        out.writeInt(nrows);
+        out.writeInt(nrows - t.getRowCount());
+        for ( int r=0; r<nrows; ++r ) {
+            if ( !t.isValidRow(r) ) out.writeInt(r);
+        }
+
+        int ncols = t.getColumnCount();
+        out.writeInt(ncols);
+        for ( int c=0; c<ncols; ++c ) {
+            String name = t.getColumnName(c);
+            out.writeString(name);
+            writeColumn(out, t.getColumn(c), nrows);
+            out.writeByte(t.getIndex(name) != null ? 1 : 0);
+        }
+    }
+
+    private static void writeColumn(Output out, Column col, int nrows)
+        throws IOException
+    {
+        Class type = col.getColumnType();
+        Object dflt = col.getDefaultValue();
+
+        if ( col instanceof ExpressionColumn ) {
+            out.writeByte(EXPRESSION);
+            out.writeString(
+                ((ExpressionColumn)col).getExpression().toString());
+        } else if ( col instanceof ConstantColumn ) {
+            out.writeByte(CONSTANT);
+            out.writeString(type.getName());
+            out.writeObject(dflt);
+        } else if ( type == byte.class ) {
+            out.writeByte(BYTE);
+            out.writeByte(((Number)dflt).byteValue());
+            for ( int r=0; r<nrows; ++r ) {
+                out.require(1);
+                out.buf.put((byte)col.getInt(r));
+            }
+        } else if ( type == int.class ) {
+            out.writeByte(INT);
+            out.writeInt(((Number)dflt).intValue());
+            for ( int r=0; r<nrows; ++r ) {
+                out.require(4);
+                out.buf.putInt(col.getInt(r));
+            }
+        } else if ( type == long.class ) {
+            out.writeByte(LONG);
+            out.writeLong(((Number)dflt).longValue());
+            for ( int r=0; r<nrows; ++r ) {
+                out.require(8);
+                out.buf.putLong(col.getLong(r));
+            }
+        } else if ( type == float.class ) {
+            out.writeByte(FLOAT);
+            out.writeFloat(((Number)dflt).floatValue());
+            for ( int r=0; r<nrows; ++r ) {
+                out.require(4);
+                out.buf.putFloat(col.getFloat(r));
+            }
+        } else if ( type == double.class ) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number)dflt).doubleValue());
+            for ( int r=0; r<nrows; ++r ) {
+                out.require(8);
+                out.buf.putDouble(col.getDouble(r));
+            }
+        } else if ( type == boolean.class ) {
+            out.writeByte(BOOLEAN);
+            out.writeByte(((Boolean)dflt).booleanValue() ? 1 : 0);
+            for ( int r=0; r<nrows; ++r ) {
+                out.require(1);
+                out.buf.put((byte)(col.getBoolean(r) ? 1 : 0));
+            }
+        } else if ( Date.class.isAssignableFrom(type) ) {
+            out.writeByte(DATE);
+            out.writeString(type.getName());
+            out.writeByte(dflt==null ? 0 : 1);
+            out.writeLong(dflt==null ? 0L : ((Date)dflt).getTime());
+            for ( int r=0; r<nrows; ++r ) {
+                out.require(8);
+                out.buf.putLong(col.getLong(r));
+            }
+        } else if ( type == String.class ) {
+            out.writeByte(STRING);
+            out.writeString((String)dflt);
+            for ( int r=0; r<nrows; ++r )
+                out.writeString((String)col.get(r));
+        } else {
+            out.writeByte(OBJECT);
+            out.writeString(type.getName());
+            Object[] values = new Object[nrows+1];
+            values[0] = dflt;
+            for ( int r=0; r<nrows; ++r )
+                values[r+1] = col.get(r);
+            out.writeObject(values);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Reading
+
+    /**
+     * Read and check the file header.
+     * @return the kind of data structure stored in the file
+     */
+    static byte readHeader(Input in) throws IOException {
+        if ( in.readInt() != MAGIC )
+            throw new IOException("Not a prefuse binary data file");
+        int version = in.readInt();
+        if ( version != VERSION )
+            throw new IOException("Unsupported format version: "+version);
+        return in.readByte();
+    }
+
+    /**
+     * Read a graph or tree.
+     */
+    static Graph readGraph(Input in, byte kind) throws IOException {
+        boolean directed = (in.readByte() != 0);
+        String nkey = in.readString();
+        String skey = in.readString();
+        String tkey = in.readString();
+        Table nodes = readTable(in);
+        Table edges = readTable(in);
+        if ( kind == TREE )
+            return new Tree(nodes, edges, nkey, skey, tkey);
+        else
+            return new Graph(nodes, edges, directed, nkey, skey, tkey);
+    }
+
+    /**
+     * Read a table.
+     */
+    static Table readTable(Input in) throws IOException {
+        int nrows = in.readInt();
+        int[] deleted = new int[in.readInt()];
+        in.readInts(deleted);
+
+        // remove deleted rows first, as not all columns support reverting
+        // values to their defaults
+        int ncols = in.readInt();
+        Table t = new Table(nrows, ncols);
+        for ( int i=0; i<deleted.length; ++i )
+            t.removeRow(deleted[i]);
+        
+        boolean[] indexed = new boolean[ncols];
+        for ( int c=0; c<ncols; ++c ) {
+            String name = in.readString();
+            readColumn(in, t, name, nrows);
+            indexed[c] = (in.readByte() != 0);
+        }
+
+        for ( int c=0; c<ncols; ++c ) {
+            if ( indexed[c] ) t.index(t.getColumnName(c));
+        }
+        return t;
+    }
+
+    private static void readColumn(Input in, Table t, String name, int nrows)
+        throws IOException
+    {
+        byte kind = in.readByte();
+        if ( kind == EXPRESSION ) {
+            String expr = in.readString();
+            t.addColumn(name, ExpressionParser.parse(expr, true));
+            return;
+        } else if ( kind == CONSTANT ) {
+            Class type = getType(in.readString());
+            t.addConstantColumn(name, type, in.readObject());
+            return;
+        }
+
+        Column col;
+        switch ( kind ) {
+        case BYTE: {
+            t.addColumn(name, byte.class, new Byte(in.readByte()));
+            col = t.getColumn(name);
+            byte[] a = new byte[nrows];
+            in.readBytes(a);
+            for ( int r=0; r<nrows; ++r )
+                if ( t.isValidRow(r) ) col.setInt(a[r], r);
+            break;
+        }
+        case INT: {
+            t.addColumn(name, int.class, new Integer(in.readInt()));
+            col = t.getColumn(name);
+            int[] a = new int[nrows];
+            in.readInts(a);
+            for ( int r=0; r<nrows; ++r )
+                if ( t.isValidRow(r) ) col.setInt(a[r], r);
+            break;
+        }
+        case LONG: {
+            t.addColumn(name, long.class, new Long(in.readLong()));
+            col = t.getColumn(name);
+            long[] a = new long[nrows];
+            in.readLongs(a);
+            for ( int r=0; r<nrows; ++r )
+                if ( t.isValidRow(r) ) col.setLong(a[r], r);
+            break;
+        }
+        case FLOAT: {
+            t.addColumn(name, float.class, new Float(in.readFloat()));
+            col = t.getColumn(name);
+            float[] a = new float[nrows];
+            in.readFloats(a);
+            for ( int r=0; r<nrows; ++r )
+                if ( t.isValidRow(r) ) col.setFloat(a[r], r);
+            break;
+        }
+        case DOUBLE: {
+            t.addColumn(name, double.class, new Double(in.readDouble()));
+            col = t.getColumn(name);
+            double[] a = new double[nrows];
+            in.readDoubles(a);
+            for ( int r=0; r<nrows; ++r )
+                if ( t.isValidRow(r) ) col.setDouble(a[r], r);
+            break;
+        }
+        case BOOLEAN: {
+            t.addColumn(name, boolean.class,
+                    Boolean.valueOf(in.readByte() != 0));
+            col = t.getColumn(name);
+            byte[] a = new byte[nrows];
+            in.readBytes(a);
+            for ( int r=0; r<nrows; ++r )
+                if ( t.isValidRow(r) ) col.setBoolean(a[r] != 0, r);
+            break;
+        }
+        case DATE: {
+            Class type = getType(in.readString());
+            boolean hasDefault = (in.readByte() != 0);
+            long dflt = in.readLong();
+            t.addColumn(name, type, hasDefault ? new Date(dflt) : null);
+            col = t.getColumn(name);
+            long[] a = new long[nrows];
+            in.readLongs(a);
+            for ( int r=0; r<nrows; ++r )
+                if ( t.isValidRow(r) ) col.setLong(a[r], r);
+            break;
+        }
+        case STRING: {
+            t.addColumn(name, String.class, in.readString());
+            col = t.getColumn(name);
+            for ( int r=0; r<nrows; ++r ) {
+                String v = in.readString();
+                if ( t.isValidRow(r) ) col.set(v, r);
+            }
+            break;
+        }
+        case OBJECT: {
+            Class type = getType(in.readString());
+            Object[] values = (Object[])in.readObject();
+            t.addColumn(name, type, values[0]);
+            col = t.getColumn(name);
+            for ( int r=0; r<nrows; ++r )
+                if ( t.isValidRow(r) ) col.set(values[r+1], r);
+            break;
+        }
+        default:
+            throw new IOException("Unknown column kind: "+kind);
+        }
+    }
+
+    private static Class getType(String name) throws IOException {
+        if ( name.equals("int") )     return int.class;
+        if ( name.equals("long") )    return long.class;
+        if ( name.equals("float") )   return float.class;
+        if ( name.equals("double") )  return double.class;
+        if ( name.equals("boolean") ) return boolean.class;
+        if ( name.equals("byte") )    return byte.class;
+        try {
+            return Class.forName(name);
+        } catch ( ClassNotFoundException e ) {
+            throw new IOException("Unknown column type: "+name);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Input and Output
+
+    /**
+     * Open an Input for the given file, memory-mapping the file if possible.
+     */
+    static Input open(File f) throws IOException {
+        FileInputStream fis = new FileInputStream(f);
+        try {
+            FileChannel ch = fis.getChannel();
+            if ( ch.size() > Integer.MAX_VALUE ) {
+                // too large to map, read through the channel instead. the
+                // returned input now owns the stream, and closes it.
+                Input in = new Input(ch);
+                in.m_source = fis;
+                fis = null;
+                return in;
+            }
+            return new Input(ch.map(FileChannel.MapMode.READ_ONLY,
+                                    0, ch.size()));
+        } finally {
+            if ( fis != null )
+                fis.close(); // the mapping stays valid
+        }
+    }
+
+    /**
+     * Buffered little-endian input, reading either from a channel or from a
+     * memory-mapped buffer.
+     */
+    static final class Input {
+        private ReadableByteChannel m_ch;
+        private ByteBuffer m_buf;
+        private InputStream m_source; // stream to close, if owned
+
+        Input(InputStream is) {
+            this(Channels.newChannel(is));
+        }
+
+        Input(ReadableByteChannel ch) {
+            m_ch = ch;
+            m_buf = ByteBuffer.allocate(BUFFER_SIZE);
+            m_buf.order(ByteOrder.LITTLE_ENDIAN);
+            m_buf.limit(0);
+        }
+
+        Input(ByteBuffer buf) {
+            m_buf = buf;
+            m_buf.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Close the file opened for this input, if any. Inputs reading
+         * from a caller's stream leave that stream open.
+         */
+        void close() throws IOException {
+            if ( m_source != null ) {
+                m_source.close();
+                m_source = null;
+            }
+        }
+
+        /**
+         * Make at least n bytes available, where n is at most 8.
+         */
+        private void require(int n) throws IOException {
+            if ( m_buf.remaining() >= n ) return;
+            if ( m_ch == null ) throw new EOFException();
+            m_buf.compact();
+            while ( m_buf.position() < n ) {
+                if ( m_ch.read(m_buf) < 0 ) throw new EOFException();
+            }
+            m_buf.flip();
+        }
+
+        byte readByte() throws IOException {
+            require(1);
+            return m_buf.get();
+        }
+        int readInt() throws IOException {
+            require(4);
+            return m_buf.getInt();
+        }
+        long readLong() throws IOException {
+            require(8);
+            return m_buf.getLong();
+        }
+        float readFloat() throws IOException {
+            require(4);
+            return m_buf.getFloat();
+        }
+        double readDouble() throws IOException {
+            require(8);
+            return m_buf.getDouble();
+        }
+
+        void readBytes(byte[] a) throws IOException {
+            for ( int off=0; off<a.length; ) {
+                require(1);
+                int k = Math.min(a.length-off, m_buf.remaining());
+                m_buf.get(a, off, k);
+                off += k;
+            }
+        }
+        void readInts(int[] a) throws IOException {
+            for ( int off=0; off<a.length; ) {
+                require(4);
+                int k = Math.min(a.length-off, m_buf.remaining()/4);
+                m_buf.asIntBuffer().get(a, off, k);
+                m_buf.position(m_buf.position()+4*k);
+                off += k;
+            }
+        }
+        void readLongs(long[] a) throws IOException {
+            for ( int off=0; off<a.length; ) {
+                require(8);
+                int k = Math.min(a.length-off, m_buf.remaining()/8);
+                m_buf.asLongBuffer().get(a, off, k);
+                m_buf.position(m_buf.position()+8*k);
+                off += k;
+            }
+        }
+        void readFloats(float[] a) throws IOException {
+            for ( int off=0; off<a.length; ) {
+                require(4);
+                int k = Math.min(a.length-off, m_buf.remaining()/4);
+                m_buf.asFloatBuffer().get(a, off, k);
+                m_buf.position(m_buf.position()+4*k);
+                off += k;
+            }
+        }
+        void readDoubles(double[] a) throws IOException {
+            for ( int off=0; off<a.length; ) {
+                require(8);
+                int k = Math.min(a.length-off, m_buf.remaining()/8);
+                m_buf.asDoubleBuffer().get(a, off, k);
+                m_buf.position(m_buf.position()+8*k);
+                off += k;
+            }
+        }
+
+        String readString() throws IOException {
+            int len = readInt();
+            if ( len < 0 ) return null;
+            byte[] b = new byte[len];
+            readBytes(b);
+            return new String(b, "UTF-8");
+        }
+
+        Object readObject() throws IOException {
+            byte[] b = new byte[readInt()];
+            readBytes(b);
+            ObjectInputStream ois =
+                new ObjectInputStream(new ByteArrayInputStream(b));
+            try {
+                return ois.readObject();
+            } catch ( ClassNotFoundException e ) {
+                throw new IOException("Unknown class: "+e.getMessage());
+            }
+        }
+    } // end of inner class Input
+
+    /**
+     * Buffered little-endian output to a channel.
+     */
+    static final class Output {
+        private WritableByteChannel m_ch;
+        ByteBuffer buf;
+
+        Output(OutputStream os) {
+            m_ch = Channels.newChannel(os);
+            buf = ByteBuffer.allocate(BUFFER_SIZE);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Make room for at least n bytes in the buffer.
+         */
+        void require(int n) throws IOException {
+            if ( buf.remaining() < n ) flush();
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while ( buf.hasRemaining() )
+                m_ch.write(buf);
+            buf.clear();
+        }
+
+        void writeByte(int b) throws IOException {
+            require(1);
+            buf.put((byte)b);
+        }
+        void writeInt(int i) throws IOException {
+            require(4);
+            buf.putInt(i);
+        }
+        void writeLong(long l) throws IOException {
+            require(8);
+            buf.putLong(l);
+        }
+        void writeFloat(float f) throws IOException {
+            require(4);
+            buf.putFloat(f);
+        }
+        void writeDouble(double d) throws IOException {
+            require(8);
+            buf.putDouble(d);
+        }
+
+        void writeBytes(byte[] b) throws IOException {
+            for ( int off=0; off<b.length; ) {
+                require(1);
+                int k = Math.min(b.length-off, buf.remaining());
+                buf.put(b, off, k);
+                off += k;
+            }
+        }
+
+        void writeString(String s) throws IOException {
+            if ( s == null ) {
+                writeInt(-1);
+            } else {
+                byte[] b = s.getBytes("UTF-8");
+                writeInt(b.length);
+                writeBytes(b);
+            }
+        }
+
+        void writeObject(Object o) throws IOException {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(o);
+            oos.close();
+            byte[] b = bos.toByteArray();
+            writeInt(b.length);
+            writeBytes(b);
+        }
+    } // end of inner class Output
+
+} // end of class BinaryFormat
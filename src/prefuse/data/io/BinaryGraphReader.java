@@ -0,0 +1,53 @@
+package prefuse.data.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import prefuse.data.Graph;
+
+/**
+ * GraphReader for the binary format written by {@link BinaryGraphWriter}.
+ * A {@link prefuse.data.Tree} instance is returned if a tree was written.
+ * The link structure of the graph is rebuilt from the edge table in bulk.
+ * Files are memory-mapped when read through {@link #readGraph(File)}.
+ * 
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class BinaryGraphReader extends AbstractGraphReader {
+
+    /**
+     * @see prefuse.data.io.GraphReader#readGraph(java.io.File)
+     */
+    public Graph readGraph(File f) throws DataIOException {
+        try {
+            BinaryFormat.Input in = BinaryFormat.open(f);
+            try {
+                return readGraph(in);
+            } finally {
+                in.close();
+            }
+        } catch ( IOException e ) {
+            throw new DataIOException(e);
+        }
+    }
+    
+    /**
+     * @see prefuse.data.io.GraphReader#readGraph(java.io.InputStream)
+     */
+    public Graph readGraph(InputStream is) throws DataIOException {
+        try {
+            return readGraph(new BinaryFormat.Input(is));
+        } catch ( IOException e ) {
+            throw new DataIOException(e);
+        }
+    }
+    
+    private Graph readGraph(BinaryFormat.Input in) throws IOException {
+        byte kind = BinaryFormat.readHeader(in);
+        if ( kind != BinaryFormat.GRAPH && kind != BinaryFormat.TREE )
+            throw new IOException("File does not contain a graph");
+        return BinaryFormat.readGraph(in, kind);
+    }
+
+} // end of class BinaryGraphReader
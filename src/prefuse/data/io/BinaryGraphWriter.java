@@ -0,0 +1,36 @@
+package prefuse.data.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import prefuse.data.Graph;
+import prefuse.data.Tree;
+
+/**
+ * GraphWriter that writes a graph or tree in a compact binary format. The
+ * node and edge tables are written as by a {@link BinaryTableWriter},
+ * along with the edge directedness and key fields of the graph. Graphs
+ * written by this class can be read back with a {@link BinaryGraphReader}.
+ * 
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class BinaryGraphWriter extends AbstractGraphWriter {
+
+    /**
+     * @see prefuse.data.io.GraphWriter#writeGraph(prefuse.data.Graph, java.io.OutputStream)
+     */
+    public void writeGraph(Graph graph, OutputStream os) throws DataIOException
+    {
+        try {
+            BinaryFormat.Output out = new BinaryFormat.Output(os);
+            BinaryFormat.writeHeader(out, graph instanceof Tree
+                    ? BinaryFormat.TREE : BinaryFormat.GRAPH);
+            BinaryFormat.writeGraph(out, graph);
+            out.flush();
+            os.flush();
+        } catch ( IOException e ) {
+            throw new DataIOException(e);
+        }
+    }
+
+} // end of class BinaryGraphWriter
@@ -0,0 +1,52 @@
+package prefuse.data.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import prefuse.data.Table;
+
+/**
+ * TableReader for the binary format written by {@link BinaryTableWriter}.
+ * Blocks of primitive column values are read with bulk buffer transfers,
+ * and files are memory-mapped when read through {@link #readTable(File)}.
+ * 
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class BinaryTableReader extends AbstractTableReader {
+
+    /**
+     * @see prefuse.data.io.TableReader#readTable(java.io.File)
+     */
+    public Table readTable(File f) throws DataIOException {
+        try {
+            BinaryFormat.Input in = BinaryFormat.open(f);
+            try {
+                return readTable(in);
+            } finally {
+                in.close();
+            }
+        } catch ( IOException e ) {
+            throw new DataIOException(e);
+        }
+    }
+    
+    /**
+     * @see prefuse.data.io.TableReader#readTable(java.io.InputStream)
+     */
+    public Table readTable(InputStream is) throws DataIOException {
+        try {
+            return readTable(new BinaryFormat.Input(is));
+        } catch ( IOException e ) {
+            throw new DataIOException(e);
+        }
+    }
+    
+    private Table readTable(BinaryFormat.Input in) throws IOException {
+        byte kind = BinaryFormat.readHeader(in);
+        if ( kind != BinaryFormat.TABLE )
+            throw new IOException("File does not contain a table");
+        return BinaryFormat.readTable(in);
+    }
+
+} // end of class BinaryTableReader
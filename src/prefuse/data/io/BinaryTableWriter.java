@@ -0,0 +1,35 @@
+package prefuse.data.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import prefuse.data.Table;
+
+/**
+ * TableWriter that writes a table in a compact binary format, storing
+ * the values of primitive columns as raw blocks of little-endian values.
+ * The column schema, including derived columns, and the set of indexed
+ * columns are stored along with the data. Tables written by this class
+ * can be read back with a {@link BinaryTableReader}, which is much faster
+ * than parsing a text or XML format.
+ * 
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class BinaryTableWriter extends AbstractTableWriter {
+
+    /**
+     * @see prefuse.data.io.TableWriter#writeTable(prefuse.data.Table, java.io.OutputStream)
+     */
+    public void writeTable(Table table, OutputStream os) throws DataIOException {
+        try {
+            BinaryFormat.Output out = new BinaryFormat.Output(os);
+            BinaryFormat.writeHeader(out, BinaryFormat.TABLE);
+            BinaryFormat.writeTable(out, table);
+            out.flush();
+            os.flush();
+        } catch ( IOException e ) {
+            throw new DataIOException(e);
+        }
+    }
+
+} // end of class BinaryTableWriter
@@ -54,6 +54,9 @@ public class CSVTableReader extends AbstractTextTableReader {
         
         BufferedReader br = new BufferedReader(new InputStreamReader(is));
         while ( (line=br.readLine()) != null ) {
+            // skip empty lines, unless within a quoted value
+            if ( line.length() == 0 && inQuote != 1 ) continue;
+            
             // increment the line number
             ++lineno;
             
@@ -141,4 +144,68 @@ public class CSVTableReader extends AbstractTextTableReader {
         }
     }
     
+    /**
+     * @see prefuse.data.io.AbstractTextTableReader#split(char[], int, int, int[])
+     */
+    protected int split(char[] c, int start, int end, int[] fields) {
+        boolean inRecord = false;
+        int inQuote = 0;
+        int n = 0;
+        
+        // values are compacted in place, w is the write position and
+        // v the start of the current value
+        int w = start, v = start;
+        int last = end-1;
+        for ( int i=start; i<end; ++i ) {
+            if ( !inRecord ) {
+                if ( Character.isWhitespace(c[i]) ) {
+                    continue;
+                } else if ( c[i] == '\"' ) {
+                    inRecord = true;
+                    inQuote  = 1;
+                } else if ( c[i] == ',' ) {
+                    n = value(c, v, w, fields, n);
+                    v = w;
+                } else {
+                    inRecord = true;
+                    c[w++] = c[i];
+                }
+            } else if ( inQuote == 1 ) {
+                if ( c[i]=='\"' && (i==last || c[i+1] != '\"') ) {
+                    // end of quotation
+                    inQuote = 2;
+                } else if ( c[i]=='\"' ) {
+                    // double quote so skip one ahead
+                    c[w++] = c[i++];
+                } else {
+                    c[w++] = c[i];
+                }
+            } else if ( c[i] == ',' ) {
+                n = value(c, v, w, fields, n);
+                v = w;
+                inQuote = 0;
+                inRecord = false;
+            } else if ( inQuote == 2 && !Character.isWhitespace(c[i]) ) {
+                return -1; // invalid data format
+            } else {
+                c[w++] = c[i];
+            }
+        }
+        // quoted values spanning multiple lines are not supported
+        return ( inQuote == 1 ? -1 : value(c, v, w, fields, n) );
+    }
+    
+    /**
+     * Record the trimmed value in the given range as value number n.
+     */
+    private static int value(char[] c, int v, int w, int[] fields, int n) {
+        while ( v < w && c[v] <= ' ' ) ++v;
+        while ( w > v && c[w-1] <= ' ' ) --w;
+        if ( 2*n+1 < fields.length ) {
+            fields[2*n]   = v;
+            fields[2*n+1] = w;
+        }
+        return n+1;
+    }
+    
 } // end of class CSVTableReader
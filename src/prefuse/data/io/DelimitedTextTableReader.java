@@ -4,6 +4,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.CharBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import prefuse.data.parser.DataParseException;
 import prefuse.data.parser.ParserFactory;
@@ -21,6 +24,7 @@ import prefuse.data.parser.ParserFactory;
 public class DelimitedTextTableReader extends AbstractTextTableReader {
 
     private String m_delim;
+    private Pattern m_pattern;
    
     /**
      * Create a new DelimitedTextTableReader for reading tab-delimited files
@@ -73,6 +77,9 @@ public class DelimitedTextTableReader extends AbstractTextTableReader {
         
         BufferedReader br = new BufferedReader(new InputStreamReader(is));
         while ( (line=br.readLine()) != null ) {
+            // skip empty lines
+            if ( line.length() == 0 ) continue;
+            
             // increment the line number
             ++lineno;
             
@@ -83,5 +90,52 @@ public class DelimitedTextTableReader extends AbstractTextTableReader {
             }
         }
     }
+    
+    /**
+     * @see prefuse.data.io.AbstractTextTableReader#split(char[], int, int, int[])
+     */
+    protected int split(char[] c, int start, int end, int[] fields) {
+        // follow the semantics of String.split: without a delimiter match
+        // the whole line is a single value, otherwise trailing empty
+        // values are dropped
+        int n = 0, v = start, last = 0;
+        if ( m_delim.length() == 1 && "\\^$.|?*+()[]{}".indexOf(m_delim) < 0 ) {
+            // fast path for a literal single character delimiter
+            char d = m_delim.charAt(0);
+            for ( int i=start; i<end; ++i ) {
+                if ( c[i] == d ) {
+                    n = value(v, i, fields, n);
+                    if ( i > v ) last = n;
+                    v = i+1;
+                }
+            }
+        } else {
+            if ( m_pattern == null )
+                m_pattern = Pattern.compile(m_delim);
+            Matcher m = m_pattern.matcher(CharBuffer.wrap(c, start, end-start));
+            while ( m.find() ) {
+                if ( m.end() == 0 ) continue; // no leading empty value
+                int s = start + m.start();
+                n = value(v, s, fields, n);
+                if ( s > v ) last = n;
+                v = start + m.end();
+            }
+        }
+        if ( n == 0 )
+            return value(start, end, fields, 0);
+        n = value(v, end, fields, n);
+        return ( end > v ? n : last );
+    }
+    
+    /**
+     * Record the value in the given range as value number n.
+     */
+    private static int value(int s, int e, int[] fields, int n) {
+        if ( 2*n+1 < fields.length ) {
+            fields[2*n]   = s;
+            fields[2*n+1] = e;
+        }
+        return n+1;
+    }
 
 } // end of class DelimitedTextTableReader
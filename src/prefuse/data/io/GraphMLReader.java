@@ -3,6 +3,7 @@ package prefuse.data.io;
 import java.io.InputStream;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedList;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -14,8 +15,14 @@ import org.xml.sax.helpers.DefaultHandler;
 import prefuse.data.Graph;
 import prefuse.data.Schema;
 import prefuse.data.Table;
+import prefuse.data.column.ColumnFactory;
 import prefuse.data.parser.DataParseException;
+import prefuse.data.parser.BooleanParser;
 import prefuse.data.parser.DataParser;
+import prefuse.data.parser.DoubleParser;
+import prefuse.data.parser.FloatParser;
+import prefuse.data.parser.IntParser;
+import prefuse.data.parser.LongParser;
 import prefuse.data.parser.ParserFactory;
 import prefuse.util.collections.IntIterator;
 
@@ -27,10 +34,79 @@ import prefuse.util.collections.IntIterator;
  * information about the format, please see the
  * <a href="http://graphml.graphdrawing.org/">GraphML home page</a>.
  * 
+ * <p>For large files, a streaming mode can be enabled with
+ * {@link #setStreaming(boolean)}. In this mode the data values are
+ * buffered by column while the file is read, node ids are resolved with
+ * a primitive hash map, and the node and edge tables are built in bulk
+ * once the whole file has been read. Values are parsed in chunks as the
+ * file is read, with numeric and boolean values parsed into primitive
+ * arrays, optionally using multiple threads (see
+ * {@link #setThreadCount(int)}). Progress can be monitored by a
+ * {@link GraphReadListener}.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class GraphMLReader extends AbstractGraphReader  implements GraphReader {
     
+    private boolean m_streaming = false;
+    private int m_threads = 1;
+    private GraphReadListener m_listener = null;
+    
+    /**
+     * Indicates if this reader uses the streaming import mode.
+     * @return true if streaming mode is used, false otherwise
+     */
+    public boolean isStreaming() {
+        return m_streaming;
+    }
+    
+    /**
+     * Set if this reader uses the streaming import mode. Streaming mode is
+     * considerably faster and uses less memory for large files. It is
+     * disabled by default.
+     * @param b true to use streaming mode, false otherwise
+     */
+    public void setStreaming(boolean b) {
+        m_streaming = b;
+    }
+    
+    /**
+     * Get the number of threads used to parse data values in streaming
+     * mode.
+     * @return the number of threads used
+     */
+    public int getThreadCount() {
+        return m_threads;
+    }
+    
+    /**
+     * Set the number of threads used to parse data values in streaming
+     * mode. The default value is one.
+     * @param n the number of threads to use
+     */
+    public void setThreadCount(int n) {
+        if ( n < 1 )
+            throw new IllegalArgumentException(
+                "Thread count must be at least one");
+        m_threads = n;
+    }
+    
+    /**
+     * Get the listener notified of reading progress in streaming mode.
+     * @return the progress listener, or null if none
+     */
+    public GraphReadListener getReadListener() {
+        return m_listener;
+    }
+    
+    /**
+     * Set the listener notified of reading progress in streaming mode.
+     * @param listener the progress listener, or null for none
+     */
+    public void setReadListener(GraphReadListener listener) {
+        m_listener = listener;
+    }
+    
     /**
      * @see prefuse.data.io.GraphReader#readGraph(java.io.InputStream)
      */
@@ -39,7 +115,9 @@ public class GraphMLReader extends AbstractGraphReader  implements GraphReader {
             SAXParserFactory factory   = SAXParserFactory.newInstance();
             SAXParser        saxParser = factory.newSAXParser();
             
-            GraphMLHandler   handler   = new GraphMLHandler();
+            GraphMLHandler   handler   = m_streaming
+                ? new StreamingGraphMLHandler(m_threads, m_listener)
+                : new GraphMLHandler();
             saxParser.parse(is, handler);
             return handler.getGraph();
         } catch ( Exception e ) {
@@ -122,8 +200,8 @@ public class GraphMLReader extends AbstractGraphReader  implements GraphReader {
         protected HashMap m_nodeMap = new HashMap();
         protected HashMap m_idMap = new HashMap();
         
-        private boolean m_directed = false;
-        private boolean inSchema;
+        protected boolean m_directed = false;
+        protected boolean inSchema;
         
         public void startDocument() {
             m_nodeMap.clear();
@@ -289,13 +367,18 @@ public class GraphMLReader extends AbstractGraphReader  implements GraphReader {
                 Class type = parseType(m_type);
                 Object dflt = m_dflt==null ? null : parse(m_dflt, type);
                 
+                int storage = ColumnFactory.getDefaultStorage(type);
                 if ( m_for == null || m_for.equals(ALL) ) {
                     m_nsch.addColumn(m_name, type, dflt);
+                    m_nsch.setStorage(m_name, storage);
                     m_esch.addColumn(m_name, type, dflt);
+                    m_esch.setStorage(m_name, storage);
                 } else if ( m_for.equals(NODE) ) {
                     m_nsch.addColumn(m_name, type, dflt);
+                    m_nsch.setStorage(m_name, storage);
                 } else if ( m_for.equals(EDGE) ) {
                     m_esch.addColumn(m_name, type, dflt);
+                    m_esch.setStorage(m_name, storage);
                 } else {
                     error("Unrecognized \""+FOR+"\" value: "+ m_for);
                 }
@@ -349,5 +432,567 @@ public class GraphMLReader extends AbstractGraphReader  implements GraphReader {
         }
         
     } // end of inner class GraphMLHandler
+    
+    /**
+     * A SAX Parser for GraphML data files that buffers the data values of
+     * nodes and edges by column, and builds the node and edge tables in
+     * bulk once the end of the document is reached. Values are buffered in
+     * chunks of rows, and each chunk is parsed as soon as all of its rows
+     * have been read, so that the raw strings are released while the
+     * document is still being read.
+     */
+    public static class StreamingGraphMLHandler extends GraphMLHandler {
+        
+        private static final int CHUNK_SIZE = 8192;
+        private static final int PROGRESS_INTERVAL = 10000;
+        private static final long WORKER_IDLE_TIME = 5000;
+        
+        private int m_threads;
+        private GraphReadListener m_listener;
+        
+        // buffered values, indexed by schema column number
+        private ColumnBuffer[] m_nvals, m_evals;
+        private ValueBuffer m_srcids = new ValueBuffer();
+        private ValueBuffer m_trgids = new ValueBuffer();
+        private int m_ncount = 0, m_ecount = 0;
+        private IdMap m_ids = new IdMap();
+        
+        // the node or edge currently being read
+        private int m_cur = -1;
+        private ColumnBuffer[] m_vals = null;
+        private Schema m_sch = null;
+        private String m_dkey;
+        
+        // parallel parsing state, guarded by this handler
+        private LinkedList m_queue = new LinkedList();
+        private int m_pending = 0; // chunks queued or being parsed
+        private int m_workers = 0; // running worker threads
+        private boolean m_done = false;
+        private DataParseException m_parseError;
+        
+        /**
+         * Create a new StreamingGraphMLHandler.
+         * @param threads the number of threads to use for parsing values
+         * @param listener a progress listener, or null for none
+         */
+        public StreamingGraphMLHandler(int threads, GraphReadListener listener)
+        {
+            m_threads = threads;
+            m_listener = listener;
+        }
+        
+        public void startDocument() {
+            inSchema = true;
+            m_esch.addColumn(SRC, int.class);
+            m_esch.addColumn(TRG, int.class);
+        }
+        
+        public void endDocument() throws SAXException {
+            schemaCheck();
+            if ( m_listener != null )
+                m_listener.graphReadProgress(m_ncount, m_ecount);
+            
+            // parse the last chunks of values
+            if ( m_ncount > 0 )
+                flush(m_nvals, (m_ncount-1) / CHUNK_SIZE);
+            if ( m_ecount > 0 )
+                flush(m_evals, (m_ecount-1) / CHUNK_SIZE);
+            await();
+            
+            // resolve the edge endpoints
+            int[] src = new int[m_ecount], trg = new int[m_ecount];
+            for ( int i=0; i<m_ecount; ++i ) {
+                String s = m_srcids.get(i);
+                if ( (src[i]=m_ids.get(s)) < 0 ) {
+                    throw new SAXException(
+                        "Tried to create edge with source node id=" + s
+                        + " which does not exist.");
+                }
+                String t = m_trgids.get(i);
+                if ( (trg[i]=m_ids.get(t)) < 0 ) {
+                    throw new SAXException(
+                        "Tried to create edge with target node id=" + t
+                        + " which does not exist.");
+                }
+            }
+            m_srcids = m_trgids = null;
+            m_ids = null;
+            
+            // build the tables
+            m_nodes = m_nsch.instantiate(m_ncount);
+            m_edges = m_esch.instantiate(m_ecount);
+            int scol = m_edges.getColumnNumber(SRC);
+            int tcol = m_edges.getColumnNumber(TRG);
+            for ( int i=0; i<m_ecount; ++i ) {
+                m_edges.setInt(i, scol, src[i]);
+                m_edges.setInt(i, tcol, trg[i]);
+            }
+            store(m_nodes, m_nsch, m_nvals, m_ncount);
+            store(m_edges, m_esch, m_evals, m_ecount);
+            
+            // now create the graph
+            m_graph = new Graph(m_nodes, m_edges, m_directed);
+            if (m_graphid != null)
+                m_graph.putClientProperty(ID, m_graphid);
+        }
+        
+        public void startElement(String namespaceURI, String localName,
+                                 String qName, Attributes atts)
+        {
+            if ( qName.equals(NODE) ) {
+                m_sbuf.delete(0, m_sbuf.length());
+                schemaCheck();
+                if ( m_ncount > 0 && m_ncount % CHUNK_SIZE == 0 )
+                    flush(m_nvals, m_ncount/CHUNK_SIZE - 1);
+                m_cur = m_ncount++;
+                m_ids.put(atts.getValue(ID), m_cur);
+                m_vals = m_nvals;
+                m_sch = m_nsch;
+                progress();
+            } else if ( qName.equals(EDGE) ) {
+                m_sbuf.delete(0, m_sbuf.length());
+                schemaCheck();
+                if ( m_ecount > 0 && m_ecount % CHUNK_SIZE == 0 )
+                    flush(m_evals, m_ecount/CHUNK_SIZE - 1);
+                m_cur = m_ecount++;
+                m_srcids.set(m_cur, atts.getValue(SRC));
+                m_trgids.set(m_cur, atts.getValue(TRG));
+                m_vals = m_evals;
+                m_sch = m_esch;
+                progress();
+            } else if ( qName.equals(DATA) ) {
+                m_sbuf.delete(0, m_sbuf.length());
+                m_dkey = atts.getValue(KEY);
+            } else {
+                super.startElement(namespaceURI, localName, qName, atts);
+            }
+        }
+        
+        public void endElement(String namespaceURI,
+                String localName, String qName)
+        {
+            if ( qName.equals(DATA) ) {
+                if ( m_vals == null )
+                    return; // not within a node or edge
+                String name = (String)m_idMap.get(m_dkey);
+                int col = ( name==null ? -1 : m_sch.getColumnIndex(name) );
+                if ( col < 0 )
+                    error("Unrecognized "+DATA+" key: "+m_dkey);
+                if ( m_vals[col] == null ) {
+                    Class type = m_sch.getColumnType(col);
+                    m_vals[col] = new ColumnBuffer(type, m_pf.getParser(type));
+                }
+                m_vals[col].set(m_cur, m_sbuf.toString());
+            } else if ( qName.equals(NODE) || qName.equals(EDGE) ) {
+                m_cur = -1;
+                m_vals = null;
+                m_sch = null;
+            } else {
+                super.endElement(namespaceURI, localName, qName);
+            }
+        }
+        
+        protected void schemaCheck() {
+            if ( inSchema ) {
+                m_nsch.lockSchema();
+                m_esch.lockSchema();
+                m_nvals = new ColumnBuffer[m_nsch.getColumnCount()];
+                m_evals = new ColumnBuffer[m_esch.getColumnCount()];
+                inSchema = false;
+            }
+        }
+        
+        private void progress() {
+            if ( m_listener != null &&
+                 (m_ncount+m_ecount) % PROGRESS_INTERVAL == 0 )
+            {
+                m_listener.graphReadProgress(m_ncount, m_ecount);
+            }
+        }
+        
+        // --------------------------------------------------------------------
+        
+        /**
+         * Parse a chunk of values of each column, once all rows of the chunk
+         * have been read. Chunks of columns with a primitive parser are
+         * handed to the worker threads, all others are parsed by the calling
+         * thread, as data parsers need not be thread-safe.
+         */
+        private void flush(ColumnBuffer[] vals, int k) {
+            for ( int c=0; c<vals.length; ++c ) {
+                Chunk chunk = ( vals[c]==null ? null : vals[c].chunk(k) );
+                if ( chunk == null ) continue;
+                if ( vals[c].primitive ) {
+                    submit(chunk);
+                } else {
+                    try {
+                        chunk.parse();
+                    } catch ( DataParseException dpe ) {
+                        error(dpe);
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Queue a chunk for parsing, starting a worker thread if fewer than
+         * the requested number are running. The calling thread parses
+         * queued chunks itself while the workers fall behind, so that the
+         * number of unparsed chunks stays bounded.
+         */
+        private void submit(Chunk chunk) {
+            synchronized ( this ) {
+                if ( m_parseError != null )
+                    error(m_parseError);
+                m_queue.addLast(chunk);
+                ++m_pending;
+                if ( m_workers < m_threads-1 ) {
+                    Thread t = new Thread(new ParseTask(),
+                                          "GraphMLReader-"+m_workers++);
+                    t.setDaemon(true);
+                    t.start();
+                } else {
+                    notify();
+                }
+            }
+            for ( Chunk c; (c=nextChunk(m_threads)) != null; )
+                parse(c);
+        }
+        
+        /**
+         * Wait until all queued chunks have been parsed, then let the worker
+         * threads exit.
+         */
+        private void await() {
+            for ( Chunk c; (c=nextChunk(1)) != null; )
+                parse(c);
+            boolean interrupted = false;
+            synchronized ( this ) {
+                while ( m_pending > 0 ) {
+                    try {
+                        wait();
+                    } catch ( InterruptedException e ) {
+                        interrupted = true;
+                    }
+                }
+                m_done = true;
+                notifyAll();
+            }
+            if ( interrupted )
+                Thread.currentThread().interrupt();
+            if ( m_parseError != null )
+                error(m_parseError);
+        }
+        
+        /**
+         * Get the next queued chunk, if at least the given number of chunks
+         * are queued.
+         */
+        private synchronized Chunk nextChunk(int backlog) {
+            return ( m_queue.size() < backlog ? null
+                                              : (Chunk)m_queue.removeFirst() );
+        }
+        
+        /**
+         * Get the next queued chunk for a worker thread, waiting for one to
+         * be queued. Returns null once the worker has been idle for a while
+         * or the document has been read, after which the worker exits.
+         */
+        private synchronized Chunk waitChunk() {
+            long start = System.currentTimeMillis();
+            while ( m_queue.isEmpty() ) {
+                long t = WORKER_IDLE_TIME-(System.currentTimeMillis()-start);
+                if ( m_done || t <= 0 ) {
+                    --m_workers;
+                    return null;
+                }
+                try {
+                    wait(t);
+                } catch ( InterruptedException e ) {
+                    --m_workers;
+                    return null;
+                }
+            }
+            return (Chunk)m_queue.removeFirst();
+        }
+        
+        private void parse(Chunk chunk) {
+            DataParseException error = null;
+            try {
+                chunk.parse();
+            } catch ( DataParseException e ) {
+                error = e;
+            } finally {
+                parsed(error);
+            }
+        }
+        
+        private synchronized void parsed(DataParseException e) {
+            if ( e != null && m_parseError == null )
+                m_parseError = e;
+            if ( --m_pending == 0 )
+                notifyAll();
+        }
+        
+        /**
+         * Set the parsed values of each buffered column in a table.
+         */
+        private void store(Table t, Schema sch, ColumnBuffer[] vals, int rows)
+        {
+            for ( int c=0; c<vals.length; ++c ) {
+                if ( vals[c] == null ) continue;
+                int col = t.getColumnNumber(sch.getColumnName(c));
+                vals[c].store(t, col, rows);
+                vals[c] = null;
+            }
+        }
+        
+        /**
+         * Worker that parses queued chunks of column values.
+         */
+        private final class ParseTask implements Runnable {
+            public void run() {
+                for ( Chunk c; (c=waitChunk()) != null; )
+                    parse(c);
+            }
+        } // end of inner class ParseTask
+        
+    } // end of inner class StreamingGraphMLHandler
+    
+    /**
+     * Growable buffer of raw string values, indexed by row and stored in
+     * fixed size chunks.
+     */
+    private static final class ValueBuffer {
+        private static final int SIZE = StreamingGraphMLHandler.CHUNK_SIZE;
+        private String[][] m_chunks = new String[16][];
+        
+        String get(int row) {
+            String[] chunk = m_chunks[row / SIZE];
+            return ( chunk == null ? null : chunk[row % SIZE] );
+        }
+        void set(int row, String value) {
+            int k = row / SIZE;
+            if ( k >= m_chunks.length ) {
+                String[][] chunks = new String[Math.max(k+1, 2*k)][];
+                System.arraycopy(m_chunks, 0, chunks, 0, m_chunks.length);
+                m_chunks = chunks;
+            }
+            if ( m_chunks[k] == null )
+                m_chunks[k] = new String[SIZE];
+            m_chunks[k][row % SIZE] = value;
+        }
+    } // end of inner class ValueBuffer
+    
+    /**
+     * Buffered values of a table column, indexed by row and stored in fixed
+     * size chunks, each of which is parsed once all of its rows are read.
+     */
+    private static final class ColumnBuffer {
+        private static final int SIZE = StreamingGraphMLHandler.CHUNK_SIZE;
+        
+        final Class type;
+        final DataParser parser;
+        /** Indicates if values are parsed by the thread-safe primitive
+         *  parsing methods, rather than the data parser. */
+        final boolean primitive;
+        private Chunk[] m_chunks = new Chunk[16];
+        
+        ColumnBuffer(Class type, DataParser parser) {
+            this.type = type;
+            this.parser = parser;
+            Class pt = parser.getClass();
+            primitive = (type == int.class     && pt == IntParser.class)    ||
+                        (type == long.class    && pt == LongParser.class)   ||
+                        (type == float.class   && pt == FloatParser.class)  ||
+                        (type == double.class  && pt == DoubleParser.class) ||
+                        (type == boolean.class && pt == BooleanParser.class);
+        }
+        
+        Chunk chunk(int k) {
+            return ( k < m_chunks.length ? m_chunks[k] : null );
+        }
+        
+        void set(int row, String value) {
+            int k = row / SIZE;
+            if ( k >= m_chunks.length ) {
+                Chunk[] chunks = new Chunk[Math.max(k+1, 2*k)];
+                System.arraycopy(m_chunks, 0, chunks, 0, m_chunks.length);
+                m_chunks = chunks;
+            }
+            if ( m_chunks[k] == null )
+                m_chunks[k] = new Chunk(this);
+            m_chunks[k].strings[row % SIZE] = value;
+        }
+        
+        /**
+         * Set the parsed values of all rows that have a value, releasing
+         * each chunk once its values are set.
+         */
+        void store(Table table, int col, int rows) {
+            for ( int k=0; k<m_chunks.length; ++k ) {
+                Chunk chunk = m_chunks[k];
+                if ( chunk == null ) continue;
+                int base = k*SIZE;
+                int len = Math.min(SIZE, rows-base);
+                for ( int i=0; i<len; ++i ) {
+                    if ( !chunk.hasValue(i) ) continue;
+                    int r = base+i;
+                    if ( type == int.class && primitive )
+                        table.setInt(r, col, ((int[])chunk.values)[i]);
+                    else if ( type == long.class && primitive )
+                        table.setLong(r, col, ((long[])chunk.values)[i]);
+                    else if ( type == float.class && primitive )
+                        table.setFloat(r, col, ((float[])chunk.values)[i]);
+                    else if ( type == double.class && primitive )
+                        table.setDouble(r, col, ((double[])chunk.values)[i]);
+                    else if ( type == boolean.class && primitive )
+                        table.setBoolean(r, col, ((boolean[])chunk.values)[i]);
+                    else
+                        table.set(r, col, ((Object[])chunk.values)[i]);
+                }
+                m_chunks[k] = null;
+            }
+        }
+    } // end of inner class ColumnBuffer
+    
+    /**
+     * A chunk of column values. Values are collected as strings, which are
+     * released once parsed into an array of primitive values, or of objects
+     * for columns without a primitive parser.
+     */
+    private static final class Chunk {
+        private static final int SIZE = StreamingGraphMLHandler.CHUNK_SIZE;
+        
+        final ColumnBuffer column;
+        String[] strings = new String[SIZE];
+        Object values;
+        boolean[] present; // rows with a value, null if all have one
+        
+        Chunk(ColumnBuffer column) {
+            this.column = column;
+        }
+        
+        boolean hasValue(int i) {
+            return ( present == null || present[i] );
+        }
+        
+        /**
+         * Parse the values of this chunk and release the strings.
+         */
+        void parse() throws DataParseException {
+            String[] s = strings;
+            for ( int i=0; i<SIZE; ++i ) {
+                if ( s[i] != null ) continue;
+                present = new boolean[SIZE];
+                for ( int j=0; j<SIZE; ++j )
+                    present[j] = ( s[j] != null );
+                break;
+            }
+            Class type = column.type;
+            if ( !column.primitive ) {
+                Object[] v = new Object[SIZE];
+                for ( int i=0; i<SIZE; ++i )
+                    if ( s[i] != null ) v[i] = column.parser.parse(s[i]);
+                values = v;
+            } else if ( type == int.class ) {
+                int[] v = new int[SIZE];
+                for ( int i=0; i<SIZE; ++i )
+                    if ( s[i] != null ) v[i] = IntParser.parseInt(s[i]);
+                values = v;
+            } else if ( type == long.class ) {
+                long[] v = new long[SIZE];
+                for ( int i=0; i<SIZE; ++i )
+                    if ( s[i] != null ) v[i] = LongParser.parseLong(s[i]);
+                values = v;
+            } else if ( type == float.class ) {
+                float[] v = new float[SIZE];
+                for ( int i=0; i<SIZE; ++i )
+                    if ( s[i] != null ) v[i] = FloatParser.parseFloat(s[i]);
+                values = v;
+            } else if ( type == double.class ) {
+                double[] v = new double[SIZE];
+                for ( int i=0; i<SIZE; ++i )
+                    if ( s[i] != null ) v[i] = DoubleParser.parseDouble(s[i]);
+                values = v;
+            } else if ( type == boolean.class ) {
+                boolean[] v = new boolean[SIZE];
+                for ( int i=0; i<SIZE; ++i ) {
+                    if ( s[i] == null ) continue;
+                    if ( BooleanParser.TRUE.equalsIgnoreCase(s[i]) )
+                        v[i] = true;
+                    else if ( !BooleanParser.FALSE.equalsIgnoreCase(s[i]) )
+                        throw new DataParseException(
+                            "Input does not represent a boolean.");
+                }
+                values = v;
+            }
+            strings = null;
+        }
+    } // end of inner class Chunk
+    
+    /**
+     * Open addressing hash map from node id strings to node rows, avoiding
+     * the allocation of an entry and a boxed value for each node.
+     */
+    private static final class IdMap {
+        private String[] m_keys = new String[1024];
+        private int[] m_vals = new int[1024];
+        private int m_size = 0;
+        private int m_nullVal = -1;
+        
+        private static int hash(String key) {
+            int h = key.hashCode();
+            return h ^ (h >>> 16);
+        }
+        
+        /**
+         * Get the row for the given id, or -1 if not found.
+         */
+        int get(String key) {
+            if ( key == null ) return m_nullVal;
+            int mask = m_keys.length-1;
+            for ( int i=hash(key)&mask; m_keys[i]!=null; i=(i+1)&mask ) {
+                if ( m_keys[i].equals(key) )
+                    return m_vals[i];
+            }
+            return -1;
+        }
+        
+        void put(String key, int val) {
+            if ( key == null ) {
+                m_nullVal = val;
+                return;
+            }
+            if ( 2*(m_size+1) > m_keys.length )
+                rehash(2*m_keys.length);
+            int mask = m_keys.length-1;
+            int i = hash(key)&mask;
+            for ( ; m_keys[i]!=null; i=(i+1)&mask ) {
+                if ( m_keys[i].equals(key) ) {
+                    m_vals[i] = val;
+                    return;
+                }
+            }
+            m_keys[i] = key;
+            m_vals[i] = val;
+            ++m_size;
+        }
+        
+        private void rehash(int capacity) {
+            String[] keys = m_keys;
+            int[] vals = m_vals;
+            m_keys = new String[capacity];
+            m_vals = new int[capacity];
+            int mask = capacity-1;
+            for ( int j=0; j<keys.length; ++j ) {
+                if ( keys[j] == null ) continue;
+                int i = hash(keys[j])&mask;
+                for ( ; m_keys[i]!=null; i=(i+1)&mask );
+                m_keys[i] = keys[j];
+                m_vals[i] = vals[j];
+            }
+        }
+    } // end of inner class IdMap
 
 } // end of class XMLGraphReader
@@ -0,0 +1,20 @@
+package prefuse.data.io;
+
+/**
+ * Callback interface used by GraphReader instances to report the
+ * progress of reading a graph.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public interface GraphReadListener {
+
+    /**
+     * Notification that a number of nodes and edges have been read. This
+     * method is called periodically while reading, and once more after all
+     * nodes and edges have been read.
+     * @param nodes the number of nodes read so far
+     * @param edges the number of edges read so far
+     */
+    public void graphReadProgress(int nodes, int edges);
+
+} // end of interface GraphReadListener
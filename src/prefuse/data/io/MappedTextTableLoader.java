@@ -0,0 +1,580 @@
+package prefuse.data.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.column.ColumnFactory;
+import prefuse.data.parser.BooleanParser;
+import prefuse.data.parser.DataParseException;
+import prefuse.data.parser.DataParser;
+import prefuse.data.parser.DoubleParser;
+import prefuse.data.parser.FloatParser;
+import prefuse.data.parser.IntParser;
+import prefuse.data.parser.LongParser;
+import prefuse.data.parser.ParserFactory;
+import prefuse.data.parser.StringParser;
+import prefuse.data.parser.TypeInferencer;
+
+/**
+ * Loads a table from a text file in a single pass, by memory-mapping the
+ * file, splitting it into chunks at line boundaries, and tokenizing the
+ * chunks on multiple threads directly into primitive column buffers.
+ * Column types are inferred from a sample of records at the start of the
+ * file. Records are tokenized using
+ * {@link AbstractTextTableReader#split(char[], int, int, int[])}.
+ *
+ * <p>If the file can not be read this way (for example because a value
+ * later in the file does not match the type inferred from the sample, or
+ * because a record spans multiple lines), {@link #load(File)} returns null
+ * and the caller should fall back to the standard reading routine.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+class MappedTextTableLoader {
+
+    private static final int MIN_CHUNK = 1 << 20;
+    private static final int MAX_CHUNK = 1 << 24;
+    private static final int SCAN_SIZE = 4096;
+
+    // column value types
+    private static final int INT     = 0;
+    private static final int LONG    = 1;
+    private static final int FLOAT   = 2;
+    private static final int DOUBLE  = 3;
+    private static final int BOOLEAN = 4;
+    private static final int STRING  = 5;
+    private static final int OBJECT  = 6;
+
+    private AbstractTextTableReader m_reader;
+    private ParserFactory m_pfactory;
+    private boolean m_hasHeader;
+    private int m_sampleSize;
+    private int m_threads;
+
+    private Charset m_charset;
+    private FileChannel m_channel;
+    private Chunk[] m_chunks;
+    private int m_nextChunk;
+    private boolean m_failed;
+    private IOException m_ioError;
+
+    private int m_ncols;
+    private int[] m_kinds;
+
+    /**
+     * Create a new MappedTextTableLoader.
+     * @param reader the reader used to tokenize records
+     * @param pf the ParserFactory to use for type inference
+     * @param hasHeader true if the file includes a header row
+     * @param sampleSize the number of records sampled for type inference
+     * @param threads the number of threads to use
+     */
+    MappedTextTableLoader(AbstractTextTableReader reader, ParserFactory pf,
+            boolean hasHeader, int sampleSize, int threads)
+    {
+        m_reader = reader;
+        m_pfactory = pf;
+        m_hasHeader = hasHeader;
+        m_sampleSize = sampleSize;
+        m_threads = threads;
+        m_charset = Charset.forName(System.getProperty("file.encoding"));
+    }
+
+    /**
+     * Load a table from the given file.
+     * @param f the file to read
+     * @return the loaded table, or null if the file could not be loaded
+     * in a single pass
+     * @throws IOException if an input/output error occurs
+     */
+    Table load(File f) throws IOException {
+        FileInputStream fis = new FileInputStream(f);
+        try {
+            m_channel = fis.getChannel();
+            long size = m_channel.size();
+            if ( size == 0 ) return null;
+
+            // split the file into chunks at line boundaries
+            long[] bounds = bounds(size);
+            m_chunks = new Chunk[bounds.length-1];
+            for ( int k=0; k<m_chunks.length; ++k )
+                m_chunks[k] = new Chunk(bounds[k], bounds[k+1]);
+
+            // determine column names and types
+            ArrayList headers = m_reader.getColumnNames();
+            TypeInferencer di = new TypeInferencer(m_pfactory);
+            if ( !sample(m_chunks[0], headers, di) )
+                return null;
+
+            // tokenize and parse all chunks
+            m_nextChunk = 0;
+            int nthreads = Math.min(m_threads, m_chunks.length);
+            Thread[] workers = new Thread[nthreads-1];
+            for ( int i=0; i<workers.length; ++i ) {
+                workers[i] = new Thread(new Worker(), "TableReader-"+i);
+                workers[i].start();
+            }
+            new Worker().run();
+            for ( int i=0; i<workers.length; ++i ) {
+                try {
+                    workers[i].join();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if ( m_ioError != null )
+                throw m_ioError;
+            if ( m_failed )
+                return null;
+
+            return fill(headers, di);
+        } finally {
+            m_chunks = null;
+            m_channel = null;
+            fis.close();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Compute chunk boundaries, each falling just after a line feed.
+     */
+    private long[] bounds(long size) throws IOException {
+        ArrayList b = new ArrayList();
+        b.add(new Long(0));
+
+        // only split if a line feed is a single byte in this encoding
+        byte[] lf = "\n".getBytes(m_charset.name());
+        if ( lf.length == 1 && lf[0] == '\n' ) {
+            long target = size / (4*m_threads) + 1;
+            target = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+            ByteBuffer buf = ByteBuffer.allocate(SCAN_SIZE);
+            for ( long pos = target; pos < size; ) {
+                long nl = nextLine(buf, pos, size);
+                if ( nl >= size ) break;
+                b.add(new Long(nl));
+                pos = nl + target;
+            }
+        }
+        b.add(new Long(size));
+
+        long[] bounds = new long[b.size()];
+        for ( int i=0; i<bounds.length; ++i )
+            bounds[i] = ((Long)b.get(i)).longValue();
+        return bounds;
+    }
+
+    /**
+     * Get the position just after the next line feed at or after the given
+     * position.
+     */
+    private long nextLine(ByteBuffer buf, long pos, long size)
+        throws IOException
+    {
+        while ( pos < size ) {
+            buf.clear();
+            int n = m_channel.read(buf, pos);
+            if ( n <= 0 ) break;
+            for ( int i=0; i<n; ++i ) {
+                if ( buf.get(i) == '\n' )
+                    return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /**
+     * Read the header and a sample of records from the first chunk, and
+     * infer the column types.
+     */
+    private boolean sample(Chunk c, ArrayList headers, TypeInferencer di)
+        throws IOException
+    {
+        c.decode();
+        char[] s = c.chars;
+        int len = c.length;
+        int[] fields = new int[64];
+        char[] tmp = new char[256];
+
+        int nsample = 0, sampled = 0;
+        boolean header = m_hasHeader;
+        for ( int p=0, e; p<len && nsample<m_sampleSize; p=next(s, e, len) ) {
+            e = end(s, p, len);
+            if ( e == p ) continue; // skip empty lines
+            // split a copy, as records may be rewritten in place
+            if ( e-p > tmp.length )
+                tmp = new char[2*(e-p)];
+            System.arraycopy(s, p, tmp, 0, e-p);
+            int n = m_reader.split(tmp, 0, e-p, fields);
+            if ( n > fields.length/2 ) {
+                fields = new int[2*n];
+                System.arraycopy(s, p, tmp, 0, e-p);
+                n = m_reader.split(tmp, 0, e-p, fields);
+            }
+            if ( n < 0 ) return false;
+
+            for ( int i=0; i<n; ++i ) {
+                int b = fields[2*i];
+                String v = new String(tmp, b, fields[2*i+1]-b);
+                if ( header ) headers.add(v); else di.sample(i, v);
+            }
+            m_ncols = Math.max(m_ncols, n);
+            if ( header ) {
+                header = false;
+                c.skip = true;
+            } else if ( n > 0 ) {
+                sampled = Math.max(sampled, n);
+                ++nsample;
+            }
+        }
+        if ( sampled < m_ncols || (m_hasHeader && headers.size() < m_ncols) )
+            return false;
+
+        m_kinds = new int[m_ncols];
+        for ( int i=0; i<m_ncols; ++i ) {
+            Class pc = di.getParser(i).getClass();
+            if ( pc == IntParser.class )
+                m_kinds[i] = INT;
+            else if ( pc == LongParser.class )
+                m_kinds[i] = LONG;
+            else if ( pc == FloatParser.class )
+                m_kinds[i] = FLOAT;
+            else if ( pc == DoubleParser.class )
+                m_kinds[i] = DOUBLE;
+            else if ( pc == BooleanParser.class )
+                m_kinds[i] = BOOLEAN;
+            else if ( pc == StringParser.class )
+                m_kinds[i] = STRING;
+            else
+                m_kinds[i] = OBJECT;
+        }
+        return true;
+    }
+
+    /**
+     * Create the table and fill in the parsed values.
+     */
+    private Table fill(ArrayList headers, TypeInferencer di) {
+        int nrows = 0;
+        for ( int k=0; k<m_chunks.length; ++k )
+            nrows += m_chunks[k].rows;
+
+        Table table = new Table(nrows, m_ncols);
+        for ( int i=0; i<m_ncols; ++i ) {
+            String header;
+            if ( m_hasHeader || i < headers.size() ) {
+                header = (String)headers.get(i);
+            } else {
+                header = AbstractTextTableReader.getDefaultHeader(i);
+            }
+            Class type = di.getType(i);
+            table.addColumn(header, type, null,
+                            ColumnFactory.getDefaultStorage(type));
+            table.getColumn(i).setParser(di.getParser(i));
+        }
+
+        for ( int i=0; i<m_ncols; ++i ) {
+            Column col = table.getColumn(i);
+            DataParser dp = di.getParser(i);
+            for ( int k=0, base=0; k<m_chunks.length; base+=m_chunks[k++].rows ) {
+                Chunk c = m_chunks[k];
+                Object vals = c.values[i];
+                c.values[i] = null;
+                switch ( m_kinds[i] ) {
+                case INT:
+                    int[] iv = (int[])vals;
+                    for ( int r=0; r<c.rows; ++r )
+                        col.setInt(iv[r], base+r);
+                    break;
+                case LONG:
+                    long[] lv = (long[])vals;
+                    for ( int r=0; r<c.rows; ++r )
+                        col.setLong(lv[r], base+r);
+                    break;
+                case FLOAT:
+                    float[] fv = (float[])vals;
+                    for ( int r=0; r<c.rows; ++r )
+                        col.setFloat(fv[r], base+r);
+                    break;
+                case DOUBLE:
+                    double[] dv = (double[])vals;
+                    for ( int r=0; r<c.rows; ++r )
+                        col.setDouble(dv[r], base+r);
+                    break;
+                case BOOLEAN:
+                    boolean[] bv = (boolean[])vals;
+                    for ( int r=0; r<c.rows; ++r )
+                        col.setBoolean(bv[r], base+r);
+                    break;
+                case STRING:
+                    Object[] sv = (Object[])vals;
+                    for ( int r=0; r<c.rows; ++r )
+                        if ( sv[r] != null ) col.set(sv[r], base+r);
+                    break;
+                default:
+                    // parsers for other types need not be thread-safe,
+                    // so these values are parsed here on a single thread
+                    Object[] ov = (Object[])vals;
+                    try {
+                        for ( int r=0; r<c.rows; ++r ) {
+                            if ( ov[r] != null )
+                                col.set(dp.parse((String)ov[r]), base+r);
+                        }
+                    } catch ( DataParseException e ) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    private synchronized Chunk nextChunk() {
+        if ( m_failed || m_ioError != null || m_nextChunk >= m_chunks.length )
+            return null;
+        return m_chunks[m_nextChunk++];
+    }
+
+    private synchronized void fail(IOException e) {
+        if ( e != null && m_ioError == null )
+            m_ioError = e;
+        m_failed = true;
+    }
+
+    /**
+     * Worker that reads chunks until none remain.
+     */
+    private class Worker implements Runnable {
+        public void run() {
+            try {
+                for ( Chunk c; (c=nextChunk()) != null; ) {
+                    if ( !c.read() ) {
+                        fail(null);
+                        return;
+                    }
+                }
+            } catch ( IOException e ) {
+                fail(e);
+            }
+        }
+    } // end of inner class Worker
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the end of the line starting at the given position.
+     */
+    private static int end(char[] s, int p, int len) {
+        while ( p < len && s[p] != '\n' && s[p] != '\r' ) ++p;
+        return p;
+    }
+
+    /**
+     * Get the start of the line following the given line end.
+     */
+    private static int next(char[] s, int e, int len) {
+        if ( e < len && s[e] == '\r' && e+1 < len && s[e+1] == '\n' )
+            return e+2;
+        return e+1;
+    }
+
+    /**
+     * Parse an int value from a character range, or throw an exception.
+     */
+    private static int parseInt(char[] s, int b, int e)
+        throws DataParseException
+    {
+        long v = parseLong(s, b, e);
+        if ( v < Integer.MIN_VALUE || v > Integer.MAX_VALUE )
+            throw new DataParseException("Integer out of range");
+        return (int)v;
+    }
+
+    /**
+     * Parse a long value from a character range, or throw an exception.
+     */
+    private static long parseLong(char[] s, int b, int e)
+        throws DataParseException
+    {
+        int i = b;
+        boolean neg = false;
+        if ( i < e && (s[i] == '-' || s[i] == '+') )
+            neg = (s[i++] == '-');
+        // up to 18 ascii digits can not overflow a long
+        if ( i == e || e-i > 18 )
+            return LongParser.parseLong(new String(s, b, e-b));
+        long v = 0;
+        for ( ; i<e; ++i ) {
+            int d = s[i] - '0';
+            if ( d < 0 || d > 9 )
+                return LongParser.parseLong(new String(s, b, e-b));
+            v = 10*v + d;
+        }
+        return neg ? -v : v;
+    }
+
+    /**
+     * Parse a boolean value from a character range, or throw an exception.
+     */
+    private static boolean parseBoolean(char[] s, int b, int e)
+        throws DataParseException
+    {
+        String t = BooleanParser.TRUE, f = BooleanParser.FALSE;
+        if ( e-b == t.length() && regionMatches(s, b, t) )
+            return true;
+        if ( e-b == f.length() && regionMatches(s, b, f) )
+            return false;
+        throw new DataParseException("Input does not represent a boolean "
+            + "value: " + new String(s, b, e-b));
+    }
+
+    /**
+     * Compare a character range to a string, ignoring case.
+     */
+    private static boolean regionMatches(char[] s, int b, String str) {
+        for ( int i=0; i<str.length(); ++i ) {
+            if ( Character.toLowerCase(s[b+i]) !=
+                 Character.toLowerCase(str.charAt(i)) )
+                return false;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * A range of lines of the file, along with the values parsed from it.
+     */
+    private class Chunk {
+        final long start, end;
+        char[] chars;
+        int length;
+        boolean skip;     // true if the first line is the header
+        int rows;
+        Object[] values;  // primitive value array for each column
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        void decode() throws IOException {
+            if ( chars != null ) return;
+            ByteBuffer bb = m_channel.map(
+                    FileChannel.MapMode.READ_ONLY, start, end-start);
+            CharsetDecoder dec = m_charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer cb = dec.decode(bb);
+            if ( cb.hasArray() && cb.arrayOffset() == 0 ) {
+                chars = cb.array();
+                length = cb.limit();
+            } else {
+                length = cb.remaining();
+                chars = new char[length];
+                cb.get(chars);
+            }
+        }
+
+        /**
+         * Tokenize and parse all records of this chunk.
+         * @return true if successful, false if the chunk could not be
+         * read using the inferred column types
+         */
+        boolean read() throws IOException {
+            decode();
+            char[] s = chars;
+            int len = length;
+            int ncols = m_ncols;
+            int[] kinds = m_kinds;
+            int[] f = new int[2*ncols];
+            int cap = Math.max(16, len/(8*ncols));
+            allocate(cap);
+
+            boolean skipLine = skip;
+            try {
+                for ( int p=0, e; p<len; p=next(s, e, len) ) {
+                    e = end(s, p, len);
+                    if ( e == p ) continue; // skip empty lines
+                    if ( skipLine ) {
+                        skipLine = false;
+                        continue;
+                    }
+                    int n = m_reader.split(s, p, e, f);
+                    if ( n < 0 || n > ncols ) return false;
+                    if ( n == 0 ) continue;
+
+                    if ( rows == cap ) {
+                        cap = 2*cap;
+                        allocate(cap);
+                    }
+                    int r = rows++;
+                    for ( int i=0; i<n; ++i ) {
+                        int b = f[2*i], x = f[2*i+1];
+                        switch ( kinds[i] ) {
+                        case INT:
+                            ((int[])values[i])[r] = parseInt(s, b, x);
+                            break;
+                        case LONG:
+                            ((long[])values[i])[r] = parseLong(s, b, x);
+                            break;
+                        case FLOAT:
+                            ((float[])values[i])[r] =
+                                FloatParser.parseFloat(new String(s, b, x-b));
+                            break;
+                        case DOUBLE:
+                            ((double[])values[i])[r] =
+                                DoubleParser.parseDouble(new String(s, b, x-b));
+                            break;
+                        case BOOLEAN:
+                            ((boolean[])values[i])[r] = parseBoolean(s, b, x);
+                            break;
+                        default:
+                            ((Object[])values[i])[r] = new String(s, b, x-b);
+                        }
+                    }
+                }
+            } catch ( DataParseException e ) {
+                return false;
+            } finally {
+                chars = null;
+            }
+            return true;
+        }
+
+        /**
+         * Allocate or grow the value arrays.
+         */
+        private void allocate(int cap) {
+            if ( values == null )
+                values = new Object[m_ncols];
+            for ( int i=0; i<m_ncols; ++i ) {
+                Object a;
+                switch ( m_kinds[i] ) {
+                case INT:     a = new int[cap];     break;
+                case LONG:    a = new long[cap];    break;
+                case FLOAT:   a = new float[cap];   break;
+                case DOUBLE:  a = new double[cap];  break;
+                case BOOLEAN: a = new boolean[cap]; break;
+                default:      a = new Object[cap];
+                }
+                if ( values[i] != null )
+                    System.arraycopy(values[i], 0, a, 0, rows);
+                values[i] = a;
+            }
+        }
+    } // end of inner class Chunk
+
+} // end of class MappedTextTableLoader
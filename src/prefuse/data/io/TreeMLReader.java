@@ -13,6 +13,7 @@ import prefuse.data.Graph;
 import prefuse.data.Node;
 import prefuse.data.Table;
 import prefuse.data.Tree;
+import prefuse.data.column.ColumnFactory;
 import prefuse.data.parser.DataParseException;
 import prefuse.data.parser.DataParser;
 import prefuse.data.parser.ParserFactory;
@@ -114,7 +115,8 @@ public class TreeMLReader extends AbstractGraphReader {
                 String name = atts.getValue(NAME);
                 String type = atts.getValue(TYPE);
                 Class t = parseType(type);
-                m_nodes.addColumn(name, t);
+                m_nodes.addColumn(name, t, null,
+                                  ColumnFactory.getDefaultStorage(t));
             }
             else if ( qName.equals(BRANCH) || qName.equals(LEAF) ) {
                 schemaCheck();
@@ -0,0 +1,943 @@
+package prefuse.data.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import prefuse.data.CascadedTable;
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.column.DoubleColumn;
+import prefuse.data.column.FloatColumn;
+import prefuse.data.column.IntColumn;
+import prefuse.data.column.LongColumn;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+import prefuse.util.TypeLib;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * <p>Computes aggregate statistics over the rows of a Table, grouped by the
+ * values of one or more columns. For each distinct combination of values
+ * of the group-by columns, the aggregation computes any number of
+ * aggregates: the row {@link #COUNT count}, the {@link #SUM sum},
+ * {@link #MEAN mean}, {@link #MIN minimum} and {@link #MAX maximum} of a
+ * numeric column, and the number of {@link #DISTINCT distinct} values of a
+ * column. With no group-by columns, a single group contains all rows.</p>
+ *
+ * <p>The results are provided as a Table, with one row per group. The
+ * result table contains the group-by columns, followed by a column for
+ * each aggregate, named for the aggregate type and data field, such as
+ * <code>sum(sales)</code>, unless a name is given. Counts are stored as
+ * int values and all other numeric aggregates as double values.</p>
+ *
+ * <pre>
+ * Aggregation agg = new Aggregation(table, new String[] {"region"});
+ * agg.addAggregate(Aggregation.COUNT, null);
+ * agg.addAggregate(Aggregation.MEAN, "sales");
+ * Table result = agg.aggregate();
+ * </pre>
+ *
+ * <p>Aggregates are computed directly from the table's columns. The rows
+ * are first assigned to groups, with the values of the group-by columns
+ * mapped to integer codes using primitive hash tables, and then each
+ * aggregate is computed in a single loop over the rows. Numeric aggregates
+ * over large tables are computed using multiple threads, if more than one
+ * processor is available.</p>
+ *
+ * <p>By default, the aggregates are computed from scratch each time
+ * {@link #aggregate()} is called, with the contents of the result table
+ * replaced. If the aggregation is made {@link #setIncremental(boolean)
+ * incremental}, it listens to the table and updates the result table as
+ * rows are added, removed, and changed. One exception is when the minimum
+ * or maximum value of a group is removed, in which case the new minimum
+ * or maximum is computed the next time {@link #aggregate()} is called.
+ * If columns are added to or removed from the table, all aggregates are
+ * computed again the next time {@link #aggregate()} is called.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class Aggregation implements TableListener {
+
+    /** Aggregate type for the number of rows in a group. */
+    public static final int COUNT    = 0;
+    /** Aggregate type for the sum of a numeric field. */
+    public static final int SUM      = 1;
+    /** Aggregate type for the mean value of a numeric field. */
+    public static final int MEAN     = 2;
+    /** Aggregate type for the minimum value of a numeric field. */
+    public static final int MIN      = 3;
+    /** Aggregate type for the maximum value of a numeric field. */
+    public static final int MAX      = 4;
+    /** Aggregate type for the number of distinct values of a field. */
+    public static final int DISTINCT = 5;
+
+    private static final String[] NAMES
+        = { "count", "sum", "mean", "min", "max", "distinct" };
+
+    /** The minimum number of rows for which numeric aggregates are
+     * computed in parallel. */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private Table m_table;
+    private String[] m_groupBy;
+    private ArrayList m_aggregates = new ArrayList();
+
+    private Table m_result;
+    private boolean m_incremental = false;
+    private boolean m_valid = false;
+    private boolean m_mapped;
+
+    // group-by columns and the codes of their values
+    private Column[] m_gcols;
+    private int[] m_gidx;
+    private Coder[] m_coders;
+    private LongIntMap[] m_keys;
+
+    // group state, indexed by group number
+    private int m_ngroups;
+    private int[][] m_groupCodes;
+    private int[] m_counts;
+    private int[] m_resultRows;
+
+    // the group of each table row, or -1
+    private int[] m_rowGroups;
+
+    /**
+     * Create a new Aggregation that places all rows in a single group.
+     * @param t the table to aggregate
+     */
+    public Aggregation(Table t) {
+        this(t, new String[0]);
+    }
+
+    /**
+     * Create a new Aggregation.
+     * @param t the table to aggregate
+     * @param groupBy the data field to group rows by
+     */
+    public Aggregation(Table t, String groupBy) {
+        this(t, new String[] { groupBy });
+    }
+
+    /**
+     * Create a new Aggregation.
+     * @param t the table to aggregate
+     * @param groupBy the data fields to group rows by
+     */
+    public Aggregation(Table t, String[] groupBy) {
+        for ( int i=0; i<groupBy.length; ++i ) {
+            if ( t.getColumnNumber(groupBy[i]) < 0 )
+                throw new IllegalArgumentException(
+                    "Unknown data field: "+groupBy[i]);
+        }
+        m_table = t;
+        m_groupBy = (String[])groupBy.clone();
+        m_mapped = ( t instanceof CascadedTable );
+    }
+
+    /**
+     * Get the table being aggregated.
+     * @return the aggregated table
+     */
+    public Table getTable() {
+        return m_table;
+    }
+
+    /**
+     * Get the data fields rows are grouped by.
+     * @return a copy of the group-by data fields
+     */
+    public String[] getGroupBy() {
+        return (String[])m_groupBy.clone();
+    }
+
+    // ------------------------------------------------------------------------
+    // Aggregates
+
+    /**
+     * Add an aggregate, using a default name for its result column.
+     * @param type the aggregate type, one of {@link #COUNT}, {@link #SUM},
+     * {@link #MEAN}, {@link #MIN}, {@link #MAX}, or {@link #DISTINCT}
+     * @param field the data field to aggregate. This is ignored for
+     * {@link #COUNT} aggregates, and may be null.
+     * @return the name of the result column
+     */
+    public String addAggregate(int type, String field) {
+        String name = ( type == COUNT ? NAMES[COUNT]
+                        : NAMES[type]+"("+field+")" );
+        addAggregate(type, field, name);
+        return name;
+    }
+
+    /**
+     * Add an aggregate.
+     * @param type the aggregate type, one of {@link #COUNT}, {@link #SUM},
+     * {@link #MEAN}, {@link #MIN}, {@link #MAX}, or {@link #DISTINCT}
+     * @param field the data field to aggregate. This is ignored for
+     * {@link #COUNT} aggregates, and may be null.
+     * @param name the name of the result column
+     */
+    public void addAggregate(int type, String field, String name) {
+        if ( type < COUNT || type > DISTINCT ) {
+            throw new IllegalArgumentException(
+                "Unknown aggregate type: "+type);
+        } else if ( type != COUNT ) {
+            if ( m_table.getColumnNumber(field) < 0 ) {
+                throw new IllegalArgumentException(
+                    "Unknown data field: "+field);
+            } else if ( type != DISTINCT &&
+                 !TypeLib.isNumericType(m_table.getColumnType(field)) )
+            {
+                throw new IllegalArgumentException(
+                    "Aggregate requires a numeric data field: "+field);
+            }
+        }
+        m_aggregates.add(new Aggregate(type, field, name));
+
+        // the result table needs a new column
+        m_result = null;
+        m_valid = false;
+    }
+
+    /**
+     * Get the number of aggregates.
+     * @return the number of aggregates
+     */
+    public int getAggregateCount() {
+        return m_aggregates.size();
+    }
+
+    // ------------------------------------------------------------------------
+    // Results
+
+    /**
+     * Compute the aggregates. For incremental aggregations, only results
+     * that are out of date are computed. The same result table is returned
+     * each time this method is called.
+     * @return a table with one row per group, containing the group-by
+     * values and aggregate values of each group
+     */
+    public Table aggregate() {
+        if ( !m_incremental || !m_valid ) {
+            compute();
+        } else {
+            refresh();
+        }
+        return m_result;
+    }
+
+    /**
+     * Indicates if the aggregation is updated as the table changes.
+     * @return true if the aggregation is incremental, false otherwise
+     */
+    public boolean isIncremental() {
+        return m_incremental;
+    }
+
+    /**
+     * Set if the aggregation is updated as the table changes. Incremental
+     * aggregations register a listener with the table, which is removed
+     * when incremental updates are turned off.
+     * @param b true to update the aggregation as the table changes,
+     * false otherwise
+     */
+    public void setIncremental(boolean b) {
+        if ( b == m_incremental ) return;
+        m_incremental = b;
+        if ( b ) {
+            m_table.addTableListener(this);
+            m_valid = false;
+        } else {
+            m_table.removeTableListener(this);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Computation
+
+    private void init() {
+        int k = m_groupBy.length;
+        m_gcols = new Column[k];
+        m_gidx = new int[k];
+        m_coders = new Coder[k];
+        m_keys = new LongIntMap[k];
+        for ( int j=0; j<k; ++j ) {
+            m_gidx[j] = m_table.getColumnNumber(m_groupBy[j]);
+            if ( m_gidx[j] < 0 )
+                throw new IllegalStateException(
+                    "Unknown data field: "+m_groupBy[j]);
+            m_gcols[j] = m_table.getColumn(m_gidx[j]);
+            m_coders[j] = new Coder(m_gcols[j].getColumnType());
+            if ( j > 0 ) m_keys[j] = new LongIntMap();
+        }
+
+        m_ngroups = 0;
+        m_groupCodes = new int[k][16];
+        m_counts = new int[16];
+        m_resultRows = new int[16];
+        m_rowGroups = new int[m_table.getMaximumRow()+1];
+        Arrays.fill(m_rowGroups, -1);
+
+        for ( int i=0; i<m_aggregates.size(); ++i )
+            ((Aggregate)m_aggregates.get(i)).init();
+    }
+
+    /**
+     * Compute all aggregates from scratch.
+     */
+    private void compute() {
+        init();
+
+        // collect the table rows
+        int[] rows = new int[m_table.getRowCount()];
+        int n = 0;
+        for ( IntIterator iter = m_table.rows(); iter.hasNext(); )
+            rows[n++] = iter.nextInt();
+
+        // assign rows to groups
+        int[] codes = new int[m_groupBy.length];
+        for ( int i=0; i<n; ++i ) {
+            int r = rows[i], g = group(r, codes);
+            m_rowGroups[r] = g;
+            ++m_counts[g];
+        }
+
+        // compute the aggregates
+        for ( int i=0; i<m_aggregates.size(); ++i )
+            ((Aggregate)m_aggregates.get(i)).compute(rows, n);
+
+        // fill the result table
+        if ( m_result == null ) {
+            m_result = createResultTable();
+        } else {
+            m_result.clear();
+        }
+        Arrays.fill(m_resultRows, -1);
+        for ( int g=0; g<m_ngroups; ++g ) {
+            if ( m_counts[g] > 0 ) updateResult(g);
+        }
+        m_valid = true;
+    }
+
+    /**
+     * Recompute the minimum and maximum values of groups whose extreme
+     * values were removed.
+     */
+    private void refresh() {
+        for ( int i=0; i<m_aggregates.size(); ++i )
+            ((Aggregate)m_aggregates.get(i)).refresh();
+    }
+
+    private Table createResultTable() {
+        Table result = new Table();
+        for ( int j=0; j<m_groupBy.length; ++j )
+            result.addColumn(m_groupBy[j], m_gcols[j].getColumnType());
+        for ( int i=0; i<m_aggregates.size(); ++i ) {
+            Aggregate a = (Aggregate)m_aggregates.get(i);
+            Class type = ( a.type==COUNT || a.type==DISTINCT
+                           ? int.class : double.class );
+            result.addColumn(a.name, type);
+        }
+        return result;
+    }
+
+    /**
+     * Write the group-by values and aggregates of a group to its row of
+     * the result table, adding the row if needed.
+     */
+    private void updateResult(int g) {
+        int row = m_resultRows[g], k = m_groupBy.length;
+        if ( row < 0 ) {
+            row = m_resultRows[g] = m_result.addRow();
+            for ( int j=0; j<k; ++j )
+                m_result.set(row, j, m_coders[j].value(m_groupCodes[j][g]));
+        }
+        for ( int i=0; i<m_aggregates.size(); ++i )
+            ((Aggregate)m_aggregates.get(i)).update(g, row, k+i);
+    }
+
+    /**
+     * Get the column row for the given table row and column.
+     */
+    private int columnRow(int row, int col) {
+        return ( m_mapped ? m_table.getColumnRow(row, col) : row );
+    }
+
+    /**
+     * Get the group for a table row, creating a new group if needed.
+     * @param r the table row
+     * @param codes array in which to store the group-by value codes
+     * @return the group number
+     */
+    private int group(int r, int[] codes) {
+        int k = m_groupBy.length;
+        if ( k == 0 ) {
+            if ( m_ngroups == 0 ) newGroup(codes);
+            return 0;
+        }
+        int g = codes[0] = m_coders[0].code(m_gcols[0], columnRow(r,m_gidx[0]));
+        for ( int j=1; j<k; ++j ) {
+            int c = codes[j]
+                  = m_coders[j].code(m_gcols[j], columnRow(r, m_gidx[j]));
+            long key = (((long)g) << 31) | c;
+            g = m_keys[j].get(key);
+            if ( g < 0 ) {
+                g = m_keys[j].size();
+                m_keys[j].put(key, g);
+            }
+        }
+        if ( g == m_ngroups ) newGroup(codes);
+        return g;
+    }
+
+    private void newGroup(int[] codes) {
+        int g = m_ngroups++;
+        if ( g == m_counts.length ) {
+            int capacity = 2*g;
+            for ( int j=0; j<m_groupCodes.length; ++j )
+                m_groupCodes[j] = grow(m_groupCodes[j], capacity);
+            m_counts = grow(m_counts, capacity);
+            m_resultRows = grow(m_resultRows, capacity);
+        }
+        for ( int j=0; j<codes.length; ++j )
+            m_groupCodes[j][g] = codes[j];
+        m_counts[g] = 0;
+        m_resultRows[g] = -1;
+        for ( int i=0; i<m_aggregates.size(); ++i )
+            ((Aggregate)m_aggregates.get(i)).newGroup(g);
+    }
+
+    private static int[] grow(int[] a, int capacity) {
+        int[] b = new int[capacity];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    private static double[] grow(double[] a, int capacity) {
+        double[] b = new double[capacity];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    private static boolean[] grow(boolean[] a, int capacity) {
+        boolean[] b = new boolean[capacity];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    // ------------------------------------------------------------------------
+    // Incremental Updates
+
+    /**
+     * @see prefuse.data.event.TableListener#tableChanged(prefuse.data.Table, int, int, int, int)
+     */
+    public void tableChanged(Table t, int start, int end, int col, int type) {
+        if ( !m_valid ) return;
+
+        if ( col != EventConstants.ALL_COLUMNS ) {
+            if ( type != EventConstants.UPDATE ) {
+                // a column was added or removed, start over when asked
+                m_valid = false;
+                return;
+            } else if ( !isReferenced(t.getColumn(col)) ) {
+                return;
+            }
+        }
+
+        int[] codes = new int[m_groupBy.length];
+        for ( int r=start; r<=end; ++r ) {
+            switch ( type ) {
+            case EventConstants.INSERT:
+                addRow(r, codes);
+                break;
+            case EventConstants.DELETE:
+                removeRow(r);
+                break;
+            case EventConstants.UPDATE:
+                if ( r < m_rowGroups.length && m_rowGroups[r] >= 0 ) {
+                    removeRow(r);
+                    addRow(r, codes);
+                }
+                break;
+            }
+        }
+    }
+
+    private boolean isReferenced(Column c) {
+        for ( int j=0; j<m_gcols.length; ++j )
+            if ( m_gcols[j] == c ) return true;
+        for ( int i=0; i<m_aggregates.size(); ++i )
+            if ( ((Aggregate)m_aggregates.get(i)).col == c ) return true;
+        return false;
+    }
+
+    private void addRow(int r, int[] codes) {
+        if ( !m_table.isValidRow(r) ) return;
+        if ( r >= m_rowGroups.length ) {
+            int capacity = Math.max(2*m_rowGroups.length,
+                                    m_table.getMaximumRow()+1);
+            int[] rg = new int[capacity];
+            Arrays.fill(rg, -1);
+            System.arraycopy(m_rowGroups, 0, rg, 0, m_rowGroups.length);
+            m_rowGroups = rg;
+        }
+        int g = group(r, codes);
+        m_rowGroups[r] = g;
+        ++m_counts[g];
+        for ( int i=0; i<m_aggregates.size(); ++i )
+            ((Aggregate)m_aggregates.get(i)).add(r, g);
+        updateResult(g);
+    }
+
+    private void removeRow(int r) {
+        int g = ( r < m_rowGroups.length ? m_rowGroups[r] : -1 );
+        if ( g < 0 ) return;
+        m_rowGroups[r] = -1;
+        --m_counts[g];
+        for ( int i=0; i<m_aggregates.size(); ++i )
+            ((Aggregate)m_aggregates.get(i)).remove(r, g);
+        if ( m_counts[g] > 0 ) {
+            updateResult(g);
+        } else {
+            m_result.removeRow(m_resultRows[g]);
+            m_resultRows[g] = -1;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Aggregate
+
+    /**
+     * A single aggregate, with its per-group values.
+     */
+    private class Aggregate {
+        final int type;
+        final String field;
+        final String name;
+
+        Column col;
+        int idx;
+
+        // per group values
+        double[] sum;
+        double[] ext;      // minimum or maximum
+        boolean[] dirty;   // minimum or maximum needs recomputation
+        int[] distinct;
+
+        // distinct values, and the row count of each (group, value) pair
+        Coder coder;
+        LongIntMap pairs;
+
+        // per row values, used to retract rows from their groups
+        double[] rowValues;
+        int[] rowCodes;
+
+        Aggregate(int type, String field, String name) {
+            this.type = type;
+            this.field = field;
+            this.name = name;
+        }
+
+        void init() {
+            if ( type == COUNT ) return;
+            idx = m_table.getColumnNumber(field);
+            if ( idx < 0 )
+                throw new IllegalStateException("Unknown data field: "+field);
+            col = m_table.getColumn(idx);
+
+            int nrows = m_rowGroups.length;
+            if ( type == DISTINCT ) {
+                coder = new Coder(col.getColumnType());
+                pairs = new LongIntMap();
+                distinct = new int[m_counts.length];
+                rowCodes = new int[nrows];
+            } else {
+                sum = new double[m_counts.length];
+                ext = new double[m_counts.length];
+                dirty = new boolean[m_counts.length];
+                rowValues = new double[nrows];
+            }
+        }
+
+        void newGroup(int g) {
+            if ( type == COUNT ) return;
+            if ( type == DISTINCT ) {
+                if ( g == distinct.length )
+                    distinct = grow(distinct, 2*g);
+                distinct[g] = 0;
+            } else {
+                if ( g == sum.length ) {
+                    sum = grow(sum, 2*g);
+                    ext = grow(ext, 2*g);
+                    dirty = grow(dirty, 2*g);
+                }
+                clear(g);
+            }
+        }
+
+        private void clear(int g) {
+            sum[g] = 0;
+            ext[g] = ( type == MIN ? Double.POSITIVE_INFINITY
+                                   : Double.NEGATIVE_INFINITY );
+            dirty[g] = false;
+        }
+
+        // -- full computation ------------------------------------------------
+
+        void compute(int[] rows, int n) {
+            if ( type == COUNT ) {
+                return;
+            } else if ( type == DISTINCT ) {
+                for ( int i=0; i<n; ++i ) {
+                    int r = rows[i];
+                    int c = coder.code(col, columnRow(r, idx));
+                    rowCodes[r] = c;
+                    addPair(m_rowGroups[r], c);
+                }
+                return;
+            }
+
+            int threads = 1;
+            if ( n >= PARALLEL_THRESHOLD && isStored(col) )
+                threads = Math.min(Runtime.getRuntime().availableProcessors(),
+                                   n / (PARALLEL_THRESHOLD/2));
+            if ( threads <= 1 ) {
+                accumulate(rows, 0, n, sum, ext);
+            } else {
+                computeParallel(rows, n, threads);
+            }
+        }
+
+        /**
+         * Accumulate the values of a range of rows into the given group
+         * sum or extreme value arrays, recording the value of each row.
+         */
+        void accumulate(int[] rows, int lo, int hi, double[] s, double[] e) {
+            int[] groups = m_rowGroups;
+            double[] values = rowValues;
+            Column c = col;
+            if ( type == SUM || type == MEAN ) {
+                for ( int i=lo; i<hi; ++i ) {
+                    int r = rows[i];
+                    double v = values[r] = c.getDouble(columnRow(r, idx));
+                    s[groups[r]] += v;
+                }
+            } else if ( type == MIN ) {
+                for ( int i=lo; i<hi; ++i ) {
+                    int r = rows[i], g = groups[r];
+                    double v = values[r] = c.getDouble(columnRow(r, idx));
+                    if ( v < e[g] ) e[g] = v;
+                }
+            } else {
+                for ( int i=lo; i<hi; ++i ) {
+                    int r = rows[i], g = groups[r];
+                    double v = values[r] = c.getDouble(columnRow(r, idx));
+                    if ( v > e[g] ) e[g] = v;
+                }
+            }
+        }
+
+        /**
+         * Accumulate ranges of rows in separate threads, each into its own
+         * arrays of group values, and then merge the results.
+         */
+        private void computeParallel(final int[] rows, int n, int threads) {
+            final double[][] s = new double[threads][];
+            final double[][] e = new double[threads][];
+            final RuntimeException[] error = new RuntimeException[threads];
+            Thread[] workers = new Thread[threads-1];
+            int chunk = (n+threads-1) / threads;
+
+            for ( int t=0; t<threads; ++t ) {
+                if ( type == SUM || type == MEAN ) {
+                    s[t] = new double[m_ngroups];
+                } else {
+                    e[t] = new double[m_ngroups];
+                    Arrays.fill(e[t], type == MIN ? Double.POSITIVE_INFINITY
+                                                  : Double.NEGATIVE_INFINITY);
+                }
+            }
+            for ( int t=0; t<threads-1; ++t ) {
+                final int w = t;
+                final int lo = t*chunk, hi = lo+chunk;
+                workers[t] = new Thread() {
+                    public void run() {
+                        try {
+                            accumulate(rows, lo, hi, s[w], e[w]);
+                        } catch ( RuntimeException ex ) {
+                            error[w] = ex;
+                        }
+                    }
+                };
+                workers[t].start();
+            }
+            accumulate(rows, (threads-1)*chunk, n,
+                       s[threads-1], e[threads-1]);
+
+            boolean interrupted = false;
+            for ( int t=0; t<workers.length; ) {
+                try {
+                    workers[t].join();
+                    ++t;
+                } catch ( InterruptedException ex ) {
+                    interrupted = true;
+                }
+            }
+            if ( interrupted )
+                Thread.currentThread().interrupt();
+
+            for ( int t=0; t<threads; ++t ) {
+                if ( error[t] != null )
+                    throw error[t];
+                for ( int g=0; g<m_ngroups; ++g ) {
+                    if ( type == SUM || type == MEAN ) {
+                        sum[g] += s[t][g];
+                    } else if ( type == MIN ) {
+                        if ( e[t][g] < ext[g] ) ext[g] = e[t][g];
+                    } else {
+                        if ( e[t][g] > ext[g] ) ext[g] = e[t][g];
+                    }
+                }
+            }
+        }
+
+        // -- incremental updates ---------------------------------------------
+
+        void add(int r, int g) {
+            if ( type == COUNT ) {
+                return;
+            } else if ( type == DISTINCT ) {
+                if ( r >= rowCodes.length )
+                    rowCodes = grow(rowCodes, m_rowGroups.length);
+                int c = rowCodes[r] = coder.code(col, columnRow(r, idx));
+                addPair(g, c);
+                return;
+            }
+            if ( r >= rowValues.length )
+                rowValues = grow(rowValues, m_rowGroups.length);
+            double v = rowValues[r] = col.getDouble(columnRow(r, idx));
+            sum[g] += v;
+            if ( type == MIN && v < ext[g] || type == MAX && v > ext[g] )
+                ext[g] = v;
+        }
+
+        void remove(int r, int g) {
+            if ( type == COUNT ) {
+                return;
+            } else if ( type == DISTINCT ) {
+                long key = (((long)g) << 31) | rowCodes[r];
+                int count = pairs.get(key) - 1;
+                pairs.put(key, count);
+                if ( count == 0 ) --distinct[g];
+                return;
+            }
+            if ( m_counts[g] == 0 ) {
+                clear(g);
+                return;
+            }
+            double v = rowValues[r];
+            sum[g] -= v;
+            if ( (type == MIN || type == MAX) && v == ext[g] )
+                dirty[g] = true;
+        }
+
+        private void addPair(int g, int c) {
+            long key = (((long)g) << 31) | c;
+            int count = pairs.get(key);
+            if ( count <= 0 ) {
+                ++distinct[g];
+                count = 0;
+            }
+            pairs.put(key, count+1);
+        }
+
+        /**
+         * Recompute the extreme values of dirty groups, in a single pass
+         * over the rows of the table.
+         */
+        void refresh() {
+            if ( type != MIN && type != MAX ) return;
+            boolean any = false;
+            for ( int g=0; g<m_ngroups; ++g ) {
+                if ( dirty[g] ) {
+                    ext[g] = ( type == MIN ? Double.POSITIVE_INFINITY
+                                           : Double.NEGATIVE_INFINITY );
+                    any = true;
+                }
+            }
+            if ( !any ) return;
+
+            for ( int r=0; r<m_rowGroups.length; ++r ) {
+                int g = m_rowGroups[r];
+                if ( g < 0 || !dirty[g] ) continue;
+                double v = rowValues[r];
+                if ( type == MIN && v < ext[g] || type == MAX && v > ext[g] )
+                    ext[g] = v;
+            }
+            for ( int g=0; g<m_ngroups; ++g ) {
+                if ( dirty[g] ) {
+                    dirty[g] = false;
+                    if ( m_resultRows[g] >= 0 )
+                        updateResult(g);
+                }
+            }
+        }
+
+        // -- results ---------------------------------------------------------
+
+        void update(int g, int row, int rcol) {
+            switch ( type ) {
+            case COUNT:
+                m_result.setInt(row, rcol, m_counts[g]);
+                break;
+            case SUM:
+                m_result.setDouble(row, rcol, sum[g]);
+                break;
+            case MEAN:
+                m_result.setDouble(row, rcol, sum[g] / m_counts[g]);
+                break;
+            case MIN:
+            case MAX:
+                m_result.setDouble(row, rcol, ext[g]);
+                break;
+            case DISTINCT:
+                m_result.setInt(row, rcol, distinct[g]);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Indicates if a column simply stores its values in an array, so that
+     * it may be read by multiple threads at once.
+     */
+    private static boolean isStored(Column col) {
+        Class c = col.getClass();
+        return c == IntColumn.class || c == LongColumn.class
+            || c == FloatColumn.class || c == DoubleColumn.class;
+    }
+
+    // ------------------------------------------------------------------------
+    // Value Codes
+
+    /**
+     * Maps the values of a column to dense integer codes, in the order the
+     * values are first encountered. Primitive values are mapped using their
+     * bits, all other values using their equals and hashCode methods.
+     */
+    private static final class Coder {
+        private final Class type;
+        private LongIntMap prims;
+        private HashMap objects;
+        private ArrayList values = new ArrayList();
+
+        Coder(Class type) {
+            this.type = type;
+            if ( type == int.class || type == long.class ||
+                 type == float.class || type == double.class ||
+                 type == boolean.class )
+            {
+                prims = new LongIntMap();
+            } else {
+                objects = new HashMap();
+            }
+        }
+
+        int code(Column c, int row) {
+            if ( prims == null ) {
+                Object v = c.get(row);
+                Integer code = (Integer)objects.get(v);
+                if ( code == null ) {
+                    code = new Integer(values.size());
+                    objects.put(v, code);
+                    values.add(v);
+                }
+                return code.intValue();
+            }
+
+            long key;
+            if ( type == int.class ) {
+                key = c.getInt(row);
+            } else if ( type == long.class ) {
+                key = c.getLong(row);
+            } else if ( type == float.class ) {
+                key = Float.floatToIntBits(c.getFloat(row));
+            } else if ( type == double.class ) {
+                key = Double.doubleToLongBits(c.getDouble(row));
+            } else {
+                key = c.getBoolean(row) ? 1 : 0;
+            }
+            int code = prims.get(key);
+            if ( code < 0 ) {
+                code = values.size();
+                prims.put(key, code);
+                values.add(c.get(row));
+            }
+            return code;
+        }
+
+        Object value(int code) {
+            return values.get(code);
+        }
+    }
+
+    /**
+     * Open addressing hash table mapping long keys to non-negative int
+     * values.
+     */
+    private static final class LongIntMap {
+        private long[] keys = new long[16];
+        private int[] vals = new int[16];
+        private int size;
+
+        LongIntMap() {
+            Arrays.fill(vals, -1);
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** Get the value for a key, or -1 if the key is not present. */
+        int get(long key) {
+            return vals[slot(key)];
+        }
+
+        void put(long key, int val) {
+            int i = slot(key);
+            if ( vals[i] < 0 ) {
+                keys[i] = key;
+                vals[i] = val;
+                if ( 2*(++size) > keys.length )
+                    rehash();
+            } else {
+                vals[i] = val;
+            }
+        }
+
+        private int slot(long key) {
+            int mask = keys.length-1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int i = (int)(h ^ (h >>> 32)) & mask;
+            while ( vals[i] >= 0 && keys[i] != key )
+                i = (i+1) & mask;
+            return i;
+        }
+
+        private void rehash() {
+            long[] k = keys;
+            int[] v = vals;
+            keys = new long[2*k.length];
+            vals = new int[2*k.length];
+            Arrays.fill(vals, -1);
+            for ( int i=0; i<k.length; ++i ) {
+                if ( v[i] < 0 ) continue;
+                int j = slot(k[i]);
+                keys[j] = k[i];
+                vals[j] = v[i];
+            }
+        }
+    }
+
+} // end of class Aggregation
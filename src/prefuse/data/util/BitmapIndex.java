@@ -0,0 +1,596 @@
+package prefuse.data.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.event.ColumnListener;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+import prefuse.util.collections.DefaultLiteralComparator;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * <p>Index instance that uses one bit vector per distinct data value to
+ * provide an index over a column of data. Where a {@link TreeIndex} uses a
+ * tree node for each row, a bitmap index uses a single bit per row for
+ * each distinct value, making it much more compact for columns with few
+ * distinct values, such as boolean columns or categorical data. The row
+ * sets of a bitmap index can also be combined using fast bitwise
+ * operations, which the query planner of the {@link FilterIteratorFactory}
+ * uses to intersect and unite the results of multiple indexed
+ * clauses.</p>
+ *
+ * <p>As the size of a bitmap index grows with the number of distinct
+ * values times the number of rows, bitmap indices should not be used for
+ * columns with many distinct values. Bitmap indices are created using
+ * the {@link prefuse.data.Table#index(String, boolean)} method.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class BitmapIndex implements Index, ColumnListener, TableListener {
+
+    private static final int INT     = 0;
+    private static final int LONG    = 1;
+    private static final int FLOAT   = 2;
+    private static final int DOUBLE  = 3;
+    private static final int BOOLEAN = 4;
+    private static final int OBJECT  = 5;
+
+    protected Table      m_table;
+    protected RowManager m_rows;
+    protected Column     m_col;
+    protected Comparator m_cmp;
+    protected TreeMap    m_index;
+    protected int        m_size;
+    protected boolean    m_reindex;
+    protected int        m_colidx;
+
+    private int m_ktype;
+
+    /**
+     * Create a new BitmapIndex.
+     * @param t the Table containing the data column to index
+     * @param rows the RowManager of the Table
+     * @param col the Column instance to index
+     * @param cmp the Comparator to use to sort data values, or null to
+     * use the default comparator
+     */
+    public BitmapIndex(Table t, RowManager rows, Column col, Comparator cmp) {
+        m_table = t;
+        m_rows = rows;
+        m_col = col;
+        m_cmp = ( cmp == null ? DefaultLiteralComparator.getInstance() : cmp );
+        m_index = new TreeMap(m_cmp);
+
+        Class type = col.getColumnType();
+        if ( type == int.class || type == byte.class ) {
+            m_ktype = INT;
+        } else if ( type == long.class || Date.class.isAssignableFrom(type) ) {
+            m_ktype = LONG;
+        } else if ( type == float.class ) {
+            m_ktype = FLOAT;
+        } else if ( type == double.class ) {
+            m_ktype = DOUBLE;
+        } else if ( type == boolean.class ) {
+            m_ktype = BOOLEAN;
+        } else {
+            m_ktype = OBJECT;
+        }
+        index();
+
+        m_col.addColumnListener(this);
+        m_table.addTableListener(this);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#dispose()
+     */
+    public void dispose() {
+        m_col.removeColumnListener(this);
+        m_table.removeTableListener(this);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#getComparator()
+     */
+    public Comparator getComparator() {
+        return m_cmp;
+    }
+
+    /**
+     * @see prefuse.data.util.Index#size()
+     */
+    public int size() {
+        validate();
+        return m_size;
+    }
+
+    private int getColumnIndex() {
+        if ( !(m_table.getColumn(m_colidx) == m_col) ) {
+            m_colidx = m_table.getColumnNumber(m_col);
+        }
+        return m_colidx;
+    }
+
+    // ------------------------------------------------------------------------
+    // Index Update Methods
+
+    /**
+     * @see prefuse.data.util.Index#index()
+     */
+    public void index() {
+        m_index.clear();
+        m_size = 0;
+
+        // iterate over all valid values, adding them to the index
+        int idx = getColumnIndex();
+        m_colidx = idx;
+        IntIterator rows = m_rows.rows();
+        while ( rows.hasNext() ) {
+            int r = rows.nextInt();
+            add(getKey(m_table.getColumnRow(r, idx)), r);
+        }
+
+        m_reindex = false;
+    }
+
+    private void validate() {
+        if ( m_reindex ) index();
+    }
+
+    /**
+     * Get the index key for the value at the given column row.
+     */
+    private Object getKey(int crow) {
+        switch ( m_ktype ) {
+        case INT:
+            return new Integer(m_col.getInt(crow));
+        case LONG:
+            return new Long(m_col.getLong(crow));
+        case FLOAT:
+            return new Float(m_col.getFloat(crow));
+        case DOUBLE:
+            return new Double(m_col.getDouble(crow));
+        case BOOLEAN:
+            return m_col.getBoolean(crow) ? Boolean.TRUE : Boolean.FALSE;
+        default:
+            return m_col.get(crow);
+        }
+    }
+
+    /**
+     * Convert a lookup value to the key type of this index.
+     */
+    private Object toKey(Object val) {
+        if ( val instanceof Date ) {
+            val = new Long(((Date)val).getTime());
+        }
+        if ( !(val instanceof Number) )
+            return val;
+
+        Number n = (Number)val;
+        switch ( m_ktype ) {
+        case INT:
+            return ( n instanceof Integer ? n : new Integer(n.intValue()) );
+        case LONG:
+            return ( n instanceof Long ? n : new Long(n.longValue()) );
+        case FLOAT:
+            return ( n instanceof Float ? n : new Float(n.floatValue()) );
+        case DOUBLE:
+            return ( n instanceof Double ? n : new Double(n.doubleValue()) );
+        default:
+            return val;
+        }
+    }
+
+    private void add(Object key, int row) {
+        BitSet bits = (BitSet)m_index.get(key);
+        if ( bits == null ) {
+            bits = new BitSet();
+            m_index.put(key, bits);
+        }
+        bits.set(row);
+        ++m_size;
+    }
+
+    private void remove(Object key, int row) {
+        BitSet bits = (BitSet)m_index.get(key);
+        if ( bits == null || !bits.get(row) )
+            return;
+        bits.clear(row);
+        --m_size;
+        if ( bits.isEmpty() )
+            m_index.remove(key);
+    }
+
+    private void update(Object prev, int idx) {
+        if ( m_reindex ) return;
+        int row = m_rows.getTableRow(idx, getColumnIndex());
+        if ( row < 0 ) return; // invalid row value
+        remove(prev, row);
+        add(getKey(idx), row);
+    }
+
+    // ------------------------------------------------------------------------
+    // Listener Methods
+
+    /**
+     * @see prefuse.data.event.TableListener#tableChanged(prefuse.data.Table, int, int, int, int)
+     */
+    public void tableChanged(Table t, int start, int end, int col, int type) {
+        if ( type == EventConstants.UPDATE || t != m_table
+              || col != EventConstants.ALL_COLUMNS || m_reindex )
+            return;
+
+        boolean insert = (type==EventConstants.INSERT);
+        int idx = getColumnIndex();
+        for ( int r=start; r<=end; ++r ) {
+            // make sure we access the right column value
+            Object key = getKey(m_rows.getColumnRow(r, idx));
+            if ( insert )
+                add(key, r);
+            else
+                remove(key, r);
+        }
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, int, int)
+     */
+    public void columnChanged(Column src, int type, int start, int end) {
+        m_reindex = true;
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, boolean)
+     */
+    public void columnChanged(Column src, int idx, boolean prev) {
+        update(prev ? Boolean.TRUE : Boolean.FALSE, idx);
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, int)
+     */
+    public void columnChanged(Column src, int idx, int prev) {
+        update(new Integer(prev), idx);
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, long)
+     */
+    public void columnChanged(Column src, int idx, long prev) {
+        update(new Long(prev), idx);
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, float)
+     */
+    public void columnChanged(Column src, int idx, float prev) {
+        update(new Float(prev), idx);
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, double)
+     */
+    public void columnChanged(Column src, int idx, double prev) {
+        update(new Double(prev), idx);
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, java.lang.Object)
+     */
+    public void columnChanged(Column src, int idx, Object prev) {
+        update(toKey(prev), idx);
+    }
+
+    // ------------------------------------------------------------------------
+    // Retrieval Methods
+
+    /**
+     * @see prefuse.data.util.Index#minimum()
+     */
+    public int minimum() {
+        validate();
+        if ( m_size == 0 ) return Integer.MIN_VALUE;
+        return ((BitSet)m_index.get(m_index.firstKey())).nextSetBit(0);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#maximum()
+     */
+    public int maximum() {
+        validate();
+        if ( m_size == 0 ) return Integer.MIN_VALUE;
+        return ((BitSet)m_index.get(m_index.lastKey())).length()-1;
+    }
+
+    /**
+     * @see prefuse.data.util.Index#median()
+     */
+    public int median() {
+        validate();
+        if ( m_size == 0 ) return Integer.MIN_VALUE;
+        int med = m_size/2;
+        for ( Iterator iter = m_index.values().iterator(); ; ) {
+            BitSet bits = (BitSet)iter.next();
+            int card = bits.cardinality();
+            if ( med < card ) {
+                int r = bits.nextSetBit(0);
+                for ( ; med > 0; --med )
+                    r = bits.nextSetBit(r+1);
+                return r;
+            }
+            med -= card;
+        }
+    }
+
+    /**
+     * @see prefuse.data.util.Index#uniqueCount()
+     */
+    public int uniqueCount() {
+        validate();
+        return m_index.size();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get a bit vector of the rows with values in the given range. The
+     * returned bit vector is a new instance that may be freely modified.
+     * @param lo the minimum range value, or null for no minimum
+     * @param hi the maximum range value, or null for no maximum
+     * @param type the type of range, only the inclusive and exclusive
+     * settings of the type are used
+     * @return a bit vector with the bits of the matching rows set
+     */
+    public BitSet getBitmap(Object lo, Object hi, int type) {
+        BitSet[] bits = range(lo, hi, type);
+        BitSet result = new BitSet();
+        for ( int i=0; i<bits.length; ++i )
+            result.or(bits[i]);
+        return result;
+    }
+
+    /**
+     * Get the number of rows with values in the given range.
+     * @param lo the minimum range value, or null for no minimum
+     * @param hi the maximum range value, or null for no maximum
+     * @param type the type of range, only the inclusive and exclusive
+     * settings of the type are used
+     * @return the number of matching rows
+     */
+    public int count(Object lo, Object hi, int type) {
+        BitSet[] bits = range(lo, hi, type);
+        int count = 0;
+        for ( int i=0; i<bits.length; ++i )
+            count += bits[i].cardinality();
+        return count;
+    }
+
+    /**
+     * Get the bit vectors of the values in the given range, in ascending
+     * order of their values.
+     */
+    private BitSet[] range(Object lo, Object hi, int type) {
+        validate();
+        boolean linc = (type & Index.TYPE_LEFT_INCLUSIVE) > 0;
+        boolean hinc = (type & Index.TYPE_RIGHT_INCLUSIVE) > 0;
+        lo = toKey(lo);
+        hi = toKey(hi);
+
+        ArrayList list = new ArrayList();
+        if ( lo != null && hi != null && m_cmp.compare(lo, hi) > 0 )
+            return new BitSet[0];
+
+        Map map = ( lo == null ? m_index : m_index.tailMap(lo) );
+        for ( Iterator iter = map.entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry e = (Map.Entry)iter.next();
+            Object key = e.getKey();
+            if ( lo != null && !linc && m_cmp.compare(key, lo) == 0 )
+                continue;
+            if ( hi != null ) {
+                int c = m_cmp.compare(key, hi);
+                if ( c > 0 || (c == 0 && !hinc) ) break;
+            }
+            list.add(e.getValue());
+        }
+        return (BitSet[])list.toArray(new BitSet[list.size()]);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#allRows(int)
+     */
+    public IntIterator allRows(int type) {
+        return rows(null, null, type | Index.TYPE_LEFT_INCLUSIVE
+                                     | Index.TYPE_RIGHT_INCLUSIVE);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(java.lang.Object, java.lang.Object, int)
+     */
+    public IntIterator rows(Object lo, Object hi, int type) {
+        boolean reverse = (type & Index.TYPE_DESCENDING) > 0;
+        return new BitmapIterator(range(lo, hi, type), reverse);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(int, int, int)
+     */
+    public IntIterator rows(int lo, int hi, int type) {
+        return rows(new Integer(lo), new Integer(hi), type);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(long, long, int)
+     */
+    public IntIterator rows(long lo, long hi, int type) {
+        return rows(new Long(lo), new Long(hi), type);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(float, float, int)
+     */
+    public IntIterator rows(float lo, float hi, int type) {
+        return rows(new Float(lo), new Float(hi), type);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(double, double, int)
+     */
+    public IntIterator rows(double lo, double hi, int type) {
+        return rows(new Double(lo), new Double(hi), type);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.data.util.Index#rows(int)
+     */
+    public IntIterator rows(int val) {
+        return rows(val, val, Index.TYPE_AII);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(long)
+     */
+    public IntIterator rows(long val) {
+        return rows(val, val, Index.TYPE_AII);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(float)
+     */
+    public IntIterator rows(float val) {
+        return rows(val, val, Index.TYPE_AII);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(double)
+     */
+    public IntIterator rows(double val) {
+        return rows(val, val, Index.TYPE_AII);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(boolean)
+     */
+    public IntIterator rows(boolean val) {
+        Boolean b = val ? Boolean.TRUE : Boolean.FALSE;
+        return rows(b, b, Index.TYPE_AII);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(java.lang.Object)
+     */
+    public IntIterator rows(Object val) {
+        return rows(val, val, Index.TYPE_AII);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.data.util.Index#get(double)
+     */
+    public int get(double x) {
+        return get(new Double(x));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#get(float)
+     */
+    public int get(float x) {
+        return get(new Float(x));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#get(int)
+     */
+    public int get(int x) {
+        return get(new Integer(x));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#get(long)
+     */
+    public int get(long x) {
+        return get(new Long(x));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#get(java.lang.Object)
+     */
+    public int get(Object x) {
+        validate();
+        BitSet bits = (BitSet)m_index.get(toKey(x));
+        return ( bits == null ? Integer.MIN_VALUE : bits.nextSetBit(0) );
+    }
+
+    // ------------------------------------------------------------------------
+    // BitmapIterator
+
+    /**
+     * Iterates over the rows of a sequence of bit vectors.
+     */
+    private static class BitmapIterator extends IntIterator {
+        private final BitSet[] m_bits;
+        private final boolean m_reverse;
+        private int m_cur;
+        private int[] m_desc;
+        private int m_pos;
+        private int m_next;
+
+        BitmapIterator(BitSet[] bits, boolean reverse) {
+            m_bits = bits;
+            m_reverse = reverse;
+            m_cur = reverse ? bits.length : -1;
+            m_next = -1;
+            advance();
+        }
+        private void advance() {
+            if ( !m_reverse ) {
+                if ( m_cur >= 0 && m_next >= 0 )
+                    m_next = m_bits[m_cur].nextSetBit(m_next+1);
+                while ( m_next < 0 && ++m_cur < m_bits.length )
+                    m_next = m_bits[m_cur].nextSetBit(0);
+            } else {
+                while ( m_desc == null || m_pos < 0 ) {
+                    if ( --m_cur < 0 ) {
+                        m_next = -1;
+                        return;
+                    }
+                    BitSet bits = m_bits[m_cur];
+                    m_desc = new int[bits.cardinality()];
+                    for ( int i=0, r=bits.nextSetBit(0); r>=0;
+                          r=bits.nextSetBit(r+1) )
+                    {
+                        m_desc[i++] = r;
+                    }
+                    m_pos = m_desc.length-1;
+                }
+                m_next = m_desc[m_pos--];
+            }
+        }
+        public boolean hasNext() {
+            return m_next >= 0;
+        }
+        public int nextInt() {
+            if ( m_next < 0 )
+                throw new NoSuchElementException();
+            int retval = m_next;
+            advance();
+            return retval;
+        }
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+} // end of class BitmapIndex
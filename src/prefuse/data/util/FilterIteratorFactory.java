@@ -1,6 +1,7 @@
 package prefuse.data.util;
 
 import java.util.Comparator;
+import java.util.Date;
 import java.util.Iterator;
 
 import prefuse.data.Table;
@@ -9,31 +10,53 @@ import prefuse.data.expression.ColumnExpression;
 import prefuse.data.expression.ComparisonPredicate;
 import prefuse.data.expression.Expression;
 import prefuse.data.expression.ExpressionAnalyzer;
+import prefuse.data.expression.ExpressionCompiler;
 import prefuse.data.expression.NotPredicate;
 import prefuse.data.expression.OrPredicate;
 import prefuse.data.expression.Predicate;
 import prefuse.data.expression.RangePredicate;
 import prefuse.data.tuple.TupleSet;
 import prefuse.util.PrefuseConfig;
-import prefuse.util.collections.CompositeIntIterator;
+import prefuse.util.TypeLib;
 import prefuse.util.collections.IntIterator;
 
 /**
- * Factory class that creates optimized filter iterators. When possible,
+ * <p>Factory class that creates optimized filter iterators. When possible,
  * this factory will attempt to create an optimized query plan by using
- * available indexes, in many incrasing performance by only visiting
- * the tuples which will pass the filter condition.
- * 
+ * available indexes, in many cases increasing performance by only visiting
+ * the tuples which will pass the filter condition.</p>
+ *
+ * <p>Query plans are chosen by estimated cost. The number of rows matching
+ * an indexed clause is estimated from the statistics of the index: its
+ * size, number of unique values, and the minimum and maximum values, with
+ * values assumed to be evenly spread between the minimum and maximum. For
+ * conjunctions, the most selective indexed clause drives the query, further
+ * indexed clauses are intersected with it as bitmaps as long as that is
+ * cheaper than testing them row by row, and the remaining clauses are
+ * evaluated for each candidate row. Disjunctions are answered by uniting
+ * the rows of indexed clauses. If no plan is cheaper than scanning the
+ * table, the table is scanned. {@link BitmapIndex Bitmap indices} provide
+ * exact row counts and bitmaps that are combined directly using bitwise
+ * operations. The plan chosen for a given predicate can be inspected
+ * using the {@link #explain(Table, Predicate)} method.</p>
+ *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class FilterIteratorFactory {
 
     private static final int OPTIMIZATION_THRESHOLD
         = PrefuseConfig.getInt("data.filter.optimizeThreshold");
-    
-    // we can stash our query plan generation and optimization here to deal 
+
+    /** Estimated cost of retrieving a row from an index, relative to
+     *  evaluating a predicate for a row during a table scan. */
+    private static final double INDEX_ROW_COST = 0.5;
+    /** Default selectivity of range conditions that can not be estimated
+     *  from the minimum and maximum values of an index. */
+    private static final double RANGE_SELECTIVITY = 1.0/3;
+
+    // we can stash our query plan generation and optimization here to deal
     // with it all in one spot, and keep the rest of the classes clean
-    
+
     /**
      * Get a filtered iterator over the tuples in the given set,
      * filtered by the given predicate.
@@ -45,24 +68,24 @@ public class FilterIteratorFactory {
         // no predicate means no filtering
         if ( p == null )
             return ts.tuples();
-        
+
         // attempt to generate an optimized query plan
         Iterator iter = null;
         if ( ts instanceof Table ) {
             Table t = (Table)ts;
-            IntIterator ii = getOptimizedIterator(t,p);
-            if ( ii != null )
-                iter = t.tuples(ii);
+            QueryPlan plan = explain(t, p);
+            if ( plan.getType() != QueryPlan.SCAN || isCompilable(t) )
+                iter = t.tuples(plan.rows());
         }
-        
+
         // optimization fails, scan the entire table
         if ( iter == null ) {
             iter = new FilterIterator(ts.tuples(), p);
         }
-        
+
         return iter;
     }
-    
+
     /**
      * Get a filtered iterator over the rows in the given table,
      * filtered by the given predicate.
@@ -71,17 +94,39 @@ public class FilterIteratorFactory {
      * @return a filtered iterator over the table rows
      */
     public static IntIterator rows(Table t, Predicate p) {
-        // attempt to generate an optimized query plan
-        IntIterator iter = null;
-        iter = getOptimizedIterator(t, p);
-        
-        // optimization fails, scan the entire table
-        if ( iter == null ) {
-            iter = new FilterRowIterator(t.rows(), t, p);
-        }
-        return iter;
+        return explain(t, p).rows();
+    }
+
+    /**
+     * Get the query plan used to filter the rows of the given table by
+     * the given predicate. If no indexes can be used to answer the query
+     * more cheaply, the returned plan is a full table {@link QueryPlan#SCAN}.
+     * @param t the Table to filter
+     * @param p the filter predicate
+     * @return the query plan for the predicate
+     */
+    public static QueryPlan explain(Table t, Predicate p) {
+        QueryPlan scan = new QueryPlan.Scan(t, p);
+        if ( t.getRowCount() < OPTIMIZATION_THRESHOLD )
+            return scan; // avoid overhead for small tables
+
+        QueryPlan plan = getPlan(t, p);
+        return ( plan == null || plan.getCost() >= scan.getCost() )
+                ? scan : plan;
     }
-    
+
+    /**
+     * Indicates if predicates should be compiled before filtering the
+     * given table.
+     * @param t the Table to filter
+     * @return true if predicates should be compiled, false otherwise
+     * @see prefuse.data.expression.ExpressionCompiler#isEnabled()
+     */
+    protected static boolean isCompilable(Table t) {
+        return ExpressionCompiler.isEnabled() &&
+               t.getRowCount() >= OPTIMIZATION_THRESHOLD;
+    }
+
     /**
      * Get an optimized iterator over the rows of a table, if possible.
      * @param t the Table to iterator over
@@ -89,121 +134,214 @@ public class FilterIteratorFactory {
      * @return an optimized iterator, or null if no optimization was found
      */
     protected static IntIterator getOptimizedIterator(Table t, Predicate p) {
-        if ( t.getRowCount() < OPTIMIZATION_THRESHOLD ) 
-            return null; // avoid overhead for small tables
-        
+        QueryPlan plan = explain(t, p);
+        return ( plan.getType() == QueryPlan.SCAN ? null : plan.rows() );
+    }
+
+    protected static IntIterator getColumnIterator(
+            Table t, String field, boolean val)
+    {
+        return rows(getColumnPlan(t, field, val, null));
+    }
+
+    protected static IntIterator getOrIterator(Table t, OrPredicate op) {
+        return rows(getOrPlan(t, op));
+    }
+
+    protected static IntIterator getAndIterator(Table t, AndPredicate ap) {
+        return rows(getAndPlan(t, ap));
+    }
+
+    protected static IntIterator getComparisonIterator(Table t,
+                                           ComparisonPredicate cp)
+    {
+        return rows(getComparisonPlan(t, cp, cp.getOperation(), cp));
+    }
+
+    protected static IntIterator getRangeIterator(Table t, RangePredicate rp) {
+        return rows(getRangePlan(t, rp));
+    }
+
+    private static IntIterator rows(QueryPlan plan) {
+        return ( plan == null ? null : plan.rows() );
+    }
+
+    // ------------------------------------------------------------------------
+    // Query Planning
+
+    /**
+     * Get an index-based query plan for the given predicate.
+     * @param t the Table to filter
+     * @param p the filter predicate
+     * @return a query plan, or null if the predicate can not be answered
+     * using the available indexes
+     */
+    protected static QueryPlan getPlan(Table t, Predicate p) {
         if ( p instanceof ColumnExpression ) {
             // try to optimize a boolean column
-            return getColumnIterator(t,
-                    ((ColumnExpression)p).getColumnName(), true);
+            return getColumnPlan(t,
+                    ((ColumnExpression)p).getColumnName(), true, p);
         }
         else if ( p instanceof NotPredicate )
         {
-            // try to optimize the negation a boolean column
+            // try to optimize the negation of a boolean column
+            // or of a comparison
             Predicate pp = ((NotPredicate)p).getPredicate();
             if ( pp instanceof ColumnExpression ) {
-                return getColumnIterator(t,
-                        ((ColumnExpression)pp).getColumnName(), false);
+                return getColumnPlan(t,
+                        ((ColumnExpression)pp).getColumnName(), false, p);
+            } else if ( pp instanceof ComparisonPredicate ) {
+                ComparisonPredicate cp = (ComparisonPredicate)pp;
+                return getComparisonPlan(t, cp,
+                        negate(cp.getOperation()), p);
             }
         }
         else if ( p instanceof AndPredicate )
         {
             // try to optimize an and clause
-            return getAndIterator(t, (AndPredicate)p);
+            return getAndPlan(t, (AndPredicate)p);
         }
         else if ( p instanceof OrPredicate )
         {
             // try to optimize an or clause
-            return getOrIterator(t, (OrPredicate)p);
+            return getOrPlan(t, (OrPredicate)p);
         }
         else if ( p instanceof ComparisonPredicate )
         {
             // try to optimize a comparison (=, !=, <, > ,etc)
-            return getComparisonIterator(t,(ComparisonPredicate)p);
+            ComparisonPredicate cp = (ComparisonPredicate)p;
+            return getComparisonPlan(t, cp, cp.getOperation(), cp);
         }
         else if ( p instanceof RangePredicate )
         {
             // try to optimize a bounded range of values
-            return getRangeIterator(t, (RangePredicate)p); 
+            return getRangePlan(t, (RangePredicate)p);
         }
-        
         return null;
     }
-    
-    protected static IntIterator getColumnIterator(
-            Table t, String field, boolean val)
+
+    private static QueryPlan getColumnPlan(
+            Table t, String field, boolean val, Predicate p)
     {
-        if ( t.getColumnType(field) != boolean.class )
+        if ( t.getColumn(field) == null ||
+             t.getColumnType(field) != boolean.class )
             return null; // only works for boolean-valued columns
-        
+
         Index index = t.getIndex(field);
-        if ( index == null ) {
+        if ( index == null )
             return null;
-        } else {
-            return index.rows(val);
-        }
+
+        Boolean b = val ? Boolean.TRUE : Boolean.FALSE;
+        double rows = ( index instanceof BitmapIndex
+            ? ((BitmapIndex)index).count(b, b, Index.TYPE_AII)
+            : index.size() / 2.0 );
+        return new QueryPlan.IndexRange(t, p, rows, rows*INDEX_ROW_COST,
+            index, boolean.class, b, null, 0);
     }
-    
-    protected static IntIterator getOrIterator(Table t, OrPredicate op) {
+
+    private static QueryPlan getOrPlan(Table t, OrPredicate op) {
         int size = op.size();
-        if ( size > 1 ) {
-            // if all subclauses can be optimized, we can optimize the query
-            IntIterator[] rows = new IntIterator[size];
-            for ( int i=0; i<rows.length; ++i ) {
-                rows[i] = getOptimizedIterator(t, op.get(i));
-                
-                // all clauses must be optimized to avoid linear scan
-                if ( rows[i] == null ) return null;
-            }
-            // group iterators, and filter for uniqueness
-            return new UniqueRowIterator(new CompositeIntIterator(rows));
-        } else if ( size == 1 ) {
-            // only one clause, optimize for that
-            return getOptimizedIterator(t, op.get(0));
-        } else {
-            // no woman, no cry
+        if ( size == 0 ) {
             return null;
+        } else if ( size == 1 ) {
+            return getPlan(t, op.get(0));
+        }
+
+        // all clauses must be optimized to avoid linear scan
+        QueryPlan[] plans = new QueryPlan[size];
+        double rows = 0, cost = 0;
+        for ( int i=0; i<size; ++i ) {
+            plans[i] = getPlan(t, op.get(i));
+            if ( plans[i] == null ) return null;
+            rows += plans[i].getEstimatedRows();
+            cost += plans[i].getCost();
         }
+        rows = Math.min(rows, t.getRowCount());
+        return new QueryPlan.Union(t, op, rows, cost, plans, false);
     }
-    
-    protected static IntIterator getAndIterator(Table t, AndPredicate ap) {
-        // possible TODO: add scoring to select best optimized iterator
-        // for now just work from the end backwards and take the first
-        // optimized iterator we find
-        IntIterator rows = null;
-        Predicate clause = null;
-        for ( int i=ap.size(); --i >= 0; ) {
-            clause = ap.get(i);
-            if ( (rows=getOptimizedIterator(t,clause)) != null )
-                break;
+
+    private static QueryPlan getAndPlan(Table t, AndPredicate ap) {
+        int size = ap.size();
+        if ( size == 0 ) {
+            return null;
+        } else if ( size == 1 ) {
+            return getPlan(t, ap.get(0));
+        }
+
+        // plan each clause, and order the indexed clauses by cost
+        QueryPlan[] plans = new QueryPlan[size];
+        int[] order = new int[size];
+        int count = 0;
+        for ( int i=0; i<size; ++i ) {
+            if ( (plans[i]=getPlan(t, ap.get(i))) == null )
+                continue;
+            int j = count++;
+            for ( ; j>0 && plans[order[j-1]].getCost() > plans[i].getCost();
+                  --j )
+            {
+                order[j] = order[j-1];
+            }
+            order[j] = i;
         }
-        
-        // exit if we didn't optimize
-        if ( rows == null ) return null;
-        
-        // if only one clause, no extras needed
-        if ( ap.size() == 1 ) return rows;
-        
-        // otherwise get optimized source, run through other clauses
-        return new FilterRowIterator(rows, t, ap.getSubPredicate(clause));
+        if ( count == 0 ) return null;
+
+        // the cheapest clause drives the query, intersect further clauses
+        // while retrieving their rows is cheaper than testing each
+        // candidate row against them
+        double n = Math.max(1, t.getRowCount());
+        QueryPlan driver = plans[order[0]];
+        double rows = driver.getEstimatedRows();
+        double cost = driver.getCost();
+        boolean[] used = new boolean[size];
+        used[order[0]] = true;
+        int nused = 1;
+        for ( int i=1; i<count; ++i ) {
+            QueryPlan plan = plans[order[i]];
+            if ( plan.getCost() < rows ) {
+                used[order[i]] = true;
+                ++nused;
+                rows *= plan.getEstimatedRows() / n;
+                cost += plan.getCost();
+            }
+        }
+
+        QueryPlan result = driver;
+        if ( nused > 1 ) {
+            QueryPlan[] children = new QueryPlan[nused];
+            for ( int i=0, j=0; i<count; ++i ) {
+                if ( used[order[i]] ) children[j++] = plans[order[i]];
+            }
+            result = new QueryPlan.Intersect(t, ap, rows, cost, children);
+        }
+
+        // evaluate any remaining clauses for each candidate row
+        if ( nused < size ) {
+            Predicate rest = null;
+            if ( size - nused == 1 ) {
+                for ( int i=0; i<size; ++i )
+                    if ( !used[i] ) rest = ap.get(i);
+            } else {
+                AndPredicate and = new AndPredicate();
+                for ( int i=0; i<size; ++i )
+                    if ( !used[i] ) and.add(ap.get(i));
+                rest = and;
+            }
+            result = new QueryPlan.Filter(t, rest, rows, cost+rows, result);
+        }
+        return result;
     }
-    
-    protected static IntIterator getComparisonIterator(Table t, 
-                                           ComparisonPredicate cp)
+
+    private static QueryPlan getComparisonPlan(Table t,
+            ComparisonPredicate cp, int operation, Predicate p)
     {
         Expression l = cp.getLeftExpression();
         Expression r = cp.getRightExpression();
-        int operation = cp.getOperation();
-        
-        // not equals operations aren't handled by the index
-        if ( operation == ComparisonPredicate.NEQ )
-            return null;
-        
+
         ColumnExpression col;
         Expression lit;
-        
+
         // make sure columns are of the right type
-        if (l instanceof ColumnExpression && 
+        if (l instanceof ColumnExpression &&
                 !ExpressionAnalyzer.hasDependency(r))
         {
             col = (ColumnExpression)l;
@@ -213,105 +351,58 @@ public class FilterIteratorFactory {
         {
             col = (ColumnExpression)r;
             lit = l;
+            operation = reverse(operation);
         } else {
             return null;
         }
-        
+
         // if table has index of the right type, use it
+        String field = col.getColumnName();
+        if ( t.getColumn(field) == null )
+            return null;
         Comparator cmp = cp.getComparator();
-        Index index = t.getIndex(col.getColumnName());
-        
+        Index index = t.getIndex(field);
         if ( index == null || !cmp.equals(index.getComparator()) )
             return null;
-        
-        Class ltype = lit.getClass();
-        if ( ltype == int.class ) {
-            int val = lit.getInt(null); // literal value, so null is safe
-            switch ( operation ) {
-            case ComparisonPredicate.LT:
-                return index.rows(Integer.MIN_VALUE, val, Index.TYPE_AIE);
-            case ComparisonPredicate.GT:
-                return index.rows(val, Integer.MAX_VALUE, Index.TYPE_AEI);
-            case ComparisonPredicate.EQ:
-                return index.rows(val, val, Index.TYPE_AII);
-            case ComparisonPredicate.LTEQ:
-                return index.rows(Integer.MIN_VALUE, val, Index.TYPE_AII);
-            case ComparisonPredicate.GTEQ:
-                return index.rows(val, Integer.MAX_VALUE, Index.TYPE_AII);
-            default:
-                throw new IllegalStateException(); // should never occur
-            }
-        } else if ( ltype == long.class ) {
-            long val = lit.getLong(null); // literal value, so null is safe
-            switch ( operation ) {
-            case ComparisonPredicate.LT:
-                return index.rows(Long.MIN_VALUE, val, Index.TYPE_AIE);
-            case ComparisonPredicate.GT:
-                return index.rows(val, Long.MAX_VALUE, Index.TYPE_AEI);
-            case ComparisonPredicate.EQ:
-                return index.rows(val, val, Index.TYPE_AII);
-            case ComparisonPredicate.LTEQ:
-                return index.rows(Long.MIN_VALUE, val, Index.TYPE_AII);
-            case ComparisonPredicate.GTEQ:
-                return index.rows(val, Long.MAX_VALUE, Index.TYPE_AII);
-            default:
-                throw new IllegalStateException(); // should never occur
-            }
-        } else if ( ltype == float.class ) {
-            float val = lit.getFloat(null); // literal value, so null is safe
-            switch ( operation ) {
-            case ComparisonPredicate.LT:
-                return index.rows(Float.MIN_VALUE, val, Index.TYPE_AIE);
-            case ComparisonPredicate.GT:
-                return index.rows(val, Float.MAX_VALUE, Index.TYPE_AEI);
-            case ComparisonPredicate.EQ:
-                return index.rows(val, val, Index.TYPE_AII);
-            case ComparisonPredicate.LTEQ:
-                return index.rows(Float.MIN_VALUE, val, Index.TYPE_AII);
-            case ComparisonPredicate.GTEQ:
-                return index.rows(val, Float.MAX_VALUE, Index.TYPE_AII);
-            default:
-                throw new IllegalStateException(); // should never occur
-            }
-        } else if ( ltype == double.class ) {
-            double val = lit.getDouble(null); // literal value, so null is safe
-            switch ( operation ) {
-            case ComparisonPredicate.LT:
-                return index.rows(Double.MIN_VALUE, val, Index.TYPE_AIE);
-            case ComparisonPredicate.GT:
-                return index.rows(val, Double.MAX_VALUE, Index.TYPE_AEI);
-            case ComparisonPredicate.EQ:
-                return index.rows(val, val, Index.TYPE_AII);
-            case ComparisonPredicate.LTEQ:
-                return index.rows(Double.MIN_VALUE, val, Index.TYPE_AII);
-            case ComparisonPredicate.GTEQ:
-                return index.rows(val, Double.MAX_VALUE, Index.TYPE_AII);
-            default:
-                throw new IllegalStateException(); // should never occur
-            }
-        } else {
-            Object val = lit.get(null); // literal value, so null is safe
-            switch ( operation ) {
-            case ComparisonPredicate.LT:
-                return index.rows(null, val, Index.TYPE_AIE);
-            case ComparisonPredicate.GT:
-                return index.rows(val, null, Index.TYPE_AEI);
-            case ComparisonPredicate.EQ:
-                return index.rows(val, val, Index.TYPE_AII);
-            case ComparisonPredicate.LTEQ:
-                return index.rows(null, val, Index.TYPE_AII);
-            case ComparisonPredicate.GTEQ:
-                return index.rows(val, null, Index.TYPE_AII);
-            default:
-                throw new IllegalStateException(); // should never occur
-            }
-        }        
+
+        Class ctype = t.getColumnType(field);
+        Object val = getLiteral(t, ctype, lit);
+        if ( val == null )
+            return null;
+        Object min = getMinimumBound(ctype), max = getMaximumBound(ctype);
+
+        switch ( operation ) {
+        case ComparisonPredicate.LT:
+            return getIndexPlan(t, p, field, index, ctype,
+                                min, val, Index.TYPE_AIE);
+        case ComparisonPredicate.GT:
+            return getIndexPlan(t, p, field, index, ctype,
+                                val, max, Index.TYPE_AEI);
+        case ComparisonPredicate.EQ:
+            return getIndexPlan(t, p, field, index, ctype,
+                                val, val, Index.TYPE_AII);
+        case ComparisonPredicate.LTEQ:
+            return getIndexPlan(t, p, field, index, ctype,
+                                min, val, Index.TYPE_AII);
+        case ComparisonPredicate.GTEQ:
+            return getIndexPlan(t, p, field, index, ctype,
+                                val, max, Index.TYPE_AII);
+        case ComparisonPredicate.NEQ:
+            // values below and above the literal value
+            QueryPlan lo = getIndexPlan(t, p, field, index, ctype,
+                                        min, val, Index.TYPE_AIE);
+            QueryPlan hi = getIndexPlan(t, p, field, index, ctype,
+                                        val, max, Index.TYPE_AEI);
+            return new QueryPlan.Union(t, p,
+                lo.getEstimatedRows() + hi.getEstimatedRows(),
+                lo.getCost() + hi.getCost(),
+                new QueryPlan[] { lo, hi }, true);
+        default:
+            throw new IllegalStateException(); // should never occur
+        }
     }
-    
-    protected static IntIterator getRangeIterator(Table t, RangePredicate rp) {
-        ColumnExpression col;
-        Expression l, r;
-        
+
+    private static QueryPlan getRangePlan(Table t, RangePredicate rp) {
         // make sure columns are of the right type
         if ( !(rp.getMiddleExpression() instanceof ColumnExpression) ||
                 ExpressionAnalyzer.hasDependency(rp.getLeftExpression()) ||
@@ -319,27 +410,27 @@ public class FilterIteratorFactory {
         {
             return null;
         }
-        
-        // assign variables
-        col = (ColumnExpression)rp.getMiddleExpression();
-        l = rp.getLeftExpression();
-        r = rp.getRightExpression();
-        
+
         // if table has index of the right type, use it
+        String field =
+            ((ColumnExpression)rp.getMiddleExpression()).getColumnName();
+        if ( t.getColumn(field) == null )
+            return null;
         Comparator cmp = rp.getComparator();
-        Index index = t.getIndex(col.getColumnName());
-        
+        Index index = t.getIndex(field);
         if ( index == null || !cmp.equals(index.getComparator()) )
             return null;
-        
-        int operation = rp.getOperation();
-        Class ltype = t.getColumnType(col.getColumnName());
-        
-        // TODO safety check literal types
-        
+
+        // make sure the literal values match the column type
+        Class ctype = t.getColumnType(field);
+        Object lo = getLiteral(t, ctype, rp.getLeftExpression());
+        Object hi = getLiteral(t, ctype, rp.getRightExpression());
+        if ( lo == null || hi == null )
+            return null;
+
         // get the index type
         int indexType;
-        switch ( operation ) {
+        switch ( rp.getOperation() ) {
         case RangePredicate.IN_IN:
             indexType = Index.TYPE_AII;
             break;
@@ -355,19 +446,166 @@ public class FilterIteratorFactory {
         default:
             throw new IllegalStateException(); // should never occur
         }
-        
-        // get the indexed rows
-        if ( ltype == int.class ) {
-            return index.rows(l.getInt(null), r.getInt(null), indexType);
-        } else if ( ltype == long.class ) {
-            return index.rows(l.getLong(null), r.getLong(null), indexType);
-        } else if ( ltype == float.class ) {
-            return index.rows(l.getFloat(null), r.getFloat(null), indexType);
-        } else if ( ltype == double.class ) {
-            return index.rows(l.getDouble(null), r.getDouble(null), indexType);
+        return getIndexPlan(t, rp, field, index, ctype, lo, hi, indexType);
+    }
+
+    private static QueryPlan getIndexPlan(Table t, Predicate p, String field,
+            Index index, Class ctype, Object lo, Object hi, int indexType)
+    {
+        double rows = estimate(t, field, index, ctype, lo, hi, indexType);
+        return new QueryPlan.IndexRange(t, p, rows, rows*INDEX_ROW_COST,
+                                        index, ctype, lo, hi, indexType);
+    }
+
+    // ------------------------------------------------------------------------
+    // Planning Helpers
+
+    /**
+     * Estimate the number of indexed rows with values between the given
+     * bounds. Equality lookups are estimated using the number of unique
+     * values in the index. Ranges over numeric columns are estimated
+     * assuming values are evenly spread between the index minimum and
+     * maximum, other ranges assume a fixed selectivity. Bitmap indices
+     * provide exact counts.
+     */
+    private static double estimate(Table t, String field, Index index,
+            Class ctype, Object lo, Object hi, int indexType)
+    {
+        if ( index instanceof BitmapIndex )
+            return ((BitmapIndex)index).count(lo, hi, indexType);
+
+        double n = index.size();
+        if ( n == 0 ) return 0;
+        double point = n / Math.max(1, index.uniqueCount());
+        if ( lo == hi )
+            return point;
+        if ( !TypeLib.isNumericType(ctype) )
+            return n * RANGE_SELECTIVITY;
+
+        double min = t.getDouble(index.minimum(), field);
+        double max = t.getDouble(index.maximum(), field);
+        double a = ((Number)lo).doubleValue();
+        double b = ((Number)hi).doubleValue();
+        if ( Double.isNaN(b) ) b = Double.POSITIVE_INFINITY;
+        a = Math.max(a, min);
+        b = Math.min(b, max);
+        if ( b < a ) return 0;
+
+        double span = max - min;
+        if ( span == 0 ) return n;
+        if ( Double.isNaN(span) || Double.isInfinite(span) )
+            return n * RANGE_SELECTIVITY;
+        return Math.max(point, n * (b-a) / span);
+    }
+
+    /**
+     * Get the value of a literal expression for an index lookup on a
+     * column of the given type, or null if the literal can not be compared
+     * to the column values through the index. Numeric literals must not be
+     * of a wider type than the column, as the comparison would then be
+     * performed in the wider type.
+     */
+    private static Object getLiteral(Table t, Class ctype, Expression lit) {
+        Class ltype = lit.getType(t.getSchema());
+        if ( ctype == int.class || ctype == long.class ||
+             ctype == float.class || ctype == double.class )
+        {
+            if ( !TypeLib.isNumericType(ltype) ||
+                 TypeLib.getNumericType(ctype, ltype) != ctype )
+                return null;
+
+            // literal value, so null is safe
+            if ( ctype == int.class ) {
+                return new Integer(lit.getInt(null));
+            } else if ( ctype == long.class ) {
+                return new Long(lit.getLong(null));
+            } else if ( ctype == float.class ) {
+                return new Float(lit.getFloat(null));
+            } else {
+                return new Double(lit.getDouble(null));
+            }
+        }
+        else if ( ctype.isPrimitive() || Date.class.isAssignableFrom(ctype) )
+        {
+            // indexes of these types do not support object lookups
+            return null;
+        }
+        else if ( ltype == null || !ctype.isAssignableFrom(ltype) )
+        {
+            return null;
+        }
+        return lit.get(null); // literal value, so null is safe
+    }
+
+    private static Object getMinimumBound(Class ctype) {
+        if ( ctype == int.class ) {
+            return new Integer(Integer.MIN_VALUE);
+        } else if ( ctype == long.class ) {
+            return new Long(Long.MIN_VALUE);
+        } else if ( ctype == float.class ) {
+            return new Float(Float.NEGATIVE_INFINITY);
+        } else if ( ctype == double.class ) {
+            return new Double(Double.NEGATIVE_INFINITY);
+        } else {
+            return null;
+        }
+    }
+
+    private static Object getMaximumBound(Class ctype) {
+        // NaN values are sorted above all other values
+        if ( ctype == int.class ) {
+            return new Integer(Integer.MAX_VALUE);
+        } else if ( ctype == long.class ) {
+            return new Long(Long.MAX_VALUE);
+        } else if ( ctype == float.class ) {
+            return new Float(Float.NaN);
+        } else if ( ctype == double.class ) {
+            return new Double(Double.NaN);
         } else {
-            return index.rows(l.get(null), r.get(null), indexType);
+            return null;
+        }
+    }
+
+    /**
+     * Get the comparison operation that is true when the given operation
+     * is false.
+     */
+    private static int negate(int operation) {
+        switch ( operation ) {
+        case ComparisonPredicate.LT:
+            return ComparisonPredicate.GTEQ;
+        case ComparisonPredicate.GT:
+            return ComparisonPredicate.LTEQ;
+        case ComparisonPredicate.EQ:
+            return ComparisonPredicate.NEQ;
+        case ComparisonPredicate.NEQ:
+            return ComparisonPredicate.EQ;
+        case ComparisonPredicate.LTEQ:
+            return ComparisonPredicate.GT;
+        case ComparisonPredicate.GTEQ:
+            return ComparisonPredicate.LT;
+        default:
+            throw new IllegalStateException(); // should never occur
+        }
+    }
+
+    /**
+     * Get the comparison operation that results from swapping the
+     * operands of the given operation.
+     */
+    private static int reverse(int operation) {
+        switch ( operation ) {
+        case ComparisonPredicate.LT:
+            return ComparisonPredicate.GT;
+        case ComparisonPredicate.GT:
+            return ComparisonPredicate.LT;
+        case ComparisonPredicate.LTEQ:
+            return ComparisonPredicate.GTEQ;
+        case ComparisonPredicate.GTEQ:
+            return ComparisonPredicate.LTEQ;
+        default:
+            return operation;
         }
     }
-    
+
 } // end of class FilterIteratorFactory
@@ -3,6 +3,7 @@ package prefuse.data.util;
 import java.util.NoSuchElementException;
 
 import prefuse.data.Table;
+import prefuse.data.expression.CompiledExpression;
 import prefuse.data.expression.Predicate;
 import prefuse.util.collections.IntIterator;
 
@@ -10,16 +11,25 @@ import prefuse.util.collections.IntIterator;
  * Iterator over table rows that filters the output by a given predicate. For
  * each table row, the corresponding tuple is checked against the predicate.
  * Only rows whose tuples pass the filter are included in this iteration.
+ * If the predicate is a {@link CompiledExpression} for the same table, it
+ * is evaluated directly on the row numbers, without looking up tuples, and
+ * rows are read from the underlying iterator and filtered in batches of
+ * {@link CompiledExpression#BATCH_SIZE} rows.
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class FilterRowIterator extends IntIterator {
     
     private Predicate predicate;
+    private CompiledExpression compiled;
     private IntIterator rows;
     private Table t;
     private int next;
     
+    private int[] batch;
+    private int batchSize;
+    private int batchPos;
+    
     /**
      * Create a new FilterRowIterator.
      * @param rows an iterator over table rows
@@ -28,12 +38,33 @@ public class FilterRowIterator extends IntIterator {
      */
     public FilterRowIterator(IntIterator rows, Table t, Predicate p) {
         this.predicate = p;
+        if ( p instanceof CompiledExpression &&
+             ((CompiledExpression)p).getTable() == t )
+        {
+            this.compiled = (CompiledExpression)p;
+            this.batch = new int[CompiledExpression.BATCH_SIZE];
+        }
         this.rows = rows;
         this.t = t;
         next = advance();
     }
     
     private int advance() {
+        if ( compiled != null ) {
+            while ( batchPos == batchSize && rows.hasNext() ) {
+                int n = 0;
+                while ( n < batch.length && rows.hasNext() )
+                    batch[n++] = rows.nextInt();
+                batchSize = compiled.select(batch, n, batch);
+                batchPos = 0;
+            }
+            if ( batchPos < batchSize ) {
+                return batch[batchPos++];
+            }
+            rows = null;
+            next = -1;
+            return -1;
+        }
         while ( rows.hasNext() ) {
             int r = rows.nextInt();
             if ( predicate.getBoolean(t.getTuple(r)) ) {
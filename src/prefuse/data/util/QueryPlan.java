@@ -0,0 +1,390 @@
+package prefuse.data.util;
+
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+import prefuse.data.Table;
+import prefuse.data.expression.ExpressionCompiler;
+import prefuse.data.expression.Predicate;
+import prefuse.util.collections.CompositeIntIterator;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * <p>Describes how the rows of a Table that pass a filter Predicate are
+ * retrieved, as determined by the query planner of the
+ * {@link FilterIteratorFactory}. A query plan is a tree of plan nodes. Each
+ * node has a type, the predicate it evaluates, an estimate of the number
+ * of rows it produces, and an estimated cost, measured in units of
+ * evaluating the predicate for a single row during a full table scan.</p>
+ *
+ * <p>Query plans are obtained using
+ * {@link FilterIteratorFactory#explain(Table, Predicate)}. The
+ * {@link #toString()} method returns a readable, indented description of
+ * the complete plan.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public abstract class QueryPlan {
+
+    /** A full scan of the table, evaluating the predicate for every row. */
+    public static final int SCAN      = 0;
+    /** A retrieval of the rows matching the predicate from an index. */
+    public static final int INDEX     = 1;
+    /** An intersection of the rows produced by the child plans. */
+    public static final int INTERSECT = 2;
+    /** A union of the rows produced by the child plans. */
+    public static final int UNION     = 3;
+    /** An evaluation of the predicate for the rows of the child plan. */
+    public static final int FILTER    = 4;
+
+    private static final String[] NAMES
+        = { "SCAN", "INDEX", "INTERSECT", "UNION", "FILTER" };
+    private static final QueryPlan[] EMPTY = new QueryPlan[0];
+
+    protected final int m_type;
+    protected final Table m_table;
+    protected final Predicate m_predicate;
+    protected final double m_rows;
+    protected final double m_cost;
+    protected final QueryPlan[] m_children;
+
+    /**
+     * Create a new QueryPlan node.
+     * @param type the plan type, one of {@link #SCAN}, {@link #INDEX},
+     * {@link #INTERSECT}, {@link #UNION}, or {@link #FILTER}
+     * @param t the table being queried
+     * @param p the predicate evaluated by this plan node
+     * @param rows the estimated number of rows produced
+     * @param cost the estimated cost of this plan, including its children
+     * @param children the child plans, or null for none
+     */
+    protected QueryPlan(int type, Table t, Predicate p, double rows,
+                        double cost, QueryPlan[] children)
+    {
+        m_type = type;
+        m_table = t;
+        m_predicate = p;
+        m_rows = rows;
+        m_cost = cost;
+        m_children = ( children == null ? EMPTY : children );
+    }
+
+    /**
+     * Get the type of this plan node.
+     * @return the plan type, one of {@link #SCAN}, {@link #INDEX},
+     * {@link #INTERSECT}, {@link #UNION}, or {@link #FILTER}
+     */
+    public int getType() {
+        return m_type;
+    }
+
+    /**
+     * Get the table this plan queries.
+     * @return the queried table
+     */
+    public Table getTable() {
+        return m_table;
+    }
+
+    /**
+     * Get the predicate evaluated by this plan node. For {@link #FILTER}
+     * nodes, this is the residual predicate evaluated for each row of the
+     * child plan.
+     * @return the predicate evaluated by this plan node
+     */
+    public Predicate getPredicate() {
+        return m_predicate;
+    }
+
+    /**
+     * Get the estimated number of rows produced by this plan.
+     * @return the estimated row count
+     */
+    public double getEstimatedRows() {
+        return m_rows;
+    }
+
+    /**
+     * Get the estimated cost of this plan, including its children. Costs
+     * are measured in units of evaluating the predicate for a single row
+     * during a full table scan.
+     * @return the estimated cost
+     */
+    public double getCost() {
+        return m_cost;
+    }
+
+    /**
+     * Get the number of child plans.
+     * @return the number of child plans
+     */
+    public int getChildCount() {
+        return m_children.length;
+    }
+
+    /**
+     * Get the child plan at the given position.
+     * @param i the child index
+     * @return the child plan
+     */
+    public QueryPlan getChild(int i) {
+        return m_children[i];
+    }
+
+    /**
+     * Execute this plan.
+     * @return an iterator over the table rows that pass the predicate
+     */
+    public abstract IntIterator rows();
+
+    /**
+     * Execute this plan, collecting the resulting rows into a bitmap.
+     * @return a new bit vector with the bits of the resulting rows set
+     */
+    BitSet bitmap() {
+        return bitmap(rows());
+    }
+
+    /**
+     * Returns an indented description of this plan and all its children.
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        StringBuffer sbuf = new StringBuffer();
+        toString(sbuf, 0);
+        return sbuf.toString();
+    }
+
+    private void toString(StringBuffer sbuf, int depth) {
+        for ( int i=0; i<depth; ++i )
+            sbuf.append("  ");
+        sbuf.append(NAMES[m_type]);
+        if ( m_type != INTERSECT && m_type != UNION )
+            sbuf.append(' ').append(m_predicate);
+        sbuf.append(" (rows=").append(Math.round(m_rows));
+        sbuf.append(", cost=").append(Math.round(m_cost)).append(')');
+        for ( int i=0; i<m_children.length; ++i ) {
+            sbuf.append('\n');
+            m_children[i].toString(sbuf, depth+1);
+        }
+    }
+
+    /**
+     * Get a filtering iterator for the given rows, compiling the predicate
+     * if expression compilation is enabled.
+     */
+    static IntIterator filter(IntIterator rows, Table t, Predicate p) {
+        if ( FilterIteratorFactory.isCompilable(t) )
+            p = ExpressionCompiler.compile(p, t);
+        return new FilterRowIterator(rows, t, p);
+    }
+
+    // ------------------------------------------------------------------------
+    // Plan Implementations
+
+    /**
+     * Scans the full table.
+     */
+    static class Scan extends QueryPlan {
+        Scan(Table t, Predicate p) {
+            super(SCAN, t, p, t.getRowCount(), t.getRowCount(), null);
+        }
+        public IntIterator rows() {
+            return filter(m_table.rows(), m_table, m_predicate);
+        }
+    }
+
+    /**
+     * Retrieves rows from an index. Range bounds are given as Number
+     * instances for numeric columns, and as the literal values otherwise.
+     */
+    static class IndexRange extends QueryPlan {
+        private final Index m_index;
+        private final Class m_ctype;
+        private final Object m_lo, m_hi;
+        private final int m_itype;
+
+        IndexRange(Table t, Predicate p, double rows, double cost,
+                   Index index, Class ctype, Object lo, Object hi, int itype)
+        {
+            super(INDEX, t, p, rows, cost, null);
+            m_index = index;
+            m_ctype = ctype;
+            m_lo = lo;
+            m_hi = hi;
+            m_itype = itype;
+        }
+        public IntIterator rows() {
+            if ( m_ctype == int.class ) {
+                return m_index.rows(((Number)m_lo).intValue(),
+                                    ((Number)m_hi).intValue(), m_itype);
+            } else if ( m_ctype == long.class ) {
+                return m_index.rows(((Number)m_lo).longValue(),
+                                    ((Number)m_hi).longValue(), m_itype);
+            } else if ( m_ctype == float.class ) {
+                return m_index.rows(((Number)m_lo).floatValue(),
+                                    ((Number)m_hi).floatValue(), m_itype);
+            } else if ( m_ctype == double.class ) {
+                return m_index.rows(((Number)m_lo).doubleValue(),
+                                    ((Number)m_hi).doubleValue(), m_itype);
+            } else if ( m_ctype == boolean.class ) {
+                return m_index.rows(((Boolean)m_lo).booleanValue());
+            } else {
+                return m_index.rows(m_lo, m_hi, m_itype);
+            }
+        }
+        BitSet bitmap() {
+            if ( !(m_index instanceof BitmapIndex) ) {
+                return super.bitmap();
+            } else if ( m_ctype == boolean.class ) {
+                return ((BitmapIndex)m_index).getBitmap(
+                        m_lo, m_lo, Index.TYPE_AII);
+            } else {
+                return ((BitmapIndex)m_index).getBitmap(m_lo, m_hi, m_itype);
+            }
+        }
+    }
+
+    /**
+     * Intersects the rows of the child plans. The rows of all but the first
+     * child are collected into a bitmap, and the rows of the first child are
+     * then checked against the bitmap. Children answered by a
+     * {@link BitmapIndex} provide their bitmaps directly.
+     */
+    static class Intersect extends QueryPlan {
+        Intersect(Table t, Predicate p, double rows, double cost,
+                  QueryPlan[] children)
+        {
+            super(INTERSECT, t, p, rows, cost, children);
+        }
+        public IntIterator rows() {
+            BitSet bits = m_children[1].bitmap();
+            for ( int i=2; i<m_children.length && !bits.isEmpty(); ++i )
+                bits.and(m_children[i].bitmap());
+            return new BitmapFilterIterator(m_children[0].rows(), bits);
+        }
+        BitSet bitmap() {
+            BitSet bits = m_children[0].bitmap();
+            for ( int i=1; i<m_children.length && !bits.isEmpty(); ++i )
+                bits.and(m_children[i].bitmap());
+            return bits;
+        }
+    }
+
+    /**
+     * Unites the rows of the child plans. If the children are known to
+     * produce disjoint row sets, their rows are simply concatenated.
+     * Otherwise they are collected into a bitmap and returned in row order.
+     */
+    static class Union extends QueryPlan {
+        private final boolean m_disjoint;
+        Union(Table t, Predicate p, double rows, double cost,
+              QueryPlan[] children, boolean disjoint)
+        {
+            super(UNION, t, p, rows, cost, children);
+            m_disjoint = disjoint;
+        }
+        public IntIterator rows() {
+            if ( m_disjoint ) {
+                IntIterator[] rows = new IntIterator[m_children.length];
+                for ( int i=0; i<rows.length; ++i )
+                    rows[i] = m_children[i].rows();
+                return new CompositeIntIterator(rows);
+            }
+            return new BitmapIterator(bitmap());
+        }
+        BitSet bitmap() {
+            BitSet bits = m_children[0].bitmap();
+            for ( int i=1; i<m_children.length; ++i )
+                bits.or(m_children[i].bitmap());
+            return bits;
+        }
+    }
+
+    /**
+     * Evaluates a residual predicate over the rows of the child plan.
+     */
+    static class Filter extends QueryPlan {
+        Filter(Table t, Predicate p, double rows, double cost,
+               QueryPlan child)
+        {
+            super(FILTER, t, p, rows, cost, new QueryPlan[] { child });
+        }
+        public IntIterator rows() {
+            return filter(m_children[0].rows(), m_table, m_predicate);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Bitmap Support
+
+    static BitSet bitmap(IntIterator rows) {
+        BitSet bits = new BitSet();
+        while ( rows.hasNext() )
+            bits.set(rows.nextInt());
+        return bits;
+    }
+
+    /**
+     * Iterates over the set bits of a bitmap.
+     */
+    static class BitmapIterator extends IntIterator {
+        private final BitSet m_bits;
+        private int m_next;
+        BitmapIterator(BitSet bits) {
+            m_bits = bits;
+            m_next = bits.nextSetBit(0);
+        }
+        public boolean hasNext() {
+            return m_next >= 0;
+        }
+        public int nextInt() {
+            if ( m_next < 0 )
+                throw new NoSuchElementException();
+            int retval = m_next;
+            m_next = m_bits.nextSetBit(m_next+1);
+            return retval;
+        }
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Passes along only those rows that are set in a bitmap.
+     */
+    static class BitmapFilterIterator extends IntIterator {
+        private final IntIterator m_rows;
+        private final BitSet m_bits;
+        private int m_next;
+        BitmapFilterIterator(IntIterator rows, BitSet bits) {
+            m_rows = rows;
+            m_bits = bits;
+            advance();
+        }
+        private void advance() {
+            while ( m_rows.hasNext() ) {
+                int r = m_rows.nextInt();
+                if ( m_bits.get(r) ) {
+                    m_next = r;
+                    return;
+                }
+            }
+            m_next = -1;
+        }
+        public boolean hasNext() {
+            return m_next >= 0;
+        }
+        public int nextInt() {
+            if ( m_next < 0 )
+                throw new NoSuchElementException();
+            int retval = m_next;
+            advance();
+            return retval;
+        }
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+} // end of class QueryPlan
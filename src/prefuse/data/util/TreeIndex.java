@@ -7,25 +7,41 @@ import prefuse.data.column.Column;
 import prefuse.data.event.ColumnListener;
 import prefuse.data.event.EventConstants;
 import prefuse.data.event.TableListener;
+import prefuse.util.collections.AbstractBlockMap;
 import prefuse.util.collections.BooleanIntSortedMap;
+import prefuse.util.collections.DoubleIntBlockMap;
 import prefuse.util.collections.DoubleIntSortedMap;
+import prefuse.util.collections.FloatIntBlockMap;
 import prefuse.util.collections.FloatIntSortedMap;
 import prefuse.util.collections.IncompatibleComparatorException;
+import prefuse.util.collections.IntIntBlockMap;
 import prefuse.util.collections.IntIntSortedMap;
 import prefuse.util.collections.IntIterator;
 import prefuse.util.collections.IntSortedMap;
+import prefuse.util.collections.LongIntBlockMap;
 import prefuse.util.collections.LongIntSortedMap;
+import prefuse.util.collections.ObjectIntBlockMap;
 import prefuse.util.collections.ObjectIntSortedMap;
 import prefuse.util.collections.SortedMapFactory;
 
 /**
- * Index instance that uses red-black trees to provide an index
- * over a column of data.
+ * <p>Index instance that uses sorted maps to provide an index
+ * over a column of data. The sorted map implementation is determined by
+ * the {@link prefuse.util.collections.SortedMapFactory}.</p>
+ * 
+ * <p>When backed by block array maps, the index is built in bulk, by
+ * sorting all values at once rather than inserting them row by row. Bulk
+ * changes to the indexed column, or inserts of more rows than the index
+ * currently holds, mark the index as invalid, and it is rebuilt in bulk
+ * the next time it is accessed.</p>
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class TreeIndex implements Index, ColumnListener, TableListener {
 
+    /** The minimum number of inserted rows that triggers a full reindex. */
+    private static final int BULK_THRESHOLD = 1000;
+
     protected Table           m_table;
     protected RowManager      m_rows;
     protected Column          m_col;
@@ -75,6 +91,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#size()
      */
     public int size() {
+        validate();
         return m_index.size();
     }
     
@@ -99,7 +116,11 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
         m_colidx = idx;
         IntIterator rows = m_rows.rows();
         
-        if ( m_index instanceof IntIntSortedMap )
+        if ( m_index instanceof AbstractBlockMap )
+        {
+            load(rows, idx);
+        }
+        else if ( m_index instanceof IntIntSortedMap )
         {
             IntIntSortedMap map = (IntIntSortedMap)m_index;
             while ( rows.hasNext() ) {
@@ -153,6 +174,58 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
         
         m_reindex = false;
     }
+    
+    /**
+     * Bulk load all valid rows into a block array map.
+     */
+    private void load(IntIterator rows, int idx) {
+        int n = 0;
+        int[] r = new int[m_table.getRowCount()];
+        while ( rows.hasNext() ) {
+            if ( n == r.length ) {
+                int[] a = new int[Math.max(16, 2*n)];
+                System.arraycopy(r, 0, a, 0, n);
+                r = a;
+            }
+            r[n++] = rows.nextInt();
+        }
+        
+        if ( m_index instanceof IntIntBlockMap ) {
+            int[] keys = new int[n];
+            for ( int i=0; i<n; ++i )
+                keys[i] = m_col.getInt(m_table.getColumnRow(r[i],idx));
+            ((IntIntBlockMap)m_index).load(keys, r, n);
+        } else if ( m_index instanceof LongIntBlockMap ) {
+            long[] keys = new long[n];
+            for ( int i=0; i<n; ++i )
+                keys[i] = m_col.getLong(m_table.getColumnRow(r[i],idx));
+            ((LongIntBlockMap)m_index).load(keys, r, n);
+        } else if ( m_index instanceof FloatIntBlockMap ) {
+            float[] keys = new float[n];
+            for ( int i=0; i<n; ++i )
+                keys[i] = m_col.getFloat(m_table.getColumnRow(r[i],idx));
+            ((FloatIntBlockMap)m_index).load(keys, r, n);
+        } else if ( m_index instanceof DoubleIntBlockMap ) {
+            double[] keys = new double[n];
+            for ( int i=0; i<n; ++i )
+                keys[i] = m_col.getDouble(m_table.getColumnRow(r[i],idx));
+            ((DoubleIntBlockMap)m_index).load(keys, r, n);
+        } else if ( m_index instanceof ObjectIntBlockMap ) {
+            Object[] keys = new Object[n];
+            for ( int i=0; i<n; ++i )
+                keys[i] = m_col.get(m_table.getColumnRow(r[i],idx));
+            ((ObjectIntBlockMap)m_index).load(keys, r, n);
+        } else {
+            throw new IllegalStateException();
+        }
+    }
+    
+    /**
+     * Rebuild the index if it has been marked as invalid.
+     */
+    private void validate() {
+        if ( m_reindex ) index();
+    }
 
     // ------------------------------------------------------------------------
     // Listener Methods
@@ -162,10 +235,16 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      */
     public void tableChanged(Table t, int start, int end, int col, int type) {
         if ( type == EventConstants.UPDATE || t != m_table 
-              || col != EventConstants.ALL_COLUMNS )
+              || col != EventConstants.ALL_COLUMNS || m_reindex )
             return;
         
         boolean insert = (type==EventConstants.INSERT);
+        int count = end-start+1;
+        if ( insert && count >= BULK_THRESHOLD && count > m_index.size() ) {
+            // cheaper to rebuild the whole index once values are set
+            m_reindex = true;
+            return;
+        }
         for ( int r=start; r<=end; ++r )
             rowChanged(r, insert);
     }
@@ -244,6 +323,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, boolean)
      */
     public void columnChanged(Column src, int idx, boolean prev) {
+        if ( m_reindex ) return;
         int row = m_rows.getTableRow(idx, getColumnIndex());
         if ( row < 0 ) return; // invalid row value
         ((BooleanIntSortedMap)m_index).remove(prev, row);
@@ -254,6 +334,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, int)
      */
     public void columnChanged(Column src, int idx, int prev) {
+        if ( m_reindex ) return;
         int row = m_rows.getTableRow(idx, getColumnIndex());
         if ( row < 0 ) return; // invalid row value
         ((IntIntSortedMap)m_index).remove(prev, row);
@@ -264,6 +345,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, long)
      */
     public void columnChanged(Column src, int idx, long prev) {
+        if ( m_reindex ) return;
         int row = m_rows.getTableRow(idx, getColumnIndex());
         if ( row < 0 ) return; // invalid row value
         ((LongIntSortedMap)m_index).remove(prev, row);
@@ -274,6 +356,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, float)
      */
     public void columnChanged(Column src, int idx, float prev) {
+        if ( m_reindex ) return;
         int row = m_rows.getTableRow(idx, getColumnIndex());
         if ( row < 0 ) return; // invalid row value
         ((FloatIntSortedMap)m_index).remove(prev, row);
@@ -284,6 +367,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, double)
      */
     public void columnChanged(Column src, int idx, double prev) {
+        if ( m_reindex ) return;
         int row = m_rows.getTableRow(idx, getColumnIndex());
         if ( row < 0 ) return; // invalid row value
         ((DoubleIntSortedMap)m_index).remove(prev, row);
@@ -294,6 +378,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, java.lang.Object)
      */
     public void columnChanged(Column src, int idx, Object prev) {
+        if ( m_reindex ) return;
         int row = m_rows.getTableRow(idx, getColumnIndex());
         if ( row < 0 ) return; // invalid row value
         ((ObjectIntSortedMap)m_index).remove(prev, row);
@@ -307,6 +392,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#minimum()
      */
     public int minimum() {
+        validate();
         return m_index.getMinimum();
     }
     
@@ -314,6 +400,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#maximum()
      */
     public int maximum() {
+        validate();
         return m_index.getMaximum();
     }
     
@@ -321,6 +408,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#median()
      */
     public int median() {
+        validate();
         return m_index.getMedian();
     }
     
@@ -328,6 +416,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#uniqueCount()
      */
     public int uniqueCount() {
+        validate();
         return m_index.getUniqueCount();
     }
     
@@ -337,6 +426,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#allRows(int)
      */
     public IntIterator allRows(int type) {
+        validate();
         boolean ascending = (type & Index.TYPE_ASCENDING) > 0;
         return m_index.valueIterator(ascending);
     }
@@ -345,6 +435,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(java.lang.Object, java.lang.Object, int)
      */
     public IntIterator rows(Object lo, Object hi, int type) {
+        validate();
         if ( !(m_index instanceof ObjectIntSortedMap) )
             throw new IllegalStateException();
 
@@ -367,6 +458,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(int, int, int)
      */
     public IntIterator rows(int lo, int hi, int type) {
+        validate();
         if ( !(m_index instanceof IntIntSortedMap) )
             throw new IllegalStateException();
 
@@ -386,6 +478,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(long, long, int)
      */
     public IntIterator rows(long lo, long hi, int type) {
+        validate();
         if ( !(m_index instanceof LongIntSortedMap) )
             throw new IllegalStateException();
         
@@ -405,6 +498,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(float, float, int)
      */
     public IntIterator rows(float lo, float hi, int type) {
+        validate();
         if ( !(m_index instanceof FloatIntSortedMap) )
             throw new IllegalStateException();
         
@@ -424,6 +518,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(double, double, int)
      */
     public IntIterator rows(double lo, double hi, int type) {
+        validate();
         if ( !(m_index instanceof DoubleIntSortedMap) )
             throw new IllegalStateException();
         
@@ -473,6 +568,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(boolean)
      */
     public IntIterator rows(boolean val) {
+        validate();
         if ( !(m_index instanceof BooleanIntSortedMap) )
             throw new IllegalStateException();
         
@@ -493,6 +589,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(double)
      */
     public int get(double x) {
+        validate();
         DoubleIntSortedMap index = (DoubleIntSortedMap)m_index;
         return index.get(x);
     }
@@ -501,6 +598,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(float)
      */
     public int get(float x) {
+        validate();
         FloatIntSortedMap index = (FloatIntSortedMap)m_index;
         return index.get(x);
     }
@@ -509,6 +607,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(int)
      */
     public int get(int x) {
+        validate();
         IntIntSortedMap index = (IntIntSortedMap)m_index;
         return index.get(x);
     }
@@ -517,6 +616,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(long)
      */
     public int get(long x) {
+        validate();
         LongIntSortedMap index = (LongIntSortedMap)m_index;
         return index.get(x);
     }
@@ -525,6 +625,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(java.lang.Object)
      */
     public int get(Object x) {
+        validate();
         ObjectIntSortedMap index = (ObjectIntSortedMap)m_index;
         return index.get(x);
     }
@@ -5,12 +5,20 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RectangularShape;
 import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import prefuse.Constants;
 import prefuse.util.ColorLib;
@@ -51,6 +59,13 @@ import prefuse.visual.VisualItem;
  * text and images are centered along both the horizontal and
  * vertical directions.</p>
  * 
+ * <p>Text measurements are cached, keyed by the label text, the font, the
+ * maximum text width, and the line delimiter, so a label is only measured
+ * (and abbreviated, if needed) when one of these changes. The cache also holds the glyphs of
+ * each line, which are drawn directly rather than laid out again on every
+ * repaint. Optionally, labels can also be drawn from cached bitmaps, see
+ * {@link #setTextBitmapsEnabled(boolean)}.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class LabelRenderer extends AbstractShapeRenderer {
@@ -77,6 +92,19 @@ public class LabelRenderer extends AbstractShapeRenderer {
 
     protected int m_maxTextWidth = -1;
     
+    protected int m_layoutCacheSize = 5000;
+    protected boolean m_bitmaps = false;
+    
+    /** Cache of text layouts, in least recently used order */
+    protected Map m_layouts =
+        new LinkedHashMap(64, .75F, true) {
+            public boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > m_layoutCacheSize;
+            }
+        };
+    private LayoutKey m_probe = new LayoutKey(); // temp cache key
+    private LabelLayout m_layout; // layout of the current label text
+    
     /** Transform used to scale and position images */
     AffineTransform m_transform = new AffineTransform();
     
@@ -165,6 +193,58 @@ public class LabelRenderer extends AbstractShapeRenderer {
      */
     public void setMaxTextWidth(int maxWidth) {
         m_maxTextWidth = maxWidth;
+        m_layouts.clear();
+    }
+    
+    /**
+     * Get the maximum number of text layouts cached by this renderer.
+     * @return the size of the text layout cache
+     */
+    public int getLayoutCacheSize() {
+        return m_layoutCacheSize;
+    }
+    
+    /**
+     * Set the maximum number of text layouts cached by this renderer. Each
+     * distinct combination of label text, font, maximum width, and line
+     * delimiter requires its own layout, so the cache should be at least
+     * as large as the number of labels shown at once. The default is 5000.
+     * @param size the size of the text layout cache
+     */
+    public void setLayoutCacheSize(int size) {
+        m_layoutCacheSize = size;
+        if ( m_layouts.size() > size )
+            m_layouts.clear();
+    }
+    
+    /**
+     * Indicates if text is drawn from cached bitmaps.
+     * @return true if text bitmaps are enabled, false otherwise
+     * @see #setTextBitmapsEnabled(boolean)
+     */
+    public boolean isTextBitmapsEnabled() {
+        return m_bitmaps;
+    }
+    
+    /**
+     * Set if text is drawn from cached bitmaps. When enabled, the text of
+     * each label is drawn once into an image at the current zoom level, and
+     * then copied to the screen on later repaints, until the zoom level,
+     * rendering hints, text color, or text alignment of the label changes. Copying is much
+     * faster than drawing text, but bitmaps are placed at whole pixel
+     * offsets, so labels may shift by a fraction of a pixel while panning.
+     * Bitmaps are only used when drawing without rotation or shearing, and
+     * are held in the text layout cache. By default, text bitmaps are
+     * disabled.
+     * @param b true to enable text bitmaps, false to disable them
+     */
+    public void setTextBitmapsEnabled(boolean b) {
+        m_bitmaps = b;
+        if ( !b ) {
+            Iterator iter = m_layouts.values().iterator();
+            while ( iter.hasNext() )
+                ((LabelLayout)iter.next()).bitmap = null;
+        }
     }
     
     /**
@@ -257,47 +337,65 @@ public class LabelRenderer extends AbstractShapeRenderer {
                                      size*m_font.getSize());
         }
         
+        // look up the layout, measuring the text on a cache miss
+        m_probe.set(text, m_font, m_maxTextWidth, m_delim);
+        m_layout = (LabelLayout)m_layouts.get(m_probe);
+        if ( m_layout == null ) {
+            m_layout = computeTextLayout(text);
+            m_layouts.put(new LayoutKey().set(text, m_font, m_maxTextWidth,
+                                              m_delim), m_layout);
+        }
+        m_probe.set(null, null, 0, null);
+        
+        m_textDim.width = m_layout.width;
+        m_textDim.height = m_layout.height;
+        return m_layout.text;
+    }
+    
+    /**
+     * Measure text using the current font, abbreviating lines as needed.
+     */
+    private LabelLayout computeTextLayout(String text) {
         FontMetrics fm = DEFAULT_GRAPHICS.getFontMetrics(m_font);
+        ArrayList lines = new ArrayList();
         StringBuffer str = null;
         
-        // compute the number of lines and the maximum width
-        int nlines = 1, w = 0, start = 0, end = text.indexOf(m_delim);
-        m_textDim.width = 0;
-        String line;
-        for ( ; end >= 0; ++nlines ) {
-            w = fm.stringWidth(line=text.substring(start,end));
+        // compute the lines and the maximum width
+        int w, width = 0, start = 0, end;
+        do {
+            end = text.indexOf(m_delim, start);
+            String line = ( end < 0 ? text.substring(start)
+                                    : text.substring(start, end) );
+            w = fm.stringWidth(line);
             // abbreviate line as needed
             if ( m_maxTextWidth > -1 && w > m_maxTextWidth ) {
                 if ( str == null )
                     str = new StringBuffer(text.substring(0,start));
-                str.append(StringLib.abbreviate(line, fm, m_maxTextWidth));
-                str.append(m_delim);
+                line = StringLib.abbreviate(line, fm, m_maxTextWidth);
                 w = m_maxTextWidth;
+                str.append(line);
             } else if ( str != null ) {
-                str.append(line).append(m_delim);
+                str.append(line);
             }
+            if ( str != null && end >= 0 )
+                str.append(m_delim);
+            lines.add(line);
             // update maximum width and substring indices
-            m_textDim.width = Math.max(m_textDim.width, w);
+            width = Math.max(width, w);
             start = end+1;
-            end = text.indexOf(m_delim, start);
-        }
-        w = fm.stringWidth(line=text.substring(start));
-        // abbreviate line as needed
-        if ( m_maxTextWidth > -1 && w > m_maxTextWidth ) {
-            if ( str == null )
-                str = new StringBuffer(text.substring(0,start));
-            str.append(StringLib.abbreviate(line, fm, m_maxTextWidth));
-            w = m_maxTextWidth;
-        } else if ( str != null ) {
-            str.append(line);
-        }
-        // update maximum width
-        m_textDim.width = Math.max(m_textDim.width, w);
-        
-        // compute the text height
-        m_textDim.height = fm.getHeight() * nlines;
+        } while ( end >= 0 );
         
-        return str==null ? text : str.toString();
+        LabelLayout layout = new LabelLayout();
+        layout.text = ( str==null ? text : str.toString() );
+        layout.lines = (String[])lines.toArray(new String[lines.size()]);
+        layout.widths = new int[layout.lines.length];
+        for ( int i=0; i<layout.lines.length; ++i )
+            layout.widths[i] = fm.stringWidth(layout.lines[i]);
+        layout.width = width;
+        layout.height = fm.getHeight() * layout.lines.length;
+        layout.ascent = fm.getAscent();
+        layout.lineHeight = fm.getHeight();
+        return layout;
     }
     
     /**
@@ -477,9 +575,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
         // render text
         int textColor = item.getTextColor();
         if ( text != null && ColorLib.alpha(textColor) > 0 ) {
-            g.setPaint(ColorLib.getColor(textColor));
-            g.setFont(m_font);
-            FontMetrics fm = DEFAULT_GRAPHICS.getFontMetrics(m_font);
+            LabelLayout layout = m_layout;
 
             // compute available width
             double tw;
@@ -503,8 +599,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
                 th = m_textDim.height;
             }
             
-            // compute starting y-coordinate
-            y += fm.getAscent();
+            // compute the top of the text
             switch ( m_vTextAlign ) {
             case Constants.TOP:
                 break;
@@ -515,15 +610,13 @@ public class LabelRenderer extends AbstractShapeRenderer {
                 y += (th - m_textDim.height)/2;
             }
             
-            // render each line of text
-            int lh = fm.getHeight(); // the line height
-            int start = 0, end = text.indexOf(m_delim);
-            for ( ; end >= 0; y += lh ) {
-                drawString(g, fm, text.substring(start, end), useInt, x, y, tw);
-                start = end+1;
-                end = text.indexOf(m_delim, start);   
+            if ( !m_bitmaps ||
+                 !drawTextBitmap(g, layout, textColor, useInt, x, y, tw) )
+            {
+                g.setPaint(ColorLib.getColor(textColor));
+                g.setFont(m_font);
+                drawText(g, layout, useInt, x, y, tw);
             }
-            drawString(g, fm, text.substring(start), useInt, x, y, tw);
         }
     
         // draw border
@@ -532,32 +625,103 @@ public class LabelRenderer extends AbstractShapeRenderer {
         }
     }
     
-    private final void drawString(Graphics2D g, FontMetrics fm, String text,
+    /**
+     * Draw each line of a text layout, with the top of the text at the
+     * given y-coordinate.
+     */
+    private final void drawText(Graphics2D g, LabelLayout layout,
             boolean useInt, double x, double y, double w)
     {
-        // compute the x-coordinate
-        double tx;
-        switch ( m_hTextAlign ) {
-        case Constants.LEFT:
-            tx = x;
-            break;
-        case Constants.RIGHT:
-            tx = x + w - fm.stringWidth(text);
-            break;
-        case Constants.CENTER:
-            tx = x + (w - fm.stringWidth(text)) / 2;
-            break;
-        default:
-            throw new IllegalStateException(
-                    "Unrecognized text alignment setting.");
+        GlyphVector[] glyphs = layout.getGlyphs(m_font,
+                                                g.getFontRenderContext());
+        y += layout.ascent;
+        for ( int i=0; i<layout.lines.length; ++i, y += layout.lineHeight ) {
+            // compute the x-coordinate
+            double tx;
+            switch ( m_hTextAlign ) {
+            case Constants.LEFT:
+                tx = x;
+                break;
+            case Constants.RIGHT:
+                tx = x + w - layout.widths[i];
+                break;
+            case Constants.CENTER:
+                tx = x + (w - layout.widths[i]) / 2;
+                break;
+            default:
+                throw new IllegalStateException(
+                        "Unrecognized text alignment setting.");
+            }
+            // use integer precision unless zoomed-in
+            // results in more stable drawing
+            float fx = useInt ? (int)tx : (float)tx;
+            float fy = useInt ? (int)y  : (float)y;
+            if ( glyphs[i] != null ) {
+                g.drawGlyphVector(glyphs[i], fx, fy);
+            } else if ( useInt ) {
+                g.drawString(layout.lines[i], (int)fx, (int)fy);
+            } else {
+                g.drawString(layout.lines[i], fx, fy);
+            }
         }
-        // use integer precision unless zoomed-in
-        // results in more stable drawing
-        if ( useInt ) {
-            g.drawString(text, (int)tx, (int)y);
-        } else {
-            g.drawString(text, (float)tx, (float)y);
+    }
+    
+    /**
+     * Draw text from a cached bitmap, rendering the bitmap if the current
+     * one was drawn with different settings. Returns false if the graphics
+     * transform is not a uniform scale and translation.
+     */
+    private boolean drawTextBitmap(Graphics2D g, LabelLayout layout,
+            int color, boolean useInt, double x, double y, double w)
+    {
+        AffineTransform at = g.getTransform();
+        double scale = at.getScaleX();
+        if ( at.getShearX() != 0 || at.getShearY() != 0 ||
+             scale != at.getScaleY() || scale <= 0 )
+            return false;
+        
+        Bitmap b = layout.bitmap;
+        if ( b == null || b.scale != scale || b.color != color ||
+             b.width != w || b.align != m_hTextAlign ||
+             b.useInt != useInt || !b.hasHints(g) )
+        {
+            // pad the image to hold glyphs extending past their advance
+            int pad = 2 + (int)Math.ceil(scale*m_font.getSize2D()/4);
+            int iw = (int)Math.ceil(scale*Math.max(w, layout.width)) + 2*pad;
+            int ih = (int)Math.ceil(scale*layout.height) + 2*pad;
+            BufferedImage img = new BufferedImage(iw, ih,
+                                    BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D ig = img.createGraphics();
+            ig.setRenderingHints(g.getRenderingHints());
+            ig.translate(pad, pad);
+            ig.scale(scale, scale);
+            ig.setPaint(ColorLib.getColor(color));
+            ig.setFont(m_font);
+            drawText(ig, layout, useInt, 0, 0, w);
+            ig.dispose();
+            
+            // a new bitmap is created on each change, so that images
+            // already drawn are never modified
+            b = new Bitmap();
+            b.image = img;
+            b.pad = pad;
+            b.scale = scale;
+            b.color = color;
+            b.width = w;
+            b.align = m_hTextAlign;
+            b.useInt = useInt;
+            b.setHints(g);
+            layout.bitmap = b;
         }
+        
+        // draw the bitmap at the nearest device pixel
+        m_pt.setLocation(x, y);
+        at.transform(m_pt, m_pt);
+        g.setTransform(new AffineTransform());
+        g.drawImage(b.image, (int)Math.round(m_pt.getX())-b.pad,
+                    (int)Math.round(m_pt.getY())-b.pad, null);
+        g.setTransform(at);
+        return true;
     }
     
     /**
@@ -806,4 +970,115 @@ public class LabelRenderer extends AbstractShapeRenderer {
         m_imageMargin = pad;
     }
     
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Key for the text layout cache.
+     */
+    private static final class LayoutKey {
+        String text;
+        Font font;
+        int maxWidth;
+        String delim;
+        
+        LayoutKey set(String text, Font font, int maxWidth, String delim) {
+            this.text = text;
+            this.font = font;
+            this.maxWidth = maxWidth;
+            this.delim = delim;
+            return this;
+        }
+        public int hashCode() {
+            int h = (text.hashCode()*31 + font.hashCode())*31 + maxWidth;
+            return h*31 + delim.hashCode();
+        }
+        public boolean equals(Object o) {
+            if ( !(o instanceof LayoutKey) ) return false;
+            LayoutKey k = (LayoutKey)o;
+            return maxWidth == k.maxWidth && text.equals(k.text)
+                && font.equals(k.font) && delim.equals(k.delim);
+        }
+    } // end of class LayoutKey
+    
+    /**
+     * The measured lines of a label's text, along with their glyphs and,
+     * optionally, a bitmap of the rendered text.
+     */
+    private static final class LabelLayout {
+        String text;        // the (abbreviated) text
+        String[] lines;     // the lines of text
+        int[] widths;       // the width of each line
+        int width, height;  // the dimensions of the text
+        int ascent, lineHeight;
+        
+        FontRenderContext frc; // context the glyphs were created for
+        GlyphVector[] glyphs;
+        Bitmap bitmap;
+        
+        /**
+         * Get the glyphs of each line, for the given rendering context.
+         * Lines that may require complex text layout have no glyphs.
+         */
+        GlyphVector[] getGlyphs(Font font, FontRenderContext frc) {
+            if ( glyphs == null || !frc.equals(this.frc) ) {
+                GlyphVector[] gv = new GlyphVector[lines.length];
+                for ( int i=0; i<lines.length; ++i ) {
+                    if ( isSimple(lines[i]) )
+                        gv[i] = font.createGlyphVector(frc, lines[i]);
+                }
+                this.frc = frc;
+                this.glyphs = gv;
+            }
+            return glyphs;
+        }
+        
+        /**
+         * Indicates if text contains no characters from scripts that need
+         * reordering or shaping (Hebrew onwards), which drawString lays out
+         * differently from a plain glyph vector.
+         */
+        private static boolean isSimple(String s) {
+            for ( int i=0; i<s.length(); ++i ) {
+                if ( s.charAt(i) >= '\u0590' )
+                    return false;
+            }
+            return true;
+        }
+    } // end of class LabelLayout
+    
+    /**
+     * A rendered text image, and the settings it was rendered with.
+     */
+    private static final class Bitmap {
+        BufferedImage image;
+        int pad;
+        double scale;
+        int color;
+        double width;
+        int align;
+        boolean useInt;
+        Object[] hints = new Object[HINTS.length];
+        
+        /** The rendering hints that affect how text is drawn. */
+        static final RenderingHints.Key[] HINTS = {
+            RenderingHints.KEY_ANTIALIASING,
+            RenderingHints.KEY_TEXT_ANTIALIASING,
+            RenderingHints.KEY_FRACTIONALMETRICS,
+            RenderingHints.KEY_RENDERING
+        };
+        
+        void setHints(Graphics2D g) {
+            for ( int i=0; i<HINTS.length; ++i )
+                hints[i] = g.getRenderingHint(HINTS[i]);
+        }
+        boolean hasHints(Graphics2D g) {
+            for ( int i=0; i<HINTS.length; ++i ) {
+                Object h = g.getRenderingHint(HINTS[i]);
+                if ( h == null ? hints[i] != null : !h.equals(hints[i]) )
+                    return false;
+            }
+            return true;
+        }
+    } // end of class Bitmap
+    
 } // end of class LabelRenderer
@@ -31,6 +31,21 @@ import prefuse.util.io.IOLib;
  * <li><code>data.filter.optimizeThreshold</code> - the minimum number of items
  * that must be contained in a table for optimized query plans to be
  * considered. The default value is 300.</li>
+ * <li><code>data.expression.compile</code> - indicates if filter predicates
+ * and derived column expressions evaluated over tables should be compiled
+ * using the {@link prefuse.data.expression.ExpressionCompiler}. The default
+ * value is false.</li>
+ * <li><code>data.expression.cacheSize</code> - the maximum number of
+ * parsed expressions cached by the
+ * {@link prefuse.data.expression.parser.ExpressionParser}, keyed by their
+ * text. A value of zero disables the cache. The default value is 256.</li>
+ * <li><code>data.index.sortedMap</code> - the sorted map implementation
+ * backing column indices, either "tree" for red-black trees or "array" for
+ * compact blocks of sorted primitive arrays. The default value is
+ * "array".</li>
+ * <li><code>data.io.dictionaryStrings</code> - indicates if data readers
+ * should store String columns using dictionary encoding, with each
+ * distinct value stored only once. The default value is true.</li>
  * <li><code>util.logdir</code> - the directory in which to write prefuse log
  * files. The default is "null" which defaults logging output to standard
  * output.</li> 
@@ -202,6 +217,18 @@ public class PrefuseConfig extends Properties {
         // on tables with more rows than this threshold value
         setProperty("data.filter.optimizeThreshold", "300");
         
+        // compile expressions evaluated over large tables
+        setProperty("data.expression.compile", "false");
+        
+        // cache parsed expressions by their text
+        setProperty("data.expression.cacheSize", "256");
+        
+        // back column indices with compact sorted block arrays
+        setProperty("data.index.sortedMap", "array");
+        
+        // dictionary encode String columns created by data readers
+        setProperty("data.io.dictionaryStrings", "true");
+        
         // setProperty("data.graph.nodeKey", null); // intentionally null
         setProperty("data.graph.sourceKey", "source");
         setProperty("data.graph.targetKey", "target");
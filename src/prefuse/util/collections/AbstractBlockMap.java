@@ -0,0 +1,808 @@
+package prefuse.util.collections;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Abstract base class for sorted maps that map a key value to an int
+ * value using sorted blocks of primitive arrays. Entries are stored in key
+ * order across a sequence of blocks, each holding up to
+ * {@link #BLOCK_SIZE} keys and values in parallel arrays, and lookups
+ * binary search first over the blocks and then within a block. This is
+ * equivalent to a B+tree with a single level of inner nodes, and provides
+ * the same ordering and iteration semantics as the red-black trees of
+ * {@link AbstractTreeMap}, including the insertion ordering of duplicate
+ * keys, while using a fraction of the memory and allowing range scans to
+ * proceed sequentially through memory.</p>
+ *
+ * <p>Subclasses provide the key arrays and key comparisons. Query keys are
+ * passed to the methods of this class by first storing them in a "probe"
+ * field of the subclass.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public abstract class AbstractBlockMap implements IntSortedMap {
+
+    /** The maximum number of entries stored in a block. */
+    public static final int BLOCK_SIZE = 512;
+
+    protected Object[] keys = new Object[4];
+    protected int[][] vals = new int[4][];
+    protected int[] sizes = new int[4];
+    protected int nblocks = 0;
+
+    protected boolean allowDuplicates;
+    protected int size = 0;
+    protected int unique = 0;
+    protected int modCount = 0;
+
+    private int[] offsets = new int[4];
+    private boolean offsetsValid = true;
+
+    // ------------------------------------------------------------------------
+    // Constructors
+
+    public AbstractBlockMap(boolean allowDuplicates) {
+        this.allowDuplicates = allowDuplicates;
+    }
+
+    // ------------------------------------------------------------------------
+    // Key Access
+
+    /**
+     * Create a new key array.
+     * @param n the length of the array
+     * @return the new key array
+     */
+    protected abstract Object newKeys(int n);
+
+    /**
+     * Compare the probe key to a stored key.
+     * @param keys a key array
+     * @param i the index into the key array
+     * @return a negative, zero, or positive value if the probe key is less
+     * than, equal to, or greater than the stored key
+     */
+    protected abstract int compareProbe(Object keys, int i);
+
+    /**
+     * Store the probe key in a key array.
+     * @param keys a key array
+     * @param i the index into the key array
+     */
+    protected abstract void storeProbe(Object keys, int i);
+
+    /**
+     * Set the probe key to a stored key.
+     * @param keys a key array
+     * @param i the index into the key array
+     */
+    protected abstract void loadProbe(Object keys, int i);
+
+    /**
+     * Get a stored key as an Object.
+     * @param keys a key array
+     * @param i the index into the key array
+     * @return the key Object
+     */
+    protected abstract Object getKey(Object keys, int i);
+
+    /**
+     * Compare two stored keys. Unlike the probe methods, this method must
+     * not modify the state of the map, as it is used by concurrent sorting
+     * threads during bulk loading.
+     * @param k1 the key array holding the first key
+     * @param i the index of the first key
+     * @param k2 the key array holding the second key
+     * @param j the index of the second key
+     * @return a negative, zero, or positive value if the first key is less
+     * than, equal to, or greater than the second key
+     */
+    protected abstract int compareKeys(Object k1, int i, Object k2, int j);
+
+    /**
+     * Copy a stored key from one key array to another.
+     * @param src the source key array
+     * @param i the index into the source array
+     * @param dst the destination key array
+     * @param j the index into the destination array
+     */
+    protected abstract void copyKey(Object src, int i, Object dst, int j);
+
+    // ------------------------------------------------------------------------
+    // Accessor Methods
+
+    public boolean isAllowDuplicates() {
+        return allowDuplicates;
+    }
+
+    /**
+     * @see java.util.Map#size()
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @see java.util.Map#clear()
+     */
+    public void clear() {
+        ++modCount;
+        keys = new Object[4];
+        vals = new int[4][];
+        sizes = new int[4];
+        nblocks = 0;
+        size = 0;
+        unique = 0;
+        offsetsValid = false;
+    }
+
+    public int getMinimum() {
+        return ( size == 0 ? Integer.MIN_VALUE : vals[0][0] );
+    }
+
+    public int getMaximum() {
+        if ( size == 0 ) return Integer.MIN_VALUE;
+        int b = nblocks-1;
+        return vals[b][sizes[b]-1];
+    }
+
+    public int getMedian() {
+        if ( size == 0 ) return Integer.MIN_VALUE;
+        int b = block(size/2);
+        return vals[b][size/2 - offsets[b]];
+    }
+
+    public int getUniqueCount() {
+        return unique;
+    }
+
+    /**
+     * @see java.util.Map#containsValue(java.lang.Object)
+     */
+    public boolean containsValue(int value) {
+        for ( int b=0; b<nblocks; ++b ) {
+            int[] v = vals[b];
+            for ( int i=0, n=sizes[b]; i<n; ++i )
+                if ( v[i] == value ) return true;
+        }
+        return false;
+    }
+
+    // -- Collection view methods ---------------------------------------------
+
+    public IntIterator valueIterator(boolean ascend) {
+        return new ValueIterator(ascend ? new EntryIterator(0, size)
+                                        : new EntryIterator(size-1, -1));
+    }
+
+    // ------------------------------------------------------------------------
+    // Positions
+
+    /**
+     * Get the block containing the given position, updating the block
+     * offsets if needed.
+     */
+    protected int block(int pos) {
+        if ( !offsetsValid ) {
+            if ( offsets.length < nblocks )
+                offsets = new int[keys.length];
+            for ( int b=0, off=0; b<nblocks; off += sizes[b++] )
+                offsets[b] = off;
+            offsetsValid = true;
+        }
+        int lo = 0, hi = nblocks-1;
+        while ( lo < hi ) {
+            int mid = (lo+hi+1) >>> 1;
+            if ( offsets[mid] <= pos )
+                lo = mid;
+            else
+                hi = mid-1;
+        }
+        return lo;
+    }
+
+    /**
+     * Get the position of the first entry whose key is greater than or
+     * equal to the probe key, or if upper is true, the first entry whose
+     * key is greater than the probe key. Returns the size of the map if
+     * there is no such entry.
+     */
+    protected int bound(boolean upper) {
+        int b = findBlock(upper);
+        if ( b == nblocks ) return size;
+        int i = findIndex(b, upper);
+        block(0); // validate offsets
+        return offsets[b] + i;
+    }
+
+    /**
+     * Find the first block whose last key is greater than or equal to the
+     * probe key (or greater than the probe key, if upper is true).
+     */
+    private int findBlock(boolean upper) {
+        int lo = 0, hi = nblocks;
+        while ( lo < hi ) {
+            int mid = (lo+hi) >>> 1;
+            int c = compareProbe(keys[mid], sizes[mid]-1);
+            if ( c < 0 || (c == 0 && !upper) )
+                hi = mid;
+            else
+                lo = mid+1;
+        }
+        return lo;
+    }
+
+    /**
+     * Find the first index within a block whose key is greater than or
+     * equal to the probe key (or greater than the probe key, if upper is
+     * true).
+     */
+    private int findIndex(int b, boolean upper) {
+        Object k = keys[b];
+        int lo = 0, hi = sizes[b];
+        while ( lo < hi ) {
+            int mid = (lo+hi) >>> 1;
+            int c = compareProbe(k, mid);
+            if ( c < 0 || (c == 0 && !upper) )
+                hi = mid;
+            else
+                lo = mid+1;
+        }
+        return lo;
+    }
+
+    // ------------------------------------------------------------------------
+    // Bulk Loading
+
+    /**
+     * Replace the contents of this map with the given keys and values. The
+     * entries are sorted by key and the blocks are then filled in a single
+     * pass, avoiding the cost of inserting entries one at a time. Duplicate
+     * keys retain the order in which they appear in the input, just as if
+     * the entries had been put into the map in order. If duplicates are not
+     * allowed, the last value for each key is kept.
+     * @param k the key array, which is sorted in place
+     * @param v the value array, which is sorted in place
+     * @param n the number of entries to load
+     */
+    protected void load(Object k, int[] v, int n) {
+        sort(k, v, n);
+        clear();
+
+        // compute unique counts, removing duplicates if necessary
+        int len = 0;
+        for ( int i=0; i<n; ++i ) {
+            if ( len > 0 && compareKeys(k, len-1, k, i) == 0 ) {
+                if ( allowDuplicates ) {
+                    copyKey(k, i, k, len);
+                    v[len++] = v[i];
+                } else {
+                    v[len-1] = v[i];
+                }
+            } else {
+                copyKey(k, i, k, len);
+                v[len++] = v[i];
+                ++unique;
+            }
+        }
+
+        // fill blocks bottom-up
+        for ( int off=0; off<len; off += BLOCK_SIZE ) {
+            int b = addBlock(nblocks);
+            int bsize = Math.min(BLOCK_SIZE, len-off);
+            System.arraycopy(k, off, keys[b], 0, bsize);
+            System.arraycopy(v, off, vals[b], 0, bsize);
+            sizes[b] = bsize;
+        }
+        size = len;
+    }
+
+    /**
+     * Perform a stable sort of the given keys and values. Large arrays are
+     * sorted using multiple threads when more than one processor is
+     * available.
+     */
+    private void sort(Object k, int[] v, int n) {
+        int threads = 1;
+        if ( n >= PARALLEL_THRESHOLD )
+            threads = Runtime.getRuntime().availableProcessors();
+        mergesort(k, v, newKeys(n), new int[n], 0, n, threads);
+    }
+
+    /** The minimum number of entries for which bulk loading sorts in
+     * parallel. */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    /** The range size below which merge sorting uses insertion sort. */
+    private static final int SORT_THRESHOLD = 16;
+
+    private void mergesort(final Object k, final int[] v,
+                           final Object tk, final int[] tv,
+                           final int lo, final int hi, int threads)
+    {
+        if ( hi-lo < SORT_THRESHOLD ) {
+            insertionsort(k, v, tk, lo, hi);
+            return;
+        }
+        final int mid = (lo+hi) >>> 1;
+        if ( threads > 1 ) {
+            final int t = threads/2;
+            final RuntimeException[] error = new RuntimeException[1];
+            Thread sorter = new Thread() {
+                public void run() {
+                    try {
+                        mergesort(k, v, tk, tv, lo, mid, t);
+                    } catch ( RuntimeException e ) {
+                        error[0] = e;
+                    }
+                }
+            };
+            sorter.start();
+            mergesort(k, v, tk, tv, mid, hi, threads-t);
+            boolean interrupted = false;
+            for ( ;; ) {
+                try {
+                    sorter.join();
+                    break;
+                } catch ( InterruptedException e ) {
+                    interrupted = true;
+                }
+            }
+            if ( interrupted )
+                Thread.currentThread().interrupt();
+            if ( error[0] != null )
+                throw error[0];
+        } else {
+            mergesort(k, v, tk, tv, lo, mid, 1);
+            mergesort(k, v, tk, tv, mid, hi, 1);
+        }
+
+        // skip the merge if the halves are already in order
+        if ( compareKeys(k, mid-1, k, mid) <= 0 )
+            return;
+
+        System.arraycopy(k, lo, tk, lo, hi-lo);
+        System.arraycopy(v, lo, tv, lo, hi-lo);
+        int i = lo, p = lo, q = mid;
+        while ( p < mid && q < hi ) {
+            if ( compareKeys(tk, p, tk, q) <= 0 ) {
+                copyKey(tk, p, k, i);
+                v[i++] = tv[p++];
+            } else {
+                copyKey(tk, q, k, i);
+                v[i++] = tv[q++];
+            }
+        }
+        for ( ; p < mid; ++p, ++i ) {
+            copyKey(tk, p, k, i);
+            v[i] = tv[p];
+        }
+        for ( ; q < hi; ++q, ++i ) {
+            copyKey(tk, q, k, i);
+            v[i] = tv[q];
+        }
+    }
+
+    /**
+     * Insertion sort over a small range, using the same range of the
+     * temporary key array to hold the key being moved.
+     */
+    private void insertionsort(Object k, int[] v, Object tk, int lo, int hi) {
+        for ( int j=lo+1; j<hi; ++j ) {
+            if ( compareKeys(k, j-1, k, j) <= 0 )
+                continue;
+            copyKey(k, j, tk, lo);
+            int val = v[j];
+            int i = j-1;
+            while ( i >= lo && compareKeys(k, i, tk, lo) > 0 ) {
+                copyKey(k, i, k, i+1);
+                v[i+1] = v[i];
+                --i;
+            }
+            copyKey(tk, lo, k, i+1);
+            v[i+1] = val;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Locations
+    //   Map operations address entries by block and index within the block,
+    //   so that updates do not need to maintain the block offsets. A
+    //   location is packed into a long, and the end of the map is located
+    //   at block nblocks, index 0.
+
+    private static long loc(int b, int i) {
+        return ((long)b << 32) | i;
+    }
+
+    private static int blk(long loc) {
+        return (int)(loc >> 32);
+    }
+
+    private static int idx(long loc) {
+        return (int)loc;
+    }
+
+    /**
+     * Locate the first entry whose key is greater than or equal to the
+     * probe key, or if upper is true, the first entry whose key is greater
+     * than the probe key.
+     */
+    private long locate(boolean upper) {
+        int b = findBlock(upper);
+        return loc(b, b == nblocks ? 0 : findIndex(b, upper));
+    }
+
+    private long next(long loc) {
+        int b = blk(loc), i = idx(loc) + 1;
+        return ( i < sizes[b] ? loc(b, i) : loc(b+1, 0) );
+    }
+
+    /**
+     * Get the location preceding the given one, with a negative block if
+     * there is none.
+     */
+    private long previous(long loc) {
+        int b = blk(loc), i = idx(loc) - 1;
+        if ( i >= 0 ) return loc(b, i);
+        return ( b == 0 ? loc(-1, 0) : loc(b-1, sizes[b-1]-1) );
+    }
+
+    /**
+     * Indicates if the key at the given location equals the probe key.
+     */
+    private boolean probeEquals(long loc) {
+        int b = blk(loc);
+        return b >= 0 && b < nblocks && compareProbe(keys[b], idx(loc)) == 0;
+    }
+
+    private int valueAt(long loc) {
+        return vals[blk(loc)][idx(loc)];
+    }
+
+    // ------------------------------------------------------------------------
+    // Map Operations
+
+    /**
+     * Get the first value with the probe key.
+     */
+    protected int getProbe() {
+        long loc = locate(false);
+        return ( probeEquals(loc) ? valueAt(loc) : Integer.MIN_VALUE );
+    }
+
+    /**
+     * Get the last value with the probe key.
+     */
+    protected int getLastProbe() {
+        long loc = previous(locate(true));
+        return ( probeEquals(loc) ? valueAt(loc) : Integer.MIN_VALUE );
+    }
+
+    /**
+     * Find the location of the entry with the probe key and given value,
+     * with a negative block if there is no such entry.
+     */
+    private long findProbe(int value) {
+        for ( long loc = locate(false); probeEquals(loc); loc = next(loc) ) {
+            if ( valueAt(loc) == value )
+                return loc;
+        }
+        return loc(-1, 0);
+    }
+
+    /**
+     * Get the value following the entry with the probe key and given value.
+     */
+    protected int getNextProbe(int value) {
+        long loc = findProbe(value);
+        if ( blk(loc) < 0 ) return Integer.MIN_VALUE;
+        loc = next(loc);
+        return ( blk(loc) == nblocks ? Integer.MIN_VALUE : valueAt(loc) );
+    }
+
+    /**
+     * Get the value preceding the entry with the probe key and given value.
+     */
+    protected int getPreviousProbe(int value) {
+        long loc = findProbe(value);
+        if ( blk(loc) < 0 ) return Integer.MIN_VALUE;
+        loc = previous(loc);
+        return ( blk(loc) < 0 ? Integer.MIN_VALUE : valueAt(loc) );
+    }
+
+    /**
+     * Map the probe key to the given value.
+     */
+    protected int putProbe(int value) {
+        if ( allowDuplicates ) {
+            // new duplicates are placed after existing ones
+            long loc = locate(true);
+            boolean isUnique = !probeEquals(previous(loc));
+            insert(blk(loc), idx(loc), value, isUnique);
+            return Integer.MIN_VALUE;
+        } else {
+            long loc = locate(false);
+            if ( probeEquals(loc) ) {
+                int b = blk(loc), i = idx(loc);
+                int old = vals[b][i];
+                vals[b][i] = value;
+                return old;
+            }
+            insert(blk(loc), idx(loc), value, true);
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Remove the last entry with the probe key.
+     */
+    protected int removeProbe() {
+        long loc = previous(locate(true));
+        if ( !probeEquals(loc) )
+            return Integer.MIN_VALUE;
+        int val = valueAt(loc);
+        remove(blk(loc), idx(loc));
+        return val;
+    }
+
+    /**
+     * Remove the entry with the probe key and given value.
+     */
+    protected int removeProbe(int value) {
+        long loc = findProbe(value);
+        if ( blk(loc) < 0 )
+            return Integer.MIN_VALUE;
+        remove(blk(loc), idx(loc));
+        return value;
+    }
+
+    /**
+     * Insert the probe key with the given value at the given location.
+     */
+    private void insert(int b, int i, int value, boolean isUnique) {
+        if ( nblocks == 0 ) {
+            b = addBlock(0);
+        } else if ( b == nblocks ) {
+            // append to the last block
+            b = nblocks-1;
+            i = sizes[b];
+        }
+
+        if ( sizes[b] == BLOCK_SIZE ) {
+            if ( i == BLOCK_SIZE ) {
+                // appending at the end of a full block, start a new block
+                b = addBlock(b+1);
+                i = 0;
+            } else {
+                // split the block in two
+                int half = BLOCK_SIZE/2;
+                int nb = addBlock(b+1);
+                System.arraycopy(keys[b], half, keys[nb], 0, BLOCK_SIZE-half);
+                System.arraycopy(vals[b], half, vals[nb], 0, BLOCK_SIZE-half);
+                sizes[b] = half;
+                sizes[nb] = BLOCK_SIZE-half;
+                if ( i > half ) {
+                    b = nb;
+                    i -= half;
+                }
+            }
+        }
+
+        int n = sizes[b];
+        if ( i < n ) {
+            System.arraycopy(keys[b], i, keys[b], i+1, n-i);
+            System.arraycopy(vals[b], i, vals[b], i+1, n-i);
+        }
+        storeProbe(keys[b], i);
+        vals[b][i] = value;
+        sizes[b] = n+1;
+
+        ++size; ++modCount;
+        if ( isUnique ) ++unique;
+        offsetsValid = false;
+    }
+
+    /**
+     * Remove the entry at the given position.
+     * @param pos the position of the entry in key order
+     */
+    protected void removeAt(int pos) {
+        int b = block(pos);
+        remove(b, pos - offsets[b]);
+    }
+
+    /**
+     * Remove the entry at the given location.
+     */
+    private void remove(int b, int i) {
+        long loc = loc(b, i);
+        loadProbe(keys[b], i);
+        boolean isUnique = !probeEquals(previous(loc))
+                        && !probeEquals(next(loc));
+
+        int n = sizes[b] - 1;
+        if ( i < n ) {
+            System.arraycopy(keys[b], i+1, keys[b], i, n-i);
+            System.arraycopy(vals[b], i+1, vals[b], i, n-i);
+        }
+        sizes[b] = n;
+
+        if ( n == 0 ) {
+            removeBlock(b);
+        } else if ( n < BLOCK_SIZE/4 && b+1 < nblocks
+                    && n + sizes[b+1] <= BLOCK_SIZE )
+        {
+            // merge sparse blocks
+            System.arraycopy(keys[b+1], 0, keys[b], n, sizes[b+1]);
+            System.arraycopy(vals[b+1], 0, vals[b], n, sizes[b+1]);
+            sizes[b] = n + sizes[b+1];
+            removeBlock(b+1);
+        }
+
+        --size; ++modCount;
+        if ( isUnique ) --unique;
+        offsetsValid = false;
+    }
+
+    private int addBlock(int b) {
+        if ( nblocks == keys.length ) {
+            int capacity = (3*nblocks)/2 + 1;
+            Object[] k = new Object[capacity];
+            int[][] v = new int[capacity][];
+            int[] s = new int[capacity];
+            System.arraycopy(keys, 0, k, 0, nblocks);
+            System.arraycopy(vals, 0, v, 0, nblocks);
+            System.arraycopy(sizes, 0, s, 0, nblocks);
+            keys = k; vals = v; sizes = s;
+        }
+        System.arraycopy(keys, b, keys, b+1, nblocks-b);
+        System.arraycopy(vals, b, vals, b+1, nblocks-b);
+        System.arraycopy(sizes, b, sizes, b+1, nblocks-b);
+        keys[b] = newKeys(BLOCK_SIZE);
+        vals[b] = new int[BLOCK_SIZE];
+        sizes[b] = 0;
+        ++nblocks;
+        offsetsValid = false;
+        return b;
+    }
+
+    private void removeBlock(int b) {
+        --nblocks;
+        System.arraycopy(keys, b+1, keys, b, nblocks-b);
+        System.arraycopy(vals, b+1, vals, b, nblocks-b);
+        System.arraycopy(sizes, b+1, sizes, b, nblocks-b);
+        keys[nblocks] = null;
+        vals[nblocks] = null;
+        offsetsValid = false;
+    }
+
+    /**
+     * Get the start and end positions of a range of entries. If the range
+     * is ascending, the start position is inclusive and the end position
+     * exclusive. If the range is descending, entries are visited from the
+     * start position down to, but not including, the end position.
+     * @param ascend true for an ascending range, false for descending
+     * @param fromStart the position of the first entry with a key greater
+     * than or equal to the from key
+     * @param fromEnd the position of the first entry with a key greater
+     * than the from key
+     * @param fromInc indicates if the from key is inclusive
+     * @param toStart the position of the first entry with a key greater
+     * than or equal to the to key
+     * @param toEnd the position of the first entry with a key greater
+     * than the to key
+     * @param toInc indicates if the to key is inclusive
+     * @return the start and end positions, as a two element array
+     */
+    protected static int[] range(boolean ascend,
+            int fromStart, int fromEnd, boolean fromInc,
+            int toStart, int toEnd, boolean toInc)
+    {
+        if ( ascend ) {
+            int start = fromInc ? fromStart : fromEnd;
+            int end = toInc ? toEnd : toStart;
+            return new int[] { start, Math.max(start, end) };
+        } else {
+            int start = (fromInc ? fromEnd : fromStart) - 1;
+            int end = (toInc ? toStart : toEnd) - 1;
+            return new int[] { start, Math.min(start, end) };
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Iterators
+
+    protected class EntryIterator extends AbstractLiteralIterator {
+        private int expectedModCount = AbstractBlockMap.this.modCount;
+        private final boolean reverse;
+        private int pos, end;
+        protected int blk, off;
+        private int last = -1;
+
+        protected EntryIterator(int start, int end) {
+            this.pos = start;
+            this.end = end;
+            this.reverse = end < start;
+            seek();
+        }
+
+        private void seek() {
+            if ( pos != end ) {
+                blk = block(pos);
+                off = pos - offsets[blk];
+            }
+        }
+
+        public boolean hasNext() {
+            return pos != end;
+        }
+
+        /**
+         * Advance to the next entry, setting the block and offset fields
+         * to the location of the returned entry.
+         */
+        final void nextEntry() {
+            if ( !hasNext() )
+                throw new NoSuchElementException();
+            if ( modCount != expectedModCount )
+                throw new ConcurrentModificationException();
+            if ( last != -1 ) {
+                // step the cursor past the previously returned entry
+                if ( reverse ) {
+                    if ( --off < 0 ) off = sizes[--blk]-1;
+                } else {
+                    if ( ++off == sizes[blk] ) { ++blk; off = 0; }
+                }
+            }
+            last = pos;
+            pos += reverse ? -1 : 1;
+        }
+
+        public Object next() {
+            nextEntry();
+            return getKey(keys[blk], off);
+        }
+
+        final int value() {
+            return vals[blk][off];
+        }
+
+        public void remove() {
+            if ( last == -1 )
+                throw new IllegalStateException();
+            if ( modCount != expectedModCount )
+                throw new ConcurrentModificationException();
+            removeAt(last);
+            if ( !reverse ) {
+                --pos; --end;
+            }
+            last = -1;
+            ++expectedModCount;
+            seek();
+        }
+    }
+
+    protected class ValueIterator extends IntIterator {
+        EntryIterator m_iter;
+
+        public ValueIterator(EntryIterator iter) {
+            m_iter = iter;
+        }
+        public boolean hasNext() {
+            return m_iter.hasNext();
+        }
+        public int nextInt() {
+            m_iter.nextEntry();
+            return m_iter.value();
+        }
+        public void remove() {
+            m_iter.remove();
+        }
+    }
+
+} // end of abstract class AbstractBlockMap
@@ -0,0 +1,198 @@
+package prefuse.util.collections;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted map implementation using sorted blocks of primitive arrays to map
+ * from double keys to int values.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see AbstractBlockMap
+ */
+public class DoubleIntBlockMap extends AbstractBlockMap
+    implements DoubleIntSortedMap
+{
+
+    private LiteralComparator cmp;
+    private double probe;
+
+    // ------------------------------------------------------------------------
+    // Constructors
+
+    public DoubleIntBlockMap() {
+        this(null, false);
+    }
+
+    public DoubleIntBlockMap(boolean allowDuplicates) {
+        this(null, allowDuplicates);
+    }
+
+    public DoubleIntBlockMap(LiteralComparator comparator) {
+        this(comparator, false);
+    }
+
+    public DoubleIntBlockMap(LiteralComparator comparator,
+                          boolean allowDuplicates)
+    {
+        super(allowDuplicates);
+        this.cmp = comparator==null ? DefaultLiteralComparator.getInstance()
+                                    : comparator;
+    }
+
+    /**
+     * @see java.util.SortedMap#comparator()
+     */
+    public Comparator comparator() {
+        return cmp;
+    }
+
+    // ------------------------------------------------------------------------
+    // Key Access
+
+    protected Object newKeys(int n) {
+        return new double[n];
+    }
+
+    protected int compareProbe(Object keys, int i) {
+        return cmp.compare(probe, ((double[])keys)[i]);
+    }
+
+    protected void storeProbe(Object keys, int i) {
+        ((double[])keys)[i] = probe;
+    }
+
+    protected void loadProbe(Object keys, int i) {
+        probe = ((double[])keys)[i];
+    }
+
+    protected int compareKeys(Object k1, int i, Object k2, int j) {
+        return cmp.compare(((double[])k1)[i], ((double[])k2)[j]);
+    }
+
+    protected void copyKey(Object src, int i, Object dst, int j) {
+        ((double[])dst)[j] = ((double[])src)[i];
+    }
+
+    protected Object getKey(Object keys, int i) {
+        return new Double(((double[])keys)[i]);
+    }
+
+    // ------------------------------------------------------------------------
+    // SortedMap Methods
+
+    /**
+     * @see java.util.Map#containsKey(java.lang.Object)
+     */
+    public boolean containsKey(double key) {
+        probe = key;
+        return bound(false) < bound(true);
+    }
+
+    /**
+     * @see java.util.Map#get(java.lang.Object)
+     */
+    public int get(double key) {
+        probe = key;
+        return getProbe();
+    }
+
+    /**
+     * @see java.util.Map#put(java.lang.Object, java.lang.Object)
+     */
+    public int put(double key, int value) {
+        probe = key;
+        return putProbe(value);
+    }
+
+    /**
+     * @see java.util.Map#remove(java.lang.Object)
+     */
+    public int remove(double key) {
+        // remove the last instance with the given key
+        probe = key;
+        return removeProbe();
+    }
+
+    public int remove(double key, int val) {
+        probe = key;
+        return removeProbe(val);
+    }
+
+    /**
+     * Replace the contents of this map with the given keys and values,
+     * sorting and loading all entries at once. This is much faster than
+     * putting the entries into the map one at a time.
+     * @param keys the keys to load, which are sorted in place
+     * @param values the values to load, in the same order as the keys.
+     * The array is sorted in place.
+     * @param n the number of entries to load
+     */
+    public void load(double[] keys, int[] values, int n) {
+        load((Object)keys, values, n);
+    }
+
+    /**
+     * @see java.util.SortedMap#firstKey()
+     */
+    public double firstKey() {
+        if ( size == 0 ) throw new NoSuchElementException();
+        return ((double[])keys[0])[0];
+    }
+
+    /**
+     * @see java.util.SortedMap#lastKey()
+     */
+    public double lastKey() {
+        if ( size == 0 ) throw new NoSuchElementException();
+        return ((double[])keys[nblocks-1])[sizes[nblocks-1]-1];
+    }
+
+    // -- Collection view methods ---------------------------------------------
+
+    public LiteralIterator keyIterator() {
+        return new KeyIterator(0, size);
+    }
+
+    public LiteralIterator keyRangeIterator(double fromKey, boolean fromInc,
+                                            double toKey,   boolean toInc)
+    {
+        int[] r = range(fromKey, fromInc, toKey, toInc);
+        return new KeyIterator(r[0], r[1]);
+    }
+
+    public IntIterator valueRangeIterator(double fromKey, boolean fromInc,
+                                          double toKey,   boolean toInc)
+    {
+        int[] r = range(fromKey, fromInc, toKey, toInc);
+        return new ValueIterator(new EntryIterator(r[0], r[1]));
+    }
+
+    private int[] range(double fromKey, boolean fromInc,
+                        double toKey,   boolean toInc)
+    {
+        probe = fromKey;
+        int fs = bound(false), fe = bound(true);
+        probe = toKey;
+        int ts = bound(false), te = bound(true);
+        boolean ascend = cmp.compare(fromKey, toKey) <= 0;
+        return range(ascend, fs, fe, fromInc, ts, te, toInc);
+    }
+
+    // ------------------------------------------------------------------------
+    // Iterators
+
+    private class KeyIterator extends EntryIterator {
+        public KeyIterator(int start, int end) {
+            super(start, end);
+        }
+        public boolean isDoubleSupported() {
+            return true;
+        }
+        public double nextDouble() {
+            nextEntry();
+            return ((double[])keys[blk])[off];
+        }
+    }
+
+} // end of class DoubleIntBlockMap
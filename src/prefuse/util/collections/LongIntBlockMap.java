@@ -0,0 +1,198 @@
+package prefuse.util.collections;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted map implementation using sorted blocks of primitive arrays to map
+ * from long keys to int values.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see AbstractBlockMap
+ */
+public class LongIntBlockMap extends AbstractBlockMap
+    implements LongIntSortedMap
+{
+
+    private LiteralComparator cmp;
+    private long probe;
+
+    // ------------------------------------------------------------------------
+    // Constructors
+
+    public LongIntBlockMap() {
+        this(null, false);
+    }
+
+    public LongIntBlockMap(boolean allowDuplicates) {
+        this(null, allowDuplicates);
+    }
+
+    public LongIntBlockMap(LiteralComparator comparator) {
+        this(comparator, false);
+    }
+
+    public LongIntBlockMap(LiteralComparator comparator,
+                          boolean allowDuplicates)
+    {
+        super(allowDuplicates);
+        this.cmp = comparator==null ? DefaultLiteralComparator.getInstance()
+                                    : comparator;
+    }
+
+    /**
+     * @see java.util.SortedMap#comparator()
+     */
+    public Comparator comparator() {
+        return cmp;
+    }
+
+    // ------------------------------------------------------------------------
+    // Key Access
+
+    protected Object newKeys(int n) {
+        return new long[n];
+    }
+
+    protected int compareProbe(Object keys, int i) {
+        return cmp.compare(probe, ((long[])keys)[i]);
+    }
+
+    protected void storeProbe(Object keys, int i) {
+        ((long[])keys)[i] = probe;
+    }
+
+    protected void loadProbe(Object keys, int i) {
+        probe = ((long[])keys)[i];
+    }
+
+    protected int compareKeys(Object k1, int i, Object k2, int j) {
+        return cmp.compare(((long[])k1)[i], ((long[])k2)[j]);
+    }
+
+    protected void copyKey(Object src, int i, Object dst, int j) {
+        ((long[])dst)[j] = ((long[])src)[i];
+    }
+
+    protected Object getKey(Object keys, int i) {
+        return new Long(((long[])keys)[i]);
+    }
+
+    // ------------------------------------------------------------------------
+    // SortedMap Methods
+
+    /**
+     * @see java.util.Map#containsKey(java.lang.Object)
+     */
+    public boolean containsKey(long key) {
+        probe = key;
+        return bound(false) < bound(true);
+    }
+
+    /**
+     * @see java.util.Map#get(java.lang.Object)
+     */
+    public int get(long key) {
+        probe = key;
+        return getProbe();
+    }
+
+    /**
+     * @see java.util.Map#put(java.lang.Object, java.lang.Object)
+     */
+    public int put(long key, int value) {
+        probe = key;
+        return putProbe(value);
+    }
+
+    /**
+     * @see java.util.Map#remove(java.lang.Object)
+     */
+    public int remove(long key) {
+        // remove the last instance with the given key
+        probe = key;
+        return removeProbe();
+    }
+
+    public int remove(long key, int val) {
+        probe = key;
+        return removeProbe(val);
+    }
+
+    /**
+     * Replace the contents of this map with the given keys and values,
+     * sorting and loading all entries at once. This is much faster than
+     * putting the entries into the map one at a time.
+     * @param keys the keys to load, which are sorted in place
+     * @param values the values to load, in the same order as the keys.
+     * The array is sorted in place.
+     * @param n the number of entries to load
+     */
+    public void load(long[] keys, int[] values, int n) {
+        load((Object)keys, values, n);
+    }
+
+    /**
+     * @see java.util.SortedMap#firstKey()
+     */
+    public long firstKey() {
+        if ( size == 0 ) throw new NoSuchElementException();
+        return ((long[])keys[0])[0];
+    }
+
+    /**
+     * @see java.util.SortedMap#lastKey()
+     */
+    public long lastKey() {
+        if ( size == 0 ) throw new NoSuchElementException();
+        return ((long[])keys[nblocks-1])[sizes[nblocks-1]-1];
+    }
+
+    // -- Collection view methods ---------------------------------------------
+
+    public LiteralIterator keyIterator() {
+        return new KeyIterator(0, size);
+    }
+
+    public LiteralIterator keyRangeIterator(long fromKey, boolean fromInc,
+                                            long toKey,   boolean toInc)
+    {
+        int[] r = range(fromKey, fromInc, toKey, toInc);
+        return new KeyIterator(r[0], r[1]);
+    }
+
+    public IntIterator valueRangeIterator(long fromKey, boolean fromInc,
+                                          long toKey,   boolean toInc)
+    {
+        int[] r = range(fromKey, fromInc, toKey, toInc);
+        return new ValueIterator(new EntryIterator(r[0], r[1]));
+    }
+
+    private int[] range(long fromKey, boolean fromInc,
+                        long toKey,   boolean toInc)
+    {
+        probe = fromKey;
+        int fs = bound(false), fe = bound(true);
+        probe = toKey;
+        int ts = bound(false), te = bound(true);
+        boolean ascend = cmp.compare(fromKey, toKey) <= 0;
+        return range(ascend, fs, fe, fromInc, ts, te, toInc);
+    }
+
+    // ------------------------------------------------------------------------
+    // Iterators
+
+    private class KeyIterator extends EntryIterator {
+        public KeyIterator(int start, int end) {
+            super(start, end);
+        }
+        public boolean isLongSupported() {
+            return true;
+        }
+        public long nextLong() {
+            nextEntry();
+            return ((long[])keys[blk])[off];
+        }
+    }
+
+} // end of class LongIntBlockMap
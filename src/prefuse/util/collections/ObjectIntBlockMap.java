@@ -0,0 +1,206 @@
+package prefuse.util.collections;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted map implementation using sorted blocks of arrays to map from
+ * Object keys to int values.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see AbstractBlockMap
+ */
+public class ObjectIntBlockMap extends AbstractBlockMap
+    implements ObjectIntSortedMap
+{
+
+    private Comparator cmp;
+    private Object probe;
+
+    // ------------------------------------------------------------------------
+    // Constructors
+
+    public ObjectIntBlockMap() {
+        this(null, false);
+    }
+
+    public ObjectIntBlockMap(boolean allowDuplicates) {
+        this(null, allowDuplicates);
+    }
+
+    public ObjectIntBlockMap(Comparator comparator) {
+        this(comparator, false);
+    }
+
+    public ObjectIntBlockMap(Comparator comparator, boolean allowDuplicates) {
+        super(allowDuplicates);
+        this.cmp = comparator==null ? DefaultLiteralComparator.getInstance()
+                                    : comparator;
+    }
+
+    /**
+     * @see java.util.SortedMap#comparator()
+     */
+    public Comparator comparator() {
+        return cmp;
+    }
+
+    // ------------------------------------------------------------------------
+    // Key Access
+
+    protected Object newKeys(int n) {
+        return new Object[n];
+    }
+
+    protected int compareProbe(Object keys, int i) {
+        if ( probe == MIN_KEY ) {
+            return -1;
+        } else if ( probe == MAX_KEY ) {
+            return 1;
+        } else {
+            return cmp.compare(probe, ((Object[])keys)[i]);
+        }
+    }
+
+    protected void storeProbe(Object keys, int i) {
+        ((Object[])keys)[i] = probe;
+    }
+
+    protected void loadProbe(Object keys, int i) {
+        probe = ((Object[])keys)[i];
+    }
+
+    protected int compareKeys(Object k1, int i, Object k2, int j) {
+        return cmp.compare(((Object[])k1)[i], ((Object[])k2)[j]);
+    }
+
+    protected void copyKey(Object src, int i, Object dst, int j) {
+        ((Object[])dst)[j] = ((Object[])src)[i];
+    }
+
+    protected Object getKey(Object keys, int i) {
+        return ((Object[])keys)[i];
+    }
+
+    // ------------------------------------------------------------------------
+    // SortedMap Methods
+
+    /**
+     * @see java.util.Map#containsKey(java.lang.Object)
+     */
+    public boolean containsKey(Object key) {
+        probe = key;
+        boolean contains = bound(false) < bound(true);
+        probe = null;
+        return contains;
+    }
+
+    /**
+     * @see java.util.Map#get(java.lang.Object)
+     */
+    public int get(Object key) {
+        probe = key;
+        int val = getProbe();
+        probe = null;
+        return val;
+    }
+
+    /**
+     * @see java.util.Map#put(java.lang.Object, java.lang.Object)
+     */
+    public int put(Object key, int value) {
+        probe = key;
+        int val = putProbe(value);
+        probe = null;
+        return val;
+    }
+
+    /**
+     * @see java.util.Map#remove(java.lang.Object)
+     */
+    public int remove(Object key) {
+        // remove the last instance with the given key
+        probe = key;
+        int val = removeProbe();
+        probe = null;
+        return val;
+    }
+
+    public int remove(Object key, int val) {
+        probe = key;
+        val = removeProbe(val);
+        probe = null;
+        return val;
+    }
+
+    /**
+     * Replace the contents of this map with the given keys and values,
+     * sorting and loading all entries at once. This is much faster than
+     * putting the entries into the map one at a time.
+     * @param keys the keys to load, which are sorted in place
+     * @param values the values to load, in the same order as the keys.
+     * The array is sorted in place.
+     * @param n the number of entries to load
+     */
+    public void load(Object[] keys, int[] values, int n) {
+        load((Object)keys, values, n);
+    }
+
+    /**
+     * @see java.util.SortedMap#firstKey()
+     */
+    public Object firstKey() {
+        if ( size == 0 ) throw new NoSuchElementException();
+        return ((Object[])keys[0])[0];
+    }
+
+    /**
+     * @see java.util.SortedMap#lastKey()
+     */
+    public Object lastKey() {
+        if ( size == 0 ) throw new NoSuchElementException();
+        return ((Object[])keys[nblocks-1])[sizes[nblocks-1]-1];
+    }
+
+    // -- Collection view methods ---------------------------------------------
+
+    public Iterator keyIterator() {
+        return new EntryIterator(0, size);
+    }
+
+    public Iterator keyRangeIterator(Object fromKey, boolean fromInc,
+                                     Object toKey,   boolean toInc)
+    {
+        if ( fromKey == toKey && (fromKey == MIN_KEY || fromKey == MAX_KEY) )
+            return Collections.EMPTY_LIST.iterator();
+        int[] r = range(fromKey, fromInc, toKey, toInc);
+        return new EntryIterator(r[0], r[1]);
+    }
+
+    public IntIterator valueRangeIterator(Object fromKey, boolean fromInc,
+                                          Object toKey,   boolean toInc)
+    {
+        if ( fromKey == toKey && (fromKey == MIN_KEY || fromKey == MAX_KEY) )
+            return new ValueIterator(new EntryIterator(0, 0));
+        int[] r = range(fromKey, fromInc, toKey, toInc);
+        return new ValueIterator(new EntryIterator(r[0], r[1]));
+    }
+
+    private int[] range(Object fromKey, boolean fromInc,
+                        Object toKey,   boolean toInc)
+    {
+        probe = fromKey;
+        int fs = bound(false), fe = bound(true);
+        probe = toKey;
+        int ts = bound(false), te = bound(true);
+        probe = null;
+
+        boolean bmin = (fromKey == MIN_KEY || toKey == MAX_KEY);
+        boolean bmax = (fromKey == MAX_KEY || toKey == MIN_KEY);
+        boolean ascend = !bmax && (bmin || cmp.compare(fromKey, toKey) <= 0);
+        return range(ascend, fs, fe, fromInc, ts, te, toInc);
+    }
+
+} // end of class ObjectIntBlockMap
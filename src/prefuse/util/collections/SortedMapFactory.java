@@ -4,39 +4,93 @@ import java.util.Comparator;
 import java.util.Date;
 
 import prefuse.data.DataTypeException;
+import prefuse.util.PrefuseConfig;
 
 
 /**
  * Factory class that generates the appropriate IntSortedMap implementation
- * given a key data type.
+ * given a key data type. Two families of sorted maps are available:
+ * red-black trees, which allocate an entry object per mapping, and
+ * block arrays, which store keys and values in sorted blocks of primitive
+ * arrays and require only a fraction of the memory. The implementation used
+ * by default is determined by the <code>data.index.sortedMap</code>
+ * configuration property (either "tree" or "array").
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see AbstractTreeMap
+ * @see AbstractBlockMap
  */
 public class SortedMapFactory {
 
+    /** Indicates red-black tree based sorted maps */
+    public static final int RED_BLACK_TREE = 0;
+    /** Indicates block array based sorted maps */
+    public static final int BLOCK_ARRAY    = 1;
+    
+    private static int s_impl =
+        "tree".equals(PrefuseConfig.get("data.index.sortedMap"))
+            ? RED_BLACK_TREE : BLOCK_ARRAY;
+    
+    /**
+     * Get the sorted map implementation used by default.
+     * @return the default implementation, one of {@link #RED_BLACK_TREE}
+     * or {@link #BLOCK_ARRAY}
+     */
+    public static int getDefaultImplementation() {
+        return s_impl;
+    }
+    
+    /**
+     * Set the sorted map implementation used by default.
+     * @param impl the default implementation, one of
+     * {@link #RED_BLACK_TREE} or {@link #BLOCK_ARRAY}
+     */
+    public static void setDefaultImplementation(int impl) {
+        if ( impl != RED_BLACK_TREE && impl != BLOCK_ARRAY )
+            throw new IllegalArgumentException(
+                    "Unrecognized sorted map implementation: "+impl);
+        s_impl = impl;
+    }
+    
     public static IntSortedMap getMap(
             Class type, Comparator cmp, boolean unique)
         throws IncompatibleComparatorException
+    {
+        return getMap(type, cmp, unique, s_impl);
+    }
+    
+    public static IntSortedMap getMap(
+            Class type, Comparator cmp, boolean unique, int impl)
+        throws IncompatibleComparatorException
     {
         if ( !comparatorCheck(type, cmp) ) {
             throw new IncompatibleComparatorException();
         }
+        boolean tree = ( impl == RED_BLACK_TREE );
         
         if ( type.equals(int.class) || type.equals(byte.class) )
         {
-            return new IntIntTreeMap((LiteralComparator)cmp, !unique);
+            LiteralComparator lc = (LiteralComparator)cmp;
+            return tree ? (IntSortedMap)new IntIntTreeMap(lc, !unique)
+                        : (IntSortedMap)new IntIntBlockMap(lc, !unique);
         } 
         else if ( type.equals(long.class) || type.isAssignableFrom(Date.class) )
         {
-            return new LongIntTreeMap((LiteralComparator)cmp, !unique);
+            LiteralComparator lc = (LiteralComparator)cmp;
+            return tree ? (IntSortedMap)new LongIntTreeMap(lc, !unique)
+                        : (IntSortedMap)new LongIntBlockMap(lc, !unique);
         }
         else if ( type.equals(float.class) )
         {
-            return new FloatIntTreeMap((LiteralComparator)cmp, !unique);
+            LiteralComparator lc = (LiteralComparator)cmp;
+            return tree ? (IntSortedMap)new FloatIntTreeMap(lc, !unique)
+                        : (IntSortedMap)new FloatIntBlockMap(lc, !unique);
         }
         else if ( type.equals(double.class) )
         {
-            return new DoubleIntTreeMap((LiteralComparator)cmp, !unique);
+            LiteralComparator lc = (LiteralComparator)cmp;
+            return tree ? (IntSortedMap)new DoubleIntTreeMap(lc, !unique)
+                        : (IntSortedMap)new DoubleIntBlockMap(lc, !unique);
         }
         else if ( type.equals(boolean.class) )
         {
@@ -44,7 +98,8 @@ public class SortedMapFactory {
         }
         else if ( Object.class.isAssignableFrom(type) )
         {
-            return new ObjectIntTreeMap(cmp, !unique);
+            return tree ? (IntSortedMap)new ObjectIntTreeMap(cmp, !unique)
+                        : (IntSortedMap)new ObjectIntBlockMap(cmp, !unique);
         }
         else {
             throw new DataTypeException(
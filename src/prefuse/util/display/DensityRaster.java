@@ -0,0 +1,223 @@
+package prefuse.util.display;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * A pixel raster that accumulates points and thin lines, used to draw
+ * items too small to be worth handing to their renderers. Colors are
+ * composited into the raster as they are added, with each item's alpha
+ * scaled by the fraction of a pixel it covers, so that many overlapping
+ * sub-pixel items build up into a density image. The accumulated pixels
+ * are then drawn with a single image operation. The pixels are held in an
+ * image of the raster's size, which is reused until the size changes.
+ *
+ * <p>Coordinates are in device space, with the raster covering the region
+ * from the origin to its width and height. Items outside this region are
+ * ignored.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see prefuse.Display#setLevelOfDetailThreshold(double)
+ */
+public class DensityRaster {
+
+    private BufferedImage m_image = null; // holds the pixels
+    private int[] m_pixels = new int[0]; // premultiplied ARGB values
+    private int m_width, m_height;
+
+    // the bounds of the painted region, empty if x0 > x1
+    private int m_x0 = Integer.MAX_VALUE, m_y0 = Integer.MAX_VALUE;
+    private int m_x1 = Integer.MIN_VALUE, m_y1 = Integer.MIN_VALUE;
+
+    /**
+     * Create a new, empty DensityRaster.
+     */
+    public DensityRaster() {
+    }
+
+    /**
+     * Clear the raster and set its size.
+     * @param width the width of the raster, in pixels
+     * @param height the height of the raster, in pixels
+     */
+    public void reset(int width, int height) {
+        if ( !isEmpty() )
+            clear();
+        if ( width != m_width || height != m_height ) {
+            if ( width > 0 && height > 0 ) {
+                m_image = new BufferedImage(width, height,
+                                            BufferedImage.TYPE_INT_ARGB_PRE);
+                m_pixels = ((DataBufferInt)m_image.getRaster()
+                                .getDataBuffer()).getData();
+            } else {
+                m_image = null;
+                m_pixels = new int[0];
+            }
+        }
+        m_width = width;
+        m_height = height;
+    }
+
+    /**
+     * Get the width of the raster.
+     * @return the raster width, in pixels
+     */
+    public int getWidth() {
+        return m_width;
+    }
+
+    /**
+     * Get the height of the raster.
+     * @return the raster height, in pixels
+     */
+    public int getHeight() {
+        return m_height;
+    }
+
+    /**
+     * Indicates if nothing has been added since the raster was last reset
+     * or painted.
+     * @return true if the raster is empty
+     */
+    public boolean isEmpty() {
+        return m_x0 > m_x1;
+    }
+
+    /**
+     * Get the value of a pixel.
+     * @param x the pixel x-coordinate
+     * @param y the pixel y-coordinate
+     * @return the pixel color, as a premultiplied ARGB value
+     */
+    public int getPixel(int x, int y) {
+        return m_pixels[y*m_width+x];
+    }
+
+    // ------------------------------------------------------------------------
+    // Accumulation
+
+    /**
+     * Add a point to the raster.
+     * @param x the x-coordinate of the point, in device space
+     * @param y the y-coordinate of the point, in device space
+     * @param color the color of the point, as a
+     * {@link prefuse.util.ColorLib} ARGB value
+     * @param coverage the area of the point, in pixels. Areas of one pixel
+     * or more paint the pixel with the full color alpha.
+     */
+    public void addPoint(double x, double y, int color, double coverage) {
+        if ( x < 0 || y < 0 || x >= m_width || y >= m_height ) return;
+        int alpha = alpha(color, coverage);
+        if ( alpha > 0 )
+            blend((int)x, (int)y, color, alpha);
+    }
+
+    /**
+     * Add a line to the raster. Lines are drawn one pixel wide, with the
+     * color alpha scaled by the line width.
+     * @param x0 the x-coordinate of the first end point
+     * @param y0 the y-coordinate of the first end point
+     * @param x1 the x-coordinate of the second end point
+     * @param y1 the y-coordinate of the second end point
+     * @param color the color of the line, as a
+     * {@link prefuse.util.ColorLib} ARGB value
+     * @param width the width of the line, in pixels
+     */
+    public void addLine(double x0, double y0, double x1, double y1,
+                        int color, double width)
+    {
+        int alpha = alpha(color, width);
+        if ( alpha == 0 ) return;
+
+        // clip the line to the raster (Liang-Barsky)
+        double dx = x1-x0, dy = y1-y0;
+        double t0 = 0, t1 = 1;
+        double[] p = { -dx, dx, -dy, dy };
+        double[] q = { x0, m_width-x0, y0, m_height-y0 };
+        for ( int i=0; i<4; ++i ) {
+            if ( p[i] == 0 ) {
+                if ( q[i] < 0 ) return;
+            } else {
+                double t = q[i] / p[i];
+                if ( p[i] < 0 ) {
+                    if ( t > t1 ) return;
+                    if ( t > t0 ) t0 = t;
+                } else {
+                    if ( t < t0 ) return;
+                    if ( t < t1 ) t1 = t;
+                }
+            }
+        }
+
+        // step along the major axis, one pixel at a time
+        double ax = x0 + t0*dx, ay = y0 + t0*dy;
+        double len = (t1-t0) * Math.max(Math.abs(dx), Math.abs(dy));
+        int n = (int)Math.ceil(len);
+        double sx = ( n == 0 ? 0 : (t1-t0)*dx/n );
+        double sy = ( n == 0 ? 0 : (t1-t0)*dy/n );
+        for ( int i=0; i<=n; ++i, ax += sx, ay += sy ) {
+            int x = Math.min((int)ax, m_width-1);
+            int y = Math.min((int)ay, m_height-1);
+            if ( x >= 0 && y >= 0 )
+                blend(x, y, color, alpha);
+        }
+    }
+
+    private static int alpha(int color, double coverage) {
+        int a = (color >>> 24);
+        if ( coverage < 1 )
+            a = (int)(a*coverage + 0.5);
+        return a;
+    }
+
+    /**
+     * Composite a color over a pixel, using the given alpha.
+     */
+    private void blend(int x, int y, int color, int a) {
+        int i = y*m_width+x;
+        int d = m_pixels[i], na = 255-a;
+        int r = ((color>>16)&0xFF)*a/255 + ((d>>16)&0xFF)*na/255;
+        int g = ((color>> 8)&0xFF)*a/255 + ((d>> 8)&0xFF)*na/255;
+        int b = ( color     &0xFF)*a/255 + ( d     &0xFF)*na/255;
+        int da = a + (d>>>24)*na/255;
+        m_pixels[i] = (da<<24) | (r<<16) | (g<<8) | b;
+
+        if ( x < m_x0 ) m_x0 = x;
+        if ( x > m_x1 ) m_x1 = x;
+        if ( y < m_y0 ) m_y0 = y;
+        if ( y > m_y1 ) m_y1 = y;
+    }
+
+    // ------------------------------------------------------------------------
+    // Painting
+
+    /**
+     * Draw the accumulated pixels, then clear the raster. Only the painted
+     * region of the raster's image is drawn. The image is cleared and reused
+     * once drawn, so the graphics context must draw it immediately, as is
+     * the case for screen, offscreen buffer, and image graphics.
+     * @param g the graphics context to draw into, whose current transform
+     * should map the raster's device coordinates to the target
+     */
+    public void paint(Graphics2D g) {
+        if ( isEmpty() ) return;
+        g.drawImage(m_image, m_x0, m_y0, m_x1+1, m_y1+1,
+                             m_x0, m_y0, m_x1+1, m_y1+1, null);
+        clear();
+    }
+
+    /**
+     * Clear the painted region of the raster.
+     */
+    private void clear() {
+        for ( int y=m_y0; y<=m_y1; ++y ) {
+            int i = y*m_width;
+            Arrays.fill(m_pixels, i+m_x0, i+m_x1+1, 0);
+        }
+        m_x0 = m_y0 = Integer.MAX_VALUE;
+        m_x1 = m_y1 = Integer.MIN_VALUE;
+    }
+
+} // end of class DensityRaster
@@ -0,0 +1,1003 @@
+package prefuse.util.display;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
+import java.awt.geom.QuadCurve2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Graphics2D implementation that records drawing operations rather than
+ * performing them, so that they can later be replayed into one or more
+ * other graphics contexts. Rendering state such as the transform, paint
+ * and clip is tracked by an internal graphics context, so that state
+ * queries made while recording return the expected values. Mutable
+ * arguments such as shapes and transforms are copied as they are
+ * recorded, allowing renderers to reuse their objects between calls.
+ *
+ * <p>Each drawing operation is recorded along with a conservative bound of
+ * the device-space region it affects. When replaying a region of the
+ * recorded image, such as one tile of a larger image, the target context
+ * is clipped to the region and drawing operations that fall outside it
+ * are skipped. Every operation is replayed using the same method and the
+ * same device transform, so that a replay produces the same pixels as
+ * drawing directly into the target. Replaying into a translated context
+ * would not: rasterizers round device coordinates, and a translated
+ * coordinate can round differently.</p>
+ *
+ * <p>Once recording is finished, a recording may be replayed concurrently
+ * by multiple threads. Operations that read back from the drawing surface,
+ * such as {@link #copyArea(int, int, int, int, int, int)}, only see pixels
+ * within the region being replayed.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see TiledImageRenderer
+ */
+class RecordingGraphics2D extends Graphics2D {
+
+    /** Padding, in device pixels, added to the bounds of drawing
+     * operations to account for anti-aliasing and stroke control. */
+    private static final double PAD = 2;
+    private static final double SQRT2 = Math.sqrt(2);
+
+    private final Recording m_rec;
+    private final int m_ctx;
+    private final Graphics2D m_g;
+
+    /**
+     * Create a new RecordingGraphics2D.
+     */
+    RecordingGraphics2D() {
+        m_rec = new Recording();
+        m_ctx = m_rec.nctx++;
+        m_g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)
+                .createGraphics();
+    }
+
+    /**
+     * Create a child context, as for {@link #create()}.
+     */
+    private RecordingGraphics2D(RecordingGraphics2D parent) {
+        m_rec = parent.m_rec;
+        m_ctx = m_rec.nctx++;
+        m_g = (Graphics2D)parent.m_g.create();
+    }
+
+    // ------------------------------------------------------------------------
+    // Recording and Replay
+
+    /**
+     * A recorded operation on a graphics context.
+     */
+    private static abstract class Op {
+        /** the index of the context the operation applies to */
+        int ctx;
+        /** the device bounds of a drawing operation, null if unbounded */
+        Rectangle2D bounds;
+        /** true for drawing operations */
+        boolean draw;
+
+        abstract void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile);
+    }
+
+    /**
+     * The operations recorded by a root context and its children.
+     */
+    private static class Recording {
+        ArrayList ops = new ArrayList();
+        int nctx;
+        boolean closed;
+    }
+
+    /**
+     * Finish recording. Further operations on this context, or any context
+     * created from it, are ignored.
+     */
+    void close() {
+        m_rec.closed = true;
+    }
+
+    /**
+     * Replay the recording into a graphics context, drawing only within a
+     * rectangular region of device space. Drawing operations that do not
+     * touch the region are skipped. The context draws with the same device
+     * transforms as were recorded, so that the replayed pixels are
+     * identical to those that would have been drawn directly.
+     * @param g the graphics context to replay into. The context should
+     * have an identity transform.
+     * @param x the x-coordinate of the region in device space
+     * @param y the y-coordinate of the region in device space
+     * @param w the width of the region
+     * @param h the height of the region
+     * @return the number of drawing operations replayed
+     */
+    int replay(Graphics2D g, int x, int y, int w, int h) {
+        Rectangle tile = new Rectangle(x, y, w, h);
+        Graphics2D[] ctx = new Graphics2D[m_rec.nctx];
+        ctx[m_ctx] = g;
+        g.setTransform(new AffineTransform());
+        g.setClip(tile);
+
+        int count = 0;
+        ArrayList ops = m_rec.ops;
+        for ( int i=0; i<ops.size(); ++i ) {
+            Op op = (Op)ops.get(i);
+            Graphics2D c = ctx[op.ctx];
+            if ( c == null ) continue;
+            if ( op.draw ) {
+                if ( op.bounds != null && !op.bounds.intersects(tile) )
+                    continue;
+                ++count;
+            }
+            op.replay(c, ctx, tile);
+        }
+        // release any child contexts left undisposed
+        for ( int i=0; i<ctx.length; ++i ) {
+            if ( i != m_ctx && ctx[i] != null )
+                ctx[i].dispose();
+        }
+        return count;
+    }
+
+    /**
+     * Set the clip of a replayed context, keeping it within the replayed
+     * region of device space.
+     */
+    private static void setClip(Graphics2D g, Rectangle tile, Shape clip) {
+        AffineTransform t = g.getTransform();
+        g.setTransform(new AffineTransform());
+        g.setClip(tile);
+        g.setTransform(t);
+        if ( clip != null ) g.clip(clip);
+    }
+
+    /**
+     * Record a state operation.
+     */
+    private void state(Op op) {
+        if ( m_rec.closed ) return;
+        op.ctx = m_ctx;
+        m_rec.ops.add(op);
+    }
+
+    /**
+     * Record a drawing operation.
+     */
+    private void draw(Op op, Rectangle2D bounds) {
+        if ( m_rec.closed ) return;
+        op.ctx = m_ctx;
+        op.draw = true;
+        op.bounds = bounds;
+        m_rec.ops.add(op);
+    }
+
+    // ------------------------------------------------------------------------
+    // Bounds
+
+    /**
+     * Compute the device bounds of a user-space rectangle, padded in user
+     * space by the given amount. Returns null if the padding is NaN.
+     */
+    private Rectangle2D bounds(double x, double y, double w, double h,
+                               double pad)
+    {
+        if ( Double.isNaN(pad) ) return null;
+        double[] p = { x-pad, y-pad, x+w+pad, y-pad,
+                       x-pad, y+h+pad, x+w+pad, y+h+pad };
+        m_g.getTransform().transform(p, 0, p, 0, 4);
+        double x0 = Math.min(Math.min(p[0], p[2]), Math.min(p[4], p[6]));
+        double y0 = Math.min(Math.min(p[1], p[3]), Math.min(p[5], p[7]));
+        double x1 = Math.max(Math.max(p[0], p[2]), Math.max(p[4], p[6]));
+        double y1 = Math.max(Math.max(p[1], p[3]), Math.max(p[5], p[7]));
+        return new Rectangle2D.Double(x0-PAD, y0-PAD,
+                                      x1-x0+2*PAD, y1-y0+2*PAD);
+    }
+
+    private Rectangle2D bounds(Rectangle2D r, double pad) {
+        return bounds(r.getX(), r.getY(), r.getWidth(), r.getHeight(), pad);
+    }
+
+    /**
+     * Get the user-space distance a stroked outline may extend past the
+     * stroked shape, or NaN if unknown.
+     */
+    private double strokePad() {
+        Stroke s = m_g.getStroke();
+        if ( !(s instanceof BasicStroke) )
+            return Double.NaN;
+        BasicStroke bs = (BasicStroke)s;
+        double w = bs.getLineWidth() / 2;
+        if ( bs.getLineJoin() == BasicStroke.JOIN_MITER )
+            return w * Math.max(bs.getMiterLimit(), SQRT2);
+        return w * SQRT2;
+    }
+
+    /**
+     * Get the user-space distance text may extend past its logical bounds.
+     */
+    private double textPad() {
+        return m_g.getFont().getSize2D();
+    }
+
+    private Rectangle2D textBounds(String s, double x, double y) {
+        Rectangle2D r = m_g.getFont().getStringBounds(
+                s, m_g.getFontRenderContext());
+        return bounds(x+r.getX(), y+r.getY(), r.getWidth(), r.getHeight(),
+                      textPad());
+    }
+
+    private Rectangle2D imageBounds(Image img, double x, double y) {
+        int w = img.getWidth(null), h = img.getHeight(null);
+        return ( w < 0 || h < 0 ? null : bounds(x, y, w, h, 0) );
+    }
+
+    // ------------------------------------------------------------------------
+    // Copies of Mutable Arguments
+
+    private static Shape copy(Shape s) {
+        if ( s instanceof RectangularShape ) {
+            return (Shape)((RectangularShape)s).clone();
+        } else if ( s instanceof Line2D ) {
+            return (Shape)((Line2D)s).clone();
+        } else if ( s instanceof GeneralPath ) {
+            return (Shape)((GeneralPath)s).clone();
+        } else if ( s instanceof QuadCurve2D ) {
+            return (Shape)((QuadCurve2D)s).clone();
+        } else if ( s instanceof CubicCurve2D ) {
+            return (Shape)((CubicCurve2D)s).clone();
+        } else if ( s instanceof Area ) {
+            return (Shape)((Area)s).clone();
+        } else if ( s instanceof Polygon ) {
+            Polygon p = (Polygon)s;
+            return new Polygon(p.xpoints, p.ypoints, p.npoints);
+        } else if ( s == null ) {
+            return null;
+        } else {
+            return new GeneralPath(s);
+        }
+    }
+
+    private static int[] copy(int[] a, int n) {
+        int[] b = new int[n];
+        System.arraycopy(a, 0, b, 0, n);
+        return b;
+    }
+
+    private static Rectangle2D pointBounds(int[] x, int[] y, int n) {
+        if ( n <= 0 ) return new Rectangle2D.Double();
+        int x0 = x[0], y0 = y[0], x1 = x0, y1 = y0;
+        for ( int i=1; i<n; ++i ) {
+            x0 = Math.min(x0, x[i]); x1 = Math.max(x1, x[i]);
+            y0 = Math.min(y0, y[i]); y1 = Math.max(y1, y[i]);
+        }
+        return new Rectangle2D.Double(x0, y0, x1-x0, y1-y0);
+    }
+
+    // ------------------------------------------------------------------------
+    // Contexts
+
+    /**
+     * @see java.awt.Graphics#create()
+     */
+    public Graphics create() {
+        final RecordingGraphics2D child = new RecordingGraphics2D(this);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                ctx[child.m_ctx] = (Graphics2D)g.create();
+            }
+        });
+        return child;
+    }
+
+    /**
+     * @see java.awt.Graphics#dispose()
+     */
+    public void dispose() {
+        m_g.dispose();
+        if ( m_ctx == 0 ) return; // the root context belongs to the caller
+        final int id = m_ctx;
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.dispose();
+                ctx[id] = null;
+            }
+        });
+    }
+
+    /**
+     * @see java.awt.Graphics2D#getDeviceConfiguration()
+     */
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return m_g.getDeviceConfiguration();
+    }
+
+    // ------------------------------------------------------------------------
+    // State
+
+    public Color getColor() {
+        return m_g.getColor();
+    }
+
+    public void setColor(final Color c) {
+        m_g.setColor(c);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setColor(c);
+            }
+        });
+    }
+
+    public Paint getPaint() {
+        return m_g.getPaint();
+    }
+
+    public void setPaint(final Paint p) {
+        m_g.setPaint(p);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setPaint(p);
+            }
+        });
+    }
+
+    public void setPaintMode() {
+        m_g.setPaintMode();
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setPaintMode();
+            }
+        });
+    }
+
+    public void setXORMode(final Color c) {
+        m_g.setXORMode(c);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setXORMode(c);
+            }
+        });
+    }
+
+    public Color getBackground() {
+        return m_g.getBackground();
+    }
+
+    public void setBackground(final Color c) {
+        m_g.setBackground(c);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setBackground(c);
+            }
+        });
+    }
+
+    public Composite getComposite() {
+        return m_g.getComposite();
+    }
+
+    public void setComposite(final Composite c) {
+        m_g.setComposite(c);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setComposite(c);
+            }
+        });
+    }
+
+    public Stroke getStroke() {
+        return m_g.getStroke();
+    }
+
+    public void setStroke(final Stroke s) {
+        m_g.setStroke(s);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setStroke(s);
+            }
+        });
+    }
+
+    public Font getFont() {
+        return m_g.getFont();
+    }
+
+    public void setFont(final Font f) {
+        m_g.setFont(f);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setFont(f);
+            }
+        });
+    }
+
+    public FontMetrics getFontMetrics(Font f) {
+        return m_g.getFontMetrics(f);
+    }
+
+    public FontRenderContext getFontRenderContext() {
+        return m_g.getFontRenderContext();
+    }
+
+    public Object getRenderingHint(RenderingHints.Key key) {
+        return m_g.getRenderingHint(key);
+    }
+
+    public void setRenderingHint(final RenderingHints.Key key,
+                                 final Object value)
+    {
+        m_g.setRenderingHint(key, value);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setRenderingHint(key, value);
+            }
+        });
+    }
+
+    public RenderingHints getRenderingHints() {
+        return m_g.getRenderingHints();
+    }
+
+    public void setRenderingHints(Map hints) {
+        m_g.setRenderingHints(hints);
+        final Map h = new HashMap(hints);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setRenderingHints(h);
+            }
+        });
+    }
+
+    public void addRenderingHints(Map hints) {
+        m_g.addRenderingHints(hints);
+        final Map h = new HashMap(hints);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.addRenderingHints(h);
+            }
+        });
+    }
+
+    // -- transforms ----------------------------------------------------------
+
+    public AffineTransform getTransform() {
+        return m_g.getTransform();
+    }
+
+    public void setTransform(AffineTransform at) {
+        m_g.setTransform(at);
+        final AffineTransform t = new AffineTransform(at);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.setTransform(t);
+            }
+        });
+    }
+
+    public void transform(AffineTransform at) {
+        m_g.transform(at);
+        final AffineTransform t = new AffineTransform(at);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.transform(t);
+            }
+        });
+    }
+
+    public void translate(final int x, final int y) {
+        m_g.translate(x, y);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.translate(x, y);
+            }
+        });
+    }
+
+    public void translate(final double x, final double y) {
+        m_g.translate(x, y);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.translate(x, y);
+            }
+        });
+    }
+
+    public void rotate(final double theta) {
+        m_g.rotate(theta);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.rotate(theta);
+            }
+        });
+    }
+
+    public void rotate(final double theta, final double x, final double y) {
+        m_g.rotate(theta, x, y);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.rotate(theta, x, y);
+            }
+        });
+    }
+
+    public void scale(final double sx, final double sy) {
+        m_g.scale(sx, sy);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.scale(sx, sy);
+            }
+        });
+    }
+
+    public void shear(final double shx, final double shy) {
+        m_g.shear(shx, shy);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.shear(shx, shy);
+            }
+        });
+    }
+
+    // -- clipping ------------------------------------------------------------
+
+    public Shape getClip() {
+        return m_g.getClip();
+    }
+
+    public Rectangle getClipBounds() {
+        return m_g.getClipBounds();
+    }
+
+    public void setClip(Shape clip) {
+        m_g.setClip(clip);
+        final Shape s = copy(clip);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                setClip(g, tile, s);
+            }
+        });
+    }
+
+    public void setClip(final int x, final int y, final int w, final int h) {
+        m_g.setClip(x, y, w, h);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                setClip(g, tile, new Rectangle(x, y, w, h));
+            }
+        });
+    }
+
+    public void clip(Shape clip) {
+        m_g.clip(clip);
+        final Shape s = copy(clip);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.clip(s);
+            }
+        });
+    }
+
+    public void clipRect(final int x, final int y, final int w, final int h) {
+        m_g.clipRect(x, y, w, h);
+        state(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.clipRect(x, y, w, h);
+            }
+        });
+    }
+
+    public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+        return m_g.hit(rect, s, onStroke);
+    }
+
+    // ------------------------------------------------------------------------
+    // Shapes
+
+    public void draw(Shape shape) {
+        final Shape s = copy(shape);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.draw(s);
+            }
+        }, bounds(s.getBounds2D(), strokePad()));
+    }
+
+    public void fill(Shape shape) {
+        final Shape s = copy(shape);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.fill(s);
+            }
+        }, bounds(s.getBounds2D(), 0));
+    }
+
+    public void drawLine(final int x1, final int y1,
+                         final int x2, final int y2)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawLine(x1, y1, x2, y2);
+            }
+        }, bounds(Math.min(x1,x2), Math.min(y1,y2),
+                  Math.abs(x2-x1), Math.abs(y2-y1), strokePad()));
+    }
+
+    public void drawRect(final int x, final int y, final int w, final int h) {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawRect(x, y, w, h);
+            }
+        }, bounds(x, y, w, h, strokePad()));
+    }
+
+    public void fillRect(final int x, final int y, final int w, final int h) {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.fillRect(x, y, w, h);
+            }
+        }, bounds(x, y, w, h, 0));
+    }
+
+    public void clearRect(final int x, final int y, final int w, final int h) {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.clearRect(x, y, w, h);
+            }
+        }, bounds(x, y, w, h, 0));
+    }
+
+    public void draw3DRect(final int x, final int y, final int w, final int h,
+                           final boolean raised)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.draw3DRect(x, y, w, h, raised);
+            }
+        }, bounds(x, y, w, h, strokePad()));
+    }
+
+    public void fill3DRect(final int x, final int y, final int w, final int h,
+                           final boolean raised)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.fill3DRect(x, y, w, h, raised);
+            }
+        }, bounds(x, y, w, h, strokePad()));
+    }
+
+    public void drawRoundRect(final int x, final int y, final int w,
+                              final int h, final int aw, final int ah)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawRoundRect(x, y, w, h, aw, ah);
+            }
+        }, bounds(x, y, w, h, strokePad()));
+    }
+
+    public void fillRoundRect(final int x, final int y, final int w,
+                              final int h, final int aw, final int ah)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.fillRoundRect(x, y, w, h, aw, ah);
+            }
+        }, bounds(x, y, w, h, 0));
+    }
+
+    public void drawOval(final int x, final int y, final int w, final int h) {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawOval(x, y, w, h);
+            }
+        }, bounds(x, y, w, h, strokePad()));
+    }
+
+    public void fillOval(final int x, final int y, final int w, final int h) {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.fillOval(x, y, w, h);
+            }
+        }, bounds(x, y, w, h, 0));
+    }
+
+    public void drawArc(final int x, final int y, final int w, final int h,
+                        final int start, final int extent)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawArc(x, y, w, h, start, extent);
+            }
+        }, bounds(x, y, w, h, strokePad()));
+    }
+
+    public void fillArc(final int x, final int y, final int w, final int h,
+                        final int start, final int extent)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.fillArc(x, y, w, h, start, extent);
+            }
+        }, bounds(x, y, w, h, 0));
+    }
+
+    public void drawPolyline(int[] xp, int[] yp, final int n) {
+        final int[] x = copy(xp, n), y = copy(yp, n);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawPolyline(x, y, n);
+            }
+        }, bounds(pointBounds(x, y, n), strokePad()));
+    }
+
+    public void drawPolygon(int[] xp, int[] yp, final int n) {
+        final int[] x = copy(xp, n), y = copy(yp, n);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawPolygon(x, y, n);
+            }
+        }, bounds(pointBounds(x, y, n), strokePad()));
+    }
+
+    public void fillPolygon(int[] xp, int[] yp, final int n) {
+        final int[] x = copy(xp, n), y = copy(yp, n);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.fillPolygon(x, y, n);
+            }
+        }, bounds(pointBounds(x, y, n), 0));
+    }
+
+    public void drawPolygon(Polygon poly) {
+        final Polygon p = (Polygon)copy(poly);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawPolygon(p);
+            }
+        }, bounds(p.getBounds2D(), strokePad()));
+    }
+
+    public void fillPolygon(Polygon poly) {
+        final Polygon p = (Polygon)copy(poly);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.fillPolygon(p);
+            }
+        }, bounds(p.getBounds2D(), 0));
+    }
+
+    public void copyArea(final int x, final int y, final int w, final int h,
+                         final int dx, final int dy)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.copyArea(x, y, w, h, dx, dy);
+            }
+        }, null);
+    }
+
+    // ------------------------------------------------------------------------
+    // Text
+
+    public void drawString(final String s, final int x, final int y) {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawString(s, x, y);
+            }
+        }, textBounds(s, x, y));
+    }
+
+    public void drawString(final String s, final float x, final float y) {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawString(s, x, y);
+            }
+        }, textBounds(s, x, y));
+    }
+
+    public void drawString(AttributedCharacterIterator iter,
+                           final int x, final int y)
+    {
+        final AttributedCharacterIterator it
+            = (AttributedCharacterIterator)iter.clone();
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawString((AttributedCharacterIterator)it.clone(), x, y);
+            }
+        }, null);
+    }
+
+    public void drawString(AttributedCharacterIterator iter,
+                           final float x, final float y)
+    {
+        final AttributedCharacterIterator it
+            = (AttributedCharacterIterator)iter.clone();
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawString((AttributedCharacterIterator)it.clone(), x, y);
+            }
+        }, null);
+    }
+
+    public void drawChars(char[] data, int offset, int length,
+                          final int x, final int y)
+    {
+        final char[] c = new char[length];
+        System.arraycopy(data, offset, c, 0, length);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawChars(c, 0, c.length, x, y);
+            }
+        }, textBounds(new String(c), x, y));
+    }
+
+    public void drawGlyphVector(final GlyphVector gv,
+                                final float x, final float y)
+    {
+        Rectangle2D r = gv.getLogicalBounds();
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawGlyphVector(gv, x, y);
+            }
+        }, bounds(x+r.getX(), y+r.getY(), r.getWidth(), r.getHeight(),
+                  gv.getFont().getSize2D()));
+    }
+
+    // ------------------------------------------------------------------------
+    // Images
+
+    public boolean drawImage(final Image img, final int x, final int y,
+                             final ImageObserver obs)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawImage(img, x, y, obs);
+            }
+        }, imageBounds(img, x, y));
+        return true;
+    }
+
+    public boolean drawImage(final Image img, final int x, final int y,
+                             final Color bg, final ImageObserver obs)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawImage(img, x, y, bg, obs);
+            }
+        }, imageBounds(img, x, y));
+        return true;
+    }
+
+    public boolean drawImage(final Image img, final int x, final int y,
+                             final int w, final int h, final ImageObserver obs)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawImage(img, x, y, w, h, obs);
+            }
+        }, bounds(x, y, w, h, 0));
+        return true;
+    }
+
+    public boolean drawImage(final Image img, final int x, final int y,
+                             final int w, final int h, final Color bg,
+                             final ImageObserver obs)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawImage(img, x, y, w, h, bg, obs);
+            }
+        }, bounds(x, y, w, h, 0));
+        return true;
+    }
+
+    public boolean drawImage(final Image img,
+            final int dx1, final int dy1, final int dx2, final int dy2,
+            final int sx1, final int sy1, final int sx2, final int sy2,
+            final ImageObserver obs)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, obs);
+            }
+        }, bounds(Math.min(dx1,dx2), Math.min(dy1,dy2),
+                  Math.abs(dx2-dx1), Math.abs(dy2-dy1), 0));
+        return true;
+    }
+
+    public boolean drawImage(final Image img,
+            final int dx1, final int dy1, final int dx2, final int dy2,
+            final int sx1, final int sy1, final int sx2, final int sy2,
+            final Color bg, final ImageObserver obs)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawImage(img, dx1, dy1, dx2, dy2,
+                            sx1, sy1, sx2, sy2, bg, obs);
+            }
+        }, bounds(Math.min(dx1,dx2), Math.min(dy1,dy2),
+                  Math.abs(dx2-dx1), Math.abs(dy2-dy1), 0));
+        return true;
+    }
+
+    public boolean drawImage(final Image img, AffineTransform xform,
+                             final ImageObserver obs)
+    {
+        final AffineTransform t = new AffineTransform(xform);
+        Rectangle2D r = null;
+        int w = img.getWidth(null), h = img.getHeight(null);
+        if ( w >= 0 && h >= 0 ) {
+            r = t.createTransformedShape(
+                    new Rectangle2D.Double(0, 0, w, h)).getBounds2D();
+            r = bounds(r, 0);
+        }
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawImage(img, t, obs);
+            }
+        }, r);
+        return true;
+    }
+
+    public void drawImage(final BufferedImage img, final BufferedImageOp op,
+                          final int x, final int y)
+    {
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawImage(img, op, x, y);
+            }
+        }, null);
+    }
+
+    public void drawRenderedImage(final RenderedImage img,
+                                  AffineTransform xform)
+    {
+        final AffineTransform t = new AffineTransform(xform);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawRenderedImage(img, t);
+            }
+        }, null);
+    }
+
+    public void drawRenderableImage(final RenderableImage img,
+                                    AffineTransform xform)
+    {
+        final AffineTransform t = new AffineTransform(xform);
+        draw(new Op() {
+            void replay(Graphics2D g, Graphics2D[] ctx, Rectangle tile) {
+                g.drawRenderableImage(img, t);
+            }
+        }, null);
+    }
+
+} // end of class RecordingGraphics2D
@@ -0,0 +1,170 @@
+package prefuse.util.display;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import prefuse.data.expression.Predicate;
+import prefuse.visual.VisualItem;
+
+/**
+ * <p>A layer of items rendered by a {@link prefuse.Display} into a cached
+ * offscreen image. The items in a layer are those satisfying the layer's
+ * predicate. When the display is repainted, a layer is only re-rendered
+ * within the regions damaged by items belonging to the layer, and its
+ * cached image is otherwise composited as-is. This allows static content,
+ * such as aggregates or large numbers of edges, to be drawn once and then
+ * reused while other items are updated around them.</p>
+ *
+ * <p>Like {@link RenderingQueue}, a layer is intended for use by a single
+ * Display instance, which manages its image, damage region, and the
+ * items to render.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see prefuse.Display#addRenderLayer(Predicate)
+ */
+public class RenderLayer {
+
+    private Predicate m_predicate;
+    private BufferedImage m_image = null;
+    private Clip m_damage = new Clip();
+    private HashSet m_drawn = new HashSet(); // items drawn in the image
+
+    /** The items to render in the current repaint. */
+    public VisualItem[] items = new VisualItem[64];
+    /** The number of items to render in the current repaint. */
+    public int size = 0;
+
+    /**
+     * Create a new RenderLayer.
+     * @param p the predicate determining the items in the layer
+     */
+    public RenderLayer(Predicate p) {
+        m_predicate = p;
+    }
+
+    /**
+     * Get the predicate determining the items in this layer.
+     * @return the layer predicate
+     */
+    public Predicate getPredicate() {
+        return m_predicate;
+    }
+
+    /**
+     * Indicates if an item belongs to this layer.
+     * @param item the item to test
+     * @return true if the item satisfies the layer predicate
+     */
+    public boolean contains(VisualItem item) {
+        return m_predicate.getBoolean(item);
+    }
+
+    // ------------------------------------------------------------------------
+    // Damage
+
+    /**
+     * Get the region of this layer in need of re-rendering, in absolute
+     * coordinates. The clip is invalid if the entire layer must be
+     * re-rendered, and empty if the cached image is up-to-date.
+     * @return the damaged region
+     */
+    public Clip getDamage() {
+        return m_damage;
+    }
+
+    /**
+     * Report damage to this layer within the given region.
+     * @param region the damaged region, in absolute coordinates
+     */
+    public void damageReport(Rectangle2D region) {
+        m_damage.union(region);
+    }
+
+    /**
+     * Report damage caused by an item. If the item is drawn in the current
+     * image, the region is damaged, so that the item is cleared from the
+     * image even if it no longer belongs to this layer. The item is then
+     * no longer considered drawn until it is rendered again.
+     * @param item the item responsible for the damage
+     * @param region the damaged region, in absolute coordinates
+     * @return true if the item was drawn in the current image
+     */
+    public boolean damageReport(VisualItem item, Rectangle2D region) {
+        if ( !m_drawn.remove(item) )
+            return false;
+        m_damage.union(region);
+        return true;
+    }
+
+    /**
+     * Report damage to this entire layer.
+     */
+    public void invalidate() {
+        m_damage.invalidate();
+    }
+
+    // ------------------------------------------------------------------------
+    // Image
+
+    /**
+     * Get the image to render this layer into. If the damage to this layer
+     * is invalid, or the image is not of the given size, a new, transparent
+     * image is returned and the layer is invalidated. Otherwise, the current
+     * image is returned, and only the damaged region should be redrawn.
+     * Since images are replaced rather than cleared when the whole layer is
+     * re-rendered, an image that is no longer current is never modified.
+     * @param width the image width, in pixels
+     * @param height the image height, in pixels
+     * @return the image for this layer
+     */
+    public BufferedImage getImage(int width, int height) {
+        width = Math.max(width, 1);
+        height = Math.max(height, 1);
+        if ( m_image == null || m_damage.isInvalid() ||
+             m_image.getWidth() != width || m_image.getHeight() != height )
+        {
+            m_image = new BufferedImage(width, height,
+                                        BufferedImage.TYPE_INT_ARGB_PRE);
+            m_damage.invalidate();
+            m_drawn.clear();
+        }
+        return m_image;
+    }
+
+    /**
+     * Get the current image of this layer.
+     * @return the layer image, or null if the layer has not been rendered
+     */
+    public BufferedImage getImage() {
+        return m_image;
+    }
+
+    // ------------------------------------------------------------------------
+    // Items
+
+    /**
+     * Clear the items to render.
+     */
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Add an item to render. The item is considered drawn in the image
+     * until damage is reported for it.
+     * @param item the item to add
+     */
+    public void addItem(VisualItem item) {
+        m_drawn.add(item);
+        if ( items.length == size ) {
+            VisualItem[] q = new VisualItem[(3*items.length)/2 + 1];
+            System.arraycopy(items, 0, q, 0, size);
+            items = q;
+        }
+        items[size++] = item;
+    }
+
+} // end of class RenderLayer
@@ -16,6 +16,7 @@ import prefuse.visual.sort.ItemSorter;
 public class RenderingQueue {
 
     private static final int DEFAULT_SIZE = 256;
+    private static final int MAX_BUCKETS  = 32;
     
     public ItemSorter   sort   = new ItemSorter();
     
@@ -34,6 +35,10 @@ public class RenderingQueue {
     transient static VisualItem[] items_buf;
     transient static int[]        scores_buf;
     
+    // distinct score values and counts, used for bucket sorting
+    private int[] m_bvals = new int[MAX_BUCKETS];
+    private int[] m_bcount = new int[MAX_BUCKETS];
+    
     /**
      * Clear both rendering and picking queues.
      */
@@ -44,6 +49,15 @@ public class RenderingQueue {
         psize = 0;
     }
     
+    /**
+     * Clear the picking queue only.
+     */
+    public void clearPickingQueue() {
+        Arrays.fill(pitems, 0, psize, null);
+        psize = 0;
+        psorted = false;
+    }
+    
     /**
      * Clears the rendering queue and resizes internal arrays to a small size.
      * This should help reclaim used memory.
@@ -111,17 +125,74 @@ public class RenderingQueue {
     }
     
     /**
-     * Sort a queue of items based upon an array of ordering scores. 
+     * Sort a queue of items based upon an array of ordering scores. The
+     * sort is stable, so items with equal scores keep their queue order.
+     * Item scores rarely change between repaints, and usually take only a
+     * handful of distinct values (e.g., one per item type, plus a few for
+     * hover or highlighted items). The queue is therefore first scanned
+     * once, and is left as is if it is already in order. If few distinct
+     * scores are seen, the items are bucketed by score in linear time.
+     * Only otherwise is a full merge sort performed.
      */
     private void sort(VisualItem[] items, int[] scores, int size) {
-        if ( sort == null ) return;
+        if ( sort == null || size < 2 ) return;
+        
+        // scan the queue, counting items per distinct score. nb exceeds
+        // MAX_BUCKETS if there are too many distinct scores to bucket.
+        int nb = 0, b = 0;
+        boolean sorted = true;
+        for ( int i=0; i<size; ++i ) {
+            int s = scores[i];
+            if ( i > 0 && s < scores[i-1] )
+                sorted = false;
+            if ( nb > MAX_BUCKETS ) {
+                if ( sorted ) continue; else break;
+            }
+            if ( nb == 0 || m_bvals[b] != s ) {
+                for ( b=0; b<nb && m_bvals[b] != s; ++b );
+                if ( b == MAX_BUCKETS ) {
+                    ++nb;
+                    continue;
+                } else if ( b == nb ) {
+                    m_bvals[nb] = s;
+                    m_bcount[nb++] = 0;
+                }
+            }
+            ++m_bcount[b];
+        }
+        if ( sorted ) return;
+        
         // first check buffer queues
         if ( items_buf == null || items_buf.length < size ) {
             items_buf = new VisualItem[items.length];
             scores_buf = new int[scores.length];
         }
-        // now sort
-        ArrayLib.sort(scores, items, scores_buf, items_buf, 0, size);
+        if ( nb > MAX_BUCKETS ) {
+            // too many distinct scores, perform a full sort
+            ArrayLib.sort(scores, items, scores_buf, items_buf, 0, size);
+            return;
+        }
+        
+        // order the buckets by score, and compute their offsets
+        ArrayLib.sort(m_bvals, m_bcount, 0, nb);
+        for ( int i=0, off=0; i<nb; ++i ) {
+            int c = m_bcount[i];
+            m_bcount[i] = off;
+            off += c;
+        }
+        // move each item to the next slot of its bucket
+        System.arraycopy(items, 0, items_buf, 0, size);
+        System.arraycopy(scores, 0, scores_buf, 0, size);
+        b = 0;
+        for ( int i=0; i<size; ++i ) {
+            int s = scores_buf[i];
+            if ( m_bvals[b] != s )
+                for ( b=0; m_bvals[b] != s; ++b );
+            int j = m_bcount[b]++;
+            items[j] = items_buf[i];
+            scores[j] = s;
+        }
+        Arrays.fill(items_buf, 0, size, null);
     }
     
 } // end of class RenderingQueue
@@ -0,0 +1,472 @@
+package prefuse.util.display;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import prefuse.data.expression.Predicate;
+import prefuse.util.ArrayLib;
+import prefuse.util.collections.IntObjectHashMap;
+import prefuse.visual.VisualItem;
+
+/**
+ * <p>A uniform grid spatial index over the bounds of VisualItems, used by a
+ * {@link prefuse.Display} to avoid scanning every item when rendering a
+ * damaged region or picking the item under the mouse. Each item is
+ * registered in every grid cell its bounds overlap; items whose bounds
+ * span a large number of cells (for example, long edges or aggregates)
+ * are instead kept in a separate list that is always consulted.</p>
+ *
+ * <p>Query results are reported in the order in which items were first
+ * added to the index, so that items with equal {@link
+ * prefuse.visual.sort.ItemSorter} scores are consistently rendered and
+ * picked in the same order, regardless of the grid layout.</p>
+ *
+ * <p>The index is updated incrementally: items are marked as dirty (for
+ * example, in response to damage reports) and their grid entries are
+ * recomputed from their current bounds only when the owning Display
+ * {@link #validate(Predicate) validates} the index.
+ * </p>
+ *
+ * <p>This functionality is listed separately to keep the Display
+ * implementation a bit cleaner. Like {@link RenderingQueue}, the index is
+ * intended for use by a single Display instance.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class SpatialIndex {
+
+    private static final int DEFAULT_CELL_SIZE = 64;
+    private static final int MAX_ITEM_CELLS    = 64;
+
+    private double m_cellSize = DEFAULT_CELL_SIZE;
+    private boolean m_autoCellSize = true;
+
+    // item -> entry
+    private HashMap m_entries = new HashMap();
+    // cell hash -> cell
+    private IntObjectHashMap m_cells = new IntObjectHashMap();
+    // entries spanning too many cells to register individually
+    private Cell m_large = new Cell();
+
+    // items whose entries must be recomputed
+    private HashMap m_dirty = new HashMap();
+    private boolean m_invalid = true;
+
+    // total bounds of all indexed items
+    private Clip    m_bounds = new Clip();
+    private boolean m_boundsStale = false;
+
+    // query stamp, used to avoid reporting the same item twice
+    private int m_stamp = 0;
+    // insertion sequence number, used to order query results
+    private int m_seq = 0;
+    
+    // query result buffers
+    private Object[] m_hits = new Object[64];
+    private int[]    m_hseq = new int[64];
+    private int      m_hsize = 0;
+    private Object[] m_hbuf;
+    private int[]    m_sbuf;
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the grid cell size, in absolute (item-space) coordinates.
+     * @return the grid cell size
+     */
+    public double getCellSize() {
+        return m_cellSize;
+    }
+
+    /**
+     * Set the grid cell size, in absolute (item-space) coordinates. Setting
+     * the cell size disables the automatic cell sizing performed whenever
+     * the index is rebuilt, and forces a rebuild upon the next validation.
+     * @param size the grid cell size. A value less than or equal to zero
+     * re-enables automatic cell sizing.
+     */
+    public void setCellSize(double size) {
+        if ( size <= 0 ) {
+            m_autoCellSize = true;
+        } else {
+            m_autoCellSize = false;
+            m_cellSize = size;
+        }
+        invalidate();
+    }
+
+    /**
+     * Get the number of items currently in the index.
+     * @return the number of indexed items
+     */
+    public int size() {
+        return m_entries.size();
+    }
+
+    /**
+     * Indicates if the index is invalid and must be rebuilt in full upon
+     * the next validation.
+     * @return true if the index is invalid, false otherwise
+     */
+    public boolean isInvalid() {
+        return m_invalid;
+    }
+
+    /**
+     * Invalidate the index, causing it to be rebuilt in full from the
+     * source items upon the next validation.
+     */
+    public void invalidate() {
+        m_invalid = true;
+        m_dirty.clear();
+    }
+
+    /**
+     * Mark an item as dirty, causing its index entry to be recomputed from
+     * its current bounds and filter status upon the next validation.
+     * @param item the changed VisualItem
+     */
+    public void markDirty(VisualItem item) {
+        if ( !m_invalid )
+            m_dirty.put(item, item);
+    }
+
+    /**
+     * Clear the index, removing all items and reclaiming used memory.
+     */
+    public void clear() {
+        m_entries.clear();
+        m_cells = new IntObjectHashMap();
+        m_large = new Cell();
+        m_dirty.clear();
+        m_bounds.reset();
+        m_boundsStale = false;
+        m_invalid = true;
+        m_seq = 0;
+        m_hits = new Object[64];
+        m_hseq = new int[64];
+        m_hbuf = null;
+        m_sbuf = null;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Rebuild the index from scratch using the given items. The grid cell
+     * size is recomputed from the item bounds unless a fixed cell size
+     * has been set.
+     * @param items an iterator over the VisualItems to index. All provided
+     * items are assumed to pass the owning Display's filter.
+     */
+    public void rebuild(Iterator items) {
+        clear();
+
+        // first pass: collect items and (optionally) their average extent
+        int n = 0;
+        double extent = 0;
+        VisualItem[] buf = new VisualItem[256];
+        while ( items.hasNext() ) {
+            VisualItem item = (VisualItem)items.next();
+            if ( n == buf.length ) {
+                VisualItem[] b = new VisualItem[(3*n)/2 + 1];
+                System.arraycopy(buf, 0, b, 0, n);
+                buf = b;
+            }
+            buf[n++] = item;
+            if ( m_autoCellSize ) {
+                Rectangle2D r = item.getBounds();
+                extent += Math.max(r.getWidth(), r.getHeight());
+            }
+        }
+        if ( m_autoCellSize ) {
+            // cells of roughly twice the average item extent keep the
+            // number of cells per item, and items per cell, both small
+            m_cellSize = n==0 ? DEFAULT_CELL_SIZE
+                              : Math.max(1.0, 2*extent/n);
+        }
+
+        // second pass: register the items
+        for ( int i=0; i<n; ++i ) {
+            add(buf[i], m_seq++);
+        }
+        m_invalid = false;
+    }
+
+    /**
+     * Validate the index, recomputing the entries of all dirty items.
+     * @param filter the filtering predicate of the owning Display. Dirty
+     * items that are no longer valid or no longer pass this predicate are
+     * removed from the index.
+     */
+    public void validate(Predicate filter) {
+        if ( m_dirty.isEmpty() ) return;
+
+        Iterator iter = m_dirty.keySet().iterator();
+        while ( iter.hasNext() ) {
+            VisualItem item = (VisualItem)iter.next();
+            Entry e = remove(item);
+            if ( item.isValid() && filter.getBoolean(item) )
+                add(item, e==null ? m_seq++ : e.seq);
+        }
+        m_dirty.clear();
+    }
+
+    /**
+     * Get the total bounds of all items in the index.
+     * @param b a Clip in which to store the result
+     */
+    public void getBounds(Clip b) {
+        if ( m_boundsStale ) {
+            m_bounds.reset();
+            Iterator iter = m_entries.values().iterator();
+            while ( iter.hasNext() ) {
+                Entry e = (Entry)iter.next();
+                m_bounds.union(e.x1, e.y1, e.x2-e.x1, e.y2-e.y1);
+            }
+            m_boundsStale = false;
+        }
+        if ( m_entries.isEmpty() ) {
+            b.reset();
+        } else {
+            b.setClip(m_bounds);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Add all items whose bounds intersect the given clip region to the
+     * rendering queue.
+     * @param clip the clip region, in absolute (item-space) coordinates
+     * @param margin additional margin to include in the intersection test
+     * @param queue the RenderingQueue to add items to
+     */
+    public void queryRender(Clip clip, double margin, RenderingQueue queue) {
+        query(clip.getMinX()-margin, clip.getMinY()-margin,
+              clip.getMaxX()+margin, clip.getMaxY()+margin, false);
+        for ( int i=0; i<m_hsize; ++i ) {
+            queue.addToRenderQueue((VisualItem)m_hits[i]);
+            m_hits[i] = null;
+        }
+        m_hsize = 0;
+    }
+
+    /**
+     * Fill the picking queue with all interactive items whose bounds
+     * contain the given point, expanded by the given margin. The picking
+     * queue is cleared first.
+     * @param p the point, in absolute (item-space) coordinates
+     * @param margin additional margin to include in the containment test,
+     * allowing for renderers that locate points with some tolerance
+     * @param queue the RenderingQueue whose picking queue should be filled
+     */
+    public void queryPick(Point2D p, double margin, RenderingQueue queue) {
+        queue.clearPickingQueue();
+        query(p.getX()-margin, p.getY()-margin,
+              p.getX()+margin, p.getY()+margin, true);
+        for ( int i=0; i<m_hsize; ++i ) {
+            queue.addToPickingQueue((VisualItem)m_hits[i]);
+            m_hits[i] = null;
+        }
+        m_hsize = 0;
+    }
+
+    /**
+     * Collect all items intersecting the given region into the hit buffer,
+     * in insertion order.
+     */
+    private void query(double x1, double y1, double x2, double y2,
+                       boolean interactive)
+    {
+        int stamp = nextStamp();
+        m_hsize = 0;
+
+        // check items spanning too many cells
+        for ( int i=0; i<m_large.size; ++i ) {
+            Entry e = m_large.entries[i];
+            if ( e.intersects(x1, y1, x2, y2) )
+                hit(e, interactive);
+        }
+
+        int cx1 = cell(x1), cy1 = cell(y1);
+        int cx2 = cell(x2), cy2 = cell(y2);
+        if ( (long)(cx2-cx1+1)*(cy2-cy1+1) > m_cells.size() ) {
+            // the region covers more cells than are occupied, so visit
+            // the occupied entries directly
+            Iterator iter = m_entries.values().iterator();
+            while ( iter.hasNext() ) {
+                Entry e = (Entry)iter.next();
+                if ( !e.large && e.intersects(x1, y1, x2, y2) )
+                    hit(e, interactive);
+            }
+        } else {
+            for ( int cx=cx1; cx<=cx2; ++cx ) {
+                for ( int cy=cy1; cy<=cy2; ++cy ) {
+                    Cell c = (Cell)m_cells.get(hash(cx,cy));
+                    if ( c == null ) continue;
+                    for ( int i=0; i<c.size; ++i ) {
+                        Entry e = c.entries[i];
+                        if ( e.stamp != stamp && 
+                             e.intersects(x1, y1, x2, y2) )
+                        {
+                            e.stamp = stamp;
+                            hit(e, interactive);
+                        }
+                    }
+                }
+            }
+        }
+
+        // restore insertion order
+        if ( m_hbuf == null || m_hbuf.length < m_hsize ) {
+            m_hbuf = new Object[m_hits.length];
+            m_sbuf = new int[m_hseq.length];
+        }
+        ArrayLib.sort(m_hseq, m_hits, m_sbuf, m_hbuf, 0, m_hsize);
+    }
+
+    private void hit(Entry e, boolean interactive) {
+        if ( interactive && !e.item.isInteractive() )
+            return;
+        if ( m_hsize == m_hits.length ) {
+            int capacity = (3*m_hsize)/2 + 1;
+            Object[] h = new Object[capacity];
+            int[] s = new int[capacity];
+            System.arraycopy(m_hits, 0, h, 0, m_hsize);
+            System.arraycopy(m_hseq, 0, s, 0, m_hsize);
+            m_hits = h;
+            m_hseq = s;
+        }
+        m_hits[m_hsize] = e.item;
+        m_hseq[m_hsize++] = e.seq;
+    }
+
+    // ------------------------------------------------------------------------
+
+    private void add(VisualItem item, int seq) {
+        Rectangle2D r = item.getBounds();
+        Entry e = new Entry(item, seq);
+        e.x1 = r.getMinX(); e.y1 = r.getMinY();
+        e.x2 = r.getMaxX(); e.y2 = r.getMaxY();
+        e.cx1 = cell(e.x1); e.cy1 = cell(e.y1);
+        e.cx2 = cell(e.x2); e.cy2 = cell(e.y2);
+        e.large = ((long)(e.cx2-e.cx1+1))*(e.cy2-e.cy1+1) > MAX_ITEM_CELLS;
+
+        if ( e.large ) {
+            m_large.add(e);
+        } else {
+            for ( int cx=e.cx1; cx<=e.cx2; ++cx ) {
+                for ( int cy=e.cy1; cy<=e.cy2; ++cy ) {
+                    int h = hash(cx, cy);
+                    Cell c = (Cell)m_cells.get(h);
+                    if ( c == null ) {
+                        c = new Cell();
+                        m_cells.put(h, c);
+                    }
+                    c.add(e);
+                }
+            }
+        }
+        m_entries.put(item, e);
+        if ( !m_boundsStale )
+            m_bounds.union(e.x1, e.y1, e.x2-e.x1, e.y2-e.y1);
+    }
+
+    private Entry remove(VisualItem item) {
+        Entry e = (Entry)m_entries.remove(item);
+        if ( e == null ) return null;
+
+        if ( e.large ) {
+            m_large.remove(e);
+        } else {
+            for ( int cx=e.cx1; cx<=e.cx2; ++cx ) {
+                for ( int cy=e.cy1; cy<=e.cy2; ++cy ) {
+                    int h = hash(cx, cy);
+                    Cell c = (Cell)m_cells.get(h);
+                    if ( c != null && c.remove(e) && c.size == 0 )
+                        m_cells.removeKey(h);
+                }
+            }
+        }
+        // total bounds can only shrink if the item touched the border
+        if ( e.x1 <= m_bounds.getMinX() || e.y1 <= m_bounds.getMinY() ||
+             e.x2 >= m_bounds.getMaxX() || e.y2 >= m_bounds.getMaxY() )
+        {
+            m_boundsStale = true;
+        }
+        return e;
+    }
+
+    private int nextStamp() {
+        if ( ++m_stamp == 0 ) {
+            // stamp wrapped around, clear out old values
+            Iterator iter = m_entries.values().iterator();
+            while ( iter.hasNext() )
+                ((Entry)iter.next()).stamp = 0;
+            m_stamp = 1;
+        }
+        return m_stamp;
+    }
+
+    private int cell(double v) {
+        return (int)Math.floor(v / m_cellSize);
+    }
+
+    private static int hash(int cx, int cy) {
+        // cells sharing a hash value are safe, as entry bounds are
+        // always re-checked by the queries
+        return cx*73856093 ^ cy*19349663;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * An index entry, caching the bounds and grid cells of an item.
+     */
+    private static class Entry {
+        VisualItem item;
+        double x1, y1, x2, y2;
+        int cx1, cy1, cx2, cy2;
+        boolean large;
+        int seq;
+        int stamp;
+
+        Entry(VisualItem item, int seq) {
+            this.item = item;
+            this.seq = seq;
+        }
+        boolean intersects(double rx1, double ry1, double rx2, double ry2) {
+            return x1 <= rx2 && x2 >= rx1 && y1 <= ry2 && y2 >= ry1;
+        }
+    }
+
+    /**
+     * A grid cell, holding a simple array list of entries.
+     */
+    private static class Cell {
+        Entry[] entries = new Entry[4];
+        int size = 0;
+
+        void add(Entry e) {
+            if ( size == entries.length ) {
+                Entry[] a = new Entry[2*size];
+                System.arraycopy(entries, 0, a, 0, size);
+                entries = a;
+            }
+            entries[size++] = e;
+        }
+        boolean remove(Entry e) {
+            for ( int i=0; i<size; ++i ) {
+                if ( entries[i] == e ) {
+                    entries[i] = entries[--size];
+                    entries[size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+} // end of class SpatialIndex
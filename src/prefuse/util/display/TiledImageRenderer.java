@@ -0,0 +1,234 @@
+package prefuse.util.display;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+import prefuse.Display;
+
+/**
+ * <p>Renders the contents of a {@link Display} into an image using multiple
+ * threads, for example to export large, high quality images. Rendering
+ * does not require the Display to be shown on screen, and works in headless
+ * environments.</p>
+ *
+ * <p>The display is first painted once, in the calling thread, into a
+ * recording graphics context. This runs the display's renderers and paint
+ * listeners as usual, but only records the resulting drawing operations,
+ * along with the device-space bounds of each. The target image is then
+ * split into tiles, which are rendered concurrently, each through its own
+ * graphics context clipped to the tile, by replaying the operations that
+ * intersect the tile. As each operation is replayed with the same
+ * arguments and device transform as when drawing directly, the resulting
+ * image is identical to one rendered by a single call to
+ * {@link Display#paintDisplay(Graphics2D, Dimension)}. Since renderers are
+ * only invoked by the calling thread, they need not be thread-safe.</p>
+ *
+ * <p>Tiles span the full width of the image. Java2D rasterizes some
+ * anti-aliased strokes slightly differently when they are clipped along
+ * the x-axis, while clipping along the y-axis leaves each row of pixels
+ * unchanged.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ * @see Display#saveImage(java.io.OutputStream, String, double, int)
+ */
+public class TiledImageRenderer {
+
+    /** The default height of rendered tiles, in pixels. */
+    public static final int DEFAULT_TILE_HEIGHT = 64;
+
+    private Display m_display;
+    private int m_threads;
+    private int m_tileHeight = DEFAULT_TILE_HEIGHT;
+
+    /**
+     * Create a new TiledImageRenderer that uses one thread per available
+     * processor.
+     * @param display the Display to render
+     */
+    public TiledImageRenderer(Display display) {
+        this(display, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new TiledImageRenderer.
+     * @param display the Display to render
+     * @param threads the number of threads to render with
+     */
+    public TiledImageRenderer(Display display, int threads) {
+        m_display = display;
+        setThreadCount(threads);
+    }
+
+    /**
+     * Get the Display rendered by this renderer.
+     * @return the rendered Display
+     */
+    public Display getDisplay() {
+        return m_display;
+    }
+
+    /**
+     * Get the number of threads used to render tiles.
+     * @return the number of threads
+     */
+    public int getThreadCount() {
+        return m_threads;
+    }
+
+    /**
+     * Set the number of threads used to render tiles. The calling thread
+     * is counted as one of the threads.
+     * @param n the number of threads, at least one
+     */
+    public void setThreadCount(int n) {
+        if ( n < 1 )
+            throw new IllegalArgumentException(
+                "Thread count must be at least one");
+        m_threads = n;
+    }
+
+    /**
+     * Get the height of rendered tiles.
+     * @return the tile height, in pixels
+     */
+    public int getTileHeight() {
+        return m_tileHeight;
+    }
+
+    /**
+     * Set the height of rendered tiles. Smaller tiles balance work across
+     * threads more evenly, but each tile must consider every recorded
+     * operation, so too many tiles add overhead.
+     * @param height the tile height, in pixels
+     */
+    public void setTileHeight(int height) {
+        if ( height < 1 )
+            throw new IllegalArgumentException(
+                "Tile height must be at least one");
+        m_tileHeight = height;
+    }
+
+    // ------------------------------------------------------------------------
+    // Rendering
+
+    /**
+     * Render the display into a new image, in the same manner as
+     * {@link Display#saveImage(java.io.OutputStream, String, double)}.
+     * @param scale how much to scale the image by. For example, a value of
+     * 2.0 will result in an image with twice the pixel width and height of
+     * the Display.
+     * @return the rendered image
+     */
+    public BufferedImage render(double scale) {
+        BufferedImage img = new BufferedImage(
+            (int)(scale*m_display.getWidth()),
+            (int)(scale*m_display.getHeight()),
+            BufferedImage.TYPE_INT_RGB);
+        render(img, scale);
+        return img;
+    }
+
+    /**
+     * Render the display into an image, in the same manner as
+     * {@link Display#saveImage(java.io.OutputStream, String, double)}.
+     * The display is zoomed by the given scale and rendered in high quality
+     * mode, and then returned to its previous state.
+     * @param img the image to render into. The image should be large
+     * enough to hold the display at the given scale.
+     * @param scale how much to scale the display by
+     */
+    public void render(BufferedImage img, double scale) {
+        RecordingGraphics2D rec = new RecordingGraphics2D();
+
+        // set up the display, record, then revert to normal settings
+        Point2D p = new Point2D.Double(0,0);
+        m_display.zoom(p, scale); // also takes care of damage report
+        boolean q = m_display.isHighQuality();
+        m_display.setHighQuality(true);
+        try {
+            m_display.paintDisplay(rec,
+                new Dimension(img.getWidth(), img.getHeight()));
+        } finally {
+            m_display.setHighQuality(q);
+            m_display.zoom(p, 1/scale); // also takes care of damage report
+            rec.close();
+            rec.dispose();
+        }
+
+        replay(rec, img);
+    }
+
+    /**
+     * Replay a recording into an image, rendering tiles concurrently.
+     */
+    private void replay(final RecordingGraphics2D rec,
+                        final BufferedImage img)
+    {
+        final int ntiles = (img.getHeight()+m_tileHeight-1) / m_tileHeight;
+        if ( ntiles == 0 ) return;
+
+        final int[] next = { 0 };
+        final RuntimeException[] error = new RuntimeException[1];
+        Runnable task = new Runnable() {
+            public void run() {
+                try {
+                    while ( true ) {
+                        int t;
+                        synchronized ( next ) {
+                            if ( next[0] == ntiles || error[0] != null )
+                                return;
+                            t = next[0]++;
+                        }
+                        renderTile(rec, img, t);
+                    }
+                } catch ( RuntimeException e ) {
+                    synchronized ( next ) {
+                        if ( error[0] == null ) error[0] = e;
+                    }
+                }
+            }
+        };
+
+        // the calling thread renders tiles alongside the workers
+        Thread[] workers = new Thread[Math.min(m_threads, ntiles)-1];
+        for ( int i=0; i<workers.length; ++i ) {
+            workers[i] = new Thread(task, "TiledImageRenderer-"+(i+1));
+            workers[i].start();
+        }
+        task.run();
+
+        boolean interrupted = false;
+        for ( int i=0; i<workers.length; ) {
+            try {
+                workers[i].join();
+                ++i;
+            } catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if ( interrupted )
+            Thread.currentThread().interrupt();
+        if ( error[0] != null )
+            throw error[0];
+    }
+
+    /**
+     * Render a single tile, using a graphics context clipped to the tile.
+     */
+    private void renderTile(RecordingGraphics2D rec, BufferedImage img,
+                            int t)
+    {
+        int y = t*m_tileHeight;
+        int h = Math.min(m_tileHeight, img.getHeight()-y);
+
+        Graphics2D g = img.createGraphics();
+        try {
+            rec.replay(g, 0, y, img.getWidth(), h);
+        } finally {
+            g.dispose();
+        }
+    }
+
+} // end of class TiledImageRenderer
@@ -0,0 +1,24 @@
+package prefuse.util.force;
+
+/**
+ * Interface for force functions that can compute forces directly over the
+ * primitive item and spring arrays of an {@link ArrayForceSimulator},
+ * rather than one {@link ForceItem} or {@link Spring} at a time. Force
+ * functions that do not implement this interface are still supported by
+ * the ArrayForceSimulator, but are evaluated through ForceItem instances.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public interface ArrayForce extends Force {
+
+    /**
+     * Accumulates the forces computed by this force function for all items
+     * and/or springs of the given simulator into the simulator's force
+     * arrays. This method takes the place of both the
+     * {@link Force#init(ForceSimulator)} and the per-item or per-spring
+     * getForce methods, and is called once per force accumulation.
+     * @param fsim the ArrayForceSimulator whose arrays should be updated
+     */
+    public void getForces(ArrayForceSimulator fsim);
+
+} // end of interface ArrayForce
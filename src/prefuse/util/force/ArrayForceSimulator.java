@@ -0,0 +1,389 @@
+package prefuse.util.force;
+
+import java.util.Iterator;
+
+/**
+ * <p>ForceSimulator that stores the state of all items and springs in
+ * contiguous primitive arrays indexed by item (or spring) number, rather
+ * than in separate per-item arrays. This allows force functions and
+ * integrators to run as tight loops over memory laid out sequentially.</p>
+ *
+ * <p>Items and springs are added through the usual {@link ForceSimulator}
+ * methods. At the start of each call to {@link #runSimulator(long)} the
+ * state of the registered {@link ForceItem} instances is loaded into the
+ * arrays, the simulation step is run over the arrays, and the results are
+ * written back to the ForceItem instances, as callers such as layouts may
+ * update ForceItems between steps. Item numbers follow the order in which
+ * items were added, and are recorded on the ForceItems themselves, so that
+ * springs are resolved to item numbers without any lookup tables. The item
+ * numbering is only rebuilt when items are added or removed.</p>
+ *
+ * <p>Force functions implementing {@link ArrayForce} and integrators
+ * implementing {@link ArrayIntegrator} operate on the arrays directly.
+ * Other force functions are evaluated through the ForceItem instances, and
+ * other integrators cause the simulator to fall back to the standard
+ * ForceItem-based simulation. The array fields are public and intended to
+ * be used directly by such force functions and integrators.</p>
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class ArrayForceSimulator extends ForceSimulator {
+
+    private static final int DEFAULT_SIZE = 256;
+
+    // force functions, in the order added
+    private Force[] iforces = new Force[5];
+    private Force[] sforces = new Force[5];
+    private int iflen = 0, sflen = 0;
+
+    // ForceItems corresponding to each item number
+    private ForceItem[] items = new ForceItem[DEFAULT_SIZE];
+    // true if items were added or removed since the items were numbered
+    private boolean changed = true;
+    // true while the arrays hold the current simulation state
+    private boolean loaded = false;
+    // true if the ForceItems reflect the current array state
+    private boolean synced = false;
+
+    /** The number of items in the item arrays. */
+    public int itemCount = 0;
+    /** The mass of each item. */
+    public float[] mass  = new float[DEFAULT_SIZE];
+    /** The x-coordinate of each item. */
+    public float[] x     = new float[DEFAULT_SIZE];
+    /** The y-coordinate of each item. */
+    public float[] y     = new float[DEFAULT_SIZE];
+    /** The previous x-coordinate of each item. */
+    public float[] px    = new float[DEFAULT_SIZE];
+    /** The previous y-coordinate of each item. */
+    public float[] py    = new float[DEFAULT_SIZE];
+    /** The x-component of the velocity of each item. */
+    public float[] vx    = new float[DEFAULT_SIZE];
+    /** The y-component of the velocity of each item. */
+    public float[] vy    = new float[DEFAULT_SIZE];
+    /** The x-component of the force acting on each item. */
+    public float[] fx    = new float[DEFAULT_SIZE];
+    /** The y-component of the force acting on each item. */
+    public float[] fy    = new float[DEFAULT_SIZE];
+    /** Temporary variables for Runge-Kutta integration, with the value
+     *  k[j][d] of item i stored at index 8*i+2*j+d. */
+    public float[] k     = new float[8*DEFAULT_SIZE];
+    /** Temporary variables for Runge-Kutta integration, with the value
+     *  l[j][d] of item i stored at index 8*i+2*j+d. */
+    public float[] l     = new float[8*DEFAULT_SIZE];
+
+    /** The number of springs in the spring arrays. */
+    public int springCount = 0;
+    /** The item number of the first endpoint of each spring. */
+    public int[]   spring1 = new int[DEFAULT_SIZE];
+    /** The item number of the second endpoint of each spring. */
+    public int[]   spring2 = new int[DEFAULT_SIZE];
+    /** The tension co-efficient of each spring, negative for default. */
+    public float[] springCoeff  = new float[DEFAULT_SIZE];
+    /** The resting length of each spring, negative for default. */
+    public float[] springLength = new float[DEFAULT_SIZE];
+
+    /**
+     * Create a new, empty ArrayForceSimulator. A RungeKuttaIntegrator is
+     * used by default.
+     */
+    public ArrayForceSimulator() {
+        this(new RungeKuttaIntegrator());
+    }
+
+    /**
+     * Create a new, empty ArrayForceSimulator.
+     * @param integr the Integrator to use
+     */
+    public ArrayForceSimulator(Integrator integr) {
+        super(integr);
+    }
+
+    /**
+     * @see prefuse.util.force.ForceSimulator#addForce(prefuse.util.force.Force)
+     */
+    public void addForce(Force f) {
+        super.addForce(f);
+        if ( f.isItemForce() ) {
+            if ( iforces.length == iflen ) {
+                Force[] newf = new Force[iflen+10];
+                System.arraycopy(iforces, 0, newf, 0, iflen);
+                iforces = newf;
+            }
+            iforces[iflen++] = f;
+        }
+        if ( f.isSpringForce() ) {
+            if ( sforces.length == sflen ) {
+                Force[] newf = new Force[sflen+10];
+                System.arraycopy(sforces, 0, newf, 0, sflen);
+                sforces = newf;
+            }
+            sforces[sflen++] = f;
+        }
+    }
+
+    /**
+     * @see prefuse.util.force.ForceSimulator#clear()
+     */
+    public void clear() {
+        super.clear();
+        for ( int i=0; i<itemCount; ++i )
+            items[i] = null;
+        itemCount = 0;
+        springCount = 0;
+        changed = true;
+    }
+
+    /**
+     * @see prefuse.util.force.ForceSimulator#addItem(prefuse.util.force.ForceItem)
+     */
+    public void addItem(ForceItem item) {
+        super.addItem(item);
+        changed = true;
+    }
+
+    /**
+     * @see prefuse.util.force.ForceSimulator#removeItem(prefuse.util.force.ForceItem)
+     */
+    public boolean removeItem(ForceItem item) {
+        changed = true;
+        return super.removeItem(item);
+    }
+
+    /**
+     * Get the ForceItem corresponding to the given item number. The item
+     * numbering is only valid during a simulation step.
+     * @param i the item number
+     * @return the ForceItem for the given item number
+     */
+    public ForceItem getItem(int i) {
+        return items[i];
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Run the simulator for one timestep. If the integrator does not
+     * implement {@link ArrayIntegrator}, the simulation is run using the
+     * standard ForceItem-based simulation.
+     * @param timestep the span of the timestep for which to run the simulator
+     */
+    public void runSimulator(long timestep) {
+        Integrator integrator = getIntegrator();
+        if ( !(integrator instanceof ArrayIntegrator) ) {
+            super.runSimulator(timestep);
+            return;
+        }
+        load();
+        try {
+            accumulate();
+            ((ArrayIntegrator)integrator).integrate(this, timestep);
+        } finally {
+            store();
+        }
+    }
+
+    /**
+     * Accumulate all forces acting on the items in this simulation. If
+     * called outside of {@link #runSimulator(long)}, forces are accumulated
+     * into the ForceItem instances as usual.
+     */
+    public void accumulate() {
+        if ( !loaded ) {
+            super.accumulate();
+            return;
+        }
+        synced = false;
+        int n = itemCount;
+        float[] fx = this.fx, fy = this.fy;
+        for ( int i=0; i<n; ++i ) {
+            fx[i] = 0.0f; fy[i] = 0.0f;
+        }
+        for ( int i=0; i<iflen; ++i ) {
+            if ( iforces[i] instanceof ArrayForce )
+                ((ArrayForce)iforces[i]).getForces(this);
+            else
+                itemForce(iforces[i]);
+        }
+        for ( int i=0; i<sflen; ++i ) {
+            if ( !(sforces[i] instanceof ArrayForce) )
+                springForce(sforces[i]);
+            else if ( !sforces[i].isItemForce() ) // already computed above
+                ((ArrayForce)sforces[i]).getForces(this);
+        }
+    }
+
+    /**
+     * Evaluate an item force that does not support arrays through the
+     * ForceItem instances.
+     */
+    private void itemForce(Force f) {
+        sync();
+        f.init(this);
+        for ( int i=0; i<itemCount; ++i ) {
+            ForceItem item = items[i];
+            item.force[0] = 0.0f; item.force[1] = 0.0f;
+            f.getForce(item);
+            fx[i] += item.force[0];
+            fy[i] += item.force[1];
+        }
+    }
+
+    /**
+     * Evaluate a spring force that does not support arrays through the
+     * Spring and ForceItem instances.
+     */
+    private void springForce(Force f) {
+        sync();
+        f.init(this);
+        for ( int i=0; i<itemCount; ++i ) {
+            items[i].force[0] = 0.0f; items[i].force[1] = 0.0f;
+        }
+        Iterator siter = getSprings();
+        while ( siter.hasNext() )
+            f.getForce((Spring)siter.next());
+        for ( int i=0; i<itemCount; ++i ) {
+            fx[i] += items[i].force[0];
+            fy[i] += items[i].force[1];
+        }
+    }
+
+    /**
+     * Copy the current item positions, velocities, and masses into the
+     * ForceItem instances, if needed.
+     */
+    private void sync() {
+        if ( synced ) return;
+        for ( int i=0; i<itemCount; ++i ) {
+            ForceItem item = items[i];
+            item.mass = mass[i];
+            item.location[0] = x[i];   item.location[1] = y[i];
+            item.velocity[0] = vx[i];  item.velocity[1] = vy[i];
+            item.plocation[0] = px[i]; item.plocation[1] = py[i];
+        }
+        synced = true;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Load the state of all ForceItems and Springs into the arrays.
+     */
+    private void load() {
+        if ( changed )
+            number();
+
+        // load items
+        int n = itemCount;
+        for ( int i=0; i<n; ++i ) {
+            ForceItem item = items[i];
+            mass[i] = item.mass;
+            x[i]  = item.location[0];  y[i]  = item.location[1];
+            px[i] = item.plocation[0]; py[i] = item.plocation[1];
+            vx[i] = item.velocity[0];  vy[i] = item.velocity[1];
+            fx[i] = item.force[0];     fy[i] = item.force[1];
+        }
+
+        // load springs, resolving endpoints to item numbers
+        int m = 0;
+        Iterator iter = getSprings();
+        while ( iter.hasNext() ) {
+            Spring s = (Spring)iter.next();
+            int i1 = indexOf(s.item1), i2 = indexOf(s.item2);
+            if ( i1 < 0 || i2 < 0 ) {
+                // the items may have since been numbered by another
+                // simulator, so number them again before giving up
+                number();
+                i1 = indexOf(s.item1);
+                i2 = indexOf(s.item2);
+                if ( i1 < 0 || i2 < 0 ) {
+                    throw new IllegalStateException(
+                        "Spring endpoints must be items of the simulation");
+                }
+            }
+            if ( m == spring1.length )
+                ensureSpringCapacity((3*m)/2 + 1);
+            spring1[m] = i1;
+            spring2[m] = i2;
+            springCoeff[m]  = s.coeff;
+            springLength[m] = s.length;
+            ++m;
+        }
+        springCount = m;
+
+        loaded = true;
+        synced = false;
+    }
+
+    /**
+     * Assign item numbers to the ForceItems, in the order they were added.
+     */
+    private void number() {
+        int n = 0;
+        Iterator iter = getItems();
+        while ( iter.hasNext() ) {
+            if ( n == items.length )
+                ensureItemCapacity((3*n)/2 + 1);
+            ForceItem item = (ForceItem)iter.next();
+            items[n] = item;
+            item.index = n++;
+        }
+        for ( int i=n; i<itemCount; ++i )
+            items[i] = null;
+        itemCount = n;
+        changed = false;
+    }
+
+    /**
+     * Get the item number of a ForceItem, or -1 if the item is not
+     * numbered as an item of this simulator.
+     */
+    private int indexOf(ForceItem item) {
+        int i = item.index;
+        return ( i >= 0 && i < itemCount && items[i] == item ? i : -1 );
+    }
+
+    /**
+     * Write the array state back to the ForceItems.
+     */
+    private void store() {
+        loaded = false;
+        for ( int i=0; i<itemCount; ++i ) {
+            ForceItem item = items[i];
+            item.location[0] = x[i];   item.location[1] = y[i];
+            item.plocation[0] = px[i]; item.plocation[1] = py[i];
+            item.velocity[0] = vx[i];  item.velocity[1] = vy[i];
+            item.force[0] = fx[i];     item.force[1] = fy[i];
+        }
+    }
+
+    private void ensureItemCapacity(int capacity) {
+        ForceItem[] it = new ForceItem[capacity];
+        System.arraycopy(items, 0, it, 0, items.length);
+        items = it;
+        mass = resize(mass, capacity);
+        x  = resize(x, capacity);  y  = resize(y, capacity);
+        px = resize(px, capacity); py = resize(py, capacity);
+        vx = resize(vx, capacity); vy = resize(vy, capacity);
+        fx = resize(fx, capacity); fy = resize(fy, capacity);
+        k = new float[8*capacity];
+        l = new float[8*capacity];
+    }
+
+    private void ensureSpringCapacity(int capacity) {
+        int[] s1 = new int[capacity], s2 = new int[capacity];
+        System.arraycopy(spring1, 0, s1, 0, spring1.length);
+        System.arraycopy(spring2, 0, s2, 0, spring2.length);
+        spring1 = s1;
+        spring2 = s2;
+        springCoeff  = resize(springCoeff, capacity);
+        springLength = resize(springLength, capacity);
+    }
+
+    private static float[] resize(float[] a, int capacity) {
+        float[] b = new float[capacity];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+} // end of class ArrayForceSimulator
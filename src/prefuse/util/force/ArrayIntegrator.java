@@ -0,0 +1,19 @@
+package prefuse.util.force;
+
+/**
+ * Interface for numerical integration routines that can operate directly
+ * on the primitive arrays of an {@link ArrayForceSimulator}.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public interface ArrayIntegrator extends Integrator {
+
+    /**
+     * Update the positions and velocities stored in the given simulator's
+     * arrays in response to the currently accumulated forces.
+     * @param sim the ArrayForceSimulator to integrate
+     * @param timestep the span of the timestep for which to integrate
+     */
+    public void integrate(ArrayForceSimulator sim, long timestep);
+
+} // end of interface ArrayIntegrator
@@ -5,7 +5,7 @@ package prefuse.util.force;
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class DragForce extends AbstractForce {
+public class DragForce extends AbstractForce implements ArrayForce {
 
     private static String[] pnames = new String[] { "DragCoefficient" };
     
@@ -53,5 +53,17 @@ public class DragForce extends AbstractForce {
         item.force[0] -= params[DRAG_COEFF]*item.velocity[0];
         item.force[1] -= params[DRAG_COEFF]*item.velocity[1];
     }
+    
+    /**
+     * @see prefuse.util.force.ArrayForce#getForces(prefuse.util.force.ArrayForceSimulator)
+     */
+    public void getForces(ArrayForceSimulator fsim) {
+        float coeff = params[DRAG_COEFF];
+        float[] fx = fsim.fx, fy = fsim.fy, vx = fsim.vx, vy = fsim.vy;
+        for ( int i=0; i<fsim.itemCount; ++i ) {
+            fx[i] -= coeff*vx[i];
+            fy[i] -= coeff*vy[i];
+        }
+    }
 
 } // end of class DragForce
@@ -10,7 +10,7 @@ import java.util.Iterator;
  * @author <a href="http://jheer.org">jeffrey heer</a>
  * @see RungeKuttaIntegrator
  */
-public class EulerIntegrator implements Integrator {
+public class EulerIntegrator implements ArrayIntegrator {
     
     /**
      * @see prefuse.util.force.Integrator#integrate(prefuse.util.force.ForceSimulator, long)
@@ -34,5 +34,26 @@ public class EulerIntegrator implements Integrator {
             }
         }
     }
+    
+    /**
+     * @see prefuse.util.force.ArrayIntegrator#integrate(prefuse.util.force.ArrayForceSimulator, long)
+     */
+    public void integrate(ArrayForceSimulator sim, long timestep) {
+        float speedLimit = sim.getSpeedLimit();
+        float[] x = sim.x, y = sim.y, vx = sim.vx, vy = sim.vy;
+        float[] fx = sim.fx, fy = sim.fy, mass = sim.mass;
+        for ( int i=0; i<sim.itemCount; ++i ) {
+            x[i] += timestep * vx[i];
+            y[i] += timestep * vy[i];
+            float coeff = timestep / mass[i];
+            vx[i] += coeff * fx[i];
+            vy[i] += coeff * fy[i];
+            float v = (float)Math.sqrt(vx[i]*vx[i]+vy[i]*vy[i]);
+            if ( v > speedLimit ) {
+                vx[i] = speedLimit * vx[i] / v;
+                vy[i] = speedLimit * vy[i] / v;
+            }
+        }
+    }
 
 } // end of class EulerIntegrator
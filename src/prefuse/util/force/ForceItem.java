@@ -53,6 +53,12 @@ public class ForceItem implements Cloneable {
     public float[][] k;
     /** Temporary variables for Runge-Kutta integration */
     public float[][] l;
+    /** The item number assigned by the last ArrayForceSimulator to run
+     *  with this item, or -1 if none. */
+    int index = -1;
+    /** The item number assigned by the last NBodyForce quadtree to hold
+     *  this item, or -1 if none. */
+    int quadIndex = -1;
     
     /**
      * Checks a ForceItem to make sure its values are all valid numbers
@@ -8,7 +8,9 @@ package prefuse.util.force;
  *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class GravitationalForce extends AbstractForce {
+public class GravitationalForce extends AbstractForce
+    implements ArrayForce
+{
 
     private static final String[] pnames
         = { "GravitationalConstant", "Direction" };
@@ -71,5 +73,19 @@ public class GravitationalForce extends AbstractForce {
         item.force[0] += Math.cos(theta)*coeff;
         item.force[1] += Math.sin(theta)*coeff;
     }
+    
+    /**
+     * @see prefuse.util.force.ArrayForce#getForces(prefuse.util.force.ArrayForceSimulator)
+     */
+    public void getForces(ArrayForceSimulator fsim) {
+        float theta = params[DIRECTION];
+        double cos = Math.cos(theta), sin = Math.sin(theta);
+        float[] fx = fsim.fx, fy = fsim.fy, mass = fsim.mass;
+        for ( int i=0; i<fsim.itemCount; ++i ) {
+            float coeff = params[GRAVITATIONAL_CONST]*mass[i];
+            fx[i] += cos*coeff;
+            fy[i] += sin*coeff;
+        }
+    }
 
 } // end of class GravitationalForce
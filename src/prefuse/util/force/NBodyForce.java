@@ -1,9 +1,7 @@
 package prefuse.util.force;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Random;
 
 /**
  * <p>Force function which computes an n-body force such as gravity,
@@ -22,9 +20,21 @@ import java.util.Random;
  *   <li><a href="http://www.ifa.hawaii.edu/~barnes/treecode/treeguide.html">Joshua Barnes' recent implementation</a>
  * </ul></p>
  * 
+ * <p>The quadtree is stored as a set of parallel primitive arrays indexed
+ * by node number, which are reused across simulation steps and grown only
+ * as needed, so that steady-state simulation steps do not allocate any
+ * quadtree memory.</p>
+ * 
+ * <p>For large simulations, the force computation can be split across
+ * multiple threads using {@link #setThreadCount(int)}. In this mode the
+ * quadtree is built once per simulation step and then shared, read-only,
+ * by all worker threads. The random noise used to separate items at the
+ * same location is derived from the simulation step and the item, so
+ * results are identical regardless of the number of threads used.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class NBodyForce extends AbstractForce {
+public class NBodyForce extends AbstractForce implements ArrayForce {
 
     /* 
      * The indexing scheme for quadtree child nodes goes row by row.
@@ -53,10 +63,44 @@ public class NBodyForce extends AbstractForce {
     public static final int BARNES_HUT_THETA = 2;
     
     private float xMin, xMax, yMin, yMax;
-    private QuadTreeNodeFactory factory = new QuadTreeNodeFactory();
-    private QuadTreeNode root;
     
-    private Random rand = new Random(12345678L); // deterministic randomness
+    // quadtree node storage, indexed by node number. the root is node 0.
+    // a node's children always have higher numbers than the node itself.
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private int     nodeCount;
+    private float[] mass;     // total mass held by each node
+    private float[] comx;     // center of mass of each node
+    private float[] comy;
+    private float[] x1, y1;   // bounds of each node
+    private float[] x2, y2;
+    private int[]   children; // child nodes, 4 per node, NONE if absent
+    private int[]   value;    // item held by each node, NONE if empty
+    private boolean[] hasChildren;
+    
+    // the items in the quadtree, referenced by the value array
+    private ForceItem[] items;
+    private float[] ix, iy;   // item locations
+    private float[] imass;    // item masses
+    private int itemCount;
+    private HashMap itemIndex; // item numbers, if items are not numbered
+    
+    // minimum number of items handled by each worker thread
+    private static final int MIN_ITEMS_PER_THREAD = 1000;
+    // time after which an idle worker thread exits, in milliseconds
+    private static final long WORKER_IDLE_TIME = 5000L;
+    
+    // force computation state
+    private int threads = 1;
+    private long step = 0;
+    private ForceTask task = new ForceTask(); // used by the calling thread
+    private float[] pforce;
+    
+    // worker threads, reused across simulation steps
+    private final Object lock = new Object();
+    private Worker[] workers = new Worker[0];
+    private int pending;       // workers yet to finish the current step
+    private Throwable error;   // first error thrown by a worker
 
     /**
      * Create a new NBodyForce with default parameters.
@@ -82,7 +126,9 @@ public class NBodyForce extends AbstractForce {
             DEFAULT_MIN_DISTANCE, DEFAULT_MIN_THETA };
         maxValues = new float[] { DEFAULT_MAX_GRAV_CONSTANT,
             DEFAULT_MAX_DISTANCE, DEFAULT_MAX_THETA };
-        root = factory.getQuadTreeNode();
+        allocateNodes(256);
+        allocateItems(256);
+        clear();
     }
 
     /**
@@ -100,6 +146,43 @@ public class NBodyForce extends AbstractForce {
         return pnames;
     } 
     
+    /**
+     * Get the number of threads used to compute n-body forces.
+     * @return the number of threads used
+     */
+    public int getThreadCount() {
+        return threads;
+    }
+    
+    /**
+     * Set the number of threads used to compute n-body forces. If greater
+     * than one, forces for all items are computed in parallel when this
+     * force function is initialized at the start of each simulation step,
+     * and subsequent calls to {@link #getForce(ForceItem)} simply apply the
+     * precomputed values. Simulations with few items are processed using
+     * fewer threads. Worker threads are reused across simulation steps,
+     * and exit once they have been idle for a few seconds. The default
+     * value is one, in which case forces are computed on demand in the
+     * calling thread.
+     * @param n the number of threads to use
+     */
+    public void setThreadCount(int n) {
+        if ( n < 1 )
+            throw new IllegalArgumentException(
+                "Thread count must be at least one");
+        threads = n;
+        if ( n == 1 )
+            pforce = null;
+    }
+    
+    /**
+     * Get the number of quadtree nodes currently in use.
+     * @return the number of quadtree nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+    
     /**
      * Set the bounds of the region for which to compute the n-body simulation
      * @param xMin the minimum x-coordinate
@@ -112,24 +195,96 @@ public class NBodyForce extends AbstractForce {
         this.yMin = yMin;
         this.xMax = xMax;
         this.yMax = yMax;
+        x1[ROOT] = xMin; y1[ROOT] = yMin;
+        x2[ROOT] = xMax; y2[ROOT] = yMax;
     }
 
     /**
-     * Clears the quadtree of all entries.
+     * Clears the quadtree of all entries. The quadtree storage is retained
+     * for re-use.
      */
     public void clear() {
-        clearHelper(root);
-        root = factory.getQuadTreeNode();
+        // release item references
+        for ( int i=0; i<itemCount; ++i )
+            items[i] = null;
+        itemCount = 0;
+        itemIndex = null;
+        nodeCount = 0;
+        newNode(xMin, yMin, xMax, yMax);
     }
     
-    private void clearHelper(QuadTreeNode n) {
-        for ( int i = 0; i < n.children.length; i++ ) {
-            if ( n.children[i] != null )
-                clearHelper(n.children[i]);
-        }
-        factory.reclaim(n);
+    // ------------------------------------------------------------------------
+    // Quadtree Storage
+    
+    /**
+     * Allocate quadtree node arrays with the given capacity, copying over
+     * any existing nodes.
+     */
+    private void allocateNodes(int capacity) {
+        mass = resize(mass, capacity);
+        comx = resize(comx, capacity);
+        comy = resize(comy, capacity);
+        x1 = resize(x1, capacity);
+        y1 = resize(y1, capacity);
+        x2 = resize(x2, capacity);
+        y2 = resize(y2, capacity);
+        value = resize(value, capacity);
+        boolean[] b = new boolean[capacity];
+        if ( hasChildren != null )
+            System.arraycopy(hasChildren, 0, b, 0, nodeCount);
+        hasChildren = b;
+        children = resize(children, 4*capacity);
+    }
+    
+    /**
+     * Allocate item arrays with the given capacity, copying over any
+     * existing items.
+     */
+    private void allocateItems(int capacity) {
+        ForceItem[] a = new ForceItem[capacity];
+        if ( items != null )
+            System.arraycopy(items, 0, a, 0, itemCount);
+        items = a;
+        ix = resize(ix, capacity);
+        iy = resize(iy, capacity);
+        imass = resize(imass, capacity);
+    }
+    
+    private float[] resize(float[] a, int capacity) {
+        float[] b = new float[capacity];
+        if ( a != null )
+            System.arraycopy(a, 0, b, 0, Math.min(a.length, capacity));
+        return b;
+    }
+    
+    private int[] resize(int[] a, int capacity) {
+        int[] b = new int[capacity];
+        if ( a != null )
+            System.arraycopy(a, 0, b, 0, Math.min(a.length, capacity));
+        return b;
+    }
+    
+    /**
+     * Create a new, empty quadtree node with the given bounds.
+     * @return the new node number
+     */
+    private int newNode(float nx1, float ny1, float nx2, float ny2) {
+        if ( nodeCount == mass.length )
+            allocateNodes((3*nodeCount)/2 + 1);
+        int n = nodeCount++;
+        mass[n] = 0;
+        comx[n] = 0.0f; comy[n] = 0.0f;
+        x1[n] = nx1; y1[n] = ny1;
+        x2[n] = nx2; y2[n] = ny2;
+        value[n] = NONE;
+        hasChildren[n] = false;
+        int c = 4*n;
+        children[c] = children[c+1] = children[c+2] = children[c+3] = NONE;
+        return n;
     }
 
+    // ------------------------------------------------------------------------
+    
     /**
      * Initialize the simulation with the provided enclosing simulation. After
      * this call has been made, the simulation can be queried for the 
@@ -138,6 +293,7 @@ public class NBodyForce extends AbstractForce {
      */
     public void init(ForceSimulator fsim) {
         clear(); // clear internal state
+        ++step;
         
         // compute and squarify bounds of quadtree
         float x1 = Float.MAX_VALUE, y1 = Float.MAX_VALUE;
@@ -164,7 +320,134 @@ public class NBodyForce extends AbstractForce {
         }
         
         // calculate magnitudes and centers of mass
-        calcMass(root);
+        calcMass();
+        
+        // compute all forces in parallel using the frozen quadtree
+        if ( threads > 1 )
+            computeParallel();
+    }
+    
+    /**
+     * Computes the n-body forces acting on all items of the given
+     * simulator, building the quadtree directly from the simulator's
+     * location and mass arrays.
+     * @see prefuse.util.force.ArrayForce#getForces(prefuse.util.force.ArrayForceSimulator)
+     */
+    public void getForces(ArrayForceSimulator fsim) {
+        clear(); // clear internal state
+        ++step;
+        
+        int n = fsim.itemCount;
+        float[] x = fsim.x, y = fsim.y, fx = fsim.fx, fy = fsim.fy;
+        if ( n > ix.length )
+            allocateItems(n);
+        System.arraycopy(x, 0, ix, 0, n);
+        System.arraycopy(y, 0, iy, 0, n);
+        System.arraycopy(fsim.mass, 0, imass, 0, n);
+        
+        // compute and squarify bounds of quadtree
+        float x1 = Float.MAX_VALUE, y1 = Float.MAX_VALUE;
+        float x2 = Float.MIN_VALUE, y2 = Float.MIN_VALUE;
+        for ( int i=0; i<n; ++i ) {
+            if ( x[i] < x1 ) x1 = x[i];
+            if ( y[i] < y1 ) y1 = y[i];
+            if ( x[i] > x2 ) x2 = x[i];
+            if ( y[i] > y2 ) y2 = y[i];
+        }
+        float dx = x2-x1, dy = y2-y1;
+        if ( dx > dy ) { y2 = y1 + dx; } else { x2 = x1 + dy; }
+        setBounds(x1,y1,x2,y2);
+        
+        // insert items into quadtree
+        itemCount = n;
+        for ( int i=0; i<n; ++i ) {
+            insert(i);
+        }
+        
+        // calculate magnitudes and centers of mass
+        calcMass();
+        
+        if ( threads > 1 ) {
+            computeParallel();
+            for ( int i=0; i<n; ++i ) {
+                fx[i] += pforce[2*i];
+                fy[i] += pforce[2*i+1];
+            }
+        } else {
+            for ( int i=0; i<n; ++i ) {
+                task.compute(i, ix[i], iy[i], imass[i]);
+                fx[i] += task.force[0];
+                fy[i] += task.force[1];
+            }
+        }
+    }
+    
+    /**
+     * Compute forces for all items across multiple threads. Each item's
+     * force depends only upon the quadtree and the item itself, so the
+     * results do not depend upon how the items are partitioned. Any error
+     * thrown by a worker thread is rethrown once all workers are done.
+     */
+    private void computeParallel() {
+        if ( pforce == null || pforce.length < 2*itemCount )
+            pforce = new float[2*items.length];
+        
+        int nthreads = Math.min(threads, 
+                (itemCount+MIN_ITEMS_PER_THREAD-1) / MIN_ITEMS_PER_THREAD);
+        if ( nthreads <= 1 ) {
+            task.lo = 0; task.hi = itemCount;
+            task.run();
+            return;
+        }
+        
+        // hand all but the first chunk to the workers, starting new
+        // workers in place of any that are missing or have exited
+        int chunk = (itemCount+nthreads-1) / nthreads;
+        synchronized ( lock ) {
+            if ( workers.length < nthreads-1 ) {
+                Worker[] w = new Worker[nthreads-1];
+                System.arraycopy(workers, 0, w, 0, workers.length);
+                workers = w;
+            }
+            for ( int i=1; i<nthreads; ++i ) {
+                Worker w = workers[i-1];
+                if ( w == null || w.exited )
+                    w = workers[i-1] = new Worker(i);
+                w.task.lo = i*chunk;
+                w.task.hi = Math.min(itemCount, w.task.lo+chunk);
+                w.work = true;
+            }
+            pending = nthreads-1;
+            error = null;
+            lock.notifyAll();
+        }
+        
+        // run the first chunk in the calling thread, then wait for the
+        // workers, which share the quadtree and force arrays
+        Throwable t;
+        try {
+            task.lo = 0; task.hi = Math.min(itemCount, chunk);
+            task.run();
+        } finally {
+            boolean interrupted = false;
+            synchronized ( lock ) {
+                while ( pending > 0 ) {
+                    try {
+                        lock.wait();
+                    } catch ( InterruptedException e ) {
+                        interrupted = true;
+                    }
+                }
+                t = error;
+                error = null;
+            }
+            if ( interrupted )
+                Thread.currentThread().interrupt();
+        }
+        if ( t instanceof RuntimeException )
+            throw (RuntimeException)t;
+        else if ( t != null )
+            throw (Error)t;
     }
 
     /**
@@ -174,83 +457,97 @@ public class NBodyForce extends AbstractForce {
      *  outside the bounds of the quadtree
      */
     public void insert(ForceItem item) {
-        // insert item into the quadtrees
-        try {
-            insert(item, root, xMin, yMin, xMax, yMax);
-        } catch ( StackOverflowError e ) {
-            // TODO: safe to remove?
-            e.printStackTrace();
-        }
+        if ( itemCount == items.length )
+            allocateItems((3*itemCount)/2 + 1);
+        int p = itemCount++;
+        items[p] = item;
+        item.quadIndex = p;
+        ix[p] = item.location[0];
+        iy[p] = item.location[1];
+        imass[p] = item.mass;
+        insert(p);
     }
-
-    private void insert(ForceItem p, QuadTreeNode n, 
-                        float x1, float y1, float x2, float y2)
-    {
-        // try to insert particle p at node n in the quadtree
+    
+    /**
+     * Inserts the item with the given item number into the quadtree.
+     */
+    private void insert(int p) {
+        // try to insert particle p into the quadtree, starting at the root
         // by construction, each leaf will contain either 1 or 0 particles
-        if ( n.hasChildren ) {
-            // n contains more than 1 particle
-            insertHelper(p,n,x1,y1,x2,y2);
-        } else if ( n.value != null ) {
-            // n contains 1 particle
-            if ( isSameLocation(n.value, p) ) {
-                insertHelper(p,n,x1,y1,x2,y2);
+        int n = ROOT;
+        while ( true ) {
+            if ( hasChildren[n] ) {
+                // n contains more than 1 particle
+                n = child(n, p);
+            } else if ( value[n] != NONE ) {
+                // n contains 1 particle
+                if ( isSameLocation(value[n], p) ) {
+                    n = child(n, p);
+                } else {
+                    int v = value[n]; value[n] = NONE;
+                    int c = child(n, v); // may grow the node arrays
+                    value[c] = v;
+                    n = child(n, p);
+                }
             } else {
-                ForceItem v = n.value; n.value = null;
-                insertHelper(v,n,x1,y1,x2,y2);
-                insertHelper(p,n,x1,y1,x2,y2);
+                // n is empty, so is a leaf
+                value[n] = p;
+                return;
             }
-        } else { 
-            // n is empty, so is a leaf
-            n.value = p;
         }
     }
     
-    private static boolean isSameLocation(ForceItem f1, ForceItem f2) {
-        float dx = Math.abs(f1.location[0]-f2.location[0]);
-        float dy = Math.abs(f1.location[1]-f2.location[1]);
+    private boolean isSameLocation(int p1, int p2) {
+        float dx = Math.abs(ix[p1]-ix[p2]);
+        float dy = Math.abs(iy[p1]-iy[p2]);
         return ( dx < 0.01 && dy < 0.01 );
     }
     
-    private void insertHelper(ForceItem p, QuadTreeNode n, 
-                              float x1, float y1, float x2, float y2)
-    {   
-        float x = p.location[0], y = p.location[1];
-        float splitx = (x1+x2)/2;
-        float splity = (y1+y2)/2;
+    /**
+     * Get the child of node n whose region contains item p, creating the
+     * child node if necessary.
+     */
+    private int child(int n, int p) {
+        float x = ix[p], y = iy[p];
+        float splitx = (x1[n]+x2[n])/2;
+        float splity = (y1[n]+y2[n])/2;
         int i = (x>=splitx ? 1 : 0) + (y>=splity ? 2 : 0);
         // create new child node, if necessary
-        if ( n.children[i] == null ) {
-            n.children[i] = factory.getQuadTreeNode();
-            n.hasChildren = true;
+        int c = children[4*n+i];
+        if ( c == NONE ) {
+            c = newNode((i==1||i==3 ? splitx : x1[n]), (i>1 ? splity : y1[n]),
+                        (i==1||i==3 ? x2[n] : splitx), (i>1 ? y2[n] : splity));
+            children[4*n+i] = c;
+            hasChildren[n] = true;
         }
-        // update bounds
-        if ( i==1 || i==3 ) x1 = splitx; else x2 = splitx;
-        if ( i > 1 )        y1 = splity; else y2 = splity;
-        // recurse 
-        insert(p,n.children[i],x1,y1,x2,y2);        
+        return c;
     }
 
-    private void calcMass(QuadTreeNode n) {
-        float xcom = 0, ycom = 0;
-        n.mass = 0;
-        if ( n.hasChildren ) {
-            for ( int i=0; i < n.children.length; i++ ) {
-                if ( n.children[i] != null ) {
-                    calcMass(n.children[i]);
-                    n.mass += n.children[i].mass;
-                    xcom += n.children[i].mass * n.children[i].com[0];
-                    ycom += n.children[i].mass * n.children[i].com[1];
+    private void calcMass() {
+        // children are numbered after their parents, so visiting nodes in
+        // reverse order computes children before parents
+        for ( int n = nodeCount; --n >= 0; ) {
+            float m = 0, xcom = 0, ycom = 0;
+            if ( hasChildren[n] ) {
+                for ( int i=4*n; i < 4*n+4; i++ ) {
+                    int c = children[i];
+                    if ( c != NONE ) {
+                        m += mass[c];
+                        xcom += mass[c] * comx[c];
+                        ycom += mass[c] * comy[c];
+                    }
                 }
             }
+            int v = value[n];
+            if ( v != NONE ) {
+                m += imass[v];
+                xcom += imass[v] * ix[v];
+                ycom += imass[v] * iy[v];
+            }
+            mass[n] = m;
+            comx[n] = xcom / m;
+            comy[n] = ycom / m;
         }
-        if ( n.value != null ) {
-            n.mass += n.value.mass;
-            xcom += n.value.mass * n.value.location[0];
-            ycom += n.value.mass * n.value.location[1];
-        }
-        n.com[0] = xcom / n.mass;
-        n.com[1] = ycom / n.mass;
     }
 
     /**
@@ -258,103 +555,188 @@ public class NBodyForce extends AbstractForce {
      * @param item the ForceItem for which to compute the force
      */
     public void getForce(ForceItem item) {
+        int self = indexOf(item);
+        // use the precomputed force if available
+        if ( pforce != null && self != NONE ) {
+            item.force[0] += pforce[2*self];
+            item.force[1] += pforce[2*self+1];
+            return;
+        }
         try {
-            forceHelper(item,root,xMin,yMin,xMax,yMax);
+            task.compute(self, item.location[0], item.location[1], item.mass);
         } catch ( StackOverflowError e ) {
             // TODO: safe to remove?
             e.printStackTrace();
         }
+        item.force[0] += task.force[0];
+        item.force[1] += task.force[1];
+    }
+    
+    /**
+     * Get the item number of the given item, or NONE if the item is not
+     * in the quadtree. Items record their number when inserted, so this
+     * takes constant time regardless of the order items are visited in.
+     * If the number was since overwritten, as when an item is shared with
+     * another NBodyForce, the number is looked up in a map of all items,
+     * built once per simulation step.
+     */
+    private int indexOf(ForceItem item) {
+        int i = item.quadIndex;
+        if ( i >= 0 && i < itemCount && items[i] == item )
+            return i;
+        if ( itemIndex == null ) {
+            itemIndex = new HashMap(2*itemCount);
+            for ( int j=0; j<itemCount; ++j )
+                itemIndex.put(items[j], new Integer(j));
+        }
+        Integer idx = (Integer)itemIndex.get(item);
+        return ( idx == null ? NONE : idx.intValue() );
     }
     
-    private void forceHelper(ForceItem item, QuadTreeNode n, 
-                             float x1, float y1, float x2, float y2)
+    /**
+     * Accumulate into the force array the force acting on an item at the
+     * given location and with the given mass due to node n.
+     * @param self the item number of the item, or NONE if the item is not
+     * in the quadtree
+     */
+    private void forceHelper(int self, float x, float y, float m, int n,
+                             float[] force, ForceTask task)
     {
-        float dx = n.com[0] - item.location[0];
-        float dy = n.com[1] - item.location[1];
+        float dx = comx[n] - x;
+        float dy = comy[n] - y;
         float r  = (float)Math.sqrt(dx*dx+dy*dy);
         boolean same = false;
         if ( r == 0.0f ) {
             // if items are in the exact same place, add some noise
-            dx = (rand.nextFloat()-0.5f) / 50.0f;
-            dy = (rand.nextFloat()-0.5f) / 50.0f;
+            dx = (task.nextFloat()-0.5f) / 50.0f;
+            dy = (task.nextFloat()-0.5f) / 50.0f;
             r  = (float)Math.sqrt(dx*dx+dy*dy);
             same = true;
         }
         boolean minDist = params[MIN_DISTANCE]>0f && r>params[MIN_DISTANCE];
+        int v = value[n];
         
         // the Barnes-Hut approximation criteria is if the ratio of the
         // size of the quadtree box to the distance between the point and
         // the box's center of mass is beneath some threshold theta.
-        if ( (!n.hasChildren && n.value != item) || 
-             (!same && (x2-x1)/r < params[BARNES_HUT_THETA]) ) 
+        if ( (!hasChildren[n] && (self == NONE || v != self)) || 
+             (!same && (x2[n]-x1[n])/r < params[BARNES_HUT_THETA]) ) 
         {
             if ( minDist ) return;
             // either only 1 particle or we meet criteria
             // for Barnes-Hut approximation, so calc force
-            float v = params[GRAVITATIONAL_CONST]*item.mass*n.mass 
-                        / (r*r*r);
-            item.force[0] += v*dx;
-            item.force[1] += v*dy;
-        } else if ( n.hasChildren ) {
+            float f = params[GRAVITATIONAL_CONST]*m*mass[n] / (r*r*r);
+            force[0] += f*dx;
+            force[1] += f*dy;
+        } else if ( hasChildren[n] ) {
             // recurse for more accurate calculation
-            float splitx = (x1+x2)/2;
-            float splity = (y1+y2)/2;
-            for ( int i=0; i<n.children.length; i++ ) {
-                if ( n.children[i] != null ) {
-                    forceHelper(item, n.children[i],
-                        (i==1||i==3?splitx:x1), (i>1?splity:y1),
-                        (i==1||i==3?x2:splitx), (i>1?y2:splity));
+            for ( int i=4*n; i<4*n+4; i++ ) {
+                if ( children[i] != NONE ) {
+                    forceHelper(self, x, y, m, children[i], force, task);
                 }
             }
             if ( minDist ) return;
-            if ( n.value != null && n.value != item ) {
-                float v = params[GRAVITATIONAL_CONST]*item.mass*n.value.mass
-                            / (r*r*r);
-                item.force[0] += v*dx;
-                item.force[1] += v*dy;
+            if ( v != NONE && v != self ) {
+                float f = params[GRAVITATIONAL_CONST]*m*imass[v] / (r*r*r);
+                force[0] += f*dx;
+                force[1] += f*dy;
             }
         }
     }
-
+    
     /**
-     * Represents a node in the quadtree.
+     * Computes the forces acting on items, using a scratch force vector.
+     * Noise for coincident items is drawn from a generator seeded by the
+     * simulation step and item number before each item is computed, rather
+     * than a shared one, so that results do not depend upon which task or
+     * thread computes an item.
      */
-    public static final class QuadTreeNode {
-        public QuadTreeNode() {
-            com = new float[] {0.0f, 0.0f};
-            children = new QuadTreeNode[4];
-        } //
-        boolean hasChildren = false;
-        float mass; // total mass held by this node
-        float[] com; // center of mass of this node 
-        ForceItem value; // ForceItem in this node, null if node has children
-        QuadTreeNode[] children; // children nodes
-    } // end of inner class QuadTreeNode
-
+    private final class ForceTask implements Runnable {
+        int lo, hi; // the range of items computed by run()
+        final float[] force = new float[2];
+        private long seed;
+        
+        float nextFloat() {
+            // 48-bit linear congruential step, as in java.util.Random
+            seed = (seed * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+            return ((int)(seed >>> 24)) / ((float)(1 << 24));
+        }
+        
+        /**
+         * Compute the force acting on an item into the force vector.
+         */
+        void compute(int self, float x, float y, float m) {
+            seed = (12345678L ^ (step * 0x9E3779B97F4A7C15L) ^ self)
+                   & ((1L << 48) - 1);
+            force[0] = 0; force[1] = 0;
+            forceHelper(self, x, y, m, ROOT, force, this);
+        }
+        
+        public void run() {
+            for ( int i=lo; i<hi; ++i ) {
+                compute(i, ix[i], iy[i], imass[i]);
+                pforce[2*i]   = force[0];
+                pforce[2*i+1] = force[1];
+            }
+        }
+    } // end of inner class ForceTask
+    
     /**
-     * Helper class to minimize number of object creations across multiple
-     * uses of the quadtree.
+     * Worker thread that computes the forces for a range of items at each
+     * simulation step. Workers wait for work between steps, and exit once
+     * idle for {@link #WORKER_IDLE_TIME}, so that they do not outlive the
+     * simulation.
      */
-    public static final class QuadTreeNodeFactory {
-        private int maxNodes = 50000;
-        private ArrayList nodes = new ArrayList();
+    private final class Worker extends Thread {
+        final ForceTask task = new ForceTask();
+        boolean work = false;   // guarded by lock
+        boolean exited = false; // guarded by lock
         
-        public QuadTreeNode getQuadTreeNode() {
-            if ( nodes.size() > 0 ) {
-                return (QuadTreeNode)nodes.remove(nodes.size()-1);
-            } else {
-                return new QuadTreeNode();
-            }
+        Worker(int i) {
+            super("NBodyForce-"+i);
+            setDaemon(true);
+            start();
         }
-        public void reclaim(QuadTreeNode n) {
-            n.mass = 0;
-            n.com[0] = 0.0f; n.com[1] = 0.0f;
-            n.value = null;
-            n.hasChildren = false;
-            Arrays.fill(n.children, null);          
-            if ( nodes.size() < maxNodes )
-                nodes.add(n);
+        
+        public void run() {
+            while ( true ) {
+                synchronized ( lock ) {
+                    long t0 = System.currentTimeMillis();
+                    while ( !work ) {
+                        long wait = WORKER_IDLE_TIME
+                                    - (System.currentTimeMillis()-t0);
+                        if ( wait <= 0 ) {
+                            exited = true;
+                            return;
+                        }
+                        try {
+                            lock.wait(wait);
+                        } catch ( InterruptedException e ) {
+                            if ( !work ) {
+                                exited = true;
+                                return;
+                            }
+                        }
+                    }
+                }
+                
+                Throwable t = null;
+                try {
+                    task.run();
+                } catch ( RuntimeException e ) {
+                    t = e;
+                } catch ( Error e ) {
+                    t = e;
+                }
+                synchronized ( lock ) {
+                    work = false;
+                    if ( t != null && error == null )
+                        error = t;
+                    if ( --pending == 0 )
+                        lock.notifyAll();
+                }
+            }
         }
-    } // end of inner class QuadTreeNodeFactory
+    } // end of inner class Worker
 
 } // end of class NBodyForce
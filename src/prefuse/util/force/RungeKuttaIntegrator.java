@@ -9,7 +9,7 @@ import java.util.Iterator;
  *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class RungeKuttaIntegrator implements Integrator {
+public class RungeKuttaIntegrator implements ArrayIntegrator {
     
     /**
      * @see prefuse.util.force.Integrator#integrate(prefuse.util.force.ForceSimulator, long)
@@ -124,5 +124,111 @@ public class RungeKuttaIntegrator implements Integrator {
             item.velocity[1] += vy;
         }
     }
+    
+    /**
+     * @see prefuse.util.force.ArrayIntegrator#integrate(prefuse.util.force.ArrayForceSimulator, long)
+     */
+    public void integrate(ArrayForceSimulator sim, long timestep) {
+        float speedLimit = sim.getSpeedLimit();
+        float vx, vy, v, coeff;
+        int n = sim.itemCount, b;
+        // the k and l values of item i begin at index 8*i
+        float[] k = sim.k, l = sim.l;
+        float[] x = sim.x, y = sim.y, px = sim.px, py = sim.py;
+        float[] mass = sim.mass, fx = sim.fx, fy = sim.fy;
+        float[] ivx = sim.vx, ivy = sim.vy;
+        
+        for ( int i=0; i<n; ++i ) {
+            coeff = timestep / mass[i];
+            b = 8*i;
+            px[i] = x[i];
+            py[i] = y[i];
+            k[b]   = timestep*ivx[i];
+            k[b+1] = timestep*ivy[i];
+            l[b]   = coeff*fx[i];
+            l[b+1] = coeff*fy[i];
+            
+            // Set the position to the new predicted position
+            x[i] += 0.5f*k[b];
+            y[i] += 0.5f*k[b+1];
+        }
+        
+        // recalculate forces
+        sim.accumulate();
+        
+        for ( int i=0; i<n; ++i ) {
+            coeff = timestep / mass[i];
+            b = 8*i;
+            vx = ivx[i] + .5f*l[b];
+            vy = ivy[i] + .5f*l[b+1];
+            v = (float)Math.sqrt(vx*vx+vy*vy);
+            if ( v > speedLimit ) {
+                vx = speedLimit * vx / v;
+                vy = speedLimit * vy / v;
+            }
+            k[b+2] = timestep*vx;
+            k[b+3] = timestep*vy;
+            l[b+2] = coeff*fx[i];
+            l[b+3] = coeff*fy[i];
+            
+            // Set the position to the new predicted position
+            x[i] = px[i] + 0.5f*k[b+2];
+            y[i] = py[i] + 0.5f*k[b+3];
+        }
+        
+        // recalculate forces
+        sim.accumulate();
+        
+        for ( int i=0; i<n; ++i ) {
+            coeff = timestep / mass[i];
+            b = 8*i;
+            vx = ivx[i] + .5f*l[b+2];
+            vy = ivy[i] + .5f*l[b+3];
+            v = (float)Math.sqrt(vx*vx+vy*vy);
+            if ( v > speedLimit ) {
+                vx = speedLimit * vx / v;
+                vy = speedLimit * vy / v;
+            }
+            k[b+4] = timestep*vx;
+            k[b+5] = timestep*vy;
+            l[b+4] = coeff*fx[i];
+            l[b+5] = coeff*fy[i];
+            
+            // Set the position to the new predicted position
+            x[i] = px[i] + 0.5f*k[b+4];
+            y[i] = py[i] + 0.5f*k[b+5];
+        }
+        
+        // recalculate forces
+        sim.accumulate();
+        
+        for ( int i=0; i<n; ++i ) {
+            coeff = timestep / mass[i];
+            b = 8*i;
+            vx = ivx[i] + l[b+4];
+            vy = ivy[i] + l[b+5];
+            v = (float)Math.sqrt(vx*vx+vy*vy);
+            if ( v > speedLimit ) {
+                vx = speedLimit * vx / v;
+                vy = speedLimit * vy / v;
+            }
+            k[b+6] = timestep*vx;
+            k[b+7] = timestep*vy;
+            l[b+6] = coeff*fx[i];
+            l[b+7] = coeff*fy[i];
+            x[i] = px[i] + (k[b]+k[b+6])/6.0f + (k[b+2]+k[b+4])/3.0f;
+            y[i] = py[i] + (k[b+1]+k[b+7])/6.0f + (k[b+3]+k[b+5])/3.0f;
+            
+            vx = (l[b]+l[b+6])/6.0f + (l[b+2]+l[b+4])/3.0f;
+            vy = (l[b+1]+l[b+7])/6.0f + (l[b+3]+l[b+5])/3.0f;
+            v = (float)Math.sqrt(vx*vx+vy*vy);
+            if ( v > speedLimit ) {
+                vx = speedLimit * vx / v;
+                vy = speedLimit * vy / v;
+            }
+            ivx[i] += vx;
+            ivy[i] += vy;
+        }
+    }
 
 } // end of class RungeKuttaIntegrator
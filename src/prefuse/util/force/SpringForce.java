@@ -6,7 +6,7 @@ package prefuse.util.force;
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class SpringForce extends AbstractForce {
+public class SpringForce extends AbstractForce implements ArrayForce {
 
     private static String[] pnames 
         = new String[] { "SpringCoefficient", "DefaultSpringLength" };
@@ -83,4 +83,32 @@ public class SpringForce extends AbstractForce {
         item2.force[1] += -coeff*dy;
     }
     
+    /**
+     * Calculates the force vectors acting on the items due to all springs
+     * of the given simulator.
+     * @see prefuse.util.force.ArrayForce#getForces(prefuse.util.force.ArrayForceSimulator)
+     */
+    public void getForces(ArrayForceSimulator fsim) {
+        float[] x = fsim.x, y = fsim.y, fx = fsim.fx, fy = fsim.fy;
+        float[] slength = fsim.springLength, scoeff = fsim.springCoeff;
+        int[] s1 = fsim.spring1, s2 = fsim.spring2;
+        for ( int s=0; s<fsim.springCount; ++s ) {
+            int i1 = s1[s], i2 = s2[s];
+            float length = (slength[s] < 0 ? params[SPRING_LENGTH] : slength[s]);
+            float dx = x[i2]-x[i1], dy = y[i2]-y[i1];
+            float r  = (float)Math.sqrt(dx*dx+dy*dy);
+            if ( r == 0.0 ) {
+                dx = ((float)Math.random()-0.5f) / 50.0f;
+                dy = ((float)Math.random()-0.5f) / 50.0f;
+                r  = (float)Math.sqrt(dx*dx+dy*dy);
+            }
+            float d  = r-length;
+            float coeff = (scoeff[s] < 0 ? params[SPRING_COEFF] : scoeff[s])*d/r;
+            fx[i1] += coeff*dx;
+            fy[i1] += coeff*dy;
+            fx[i2] += -coeff*dx;
+            fy[i2] += -coeff*dy;
+        }
+    }
+    
 } // end of class SpringForce
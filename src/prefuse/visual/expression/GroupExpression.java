@@ -5,6 +5,7 @@ import java.util.logging.Logger;
 import prefuse.data.Tuple;
 import prefuse.data.expression.AbstractExpression;
 import prefuse.data.expression.Expression;
+import prefuse.data.expression.ExpressionVisitor;
 import prefuse.data.expression.Function;
 import prefuse.data.expression.ObjectLiteral;
 
@@ -72,6 +73,16 @@ public abstract class GroupExpression extends AbstractExpression
         return 1;
     }
     
+    /**
+     * @see prefuse.data.expression.Expression#visit(prefuse.data.expression.ExpressionVisitor)
+     */
+    public void visit(ExpressionVisitor v) {
+        v.visitExpression(this);
+        if ( m_group != null ) {
+            v.down(); m_group.visit(v); v.up();
+        }
+    }
+    
     /**
      * @see java.lang.Object#toString()
      */
@@ -0,0 +1,64 @@
+package test;
+
+import prefuse.data.Graph;
+import prefuse.util.GraphLib;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Compares the memory use and traversal speed of the standard and the
+ * compacted adjacency list representations of a Graph.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class GraphAdjacencyBenchmark {
+
+    private static final int PASSES = 10;
+
+    public static void main(String[] argv) {
+        long heap = usedMemory();
+        Graph g = GraphLib.getGrid(500,500);
+        System.out.println("grid 500x500 ("+g.getNodeCount()+" nodes, "
+            +g.getEdgeCount()+" edges)");
+        System.out.println("MODE\tHEAP\tTRAVERSAL");
+
+        long sum = traverse(g); // warm up
+        report("lists", heap, g);
+
+        g.compact();
+        if ( traverse(g) != sum )
+            System.out.println("WARNING: traversals differ");
+        report("compact", heap, g);
+    }
+
+    private static void report(String mode, long base, Graph g) {
+        long t0 = System.currentTimeMillis();
+        for ( int i=0; i<PASSES; ++i )
+            traverse(g);
+        double ms = (System.currentTimeMillis()-t0) / (double)PASSES;
+        long kb = (usedMemory()-base) / 1024;
+        System.out.println(mode+"\t"+kb+"kB\t"+((int)(ms*100))/100.0+"ms");
+    }
+
+    private static long traverse(Graph g) {
+        long sum = 0;
+        IntIterator nodes = g.nodeRows();
+        while ( nodes.hasNext() ) {
+            int n = nodes.nextInt();
+            sum += g.getDegree(n);
+            IntIterator iter = g.edgeRows(n);
+            while ( iter.hasNext() )
+                sum += iter.nextInt();
+            iter = g.neighborRows(n, Graph.UNDIRECTED);
+            while ( iter.hasNext() )
+                sum += iter.nextInt();
+        }
+        return sum;
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for ( int i=0; i<3; ++i ) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+} // end of class GraphAdjacencyBenchmark
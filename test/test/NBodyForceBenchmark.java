@@ -0,0 +1,78 @@
+package test;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import prefuse.data.Graph;
+import prefuse.util.GraphLib;
+import prefuse.util.force.ForceItem;
+import prefuse.util.force.ForceSimulator;
+import prefuse.util.force.NBodyForce;
+
+/**
+ * Measures the scaling of the multi-threaded n-body force computation
+ * across thread counts, and checks that the computed forces do not depend
+ * on the number of threads used.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class NBodyForceBenchmark {
+
+    private static final int   STEPS   = 10;
+    private static final int[] THREADS = { 1, 2, 4, 8 };
+
+    public static void main(String[] argv) {
+        run("grid 250x250", GraphLib.getGrid(250,250));
+        run("honeycomb 100", GraphLib.getHoneycomb(100));
+    }
+
+    private static void run(String name, Graph g) {
+        int n = g.getNodeCount();
+        System.out.println(name+" ("+n+" nodes)");
+        System.out.println("THREADS\tTIME/STEP\tSPEEDUP");
+
+        float[] reference = null;
+        double base = 0;
+        for ( int t=0; t<THREADS.length; ++t ) {
+            NBodyForce nbody = new NBodyForce();
+            nbody.setThreadCount(THREADS[t]);
+            ForceSimulator fsim = new ForceSimulator();
+            fsim.addForce(nbody);
+
+            // lay out the nodes at the same random locations for each run
+            Random rand = new Random(42);
+            for ( int i=0; i<n; ++i ) {
+                ForceItem item = new ForceItem();
+                item.location[0] = 1000*rand.nextFloat();
+                item.location[1] = 1000*rand.nextFloat();
+                fsim.addItem(item);
+            }
+
+            fsim.accumulate(); // warm up
+            long t0 = System.currentTimeMillis();
+            for ( int s=0; s<STEPS; ++s )
+                fsim.accumulate();
+            double ms = (System.currentTimeMillis()-t0) / (double)STEPS;
+            if ( t == 0 ) base = ms;
+
+            // compare forces against the first run
+            float[] forces = new float[2*n];
+            Iterator iter = fsim.getItems();
+            for ( int i=0; iter.hasNext(); ++i ) {
+                ForceItem item = (ForceItem)iter.next();
+                forces[2*i]   = item.force[0];
+                forces[2*i+1] = item.force[1];
+            }
+            if ( reference == null ) {
+                reference = forces;
+            } else if ( !java.util.Arrays.equals(reference, forces) ) {
+                System.out.println("WARNING: forces differ from 1 thread");
+            }
+
+            System.out.println(THREADS[t]+"\t"+((int)(ms*100))/100.0
+                +"ms\t\t"+((int)(100*base/ms))/100.0+"x");
+        }
+        System.out.println();
+    }
+
+} // end of class NBodyForceBenchmark
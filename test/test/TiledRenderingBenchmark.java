@@ -0,0 +1,116 @@
+package test;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.Random;
+
+import prefuse.Display;
+import prefuse.Visualization;
+import prefuse.util.ColorLib;
+import prefuse.util.GraphLib;
+import prefuse.util.display.TiledImageRenderer;
+import prefuse.visual.VisualItem;
+
+/**
+ * Measures the throughput of exporting large, high quality images of a
+ * display, comparing serial rendering against tiled rendering across
+ * thread counts, and checks that tiled rendering produces the same pixels.
+ * Run with <code>-Djava.awt.headless=true</code> on servers.
+ *
+ * @author <a href="http://jheer.org">jeffrey heer</a>
+ */
+public class TiledRenderingBenchmark {
+
+    private static final int    SIZE    = 1000;
+    private static final double SCALE   = 4.0;
+    private static final int    RUNS    = 3;
+    private static final int[]  THREADS = { 1, 2, 4, 8 };
+
+    public static void main(String[] argv) {
+        int n = argv.length > 0 ? Integer.parseInt(argv[0]) : 316;
+        Visualization vis = new Visualization();
+        vis.add("graph", GraphLib.getGrid(n,n));
+
+        // scatter the items, with visible colors and varying sizes
+        Random rand = new Random(42);
+        Iterator items = vis.items();
+        while ( items.hasNext() ) {
+            VisualItem item = (VisualItem)items.next();
+            item.setX(SIZE*rand.nextDouble());
+            item.setY(SIZE*rand.nextDouble());
+            item.setSize(0.5 + rand.nextDouble());
+            item.setStrokeColor(ColorLib.gray(50, 100));
+            item.setFillColor(ColorLib.rgb(255,120,80));
+        }
+        Display display = new Display(vis);
+        display.setSize(SIZE, SIZE);
+        vis.repaint();
+
+        int w = (int)(SCALE*SIZE), h = (int)(SCALE*SIZE);
+        System.out.println(vis.size("graph")+" items, "+w+"x"+h+" image");
+        System.out.println("MODE\t\tTIME/IMAGE\tIMAGES/MIN\tSPEEDUP");
+
+        // serial rendering, as performed by Display.saveImage
+        BufferedImage reference = null;
+        double base = 0;
+        for ( int r=0; r<=RUNS; ++r ) {
+            BufferedImage img = new BufferedImage(w, h,
+                                                  BufferedImage.TYPE_INT_RGB);
+            long t0 = System.currentTimeMillis();
+            renderSerial(display, img);
+            if ( r > 0 ) base += System.currentTimeMillis()-t0; // warm up
+            reference = img;
+        }
+        base /= RUNS;
+        print("serial\t", base, base);
+
+        for ( int t=0; t<THREADS.length; ++t ) {
+            TiledImageRenderer tr = new TiledImageRenderer(display,THREADS[t]);
+            BufferedImage img = null;
+            double ms = 0;
+            for ( int r=0; r<=RUNS; ++r ) {
+                img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+                long t0 = System.currentTimeMillis();
+                tr.render(img, SCALE);
+                if ( r > 0 ) ms += System.currentTimeMillis()-t0;
+            }
+            ms /= RUNS;
+            print("tiled x"+THREADS[t], ms, base);
+            if ( !sameImage(reference, img) )
+                System.out.println("WARNING: image differs from serial");
+        }
+    }
+
+    private static void renderSerial(Display display, BufferedImage img) {
+        Graphics2D g = img.createGraphics();
+        Point2D p = new Point2D.Double(0,0);
+        display.zoom(p, SCALE);
+        boolean q = display.isHighQuality();
+        display.setHighQuality(true);
+        display.paintDisplay(g, new Dimension(img.getWidth(),img.getHeight()));
+        display.setHighQuality(q);
+        display.zoom(p, 1/SCALE);
+        g.dispose();
+    }
+
+    private static void print(String mode, double ms, double base) {
+        System.out.println(mode+"\t"+((int)ms)+"ms\t\t"
+            +((int)(60000/ms*100))/100.0+"\t\t"
+            +((int)(100*base/ms))/100.0+"x");
+    }
+
+    private static boolean sameImage(BufferedImage a, BufferedImage b) {
+        int w = a.getWidth(), h = a.getHeight();
+        int[] ra = new int[w], rb = new int[w];
+        for ( int y=0; y<h; ++y ) {
+            a.getRGB(0, y, w, 1, ra, 0, w);
+            b.getRGB(0, y, w, 1, rb, 0, w);
+            if ( !java.util.Arrays.equals(ra, rb) ) return false;
+        }
+        return true;
+    }
+
+} // end of class TiledRenderingBenchmark
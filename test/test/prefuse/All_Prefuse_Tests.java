@@ -13,6 +13,8 @@ public class All_Prefuse_Tests {
         suite.addTest(test.prefuse.data.expression.All_PrefuseDataExpression_Tests.suite());
         suite.addTest(test.prefuse.data.io.All_PrefuseDataIO_Tests.suite());
         suite.addTest(test.prefuse.data.util.All_PrefuseDataUtil_Tests.suite());
+        suite.addTest(test.prefuse.render.All_PrefuseRender_Tests.suite());
+        suite.addTest(test.prefuse.util.force.All_PrefuseUtilForce_Tests.suite());
         suite.addTest(test.prefuse.visual.All_PrefuseVisual_Tests.suite());
         //$JUnit-END$
         return suite;
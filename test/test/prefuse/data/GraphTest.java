@@ -7,7 +7,10 @@ import prefuse.data.Edge;
 import prefuse.data.Graph;
 import prefuse.data.Node;
 import prefuse.data.Table;
+import prefuse.data.Tree;
+import prefuse.data.event.GraphListener;
 import prefuse.util.GraphLib;
+import prefuse.util.collections.IntIterator;
 import test.prefuse.TestConfig;
 
 public class GraphTest extends TestCase implements GraphTestData {
@@ -160,4 +163,109 @@ public class GraphTest extends TestCase implements GraphTestData {
             assertEquals(false, edges[i].isValid());
         }
     }
+    
+    private static String adjacency(Graph g) {
+        StringBuffer sbuf = new StringBuffer();
+        IntIterator nodes = g.nodeRows();
+        while ( nodes.hasNext() ) {
+            int n = nodes.nextInt();
+            sbuf.append(n).append(':').append(g.getDegree(n)).append(' ');
+            for ( int d=Graph.INEDGES; d<=Graph.UNDIRECTED; ++d ) {
+                IntIterator iter = g.edgeRows(n, d);
+                while ( iter.hasNext() )
+                    sbuf.append(iter.nextInt()).append(',');
+                sbuf.append('|');
+                iter = g.neighborRows(n, d);
+                while ( iter.hasNext() )
+                    sbuf.append(iter.nextInt()).append(',');
+                sbuf.append('|');
+            }
+            Iterator iter = g.neighbors(g.getNode(n));
+            while ( iter.hasNext() )
+                sbuf.append(((Node)iter.next()).getRow()).append(',');
+            sbuf.append('\n');
+        }
+        return sbuf.toString();
+    }
+    
+    public void testCompact() {
+        Graph g = GraphLib.getGrid(6,7);
+        String expected = adjacency(g);
+        
+        g.compact();
+        assertTrue(g.isCompact());
+        assertEquals(expected, adjacency(g));
+        assertEquals(g.getEdge(0,1), g.getEdge(g.getNode(0), g.getNode(1)).getRow());
+        assertEquals(-1, g.getEdge(0, 41));
+        
+        // the first structural change reverts to the mutable representation
+        Edge e = g.addEdge(g.getNode(0), g.getNode(41));
+        assertFalse(g.isCompact());
+        assertEquals(e.getRow(), g.getEdge(0, 41));
+        g.removeEdge(e);
+        assertEquals(expected, adjacency(g));
+        
+        g.compact();
+        int degree = g.getDegree(0);
+        int nb = g.neighborRows(0, Graph.OUTEDGES).nextInt();
+        assertTrue(g.removeNode(nb));
+        assertFalse(g.isCompact());
+        assertEquals(degree-1, g.getDegree(0));
+        assertEquals(-1, g.getEdge(0, nb));
+        
+        // trees navigate through the compacted lists as well
+        Tree t = GraphLib.getBalancedTree(3, 3);
+        Node root = t.getRoot();
+        Node c = t.getChild(root, 1);
+        t.compact();
+        assertSame(c, t.getChild(root, 1));
+        assertSame(t.getChild(root, 0), t.getPreviousSibling(c));
+        assertSame(t.getChild(root, 2), t.getNextSibling(c));
+        assertSame(root, t.getParent(c));
+    }
+    
+    public void testAddEdges() {
+        Graph g1 = GraphLib.getGrid(6,7);
+        Graph g2 = GraphLib.getGrid(6,7);
+        int[] s = new int[50], t = new int[50];
+        for ( int i=0; i<s.length; ++i ) {
+            s[i] = (7*i) % 42;
+            t[i] = (11*i+3) % 42;
+        }
+        
+        final int[] events = new int[1];
+        g2.addGraphModelListener(new GraphListener() {
+            public void graphChanged(Graph g, String table, 
+                    int start, int end, int col, int type)
+            {
+                ++events[0];
+            }
+        });
+        
+        for ( int i=0; i<s.length; ++i )
+            g1.addEdge(s[i], t[i]);
+        int[] rows = g2.addEdges(s, t);
+        assertEquals(1, events[0]);
+        assertEquals(s.length, rows.length);
+        assertEquals(g1.getEdgeCount(), g2.getEdgeCount());
+        assertEquals(adjacency(g1), adjacency(g2));
+        for ( int i=0; i<rows.length; ++i ) {
+            assertEquals(s[i], g2.getSourceNode(rows[i]));
+            assertEquals(t[i], g2.getTargetNode(rows[i]));
+        }
+        
+        // edges added afterwards are linked as usual
+        g1.addEdge(3, 4);
+        g2.addEdge(3, 4);
+        assertEquals(adjacency(g1), adjacency(g2));
+        
+        // child indices are maintained for trees
+        Tree tree = GraphLib.getBalancedTree(2, 2);
+        int root = tree.getRootRow();
+        int c1 = tree.addNodeRow(), c2 = tree.addNodeRow();
+        tree.addEdges(new int[] {root, root}, new int[] {c1, c2});
+        assertEquals(4, tree.getChildCount(root));
+        assertEquals(2, tree.getChildIndex(root, c1));
+        assertEquals(c2, tree.getNextSiblingRow(c1));
+    }
 }
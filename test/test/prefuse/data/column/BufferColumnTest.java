@@ -0,0 +1,89 @@
+package test.prefuse.data.column;
+
+import junit.framework.TestCase;
+import prefuse.data.Schema;
+import prefuse.data.Table;
+import prefuse.data.column.BufferColumn;
+import prefuse.data.column.BufferDoubleColumn;
+import prefuse.data.column.BufferIntColumn;
+import prefuse.data.column.Column;
+import prefuse.data.column.ColumnFactory;
+import prefuse.data.column.IntColumn;
+
+public class BufferColumnTest extends TestCase {
+
+    public void testGrowth() {
+        int n = 3*BufferColumn.SEGMENT_ROWS + 17;
+        BufferIntColumn col = new BufferIntColumn(10, 7);
+        for ( int i=0; i<10; ++i )
+            col.setInt(i, i);
+        col.setMaximumRow(n);
+        assertEquals(n, col.getRowCount());
+        for ( int i=0; i<10; ++i )
+            assertEquals(i, col.getInt(i));
+        assertEquals(7, col.getInt(n-1));
+        col.setInt(-5, n-1);
+        assertEquals(-5, col.getInt(n-1));
+        assertEquals(new Integer(-5), col.get(n-1));
+        assertEquals(7.0, col.getDouble(BufferColumn.SEGMENT_ROWS), 0);
+        try {
+            col.getInt(n);
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+    }
+
+    public void testMapped() {
+        BufferDoubleColumn col = new BufferDoubleColumn(
+            2*BufferColumn.SEGMENT_ROWS, 0.5, true);
+        assertTrue(col.isMapped());
+        col.setDouble(3.25, BufferColumn.SEGMENT_ROWS+1);
+        col.set("1.5", 0);
+        assertEquals(3.25, col.getDouble(BufferColumn.SEGMENT_ROWS+1), 0);
+        assertEquals(1.5, col.getDouble(0), 0);
+        assertEquals(0.5, col.getDouble(1), 0);
+        col.dispose();
+    }
+
+    public void testFactory() {
+        Column c = ColumnFactory.getColumn(int.class, 5, null,
+                                           ColumnFactory.DIRECT_STORAGE);
+        assertTrue(c instanceof BufferIntColumn);
+        assertEquals(-1, c.getInt(4));
+        c = ColumnFactory.getColumn(int.class, 5, null,
+                                    ColumnFactory.HEAP_STORAGE);
+        assertTrue(c instanceof IntColumn);
+        c = ColumnFactory.getColumn(String.class, 5, "a",
+                                    ColumnFactory.MAPPED_STORAGE);
+        assertEquals("a", c.get(4));
+    }
+
+    public void testSchemaStorage() {
+        Schema s = new Schema();
+        s.addColumn("id", int.class);
+        s.addColumn("w", float.class, new Float(1));
+        s.addColumn("b", boolean.class, Boolean.TRUE);
+        s.setStorage("w", ColumnFactory.DIRECT_STORAGE);
+        s.setStorage("b", ColumnFactory.MAPPED_STORAGE);
+        Schema c = (Schema)s.clone();
+        assertEquals(ColumnFactory.DIRECT_STORAGE, c.getStorage("w"));
+
+        Table t = c.instantiate();
+        assertTrue(t.getColumn("id") instanceof IntColumn);
+        assertTrue(t.getColumn("w") instanceof BufferColumn);
+        assertTrue(t.getColumn("b") instanceof BufferColumn);
+        for ( int i=0; i<1000; ++i ) {
+            int r = t.addRow();
+            t.setInt(r, "id", i);
+            t.setFloat(r, "w", i/2f);
+        }
+        t.setBoolean(10, "b", false);
+        t.index("w");
+        assertEquals(10, t.getInt(t.index("w").get(5.0f), "id"));
+        assertEquals(1.5f, t.getFloat(3, "w"), 0);
+        assertFalse(t.getBoolean(10, "b"));
+        assertTrue(t.getBoolean(11, "b"));
+    }
+
+}
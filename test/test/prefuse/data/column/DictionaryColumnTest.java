@@ -0,0 +1,157 @@
+package test.prefuse.data.column;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.column.ColumnFactory;
+import prefuse.data.column.DictionaryColumn;
+import prefuse.data.column.ObjectColumn;
+import prefuse.data.io.AbstractTextTableReader;
+import prefuse.data.io.CSVTableReader;
+import prefuse.data.io.DelimitedTextTableReader;
+import prefuse.util.DataLib;
+import prefuse.util.PrefuseConfig;
+
+public class DictionaryColumnTest extends TestCase {
+
+    static final String[] VALUES = { "red", "green", "blue", null, "gray" };
+
+    public void testValues() {
+        DictionaryColumn col = new DictionaryColumn(String.class, 10, 10, "x");
+        assertEquals(10, col.getRowCount());
+        assertEquals(1, col.getDistinctCount());
+        assertEquals("x", col.get(9));
+
+        for ( int i=0; i<10; ++i )
+            col.set(VALUES[i % VALUES.length], i);
+        assertEquals(VALUES.length, col.getDistinctCount());
+        for ( int i=0; i<10; ++i )
+            assertEquals(VALUES[i % VALUES.length], col.get(i));
+        assertEquals(-1, col.getCode("x"));
+        assertEquals(2, col.getCount(col.getCode("red")));
+        assertEquals(col.getCode(0), col.getCode(5));
+        assertEquals(col.getCode((Object)null), col.getCode(3));
+
+        // equal values share a dictionary entry
+        col.set(new String("green"), 0);
+        assertSame(col.get(1), col.get(0));
+        assertEquals(3, col.getCount(col.getCode("green")));
+        assertEquals(1, col.getCount(col.getCode("red")));
+
+        col.setMaximumRow(12);
+        assertEquals("x", col.get(11));
+        col.setMaximumRow(5);
+        assertEquals(VALUES.length-1, col.getDistinctCount());
+        assertEquals(-1, col.getCode("x"));
+        assertEquals(-1, col.getCode("red"));
+        try {
+            col.set(new Integer(1), 0);
+            fail();
+        } catch ( RuntimeException e ) {
+            // expected
+        }
+    }
+
+    public void testRandomUpdates() {
+        // compare against an ObjectColumn under random updates
+        Random r = new Random(42);
+        int n = 2000;
+        DictionaryColumn col = new DictionaryColumn(String.class, n);
+        ObjectColumn ref = new ObjectColumn(String.class, n);
+        for ( int i=0; i<20000; ++i ) {
+            int row = r.nextInt(n);
+            String s = r.nextInt(10) == 0 ? null : "v"+r.nextInt(300);
+            col.set(s, row);
+            ref.set(s, row);
+        }
+        HashSet distinct = new HashSet();
+        for ( int i=0; i<n; ++i ) {
+            assertEquals(ref.get(i), col.get(i));
+            distinct.add(ref.get(i));
+        }
+        assertEquals(distinct.size(), col.getDistinctCount());
+        assertEquals(distinct,
+                     new HashSet(Arrays.asList(col.getDistinctValues())));
+        for ( int c=0; c<col.getCodeLimit(); ++c ) {
+            if ( col.getCount(c) > 0 )
+                assertEquals(c, col.getCode(col.getValue(c)));
+        }
+    }
+
+    public void testMetadata() {
+        Table t = new Table();
+        t.addColumn("s", String.class, null, ColumnFactory.DICTIONARY_STORAGE);
+        assertTrue(t.getColumn("s") instanceof DictionaryColumn);
+        t.addRows(20);
+        for ( int i=0; i<20; ++i )
+            t.setString(i, "s", VALUES[i % 4]);
+
+        Object[] ordinal = DataLib.ordinalArray(t, "s");
+        assertEquals(4, ordinal.length);
+        assertNull(ordinal[0]);
+        assertEquals("blue", ordinal[1]);
+        assertEquals("green", ordinal[2]);
+        assertEquals("red", ordinal[3]);
+        assertEquals(4, t.getMetadata("s").getUniqueCount());
+
+        // removed rows are not included
+        for ( int i=0; i<20; i += 4 )
+            t.removeRow(i);
+        ordinal = DataLib.ordinalArray(t, "s");
+        assertEquals(3, ordinal.length);
+        assertNull(ordinal[0]);
+        assertEquals("blue", ordinal[1]);
+        assertEquals(3, t.getMetadata("s").getUniqueCount());
+    }
+
+    public void testReader() throws Exception {
+        String csv = "name,kind\na,x\nb,y\nc,x\n";
+        Table t = new CSVTableReader().readTable(
+            new java.io.ByteArrayInputStream(csv.getBytes()));
+        Column c = t.getColumn("kind");
+        assertTrue(c instanceof DictionaryColumn);
+        assertEquals(2, ((DictionaryColumn)c).getDistinctCount());
+        assertEquals("x", t.getString(2, "kind"));
+    }
+
+    public void testMappedReader() throws Exception {
+        File f = File.createTempFile("prefuse", ".txt");
+        f.deleteOnExit();
+        String key = "data.io.dictionaryStrings";
+        String dict = PrefuseConfig.get(key);
+        try {
+            AbstractTextTableReader[] readers = {
+                new CSVTableReader(), new DelimitedTextTableReader() };
+            String[] text = { "name,kind\na,x\nb,y\nc,x\n",
+                              "name\tkind\na\tx\nb\ty\nc\tx\n" };
+            for ( int i=0; i<readers.length; ++i ) {
+                FileWriter w = new FileWriter(f);
+                w.write(text[i]);
+                w.close();
+                readers[i].setMemoryMapped(true);
+
+                Table t = readers[i].readTable(f);
+                Column c = t.getColumn("kind");
+                assertTrue(c instanceof DictionaryColumn);
+                assertEquals(2, ((DictionaryColumn)c).getDistinctCount());
+                assertEquals("x", t.getString(2, "kind"));
+
+                PrefuseConfig.getConfig().setProperty(key, "false");
+                t = readers[i].readTable(f);
+                assertTrue(t.getColumn("kind") instanceof ObjectColumn);
+                assertEquals("x", t.getString(2, "kind"));
+                PrefuseConfig.getConfig().setProperty(key, dict);
+            }
+        } finally {
+            PrefuseConfig.getConfig().setProperty(key, dict);
+            f.delete();
+        }
+    }
+
+}
@@ -2,9 +2,11 @@ package test.prefuse.data.column;
 
 import junit.framework.TestCase;
 import prefuse.data.Table;
+import prefuse.data.column.ExpressionColumn;
 import prefuse.data.expression.ArithmeticExpression;
 import prefuse.data.expression.ColumnExpression;
 import prefuse.data.expression.Expression;
+import prefuse.data.expression.ExpressionCompiler;
 import prefuse.data.expression.NumericLiteral;
 import prefuse.data.io.DelimitedTextTableWriter;
 import prefuse.data.util.TableIterator;
@@ -76,4 +78,71 @@ public class ExpressionColumnTest extends TestCase implements TableTestData {
         }
     }
 
+    public void testIncrementalCache() {
+        Table tt = new Table();
+        tt.addColumn("a", int.class);
+        tt.addRows(1000);
+        for ( int i=0; i<1000; ++i )
+            tt.setInt(i, "a", i);
+        ArithmeticExpression times = new ArithmeticExpression(
+            ArithmeticExpression.MUL, new ColumnExpression("a"),
+            new NumericLiteral(2));
+        tt.addColumn("b", times);
+        ExpressionColumn col = (ExpressionColumn)tt.getColumn("b");
+        
+        // a cache miss computes the following rows as well
+        assertEquals(0, tt.getInt(0, "b"));
+        assertEquals(1, col.getCacheMisses());
+        for ( int i=1; i<100; ++i )
+            assertEquals(2*i, tt.getInt(i, "b"));
+        assertEquals(1, col.getCacheMisses());
+        assertEquals(99, col.getCacheHits());
+        
+        // an update only invalidates the changed row
+        tt.setInt(5, "a", 50);
+        assertFalse(col.isCacheValid(5));
+        assertTrue(col.isCacheValid(4));
+        assertTrue(col.isCacheValid(6));
+        assertEquals(100, tt.getInt(5, "b"));
+        assertEquals(2, col.getCacheMisses());
+        
+        // removed rows are not computed
+        tt.removeRow(500);
+        col.computeCache(0, 999);
+        assertFalse(col.isCacheValid(500));
+        assertTrue(col.isCacheValid(999));
+        
+        // eager recomputation after an expression update
+        col.resetCacheStatistics();
+        col.setEagerThreshold(100);
+        times.setRightExpression(new NumericLiteral(3));
+        assertTrue(col.isCacheValid(999));
+        assertEquals(3*999, tt.getInt(999, "b"));
+        assertEquals(0, col.getCacheMisses());
+        assertEquals(1, col.getCacheHits());
+    }
+    
+    public void testCompiledCache() {
+        boolean compile = ExpressionCompiler.isEnabled();
+        ExpressionCompiler.setEnabled(true);
+        try {
+            Table tt = new Table();
+            tt.addColumn("a", double.class);
+            tt.addRows(50000);
+            for ( int i=0; i<50000; ++i )
+                tt.setDouble(i, "a", i);
+            Expression half = new ArithmeticExpression(
+                ArithmeticExpression.DIV, new ColumnExpression("a"),
+                new NumericLiteral(2));
+            tt.addColumn("b", half);
+            ExpressionColumn col = (ExpressionColumn)tt.getColumn("b");
+            col.computeCache(0, 49999);
+            for ( int i=0; i<50000; i += 7 )
+                assertEquals(i/2.0, tt.getDouble(i, "b"), 0);
+            assertEquals(0, col.getCacheMisses());
+        } finally {
+            ExpressionCompiler.setEnabled(compile);
+        }
+    }
+
 }
@@ -0,0 +1,199 @@
+package test.prefuse.data.expression;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.expression.ColumnExpression;
+import prefuse.data.expression.CompiledExpression;
+import prefuse.data.expression.Expression;
+import prefuse.data.expression.ExpressionCompiler;
+import prefuse.data.expression.NumericLiteral;
+import prefuse.data.expression.Predicate;
+import prefuse.data.expression.RangePredicate;
+import prefuse.data.expression.parser.ExpressionParser;
+import prefuse.data.util.FilterIteratorFactory;
+import prefuse.util.collections.IntIterator;
+
+public class ExpressionCompilerTest extends TestCase {
+
+    private static final int NROWS = 1000;
+    
+    private static String[] expr = {
+        "i + 3",
+        "i * l - 7",
+        "f / 2 + d",
+        "d ^ 2 % 7",
+        "l / 3",
+        "i < 50",
+        "f >= d",
+        "b AND i > 10",
+        "b OR NOT (l = 4)",
+        "b XOR (d < 300.5)",
+        "s = 'x7'",
+        "s != 'x7' AND i <= 400",
+        "IF b THEN i ELSE i * 2",
+        "IF d > 100 THEN f ELSE d",
+        "ABS(i - 500) < 100",
+        "SQRT(d) + i",
+        "TRUE",
+        "FALSE OR b"
+    };
+    
+    private Table t;
+    
+    protected void setUp() throws Exception {
+        super.setUp();
+        t = new Table();
+        t.addColumn("i", int.class);
+        t.addColumn("l", long.class);
+        t.addColumn("f", float.class);
+        t.addColumn("d", double.class);
+        t.addColumn("b", boolean.class);
+        t.addColumn("s", String.class);
+        t.addRows(NROWS);
+        for ( int r=0; r<NROWS; ++r ) {
+            t.setInt(r, "i", r);
+            t.setLong(r, "l", r % 13);
+            t.setFloat(r, "f", r / 3f);
+            t.setDouble(r, "d", (r*7919 % 1000) / 2.0);
+            t.setBoolean(r, "b", r % 3 == 0);
+            t.setString(r, "s", "x"+(r % 10));
+        }
+        // leave a gap in the table rows
+        t.removeRow(17);
+    }
+    
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        t = null;
+        ExpressionCompiler.setEnabled(false);
+    }
+    
+    public void testCompiledValues() {
+        for ( int i=0; i<expr.length; ++i ) {
+            Expression e = ExpressionParser.parse(expr[i], true);
+            assertNotNull(expr[i], e);
+            checkValues(expr[i], e);
+        }
+    }
+    
+    public void testRangePredicate() {
+        Expression e = new RangePredicate(RangePredicate.IN_EX,
+            new ColumnExpression("d"), new NumericLiteral(100f),
+            new ColumnExpression("f"));
+        checkValues("range", e);
+    }
+    
+    public void testFilter() {
+        Predicate p = (Predicate)ExpressionParser.parse(
+            "(i > 20 AND d < 250) OR s = 'x3'", true);
+        int count = 0;
+        IntIterator ii = FilterIteratorFactory.rows(t, p);
+        while ( ii.hasNext() ) {
+            int r = ii.nextInt();
+            assertTrue(p.getBoolean(t.getTuple(r)));
+            ++count;
+        }
+        
+        ExpressionCompiler.setEnabled(true);
+        CompiledExpression ce = ExpressionCompiler.compile(p, t);
+        assertSame(ce, ExpressionCompiler.compile(ce, t));
+        ii = FilterIteratorFactory.rows(t, p);
+        int ccount = 0;
+        while ( ii.hasNext() ) {
+            int r = ii.nextInt();
+            assertTrue(ce.getBoolean(r));
+            ++ccount;
+        }
+        assertEquals(count, ccount);
+    }
+    
+    public void testBatchSelect() {
+        Predicate p = (Predicate)ExpressionParser.parse(
+            "(i > 20 AND d < 250) OR NOT (s = 'x3' OR b)", true);
+        CompiledExpression ce = ExpressionCompiler.compile(p, t);
+        assertTrue(ce.isConcurrent());
+        
+        BitSet rows = new BitSet();
+        for ( int r=0; r<NROWS; r += 3 )
+            if ( t.isValidRow(r) ) rows.set(r);
+        BitSet sel = ce.select(rows);
+        for ( int r=0; r<NROWS; ++r ) {
+            boolean expected = rows.get(r) && p.getBoolean(t.getTuple(r));
+            assertEquals(expected, sel.get(r));
+        }
+        
+        // functions are evaluated on tuples, row by row
+        ce = ExpressionCompiler.compile(
+            ExpressionParser.parse("ABS(i) > 3 AND i < 10", true), t);
+        assertFalse(ce.isConcurrent());
+        int[] batch = { 9, 2, 5, 11, 4 };
+        assertEquals(3, ce.select(batch, batch.length, batch));
+        assertEquals(9, batch[0]);
+        assertEquals(5, batch[1]);
+        assertEquals(4, batch[2]);
+    }
+    
+    public void testExpressionColumn() {
+        ExpressionCompiler.setEnabled(true);
+        t.addColumn("sum", "i + l");
+        assertEquals(t.getInt(5, "i")+t.getLong(5, "l"), t.getLong(5, "sum"));
+        t.setInt(5, "i", 1000);
+        assertEquals(1000+t.getLong(5, "l"), t.getLong(5, "sum"));
+    }
+    
+    private void checkValues(String s, Expression e) {
+        CompiledExpression ce = ExpressionCompiler.compile(e, t);
+        Class type = e.getType(t.getSchema());
+        int[] batch = new int[NROWS];
+        int n = 0;
+        IntIterator rows = t.rows();
+        while ( rows.hasNext() ) {
+            int r = batch[n++] = rows.nextInt();
+            assertEquals(s, e.get(t.getTuple(r)), ce.get(r));
+            assertEquals(s, e.get(t.getTuple(r)), ce.get(t.getTuple(r)));
+            if ( type == boolean.class ) {
+                assertEquals(s, e.getBoolean(t.getTuple(r)),
+                             ce.getBoolean(r));
+            } else if ( type != String.class ) {
+                assertEquals(s, e.getInt(t.getTuple(r)), ce.getInt(r));
+                assertEquals(s, e.getLong(t.getTuple(r)), ce.getLong(r));
+                assertEquals(s, e.getFloat(t.getTuple(r)),
+                             ce.getFloat(r), 0);
+                assertEquals(s, e.getDouble(t.getTuple(r)),
+                             ce.getDouble(r), 0);
+            }
+        }
+        
+        // batch evaluation returns the same values
+        if ( type == boolean.class ) {
+            boolean[] b = new boolean[n];
+            ce.getBoolean(batch, n, b);
+            int[] sel = new int[n];
+            int m = ce.select(batch, n, sel), k = 0;
+            for ( int i=0; i<n; ++i ) {
+                assertEquals(s, ce.getBoolean(batch[i]), b[i]);
+                if ( b[i] ) assertEquals(s, batch[i], sel[k++]);
+            }
+            assertEquals(s, m, k);
+        } else if ( type != String.class ) {
+            int[] iv = new int[n];
+            long[] lv = new long[n];
+            float[] fv = new float[n];
+            double[] dv = new double[n];
+            ce.getInt(batch, n, iv);
+            ce.getLong(batch, n, lv);
+            ce.getFloat(batch, n, fv);
+            ce.getDouble(batch, n, dv);
+            for ( int i=0; i<n; ++i ) {
+                int r = batch[i];
+                assertEquals(s, ce.getInt(r), iv[i]);
+                assertEquals(s, ce.getLong(r), lv[i]);
+                assertEquals(s, ce.getFloat(r), fv[i], 0);
+                assertEquals(s, ce.getDouble(r), dv[i], 0);
+            }
+        }
+    }
+    
+}
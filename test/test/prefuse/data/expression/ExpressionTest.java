@@ -1,6 +1,7 @@
 package test.prefuse.data.expression;
 
 import junit.framework.TestCase;
+import prefuse.data.event.ExpressionListener;
 import prefuse.data.expression.AndPredicate;
 import prefuse.data.expression.ArithmeticExpression;
 import prefuse.data.expression.ColumnExpression;
@@ -8,6 +9,7 @@ import prefuse.data.expression.ComparisonPredicate;
 import prefuse.data.expression.Expression;
 import prefuse.data.expression.FunctionExpression;
 import prefuse.data.expression.IfExpression;
+import prefuse.data.expression.NumericLiteral;
 import prefuse.data.expression.ObjectLiteral;
 import prefuse.data.expression.parser.ExpressionParser;
 import prefuse.data.expression.parser.ParseException;
@@ -66,4 +68,75 @@ public class ExpressionTest extends TestCase {
         }
     }
     
+    public void testParseCache() {
+        ExpressionParser.clearCache();
+        ExpressionParser.resetCacheStatistics();
+        Expression e = ExpressionParser.parse("x + 1 > 5", true);
+        Expression e2 = ExpressionParser.parse("x + 1 > 5", true);
+        assertNotSame(e, e2);
+        assertEquals(e.toString(), e2.toString());
+        assertNull(ExpressionParser.getError());
+        assertEquals(1, ExpressionParser.getCacheHits());
+        assertEquals(1, ExpressionParser.getCacheMisses());
+        assertEquals(0.5, ExpressionParser.getCacheHitRate(), 0);
+        
+        // failed parses are not cached
+        assertNull(ExpressionParser.parse("2 + 3 3 + 4"));
+        assertNull(ExpressionParser.parse("2 + 3 3 + 4"));
+        assertNotNull(ExpressionParser.getError());
+        assertEquals(3, ExpressionParser.getCacheMisses());
+        
+        // each request returns a new expression, so listeners and
+        // modifications are not shared between callers
+        final int[] changes = new int[1];
+        e.addExpressionListener(new ExpressionListener() {
+            public void expressionChanged(Expression expr) {
+                ++changes[0];
+            }
+        });
+        ComparisonPredicate cp = (ComparisonPredicate)e2;
+        ((ArithmeticExpression)cp.getLeftExpression())
+            .setRightExpression(new NumericLiteral(2));
+        cp.setRightExpression(new NumericLiteral(6));
+        assertEquals("([x] + 2) > 6", e2.toString());
+        assertEquals(0, changes[0]);
+        assertEquals("([x] + 1) > 5", e.toString());
+        assertEquals("([x] + 1) > 5",
+            ExpressionParser.parse("x + 1 > 5", true).toString());
+        assertEquals(2, ExpressionParser.getCacheHits());
+        
+        // copies match the parsed expressions
+        String[] text = new String[expr.length+2];
+        System.arraycopy(expr, 0, text, 0, expr.length);
+        text[expr.length] = "INGROUP('_focus_') && !HOVER()";
+        text[expr.length+1] = "MAX(x, ABS(y)) > ROW()";
+        for ( int i=0; i<text.length; ++i ) {
+            if ( i < type.length && type[i] == null ) continue;
+            Expression a = ExpressionParser.parse(text[i], true);
+            long hits = ExpressionParser.getCacheHits();
+            Expression b = ExpressionParser.parse(text[i], true);
+            assertEquals(hits+1, ExpressionParser.getCacheHits());
+            assertNotSame(a, b);
+            assertEquals(a.getClass(), b.getClass());
+            assertEquals(a.toString(), b.toString());
+        }
+        
+        // least recently used expressions are removed when full
+        int size = ExpressionParser.getCacheSize();
+        try {
+            ExpressionParser.setCacheSize(2);
+            ExpressionParser.resetCacheStatistics();
+            ExpressionParser.parse("a", true);
+            ExpressionParser.parse("b", true);
+            ExpressionParser.parse("a", true);
+            ExpressionParser.parse("c", true);
+            ExpressionParser.parse("a", true);
+            assertEquals(2, ExpressionParser.getCacheHits());
+            ExpressionParser.parse("b", true);
+            assertEquals(4, ExpressionParser.getCacheMisses());
+        } finally {
+            ExpressionParser.setCacheSize(size);
+        }
+    }
+    
 }
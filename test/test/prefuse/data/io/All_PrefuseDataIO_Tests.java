@@ -8,8 +8,10 @@ public class All_PrefuseDataIO_Tests {
     public static Test suite() {
         TestSuite suite = new TestSuite("Test for test.prefuse.data.io");
         //$JUnit-BEGIN$
+        suite.addTestSuite(BinaryFormatTest.class);
         suite.addTestSuite(CSVTableReaderTest.class);
         suite.addTestSuite(DelimitedTextTableReaderTest.class);
+        suite.addTestSuite(GraphMLReaderTest.class);
         //$JUnit-END$
         return suite;
     }
@@ -0,0 +1,169 @@
+package test.prefuse.data.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import junit.framework.TestCase;
+import prefuse.data.Graph;
+import prefuse.data.Table;
+import prefuse.data.Tree;
+import prefuse.data.io.BinaryGraphReader;
+import prefuse.data.io.BinaryGraphWriter;
+import prefuse.data.io.BinaryTableReader;
+import prefuse.data.io.BinaryTableWriter;
+import prefuse.data.io.DataIOException;
+import prefuse.util.GraphLib;
+
+public class BinaryFormatTest extends TestCase {
+
+    private static Table createTable() {
+        Table t = new Table();
+        t.addColumn("b", byte.class);
+        t.addColumn("i", int.class, new Integer(-1));
+        t.addColumn("l", long.class);
+        t.addColumn("f", float.class);
+        t.addColumn("d", double.class, new Double(0.5));
+        t.addColumn("z", boolean.class);
+        t.addColumn("date", Date.class);
+        t.addColumn("s", String.class, "none");
+        t.addColumn("o", Object.class);
+        t.addColumn("sum", "i + l");
+        for ( int r=0; r<100; ++r ) {
+            t.addRow();
+            t.setInt(r, "b", r % 100);
+            t.setInt(r, "i", 3*r);
+            t.setLong(r, "l", 1L << (r % 60));
+            t.setFloat(r, "f", r/3f);
+            t.setDouble(r, "d", Math.sqrt(r));
+            t.setBoolean(r, "z", r % 3 == 0);
+            t.set(r, "date", new Date(1000000000L*r));
+            if ( r % 4 != 0 )
+                t.setString(r, "s", "row é"+r);
+            if ( r % 5 == 0 )
+                t.set(r, "o", new Integer(r));
+        }
+        for ( int r=0; r<100; r+=7 )
+            t.removeRow(r);
+        t.removeRow(99);
+        t.addConstantColumn("c", int.class, new Integer(7));
+        t.index("i");
+        return t;
+    }
+    
+    public void testTable() throws DataIOException {
+        Table t = createTable();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new BinaryTableWriter().writeTable(t, bos);
+        Table t2 = new BinaryTableReader().readTable(
+                new ByteArrayInputStream(bos.toByteArray()));
+        assertTableEquals(t, t2);
+        assertNotNull(t2.getIndex("i"));
+        assertNull(t2.getIndex("l"));
+        
+        // derived columns are still derived
+        t2.setInt(1, "i", 10);
+        assertEquals(10 + t2.getLong(1, "l"), t2.getLong(1, "sum"));
+    }
+    
+    public void testNullDefaultDate() throws DataIOException {
+        Table t = new Table();
+        t.addColumn("date", Date.class, null);
+        t.addColumn("when", Date.class, new Date(12345L));
+        t.addRows(10);
+        for ( int r=0; r<10; r+=3 ) {
+            t.set(r, "date", new Date(1000000000L*r));
+            t.set(r, "when", new Date(-1000L*r));
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new BinaryTableWriter().writeTable(t, bos);
+        Table t2 = new BinaryTableReader().readTable(
+                new ByteArrayInputStream(bos.toByteArray()));
+        assertTableEquals(t, t2);
+        assertEquals(new Date(12345L), t2.getColumn("when").getDefaultValue());
+        
+        // rows added later still receive the column default
+        t.addRow();
+        t2.addRow();
+        assertEquals(t.get(10, "date"), t2.get(10, "date"));
+        assertEquals(new Date(12345L), t2.get(10, "when"));
+    }
+    
+    public void testTableFile() throws IOException, DataIOException {
+        Table t = createTable();
+        File f = File.createTempFile("prefuse", ".bin");
+        f.deleteOnExit();
+        new BinaryTableWriter().writeTable(t, f);
+        assertTableEquals(t, new BinaryTableReader().readTable(f));
+        f.delete();
+    }
+    
+    public void testGraph() throws IOException, DataIOException {
+        Graph g = GraphLib.getGrid(20, 30);
+        g.removeNode(5);
+        
+        File f = File.createTempFile("prefuse", ".bin");
+        f.deleteOnExit();
+        new BinaryGraphWriter().writeGraph(g, f);
+        Graph g2 = new BinaryGraphReader().readGraph(f);
+        f.delete();
+        
+        assertFalse(g2 instanceof Tree);
+        assertEquals(g.isDirected(), g2.isDirected());
+        assertTableEquals(g.getNodeTable(), g2.getNodeTable());
+        assertTableEquals(g.getEdgeTable(), g2.getEdgeTable());
+        for ( int n=0; n<=g.getNodeTable().getMaximumRow(); ++n ) {
+            if ( !g.getNodeTable().isValidRow(n) ) continue;
+            assertEquals(g.getDegree(n), g2.getDegree(n));
+            for ( int m=0; m<=g.getNodeTable().getMaximumRow(); m+=37 )
+                assertEquals(g.getEdge(n, m), g2.getEdge(n, m));
+        }
+    }
+    
+    public void testTree() throws DataIOException {
+        Tree t = GraphLib.getBalancedTree(3, 4);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new BinaryGraphWriter().writeGraph(t, bos);
+        Graph g = new BinaryGraphReader().readGraph(
+                new ByteArrayInputStream(bos.toByteArray()));
+        
+        assertTrue(g instanceof Tree);
+        Tree t2 = (Tree)g;
+        assertEquals(t.getRootRow(), t2.getRootRow());
+        for ( int n=0; n<t.getNodeCount(); ++n ) {
+            assertEquals(t.getParent(n), t2.getParent(n));
+            assertEquals(t.getChildCount(n), t2.getChildCount(n));
+            for ( int i=0; i<t.getChildCount(n); ++i )
+                assertEquals(t.getChildRow(n, i), t2.getChildRow(n, i));
+        }
+    }
+    
+    public void testInvalidData() {
+        try {
+            new BinaryTableReader().readTable(
+                new ByteArrayInputStream("id,value\n1,2\n".getBytes()));
+            fail("Invalid data accepted");
+        } catch ( DataIOException e ) {
+            // expected
+        }
+    }
+    
+    private static void assertTableEquals(Table a, Table b) {
+        assertEquals(a.getRowCount(), b.getRowCount());
+        assertEquals(a.getColumnCount(), b.getColumnCount());
+        for ( int c=0; c<a.getColumnCount(); ++c ) {
+            assertEquals(a.getColumnName(c), b.getColumnName(c));
+            assertEquals(a.getColumnType(c), b.getColumnType(c));
+            assertEquals(a.getColumn(c).getDefaultValue(),
+                         b.getColumn(c).getDefaultValue());
+            for ( int r=0; r<=a.getMaximumRow(); ++r ) {
+                assertEquals(a.isValidRow(r), b.isValidRow(r));
+                if ( a.isValidRow(r) )
+                    assertEquals(a.get(r, c), b.get(r, c));
+            }
+        }
+    }
+    
+}
@@ -1,10 +1,15 @@
 package test.prefuse.data.io;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Array;
 
 import junit.framework.TestCase;
 import prefuse.data.Table;
+import prefuse.data.io.AbstractTextTableReader;
 import prefuse.data.io.CSVTableReader;
 import prefuse.data.io.DataIOException;
 import test.prefuse.TestConfig;
@@ -87,5 +92,63 @@ public class CSVTableReaderTest extends TestCase implements TableTestData {
 //        f.pack();
 //        f.setVisible(true);
     }
+    
+    public void testReadTableMapped() throws IOException, DataIOException {
+        assertMapped(new CSVTableReader(), CSV_DATA, 2);
+    }
+    
+    public void testReadTableMappedQuotes() throws IOException, DataIOException {
+        assertMapped(new CSVTableReader(),
+            "a, b ,c\n 1 ,\"x,\"\"y\"\" \" , \n\n2,,\"\"\n", 2);
+    }
+    
+    public void testReadTableMappedEmptyLines()
+        throws IOException, DataIOException
+    {
+        String data = "\nid,value\n1,2.5\n\n2,3\r\n\r\n";
+        Table t = new CSVTableReader().readTable(
+            new ByteArrayInputStream(data.getBytes()));
+        assertEquals(2, t.getRowCount());
+        assertEquals(int.class, t.getColumnType("id"));
+        assertMapped(new CSVTableReader(), data, 1);
+    }
+    
+    /**
+     * Checks that reading a file in memory-mapped mode produces the same
+     * table as the standard reading routine.
+     */
+    static void assertMapped(AbstractTextTableReader tr, String data,
+            int threads) throws IOException, DataIOException
+    {
+        File f = File.createTempFile("prefuse", ".txt");
+        f.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(f);
+        fos.write(data.getBytes());
+        fos.close();
+        
+        Table expected = tr.readTable(new ByteArrayInputStream(data.getBytes()));
+        tr.setMemoryMapped(true);
+        tr.setThreadCount(threads);
+        Table t = tr.readTable(f.getAbsolutePath());
+        f.delete();
+        
+        assertEquals(expected.getRowCount(), t.getRowCount());
+        assertEquals(expected.getColumnCount(), t.getColumnCount());
+        for ( int c=0; c<t.getColumnCount(); ++c ) {
+            assertEquals(expected.getColumnName(c), t.getColumnName(c));
+            assertEquals(expected.getColumnType(c), t.getColumnType(c));
+            for ( int r=0; r<t.getRowCount(); ++r ) {
+                Object a = expected.get(r, c), b = t.get(r, c);
+                if ( a != null && a.getClass().isArray() ) {
+                    // array types are parsed from empty values
+                    assertEquals(Array.getLength(a), Array.getLength(b));
+                    for ( int i=0; i<Array.getLength(a); ++i )
+                        assertEquals(Array.get(a, i), Array.get(b, i));
+                } else {
+                    assertEquals(a, b);
+                }
+            }
+        }
+    }
 
 }
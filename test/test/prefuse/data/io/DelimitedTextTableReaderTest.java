@@ -1,10 +1,12 @@
 package test.prefuse.data.io;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 
 import junit.framework.TestCase;
 import prefuse.data.Table;
+import prefuse.data.io.AbstractTextTableReader;
 import prefuse.data.io.DataIOException;
 import prefuse.data.io.DelimitedTextTableReader;
 import prefuse.data.io.TableReader;
@@ -74,5 +76,48 @@ public class DelimitedTextTableReaderTest extends TestCase implements TableTestD
 //        f.pack();
 //        f.setVisible(true);
     }
+    
+    public void testReadTableMapped() throws IOException, DataIOException {
+        assertMapped(new DelimitedTextTableReader(), TAB_DELIMITED_DATA, 2);
+    }
+    
+    public void testReadTableMappedLarge() throws IOException, DataIOException {
+        // large enough to be split into several chunks
+        StringBuffer sb = new StringBuffer("id\tvalue\tflag\tname\n");
+        for ( int i=0; i<150000; ++i ) {
+            sb.append(i).append('\t').append(i/8.0).append('\t')
+              .append(i%3==0).append('\t').append("item").append(i%97)
+              .append(i%5==0 ? "\r\n" : "\n");
+        }
+        assertMapped(new DelimitedTextTableReader(), sb.toString(), 4);
+        
+        // a value not matching the sampled type forces the standard reader
+        sb.append("x\t1.0\ttrue\tlast\n");
+        assertMapped(new DelimitedTextTableReader(), sb.toString(), 4);
+    }
+    
+    public void testReadTableMappedRegex() throws IOException, DataIOException {
+        assertMapped(new DelimitedTextTableReader(" *\\| *"),
+            "a | b|c\n1|2.5 | x\n\n3 |4|\n||\n", 1);
+    }
+    
+    public void testReadTableMappedEmptyLines()
+        throws IOException, DataIOException
+    {
+        String data = "id\tvalue\n\n1\t2.5\n\n\n2\t3\r\n\r\n3\t1\n\n";
+        DelimitedTextTableReader tr = new DelimitedTextTableReader();
+        Table t = tr.readTable(new ByteArrayInputStream(data.getBytes()));
+        assertEquals(3, t.getRowCount());
+        assertEquals(int.class, t.getColumnType("id"));
+        assertEquals(3, t.getInt(2, "id"));
+        assertMapped(tr, data, 1);
+        assertMapped(new DelimitedTextTableReader(), "\n"+data, 2);
+    }
+    
+    private static void assertMapped(AbstractTextTableReader tr, String data,
+            int threads) throws IOException, DataIOException
+    {
+        CSVTableReaderTest.assertMapped(tr, data, threads);
+    }
 
 }
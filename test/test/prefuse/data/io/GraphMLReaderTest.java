@@ -0,0 +1,160 @@
+package test.prefuse.data.io;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+import prefuse.data.Graph;
+import prefuse.data.Table;
+import prefuse.data.io.DataIOException;
+import prefuse.data.io.GraphMLReader;
+import prefuse.data.io.GraphReadListener;
+
+public class GraphMLReaderTest extends TestCase {
+
+    public static final String GRAPHML =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n" +
+        "<graph edgedefault=\"directed\">\n" +
+        "<key id=\"name\" for=\"node\" attr.name=\"name\" attr.type=\"string\"/>\n" +
+        "<key id=\"age\" for=\"node\" attr.name=\"age\" attr.type=\"int\">\n" +
+        "  <default>-1</default>\n" +
+        "</key>\n" +
+        "<key id=\"score\" for=\"node\" attr.name=\"score\" attr.type=\"double\"/>\n" +
+        "<key id=\"weight\" for=\"edge\" attr.name=\"weight\" attr.type=\"float\"/>\n" +
+        "<key id=\"strong\" for=\"edge\" attr.name=\"strong\" attr.type=\"boolean\"/>\n" +
+        "<node id=\"a\"><data key=\"name\">Alice</data><data key=\"age\">31</data>" +
+        "<data key=\"score\">0.5</data></node>\n" +
+        "<node id=\"b\"><data key=\"name\">Bob</data></node>\n" +
+        "<node id=\"c\"><data key=\"age\">27</data><data key=\"score\">2.25</data></node>\n" +
+        "<edge source=\"a\" target=\"b\"><data key=\"weight\">1.5</data>" +
+        "<data key=\"strong\">true</data></edge>\n" +
+        "<edge source=\"c\" target=\"a\"><data key=\"strong\">FALSE</data></edge>\n" +
+        "<edge source=\"b\" target=\"c\"><data key=\"weight\">-3</data></edge>\n" +
+        "</graph>\n" +
+        "</graphml>\n";
+    
+    private static Graph read(GraphMLReader gr, String xml)
+        throws DataIOException
+    {
+        return gr.readGraph(new ByteArrayInputStream(xml.getBytes()));
+    }
+    
+    public void testStreaming() throws DataIOException {
+        Graph g = read(new GraphMLReader(), GRAPHML);
+        for ( int threads = 1; threads <= 3; ++threads ) {
+            GraphMLReader gr = new GraphMLReader();
+            gr.setStreaming(true);
+            gr.setThreadCount(threads);
+            assertEquals(g, read(gr, GRAPHML));
+        }
+    }
+    
+    /**
+     * Create a graph with enough elements to span several chunks of
+     * values and progress events.
+     */
+    private static String largeGraph(int n) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<graphml><graph edgedefault=\"undirected\">\n");
+        sb.append("<key id=\"v\" for=\"node\" attr.name=\"v\" attr.type=\"long\"/>\n");
+        sb.append("<key id=\"s\" for=\"node\" attr.name=\"s\" attr.type=\"string\"/>\n");
+        sb.append("<key id=\"w\" for=\"edge\" attr.name=\"w\" attr.type=\"double\"/>\n");
+        for ( int i=0; i<n; ++i ) {
+            sb.append("<node id=\"n").append(i).append("\">");
+            if ( i % 3 != 0 )
+                sb.append("<data key=\"v\">").append(7L*i).append("</data>");
+            if ( i % 5 != 0 )
+                sb.append("<data key=\"s\">s").append(i).append("</data>");
+            sb.append("</node>\n");
+        }
+        for ( int i=1; i<n; ++i ) {
+            sb.append("<edge source=\"n").append(i/2)
+              .append("\" target=\"n").append(i).append("\">")
+              .append("<data key=\"w\">").append(i/4.0).append("</data>")
+              .append("</edge>\n");
+        }
+        sb.append("</graph></graphml>\n");
+        return sb.toString();
+    }
+    
+    public void testStreamingLargeGraph() throws DataIOException {
+        int n = 20000;
+        String xml = largeGraph(n);
+        Graph g = read(new GraphMLReader(), xml);
+        for ( int threads = 1; threads <= 3; ++threads ) {
+            final int[] progress = new int[3];
+            GraphMLReader gr = new GraphMLReader();
+            gr.setStreaming(true);
+            gr.setThreadCount(threads);
+            gr.setReadListener(new GraphReadListener() {
+                public void graphReadProgress(int nodes, int edges) {
+                    progress[0]++;
+                    progress[1] = nodes;
+                    progress[2] = edges;
+                }
+            });
+            assertEquals(g, read(gr, xml));
+            assertTrue(progress[0] > 1);
+            assertEquals(n, progress[1]);
+            assertEquals(n-1, progress[2]);
+        }
+    }
+    
+    public void testStreamingErrors() {
+        GraphMLReader gr = new GraphMLReader();
+        gr.setStreaming(true);
+        String bad = GRAPHML.replaceFirst("target=\"b\"", "target=\"x\"");
+        try {
+            read(gr, bad);
+            fail("Missing node not detected");
+        } catch ( DataIOException e ) {
+            // expected
+        }
+        bad = GRAPHML.replaceFirst(">31<", ">abc<");
+        try {
+            read(gr, bad);
+            fail("Parse error not detected");
+        } catch ( DataIOException e ) {
+            // expected
+        }
+        // values are parsed while the document is read
+        gr.setThreadCount(3);
+        bad = largeGraph(20000).replaceFirst(">35<", ">abc<");
+        try {
+            read(gr, bad);
+            fail("Parse error not detected");
+        } catch ( DataIOException e ) {
+            // expected
+        }
+        try {
+            gr.setThreadCount(0);
+            fail("Illegal thread count accepted");
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+    }
+    
+    private static void assertEquals(Graph a, Graph b) {
+        assertEquals(a.isDirected(), b.isDirected());
+        assertEquals(a.getNodeTable(), b.getNodeTable());
+        assertEquals(a.getEdgeTable(), b.getEdgeTable());
+        for ( int i=0; i<a.getEdgeCount(); ++i ) {
+            assertEquals(a.getSourceNode(i), b.getSourceNode(i));
+            assertEquals(a.getTargetNode(i), b.getTargetNode(i));
+        }
+    }
+    
+    private static void assertEquals(Table a, Table b) {
+        assertEquals(a.getRowCount(), b.getRowCount());
+        assertEquals(a.getColumnCount(), b.getColumnCount());
+        for ( int c=0; c<a.getColumnCount(); ++c ) {
+            String name = a.getColumnName(c);
+            int bc = b.getColumnNumber(name);
+            assertTrue(bc >= 0);
+            assertEquals(a.getColumnType(c), b.getColumnType(bc));
+            for ( int r=0; r<a.getRowCount(); ++r )
+                assertEquals(a.get(r, c), b.get(r, bc));
+        }
+    }
+    
+}
@@ -0,0 +1,171 @@
+package test.prefuse.data.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.util.Aggregation;
+import prefuse.util.collections.IntIterator;
+
+public class AggregationTest extends TestCase {
+
+    static final String[] CITIES = { "a", "b", "c", "d", null };
+
+    static Table createTable(int n, long seed) {
+        Table t = new Table();
+        t.addColumn("city", String.class);
+        t.addColumn("k", int.class);
+        t.addColumn("x", double.class);
+        t.addColumn("y", int.class);
+        t.addRows(n);
+        Random r = new Random(seed);
+        for ( int i=0; i<n; ++i ) {
+            t.setString(i, "city", CITIES[r.nextInt(CITIES.length)]);
+            t.setInt(i, "k", r.nextInt(3));
+            t.setDouble(i, "x", r.nextInt(1000) / 10.0);
+            t.setInt(i, "y", r.nextInt(20));
+        }
+        return t;
+    }
+
+    static Aggregation createAggregation(Table t, String[] groupBy) {
+        Aggregation agg = new Aggregation(t, groupBy);
+        agg.addAggregate(Aggregation.COUNT, null);
+        agg.addAggregate(Aggregation.SUM, "x");
+        agg.addAggregate(Aggregation.MEAN, "x");
+        agg.addAggregate(Aggregation.MIN, "x");
+        agg.addAggregate(Aggregation.MAX, "y");
+        agg.addAggregate(Aggregation.DISTINCT, "y");
+        return agg;
+    }
+
+    /**
+     * Check aggregate results against a naive computation.
+     */
+    static void check(Table t, String[] groupBy, Table result) {
+        HashMap groups = new HashMap();
+        for ( IntIterator rows = t.rows(); rows.hasNext(); ) {
+            int r = rows.nextInt();
+            StringBuffer key = new StringBuffer();
+            for ( int j=0; j<groupBy.length; ++j )
+                key.append(t.get(r, groupBy[j])).append('|');
+            double[] g = (double[])groups.get(key.toString());
+            if ( g == null ) {
+                g = new double[] { 0, 0, Double.POSITIVE_INFINITY,
+                                   Double.NEGATIVE_INFINITY };
+                groups.put(key.toString(), g);
+                groups.put(key+"distinct", new HashSet());
+            }
+            double x = t.getDouble(r, "x");
+            g[0] += 1;
+            g[1] += x;
+            g[2] = Math.min(g[2], x);
+            g[3] = Math.max(g[3], t.getInt(r, "y"));
+            ((HashSet)groups.get(key+"distinct")).add(
+                new Integer(t.getInt(r, "y")));
+        }
+
+        assertEquals(groups.size()/2, result.getRowCount());
+        for ( IntIterator rows = result.rows(); rows.hasNext(); ) {
+            int r = rows.nextInt();
+            StringBuffer key = new StringBuffer();
+            for ( int j=0; j<groupBy.length; ++j )
+                key.append(result.get(r, groupBy[j])).append('|');
+            double[] g = (double[])groups.get(key.toString());
+            assertNotNull(g);
+            assertEquals((int)g[0], result.getInt(r, "count"));
+            assertEquals(g[1], result.getDouble(r, "sum(x)"), 1e-6);
+            assertEquals(g[1]/g[0], result.getDouble(r, "mean(x)"), 1e-6);
+            assertEquals(g[2], result.getDouble(r, "min(x)"), 0);
+            assertEquals(g[3], result.getDouble(r, "max(y)"), 0);
+            assertEquals(((HashSet)groups.get(key+"distinct")).size(),
+                         result.getInt(r, "distinct(y)"));
+        }
+    }
+
+    public void testAggregate() {
+        Table t = createTable(1000, 42);
+        String[][] groupBy = {
+            {}, {"city"}, {"k"}, {"city", "k"}, {"k", "y", "city"}
+        };
+        for ( int i=0; i<groupBy.length; ++i ) {
+            Aggregation agg = createAggregation(t, groupBy[i]);
+            check(t, groupBy[i], agg.aggregate());
+        }
+
+        // the same result table is refilled
+        Aggregation agg = createAggregation(t, new String[] {"city"});
+        Table result = agg.aggregate();
+        t.setDouble(0, "x", 1000);
+        assertSame(result, agg.aggregate());
+        check(t, new String[] {"city"}, result);
+
+        try {
+            agg.addAggregate(Aggregation.SUM, "city");
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+    }
+
+    public void testIncremental() {
+        Table t = createTable(500, 7);
+        String[] groupBy = { "city", "k" };
+        Aggregation agg = createAggregation(t, groupBy);
+        agg.setIncremental(true);
+        Table result = agg.aggregate();
+
+        Random r = new Random(11);
+        for ( int i=0; i<300; ++i ) {
+            int row = r.nextInt(t.getMaximumRow()+1);
+            switch ( r.nextInt(5) ) {
+            case 0:
+                if ( t.isValidRow(row) ) t.removeRow(row);
+                break;
+            case 1:
+                row = t.addRow();
+                t.setString(row, "city", CITIES[r.nextInt(CITIES.length)]);
+                t.setDouble(row, "x", r.nextInt(1000) / 10.0);
+                break;
+            case 2:
+                if ( t.isValidRow(row) ) t.setInt(row, "k", r.nextInt(4));
+                break;
+            case 3:
+                if ( t.isValidRow(row) ) t.setDouble(row, "x", r.nextInt(500));
+                break;
+            default:
+                if ( t.isValidRow(row) ) t.setInt(row, "y", r.nextInt(25));
+            }
+            if ( i % 25 == 0 ) {
+                assertSame(result, agg.aggregate());
+                check(t, groupBy, result);
+            }
+        }
+        check(t, groupBy, agg.aggregate());
+
+        // removing all rows of a group removes its result row
+        t.clear();
+        assertEquals(0, agg.aggregate().getRowCount());
+        t.addRows(3);
+        assertEquals(1, agg.aggregate().getRowCount());
+        check(t, groupBy, agg.aggregate());
+
+        // structural changes trigger a full recomputation
+        t.addColumn("z", int.class);
+        check(t, groupBy, agg.aggregate());
+
+        agg.setIncremental(false);
+        t.setInt(0, "y", 99);
+        check(t, groupBy, agg.aggregate());
+    }
+
+    public void testLarge() {
+        // enough rows to compute numeric aggregates in parallel
+        Table t = createTable(150000, 3);
+        String[] groupBy = { "city" };
+        check(t, groupBy, createAggregation(t, groupBy).aggregate());
+    }
+
+}
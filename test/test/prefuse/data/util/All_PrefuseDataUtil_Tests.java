@@ -13,6 +13,10 @@ public class All_PrefuseDataUtil_Tests {
         suite.addTestSuite(FloatIntTreeMapTest.class);
         suite.addTestSuite(DoubleIntTreeMapTest.class);
         suite.addTestSuite(ObjectIntTreeMapTest.class);
+        suite.addTestSuite(BlockMapTest.class);
+        suite.addTestSuite(BitmapIndexTest.class);
+        suite.addTestSuite(QueryPlanTest.class);
+        suite.addTestSuite(AggregationTest.class);
         //$JUnit-END$
         return suite;
     }
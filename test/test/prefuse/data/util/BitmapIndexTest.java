@@ -0,0 +1,199 @@
+package test.prefuse.data.util;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.expression.Predicate;
+import prefuse.data.expression.parser.ExpressionParser;
+import prefuse.data.util.BitmapIndex;
+import prefuse.data.util.FilterIteratorFactory;
+import prefuse.data.util.Index;
+import prefuse.data.util.QueryPlan;
+import prefuse.data.util.TreeIndex;
+import prefuse.util.collections.IntIterator;
+
+public class BitmapIndexTest extends TestCase {
+
+    static final int NROWS = 1000;
+    static final String[] STATES = { "CA", "NY", "TX", "WA", null };
+
+    Table t;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        t = new Table();
+        t.addColumn("state", String.class);
+        t.addColumn("party", int.class);
+        t.addColumn("flag", boolean.class);
+        t.addColumn("score", double.class);
+        t.addRows(NROWS);
+        for ( int i=0; i<NROWS; ++i ) {
+            t.setString(i, "state", STATES[i % STATES.length]);
+            t.setInt(i, "party", i % 3);
+            t.setBoolean(i, "flag", i % 4 == 0);
+            t.setDouble(i, "score", (i % 7) * 0.5);
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        t = null;
+    }
+
+    private static int[] toArray(IntIterator iter) {
+        int[] a = new int[16];
+        int n = 0;
+        while ( iter.hasNext() ) {
+            if ( n == a.length ) {
+                int[] b = new int[2*a.length];
+                System.arraycopy(a, 0, b, 0, n);
+                a = b;
+            }
+            a[n++] = iter.nextInt();
+        }
+        int[] b = new int[n];
+        System.arraycopy(a, 0, b, 0, n);
+        return b;
+    }
+
+    private static void assertSameRows(String msg, int[] a, int[] b) {
+        assertEquals(msg, a.length, b.length);
+        for ( int i=0; i<a.length; ++i )
+            assertEquals(msg, a[i], b[i]);
+    }
+
+    private void compare(String field, Object lo, Object hi) {
+        Index tree = t.index(field, false);
+        int[][] expected = new int[4][];
+        int[] types = { Index.TYPE_AII, Index.TYPE_AIE, Index.TYPE_AEI,
+                        Index.TYPE_AEE };
+        for ( int i=0; i<types.length; ++i )
+            expected[i] = toArray(tree.rows(lo, hi, types[i]));
+        int min = tree.minimum(), max = tree.maximum();
+        int unique = tree.uniqueCount();
+
+        Index bitmap = t.index(field, true);
+        assertTrue(bitmap instanceof BitmapIndex);
+        assertEquals(NROWS, bitmap.size());
+        assertEquals(unique, bitmap.uniqueCount());
+        assertEquals(min, bitmap.minimum());
+        assertEquals(max, bitmap.maximum());
+        for ( int i=0; i<types.length; ++i ) {
+            assertSameRows(field+" "+types[i],
+                           expected[i], toArray(bitmap.rows(lo, hi, types[i])));
+
+            // descending rows are the ascending rows in reverse
+            int dtype = types[i] ^ Index.TYPE_ASCENDING ^ Index.TYPE_DESCENDING;
+            int[] desc = toArray(bitmap.rows(lo, hi, dtype));
+            assertEquals(expected[i].length, desc.length);
+            for ( int j=0; j<desc.length; ++j )
+                assertEquals(expected[i][j], desc[desc.length-1-j]);
+        }
+    }
+
+    public void testRows() {
+        compare("state", "CA", "TX");
+        compare("state", null, "NY");
+        compare("state", "NY", null);
+        compare("state", null, null);
+    }
+
+    public void testPrimitiveRows() {
+        Index tree = t.index("party", false);
+        int[] expected = toArray(tree.rows(1, 2, Index.TYPE_AII));
+        int[] all = toArray(tree.allRows(Index.TYPE_ASCENDING));
+
+        Index bitmap = t.index("party", true);
+        assertSameRows("party", expected,
+                       toArray(bitmap.rows(1, 2, Index.TYPE_AII)));
+        assertSameRows("party", all,
+                       toArray(bitmap.allRows(Index.TYPE_ASCENDING)));
+        assertEquals(tree.median(), bitmap.median());
+
+        t.index("flag", true);
+        int[] rows = toArray(t.getIndex("flag").rows(true));
+        assertEquals(NROWS/4, rows.length);
+        for ( int i=0; i<rows.length; ++i )
+            assertTrue(t.getBoolean(rows[i], "flag"));
+
+        Index scores = t.index("score", true);
+        assertEquals(7, scores.uniqueCount());
+        assertEquals(1, scores.get(0.5));
+        assertEquals(Integer.MIN_VALUE, scores.get(0.25));
+    }
+
+    public void testUpdates() {
+        BitmapIndex index = (BitmapIndex)t.index("state", true);
+        assertEquals(NROWS/5, index.count("CA", "CA", Index.TYPE_AII));
+
+        t.setString(1, "state", "CA");
+        assertEquals(NROWS/5+1, index.count("CA", "CA", Index.TYPE_AII));
+        assertEquals(NROWS/5-1, index.count("NY", "NY", Index.TYPE_AII));
+
+        t.removeRow(0);
+        assertEquals(NROWS/5, index.count("CA", "CA", Index.TYPE_AII));
+        assertEquals(NROWS-1, index.size());
+
+        int r = t.addRow();
+        t.setString(r, "state", "OR");
+        assertEquals(1, index.count("OR", "OR", Index.TYPE_AII));
+        assertEquals(r, index.get("OR"));
+        assertEquals(NROWS, index.size());
+        assertEquals(STATES.length+1, index.uniqueCount());
+
+        t.setString(r, "state", "WA");
+        assertEquals(STATES.length, index.uniqueCount());
+        assertEquals(Integer.MIN_VALUE, index.get("OR"));
+
+        BitSet bits = index.getBitmap("CA", "CA", Index.TYPE_AII);
+        for ( IntIterator rows = t.rows(); rows.hasNext(); ) {
+            int row = rows.nextInt();
+            assertEquals("CA".equals(t.getString(row, "state")),
+                         bits.get(row));
+        }
+    }
+
+    public void testReplaceIndex() {
+        Index tree = t.index("party");
+        assertTrue(tree instanceof TreeIndex);
+        assertSame(tree, t.index("party", false));
+        Index bitmap = t.index("party", true);
+        assertTrue(bitmap instanceof BitmapIndex);
+        assertSame(bitmap, t.index("party"));
+        assertSame(bitmap, t.getIndex("party"));
+    }
+
+    public void testQueryPlan() {
+        t.index("state", true);
+        t.index("party", true);
+        t.index("flag", true);
+
+        String[] exprs = {
+            "state = 'CA' AND party = 1",
+            "state = 'CA' OR party = 1",
+            "flag AND state = 'TX'",
+            "NOT flag AND party != 2",
+            "state = 'WA' AND party = 2 AND flag",
+        };
+        for ( int i=0; i<exprs.length; ++i ) {
+            Predicate p = (Predicate)ExpressionParser.parse(exprs[i]);
+            QueryPlan plan = FilterIteratorFactory.explain(t, p);
+            assertTrue(exprs[i], plan.getType() != QueryPlan.SCAN);
+
+            BitSet expected = new BitSet();
+            for ( int r=0; r<NROWS; ++r )
+                if ( p.getBoolean(t.getTuple(r)) ) expected.set(r);
+            BitSet actual = new BitSet();
+            for ( IntIterator rows = plan.rows(); rows.hasNext(); )
+                actual.set(rows.nextInt());
+            assertEquals(exprs[i], expected, actual);
+        }
+
+        // bitmap indices give exact estimates
+        Predicate p = (Predicate)ExpressionParser.parse("state = 'CA'");
+        assertEquals(NROWS/5,
+            FilterIteratorFactory.explain(t, p).getEstimatedRows(), 0);
+    }
+
+}
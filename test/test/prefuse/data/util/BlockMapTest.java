@@ -0,0 +1,290 @@
+package test.prefuse.data.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.util.Index;
+import prefuse.util.collections.DoubleIntBlockMap;
+import prefuse.util.collections.IntIntBlockMap;
+import prefuse.util.collections.IntIntSortedMap;
+import prefuse.util.collections.IntIntTreeMap;
+import prefuse.util.collections.IntIterator;
+import prefuse.util.collections.LiteralIterator;
+import prefuse.util.collections.LongIntBlockMap;
+import prefuse.util.collections.ObjectIntBlockMap;
+import prefuse.util.collections.ObjectIntSortedMap;
+import prefuse.util.collections.SortedMapFactory;
+
+public class BlockMapTest extends TestCase {
+
+    static final int N = 5000;
+
+    IntIntBlockMap map = new IntIntBlockMap(true);
+    IntIntTreeMap tree = new IntIntTreeMap(true);
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        // enough entries to span several blocks, with duplicate keys
+        Random r = new Random(42);
+        for ( int i=0; i<N; ++i ) {
+            int key = r.nextInt(N/4);
+            map.put(key, i);
+            tree.put(key, i);
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        map.clear();
+        tree.clear();
+    }
+
+    private static void assertSameValues(IntIterator a, IntIterator b) {
+        while ( a.hasNext() ) {
+            assertTrue(b.hasNext());
+            assertEquals(a.nextInt(), b.nextInt());
+        }
+        assertFalse(b.hasNext());
+    }
+
+    public void testClear() {
+        map.clear();
+        assertTrue(map.isEmpty());
+        try {
+            map.keyIterator().next();
+            fail("Iterator should be empty");
+        } catch ( NoSuchElementException success ) {
+        }
+        assertEquals(Integer.MIN_VALUE, map.get(1));
+        assertEquals(Integer.MIN_VALUE, map.getMinimum());
+    }
+
+    public void testIteration() {
+        assertEquals(tree.size(), map.size());
+        assertEquals(tree.firstKey(), map.firstKey());
+        assertEquals(tree.lastKey(), map.lastKey());
+        assertEquals(tree.getMinimum(), map.getMinimum());
+        assertEquals(tree.getMaximum(), map.getMaximum());
+        assertEquals(tree.getMedian(), map.getMedian());
+
+        assertSameValues(tree.valueIterator(true), map.valueIterator(true));
+        LiteralIterator a = tree.keyIterator(), b = map.keyIterator();
+        while ( a.hasNext() )
+            assertEquals(a.nextInt(), b.nextInt());
+        assertFalse(b.hasNext());
+
+        // descending iteration visits the same entries in reverse
+        int[] vals = new int[map.size()];
+        IntIterator iter = map.valueIterator(true);
+        for ( int i=0; iter.hasNext(); ++i )
+            vals[i] = iter.nextInt();
+        iter = map.valueIterator(false);
+        for ( int i=vals.length; --i >= 0; )
+            assertEquals(vals[i], iter.nextInt());
+        assertFalse(iter.hasNext());
+    }
+
+    public void testRanges() {
+        boolean[] inc = { true, false };
+        for ( int lo=-1; lo<=N/4; lo += 37 ) {
+            for ( int i=0; i<2; ++i ) for ( int j=0; j<2; ++j ) {
+                int hi = lo + 100;
+                assertSameValues(tree.valueRangeIterator(lo,inc[i],hi,inc[j]),
+                                 map.valueRangeIterator(lo,inc[i],hi,inc[j]));
+
+                // descending ranges visit keys from high to low
+                int prev = Integer.MAX_VALUE, count = 0;
+                for ( LiteralIterator iter =
+                      map.keyRangeIterator(hi,inc[j],lo,inc[i]);
+                      iter.hasNext(); ++count )
+                {
+                    int key = iter.nextInt();
+                    assertTrue(key <= prev && key <= hi && key >= lo);
+                    prev = key;
+                }
+                IntIterator iter = map.valueRangeIterator(lo,inc[i],hi,inc[j]);
+                for ( ; iter.hasNext(); --count ) iter.nextInt();
+                assertEquals(0, count);
+            }
+        }
+    }
+
+    public void testRemove() {
+        Random r = new Random(7);
+        for ( int i=0; i<N/2; ++i ) {
+            int key = r.nextInt(N/4);
+            int val = map.get(key);
+            assertEquals(val, map.remove(key, val));
+            tree.remove(key, val);
+            assertEquals(tree.size(), map.size());
+        }
+        assertSameValues(tree.valueIterator(true), map.valueIterator(true));
+        assertEquals(tree.getMedian(), map.getMedian());
+
+        // remove through the iterator
+        int size = map.size(), removed = 0;
+        for ( IntIterator iter = map.valueIterator(true); iter.hasNext(); ) {
+            int val = iter.nextInt();
+            if ( val % 2 == 0 ) {
+                iter.remove();
+                ++removed;
+            }
+        }
+        assertEquals(size-removed, map.size());
+        for ( IntIterator iter = map.valueIterator(true); iter.hasNext(); )
+            assertTrue(iter.nextInt() % 2 == 1);
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(0, map.getUniqueCount());
+    }
+
+    public void testUnique() {
+        IntIntSortedMap m = new IntIntBlockMap(false);
+        for ( int i=0; i<N; ++i )
+            m.put(i % 100, i);
+        assertEquals(100, m.size());
+        assertEquals(100, m.getUniqueCount());
+        assertEquals(N-100+5, m.get(5));
+    }
+
+    public void testPrimitiveTypes() {
+        LongIntBlockMap lmap = new LongIntBlockMap(true);
+        DoubleIntBlockMap dmap = new DoubleIntBlockMap(true);
+        for ( int i=0; i<N; ++i ) {
+            lmap.put(((long)i) << 33, i);
+            dmap.put(N-i-0.5, i);
+        }
+        assertEquals(N, lmap.size());
+        assertEquals(17, lmap.get(17L << 33));
+        assertEquals(N-1, dmap.get(0.5));
+        assertEquals(N-1, dmap.getMinimum());
+
+        LiteralIterator iter = dmap.keyRangeIterator(10, true, 20, true);
+        for ( double d = 10.5; d < 20; d += 1.0 )
+            assertEquals(d, iter.nextDouble(), 0);
+        assertFalse(iter.hasNext());
+    }
+
+    public void testObjectKeys() {
+        ObjectIntBlockMap omap = new ObjectIntBlockMap(true);
+        for ( int i=0; i<N; ++i )
+            omap.put("k"+(10000+i%500), i);
+        assertEquals(500, omap.getUniqueCount());
+
+        Iterator iter = omap.keyRangeIterator(
+            ObjectIntSortedMap.MIN_KEY, true, "k10001", true);
+        for ( int i=0; i<2*N/500; ++i )
+            assertTrue(((String)iter.next()).compareTo("k10001") <= 0);
+        assertFalse(iter.hasNext());
+
+        iter = omap.keyRangeIterator(
+            "k10498", false, ObjectIntSortedMap.MAX_KEY, true);
+        for ( int i=0; i<N/500; ++i )
+            assertEquals("k10499", iter.next());
+        assertFalse(iter.hasNext());
+    }
+
+    public void testLoad() {
+        // load the same entries as setUp, plus enough to sort in parallel
+        Random r = new Random(42);
+        int n = 100000;
+        int[] keys = new int[n], vals = new int[n];
+        for ( int i=0; i<n; ++i ) {
+            keys[i] = ( i < N ? r.nextInt(N/4) : r.nextInt(n) );
+            vals[i] = i;
+        }
+        for ( int i=N; i<n; ++i )
+            tree.put(keys[i], vals[i]);
+
+        IntIntBlockMap bulk = new IntIntBlockMap(true);
+        bulk.load(keys, vals, n);
+        assertEquals(tree.size(), bulk.size());
+        assertEquals(tree.getMedian(), bulk.getMedian());
+        assertSameValues(tree.valueIterator(true), bulk.valueIterator(true));
+
+        // the loaded map supports further updates
+        bulk.put(-1, -1);
+        assertEquals(-1, bulk.getMinimum());
+        assertEquals(-1, bulk.firstKey());
+        int last = bulk.getMaximum();
+        assertEquals(last, bulk.remove(bulk.lastKey(), last));
+        assertEquals(n, bulk.size());
+
+        // unique maps keep the last value for each key
+        int[] k = { 3, 1, 3, 2, 1 }, v = { 0, 1, 2, 3, 4 };
+        IntIntBlockMap unique = new IntIntBlockMap(false);
+        unique.load(k, v, k.length);
+        assertEquals(3, unique.size());
+        assertEquals(3, unique.getUniqueCount());
+        assertEquals(4, unique.get(1));
+        assertEquals(2, unique.get(3));
+
+        ObjectIntBlockMap omap = new ObjectIntBlockMap(true);
+        omap.load(new Object[] { "b", null, "a", "b" }, 
+                  new int[] { 0, 1, 2, 3 }, 4);
+        assertEquals(3, omap.getUniqueCount());
+        assertSameValues(new IntIntBlockMap().valueIterator(true),
+            omap.valueRangeIterator("c", true, "d", true));
+        IntIterator iter = omap.valueIterator(true);
+        assertEquals(1, iter.nextInt());
+        assertEquals(2, iter.nextInt());
+        assertEquals(0, iter.nextInt());
+        assertEquals(3, iter.nextInt());
+    }
+
+    public void testBulkIndex() {
+        Table t = new Table();
+        t.addColumn("a", int.class);
+        t.addColumn("s", String.class);
+        t.index("a");
+        t.index("s");
+        t.addRows(N);
+        for ( int i=0; i<N; ++i ) {
+            t.setInt(i, "a", (7*i) % N);
+            t.setString(i, "s", String.valueOf(i % 10));
+        }
+        Index a = t.getIndex("a"), s = t.getIndex("s");
+        assertEquals(N, a.size());
+        assertEquals(10, s.uniqueCount());
+        for ( int i=0; i<N; i += 97 )
+            assertEquals(i, a.get((7*i) % N));
+        assertEquals(N/10, toArray(s.rows("3")).length);
+
+        // incremental updates after the bulk build
+        t.setInt(0, "a", -5);
+        assertEquals(0, a.minimum());
+        t.removeRow(0);
+        assertEquals(N-1, a.size());
+        assertEquals(Integer.MIN_VALUE, a.get(-5));
+    }
+
+    private static int[] toArray(IntIterator iter) {
+        int n = 0;
+        int[] a = new int[N];
+        while ( iter.hasNext() ) a[n++] = iter.nextInt();
+        int[] b = new int[n];
+        System.arraycopy(a, 0, b, 0, n);
+        return b;
+    }
+
+    public void testFactory() throws Exception {
+        int impl = SortedMapFactory.getDefaultImplementation();
+        try {
+            assertTrue(SortedMapFactory.getMap(int.class, null, false,
+                SortedMapFactory.BLOCK_ARRAY) instanceof IntIntBlockMap);
+            assertTrue(SortedMapFactory.getMap(String.class, null, false,
+                SortedMapFactory.BLOCK_ARRAY) instanceof ObjectIntBlockMap);
+            SortedMapFactory.setDefaultImplementation(
+                SortedMapFactory.RED_BLACK_TREE);
+            assertTrue(SortedMapFactory.getMap(int.class, null, false)
+                instanceof IntIntTreeMap);
+        } finally {
+            SortedMapFactory.setDefaultImplementation(impl);
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package test.prefuse.data.util;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.expression.ColumnExpression;
+import prefuse.data.expression.NumericLiteral;
+import prefuse.data.expression.Predicate;
+import prefuse.data.expression.RangePredicate;
+import prefuse.data.expression.parser.ExpressionParser;
+import prefuse.data.util.FilterIteratorFactory;
+import prefuse.data.util.QueryPlan;
+import prefuse.util.collections.IntIterator;
+
+public class QueryPlanTest extends TestCase {
+
+    static final int NROWS = 2000;
+
+    Table t;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        t = new Table();
+        t.addColumn("a", int.class);
+        t.addColumn("d", double.class);
+        t.addColumn("b", boolean.class);
+        t.addColumn("s", String.class);
+        t.addColumn("u", int.class);
+        t.addRows(NROWS);
+        for ( int i=0; i<NROWS; ++i ) {
+            t.setInt(i, "a", i % 100);
+            t.setDouble(i, "d", (i % 7 == 0) ? Double.NaN : i * 0.5);
+            t.setBoolean(i, "b", i % 3 == 0);
+            t.setString(i, "s", "s" + (i % 10));
+            t.setInt(i, "u", i % 50);
+        }
+        t.index("a");
+        t.index("d");
+        t.index("b");
+        t.index("s");
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        t = null;
+    }
+
+    private void check(String expr) {
+        check(expr, (Predicate)ExpressionParser.parse(expr));
+    }
+
+    private void check(String expr, Predicate p) {
+        assertNotNull(expr, p);
+
+        BitSet expected = new BitSet();
+        for ( int i=0; i<NROWS; ++i )
+            if ( p.getBoolean(t.getTuple(i)) ) expected.set(i);
+
+        BitSet actual = new BitSet();
+        int count = 0;
+        for ( IntIterator rows = FilterIteratorFactory.rows(t, p);
+              rows.hasNext(); ++count )
+        {
+            actual.set(rows.nextInt());
+        }
+        assertEquals(expr, expected, actual);
+        assertEquals(expr, expected.cardinality(), count);
+    }
+
+    private QueryPlan explain(String expr) {
+        return FilterIteratorFactory.explain(t,
+                (Predicate)ExpressionParser.parse(expr));
+    }
+
+    public void testResults() {
+        check("a < 10");
+        check("a <= 10");
+        check("a = 10");
+        check("a != 10");
+        check("a > 95");
+        check("a >= 95");
+        check("10 > a");
+        check("95 <= a");
+        check("NOT (a < 90)");
+        check("a < 2.5");
+        check("d < 20");
+        check("d > 990");
+        check("d != 500");
+        check("d >= 999");
+        check("b");
+        check("NOT b");
+        check("s = 's3'");
+        check("10 <= a <= 12", new RangePredicate(new ColumnExpression("a"),
+                new NumericLiteral(10), new NumericLiteral(12)));
+        check("10 < d < 20", new RangePredicate(RangePredicate.EX_EX,
+                new NumericLiteral(10.0), new ColumnExpression("d"),
+                new NumericLiteral(20.0)));
+        check("a < 2 AND d < 100");
+        check("a < 2 AND u = 3");
+        check("a < 2 AND b AND u < 10");
+        check("a < 10 AND s = 's2'");
+        check("a < 10 AND s = 's2' AND b AND u > 5");
+        check("a = 2 OR a = 60");
+        check("a = 2 OR s = 's2'");
+        check("a = 2 OR u = 60");
+        check("u = 2");
+    }
+
+    public void testPlans() {
+        assertEquals(QueryPlan.INDEX, explain("a = 10").getType());
+        assertEquals(QueryPlan.INDEX, explain("10 > a").getType());
+        assertEquals(QueryPlan.SCAN, explain("u = 2").getType());
+        assertEquals(QueryPlan.SCAN, explain("a < 2.5").getType());
+        assertEquals(QueryPlan.UNION, explain("a != 10").getType());
+        assertEquals(QueryPlan.UNION, explain("a = 2 OR a = 60").getType());
+        assertEquals(QueryPlan.SCAN, explain("a = 2 OR u = 60").getType());
+
+        QueryPlan plan = explain("a < 2 AND u = 3");
+        assertEquals(QueryPlan.FILTER, plan.getType());
+        assertEquals(QueryPlan.INDEX, plan.getChild(0).getType());
+
+        plan = explain("a < 10 AND s = 's2'");
+        assertEquals(QueryPlan.INTERSECT, plan.getType());
+        assertEquals(2, plan.getChildCount());
+
+        // the most selective index drives the query
+        plan = explain("b AND a = 2");
+        assertEquals(QueryPlan.INDEX, plan.getChild(0).getType());
+        assertEquals(ExpressionParser.parse("a = 2").toString(),
+                     plan.getChild(0).getPredicate().toString());
+
+        // estimates
+        assertEquals(NROWS/100, explain("a = 10").getEstimatedRows(), 1e-6);
+        assertEquals(NROWS/10, explain("a < 10").getEstimatedRows(), 5);
+    }
+
+    public void testSmallTable() {
+        Table small = new Table();
+        small.addColumn("a", int.class);
+        small.addRows(10);
+        small.index("a");
+        Predicate p = (Predicate)ExpressionParser.parse("a = 0");
+        assertEquals(QueryPlan.SCAN,
+                FilterIteratorFactory.explain(small, p).getType());
+    }
+
+}
@@ -0,0 +1,16 @@
+package test.prefuse.render;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class All_PrefuseRender_Tests {
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite("Test for test.prefuse.render");
+        //$JUnit-BEGIN$
+        suite.addTestSuite(LabelRendererTest.class);
+        //$JUnit-END$
+        return suite;
+    }
+
+}
@@ -0,0 +1,220 @@
+package test.prefuse.render;
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+import prefuse.Visualization;
+import prefuse.data.Table;
+import prefuse.render.LabelRenderer;
+import prefuse.util.ColorLib;
+import prefuse.util.FontLib;
+import prefuse.visual.VisualItem;
+import prefuse.visual.VisualTable;
+
+public class LabelRendererTest extends TestCase {
+
+    private static final int SIZE = 200;
+
+    private VisualItem m_item;
+    private LabelRenderer m_lr;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        Table t = new Table();
+        t.addColumn("label", String.class);
+        t.addRow();
+        t.setString(0, "label", "first line\nsecond\nthird line of text");
+        VisualTable vt = new Visualization().addTable("t", t);
+        m_item = vt.getItem(0);
+        m_item.setX(SIZE/2);
+        m_item.setY(SIZE/2);
+        m_item.setFont(FontLib.getFont("SansSerif", 12));
+        m_item.setTextColor(ColorLib.gray(0));
+        m_lr = new LabelRenderer("label");
+    }
+
+    private BufferedImage paint(double scale) {
+        return paint(scale, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    }
+
+    private BufferedImage paint(double scale, Object antialias) {
+        BufferedImage img = new BufferedImage(SIZE, SIZE,
+                                              BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = createGraphics(img, scale, antialias);
+        m_lr.render(g, m_item);
+        g.dispose();
+        return img;
+    }
+
+    private static Graphics2D createGraphics(BufferedImage img, double scale,
+                                             Object antialias)
+    {
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, SIZE, SIZE);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, antialias);
+        g.translate(SIZE/2, SIZE/2);
+        g.scale(scale, scale);
+        g.translate(-SIZE/2, -SIZE/2);
+        return g;
+    }
+
+    public void testLayoutCache() {
+        Rectangle2D b = m_lr.getShape(m_item).getBounds2D();
+        BufferedImage img = paint(1);
+        assertEquals(b, m_lr.getShape(m_item).getBounds2D());
+        assertSameImage(img, paint(1));
+
+        // changes to the text, font, or width are seen
+        m_item.setString("label", "first line\nsecond");
+        Rectangle2D b2 = m_lr.getShape(m_item).getBounds2D();
+        assertTrue(b2.getWidth() < b.getWidth());
+        assertTrue(b2.getHeight() < b.getHeight());
+
+        m_item.setFont(FontLib.getFont("SansSerif", 16));
+        Rectangle2D b3 = m_lr.getShape(m_item).getBounds2D();
+        assertTrue(b3.getWidth() > b2.getWidth());
+
+        m_lr.setMaxTextWidth(30);
+        Rectangle2D b4 = m_lr.getShape(m_item).getBounds2D();
+        assertEquals(30 + 2*m_lr.getHorizontalPadding(), b4.getWidth(), 0);
+
+        // the cache is bounded
+        m_lr.setLayoutCacheSize(1);
+        m_item.setString("label", "ab");
+        assertTrue(m_lr.getShape(m_item).getBounds2D().getWidth() < 30);
+        m_item.setString("label", "first line\nsecond");
+        assertEquals(b4, m_lr.getShape(m_item).getBounds2D());
+    }
+
+    public void testLayoutCacheDelimiter() {
+        DelimRenderer lr = new DelimRenderer();
+        m_item.setString("label", "first line;second");
+        Rectangle2D b = lr.getShape(m_item).getBounds2D();
+
+        // a changed delimiter splits the same text into new lines
+        lr.setDelimiter(";");
+        Rectangle2D b2 = lr.getShape(m_item).getBounds2D();
+        assertTrue(b2.getWidth() < b.getWidth());
+        assertTrue(b2.getHeight() > b.getHeight());
+
+        lr.setDelimiter("\n");
+        assertEquals(b, lr.getShape(m_item).getBounds2D());
+    }
+
+    public void testGlyphsMatchDrawString() {
+        for ( int i=0; i<2; ++i ) {
+            double scale = ( i==0 ? 1 : 2.5 );
+            BufferedImage glyphs = paint(scale);
+
+            // draw the same lines with drawString, at the positions used
+            // by the renderer: centered lines, and whole pixel offsets
+            // unless zoomed in
+            Rectangle2D b = m_lr.getShape(m_item).getBounds2D();
+            BufferedImage text = new BufferedImage(SIZE, SIZE,
+                                                   BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = createGraphics(text, scale,
+                                 RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(m_item.getFont());
+            g.setColor(ColorLib.getColor(m_item.getTextColor()));
+            FontMetrics fm = new BufferedImage(1, 1,
+                    BufferedImage.TYPE_INT_ARGB).createGraphics()
+                    .getFontMetrics(m_item.getFont());
+            String[] lines = m_item.getString("label").split("\n");
+            double x = b.getMinX() + m_lr.getHorizontalPadding();
+            double tw = b.getWidth() - 2*m_lr.getHorizontalPadding();
+            double y = b.getMinY() + fm.getAscent();
+            for ( int j=0; j<lines.length; ++j, y += fm.getHeight() ) {
+                double tx = x + (tw - fm.stringWidth(lines[j])) / 2;
+                if ( scale < 1.5 ) {
+                    g.drawString(lines[j], (int)tx, (int)y);
+                } else {
+                    g.drawString(lines[j], (float)tx, (float)y);
+                }
+            }
+            g.dispose();
+            assertSameImage(text, glyphs);
+        }
+    }
+
+    public void testTextBitmapHints() {
+        m_lr.setTextBitmapsEnabled(true);
+        BufferedImage aa = paint(1);
+        BufferedImage plain = paint(1, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+
+        // the bitmap is redrawn, matching one drawn without antialiasing
+        m_lr = new LabelRenderer("label");
+        m_lr.setTextBitmapsEnabled(true);
+        assertSameImage(paint(1, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF),
+                        plain);
+
+        // antialiased text has intermediate colors, plain text does not
+        boolean gray = false;
+        for ( int x=0; x<SIZE; ++x ) {
+            for ( int y=0; y<SIZE; ++y ) {
+                int rgb = aa.getRGB(x,y) & 0xFFFFFF;
+                gray |= ( rgb != 0 && rgb != 0xFFFFFF );
+                rgb = plain.getRGB(x,y) & 0xFFFFFF;
+                assertTrue(rgb == 0 || rgb == 0xFFFFFF);
+            }
+        }
+        assertTrue(gray);
+    }
+
+    public void testTextBitmaps() {
+        for ( int i=0; i<2; ++i ) {
+            double scale = ( i==0 ? 1 : 2.5 );
+            m_lr.setTextBitmapsEnabled(false);
+            BufferedImage text = paint(scale);
+            m_lr.setTextBitmapsEnabled(true);
+            BufferedImage bmp = paint(scale);
+            assertSameImage(bmp, paint(scale));
+
+            // bitmaps match drawn text, up to a sub-pixel shift
+            int inked = 0, diff = 0;
+            for ( int x=1; x<SIZE-1; ++x ) {
+                for ( int y=1; y<SIZE-1; ++y ) {
+                    if ( bmp.getRGB(x,y) == text.getRGB(x,y) ) continue;
+                    if ( !inked(text,x,y) ) ++diff;
+                }
+            }
+            for ( int x=0; x<SIZE; ++x )
+                for ( int y=0; y<SIZE; ++y )
+                    if ( inked(text,x,y) ) ++inked;
+            assertTrue(inked > 100);
+            assertTrue(diff < inked/10);
+        }
+    }
+
+    /**
+     * Indicates if text is drawn at or next to a pixel.
+     */
+    private static boolean inked(BufferedImage img, int x, int y) {
+        for ( int i=Math.max(0,x-1); i<=Math.min(SIZE-1,x+1); ++i )
+            for ( int j=Math.max(0,y-1); j<=Math.min(SIZE-1,y+1); ++j )
+                if ( (img.getRGB(i,j) & 0xFFFFFF) != 0xFFFFFF )
+                    return true;
+        return false;
+    }
+
+    /**
+     * Label renderer that allows the line delimiter to be changed.
+     */
+    private static class DelimRenderer extends LabelRenderer {
+        public void setDelimiter(String delim) {
+            m_delim = delim;
+        }
+    }
+
+    private static void assertSameImage(BufferedImage a, BufferedImage b) {
+        for ( int x=0; x<a.getWidth(); ++x )
+            for ( int y=0; y<a.getHeight(); ++y )
+                assertEquals(a.getRGB(x,y), b.getRGB(x,y));
+    }
+
+}
@@ -0,0 +1,17 @@
+package test.prefuse.util.force;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class All_PrefuseUtilForce_Tests {
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite("Test for test.prefuse.util.force");
+        //$JUnit-BEGIN$
+        suite.addTestSuite(ArrayForceSimulatorTest.class);
+        suite.addTestSuite(NBodyForceTest.class);
+        //$JUnit-END$
+        return suite;
+    }
+
+}
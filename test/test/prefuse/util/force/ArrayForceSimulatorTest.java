@@ -0,0 +1,120 @@
+package test.prefuse.util.force;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.util.force.ArrayForceSimulator;
+import prefuse.util.force.DragForce;
+import prefuse.util.force.EulerIntegrator;
+import prefuse.util.force.ForceItem;
+import prefuse.util.force.ForceSimulator;
+import prefuse.util.force.Integrator;
+import prefuse.util.force.NBodyForce;
+import prefuse.util.force.RungeKuttaIntegrator;
+import prefuse.util.force.SpringForce;
+
+public class ArrayForceSimulatorTest extends TestCase {
+
+    private static final int COUNT = 400;
+
+    /**
+     * Load a simulator with a ring of randomly placed items joined by
+     * springs, including a pair of unjoined items at the same location.
+     */
+    private static ForceItem[] load(ForceSimulator fsim) {
+        fsim.addForce(new NBodyForce());
+        fsim.addForce(new SpringForce());
+        fsim.addForce(new DragForce());
+        Random rand = new Random(42);
+        ForceItem[] items = new ForceItem[COUNT];
+        for ( int i=0; i<COUNT; ++i ) {
+            items[i] = new ForceItem();
+            items[i].mass = 1 + rand.nextInt(3);
+            items[i].location[0] = 500*rand.nextFloat();
+            items[i].location[1] = 500*rand.nextFloat();
+            fsim.addItem(items[i]);
+        }
+        items[2].location[0] = items[0].location[0];
+        items[2].location[1] = items[0].location[1];
+        for ( int i=0; i<COUNT; ++i )
+            fsim.addSpring(items[i], items[(i+1)%COUNT]);
+        return items;
+    }
+
+    private void assertSameSimulation(Integrator i1, Integrator i2) {
+        ForceSimulator fsim = new ForceSimulator(i1);
+        ForceItem[] a = load(fsim);
+        ArrayForceSimulator asim = new ArrayForceSimulator(i2);
+        ForceItem[] b = load(asim);
+
+        for ( int s=0; s<10; ++s ) {
+            // items may be moved between steps, as layouts do
+            if ( s == 5 ) {
+                a[7].location[0] = b[7].location[0] = 250;
+                a[7].location[1] = b[7].location[1] = 250;
+            }
+            fsim.runSimulator(50);
+            asim.runSimulator(50);
+            for ( int i=0; i<COUNT; ++i ) {
+                assertEquals(a[i].location[0], b[i].location[0], 0);
+                assertEquals(a[i].location[1], b[i].location[1], 0);
+                assertEquals(a[i].velocity[0], b[i].velocity[0], 0);
+                assertEquals(a[i].velocity[1], b[i].velocity[1], 0);
+            }
+        }
+    }
+
+    public void testEuler() {
+        assertSameSimulation(new EulerIntegrator(), new EulerIntegrator());
+    }
+
+    public void testRungeKutta() {
+        assertSameSimulation(new RungeKuttaIntegrator(),
+                             new RungeKuttaIntegrator());
+    }
+
+    public void testItemChanges() {
+        ArrayForceSimulator asim = new ArrayForceSimulator();
+        ForceItem[] items = load(asim);
+        asim.runSimulator(50);
+        assertEquals(COUNT, asim.itemCount);
+        assertEquals(COUNT, asim.springCount);
+        assertSame(items[COUNT-1], asim.getItem(COUNT-1));
+
+        // removed items are no longer simulated
+        asim.clear();
+        for ( int i=0; i<COUNT; ++i )
+            asim.addItem(items[i]);
+        asim.runSimulator(50);
+        asim.removeItem(items[0]);
+        asim.runSimulator(50);
+        assertEquals(COUNT-1, asim.itemCount);
+        assertSame(items[COUNT-1], asim.getItem(COUNT-2));
+
+        // items numbered by another simulator are numbered again
+        ArrayForceSimulator other = new ArrayForceSimulator();
+        other.addItem(items[5]);
+        other.addItem(items[4]);
+        other.runSimulator(50);
+        asim.clear();
+        for ( int i=0; i<COUNT; ++i )
+            asim.addItem(items[i]);
+        asim.addSpring(items[4], items[5]);
+        asim.runSimulator(50);
+        other.addItem(new ForceItem());
+        other.runSimulator(50);
+        asim.runSimulator(50);
+        assertEquals(1, asim.springCount);
+        assertEquals(4, asim.spring1[0]);
+        assertEquals(5, asim.spring2[0]);
+
+        // springs to items outside the simulation are rejected
+        asim.addSpring(items[0], new ForceItem());
+        try {
+            asim.runSimulator(50);
+            fail();
+        } catch ( IllegalStateException e ) {
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package test.prefuse.util.force;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.util.force.ForceItem;
+import prefuse.util.force.ForceSimulator;
+import prefuse.util.force.NBodyForce;
+
+public class NBodyForceTest extends TestCase {
+
+    private static final int COUNT = 2500;
+
+    /**
+     * Create a simulator of randomly placed items, with every tenth item
+     * placed at the same location as the item before it.
+     */
+    private static ForceSimulator simulator(NBodyForce nbody) {
+        ForceSimulator fsim = new ForceSimulator();
+        fsim.addForce(nbody);
+        Random rand = new Random(42);
+        ForceItem prev = null;
+        for ( int i=0; i<COUNT; ++i ) {
+            ForceItem item = new ForceItem();
+            if ( i % 10 == 1 ) {
+                item.location[0] = prev.location[0];
+                item.location[1] = prev.location[1];
+            } else {
+                item.location[0] = 1000*rand.nextFloat();
+                item.location[1] = 1000*rand.nextFloat();
+            }
+            fsim.addItem(item);
+            prev = item;
+        }
+        return fsim;
+    }
+
+    private static ForceItem[] items(ForceSimulator fsim) {
+        ForceItem[] items = new ForceItem[COUNT];
+        Iterator iter = fsim.getItems();
+        for ( int i=0; iter.hasNext(); ++i )
+            items[i] = (ForceItem)iter.next();
+        return items;
+    }
+
+    /**
+     * Compute the n-body force on each item, visiting items in the given
+     * order.
+     */
+    private static float[] forces(NBodyForce nbody, ForceItem[] items,
+                                  int[] order)
+    {
+        float[] f = new float[2*items.length];
+        for ( int j=0; j<order.length; ++j ) {
+            ForceItem item = items[order[j]];
+            item.force[0] = item.force[1] = 0;
+            nbody.getForce(item);
+            f[2*order[j]]   = item.force[0];
+            f[2*order[j]+1] = item.force[1];
+        }
+        return f;
+    }
+
+    public void testGetForce() {
+        NBodyForce nbody = new NBodyForce();
+        ForceSimulator fsim = simulator(nbody);
+        ForceItem[] items = items(fsim);
+        nbody.init(fsim);
+
+        // forces do not depend upon the order items are visited in
+        int[] order = new int[COUNT];
+        for ( int i=0; i<COUNT; ++i )
+            order[i] = i;
+        float[] expected = forces(nbody, items, order);
+        Random rand = new Random(7);
+        for ( int i=COUNT; --i > 0; ) {
+            int j = rand.nextInt(i+1);
+            int t = order[i]; order[i] = order[j]; order[j] = t;
+        }
+        assertSameForces(expected, forces(nbody, items, order));
+
+        // nor upon other n-body forces holding the same items
+        NBodyForce other = new NBodyForce();
+        ForceSimulator fs2 = new ForceSimulator();
+        for ( int i=COUNT; --i >= 0; i-=2 )
+            fs2.addItem(items[i]);
+        other.init(fs2);
+        assertSameForces(expected, forces(nbody, items, order));
+
+        // items outside the quadtree are repelled by all items
+        ForceItem outside = new ForceItem();
+        outside.location[0] = -500;
+        nbody.getForce(outside);
+        assertTrue(outside.force[0] < 0);
+    }
+
+    private static void assertSameForces(float[] a, float[] b) {
+        for ( int i=0; i<a.length; ++i )
+            assertEquals(a[i], b[i], 0);
+    }
+
+    public void testThreadCount() {
+        NBodyForce serial = new NBodyForce();
+        ForceSimulator fs1 = simulator(serial);
+        ForceItem[] a = items(fs1);
+
+        NBodyForce parallel = new NBodyForce();
+        parallel.setThreadCount(3);
+        assertEquals(3, parallel.getThreadCount());
+        ForceSimulator fs2 = simulator(parallel);
+        ForceItem[] b = items(fs2);
+
+        // repeated steps reuse the worker threads, and draw new noise
+        for ( int s=0; s<3; ++s ) {
+            fs1.accumulate();
+            fs2.accumulate();
+            for ( int i=0; i<COUNT; ++i ) {
+                assertEquals(a[i].force[0], b[i].force[0], 0);
+                assertEquals(a[i].force[1], b[i].force[1], 0);
+            }
+            // coincident items are pushed apart
+            for ( int i=1; i<COUNT; i+=10 ) {
+                assertFalse(a[i].force[0] == a[i-1].force[0] &&
+                            a[i].force[1] == a[i-1].force[1]);
+            }
+        }
+
+        try {
+            parallel.setThreadCount(0);
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            assertEquals(3, parallel.getThreadCount());
+        }
+    }
+
+}
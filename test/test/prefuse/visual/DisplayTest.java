@@ -0,0 +1,318 @@
+package test.prefuse.visual;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+import prefuse.Display;
+import prefuse.Visualization;
+import prefuse.data.expression.parser.ExpressionParser;
+import prefuse.render.DefaultRendererFactory;
+import prefuse.render.LabelRenderer;
+import prefuse.render.ShapeRenderer;
+import prefuse.util.GraphLib;
+import prefuse.util.ColorLib;
+import prefuse.util.display.RenderingQueue;
+import prefuse.util.display.TiledImageRenderer;
+import prefuse.visual.VisualItem;
+import prefuse.visual.sort.ItemSorter;
+
+public class DisplayTest extends TestCase {
+
+    private static final int SIZE = 300;
+
+    private Visualization m_vis;
+    private Display m_d1, m_d2;
+    private Random m_rand;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        m_vis = new Visualization();
+        m_vis.add("g", GraphLib.getGrid(15,15));
+        m_rand = new Random(42);
+        Iterator items = m_vis.items();
+        while ( items.hasNext() ) {
+            VisualItem item = (VisualItem)items.next();
+            item.setX(m_rand.nextDouble()*SIZE);
+            item.setY(m_rand.nextDouble()*SIZE);
+        }
+        m_d1 = new Display(m_vis);
+        m_d2 = new Display(m_vis);
+        m_d1.setSize(SIZE, SIZE);
+        m_d2.setSize(SIZE, SIZE);
+        m_d2.setSpatialIndexEnabled(true);
+        m_vis.repaint();
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        m_vis = null;
+        m_d1 = m_d2 = null;
+    }
+
+    private static BufferedImage paint(Display d) {
+        BufferedImage img = new BufferedImage(SIZE, SIZE,
+                                              BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = (Graphics2D)img.getGraphics();
+        d.damageReport();
+        d.paintDisplay(g, new Dimension(SIZE, SIZE));
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * Repaint only the damaged region of a display into an image.
+     */
+    private static void update(Display d, BufferedImage img) {
+        Graphics2D g = (Graphics2D)img.getGraphics();
+        d.paintDisplay(g, new Dimension(SIZE, SIZE));
+        g.dispose();
+    }
+
+    private static void assertSameImage(BufferedImage a, BufferedImage b) {
+        for ( int x=0; x<a.getWidth(); ++x )
+            for ( int y=0; y<a.getHeight(); ++y )
+                assertEquals(a.getRGB(x,y), b.getRGB(x,y));
+    }
+
+    private void assertSamePicks() {
+        for ( int x=0; x<SIZE; x+=5 ) {
+            for ( int y=0; y<SIZE; y+=5 ) {
+                Point p = new Point(x,y);
+                assertSame(m_d1.findItem(p), m_d2.findItem(p));
+            }
+        }
+    }
+
+    public void testSpatialIndex() {
+        assertSameImage(paint(m_d1), paint(m_d2));
+        assertEquals(m_d1.getVisibleItemCount(), m_d2.getVisibleItemCount());
+        assertEquals(m_d1.getItemBounds(), m_d2.getItemBounds());
+        assertSamePicks();
+
+        // move and hide some nodes, the index should follow along
+        Iterator nodes = m_vis.items("g.nodes");
+        for ( int i=0; nodes.hasNext(); ++i ) {
+            VisualItem item = (VisualItem)nodes.next();
+            if ( i % 3 == 0 )
+                item.setX(m_rand.nextDouble()*SIZE);
+            if ( i % 7 == 0 )
+                item.setVisible(false);
+        }
+        m_vis.repaint();
+        assertSameImage(paint(m_d1), paint(m_d2));
+        assertEquals(m_d1.getVisibleItemCount(), m_d2.getVisibleItemCount());
+        assertEquals(m_d1.getItemBounds(), m_d2.getItemBounds());
+        assertSamePicks();
+
+        // changing the predicate invalidates the index
+        m_d1.setPredicate("INGROUP('g.nodes')");
+        m_d2.setPredicate("INGROUP('g.nodes')");
+        assertSameImage(paint(m_d1), paint(m_d2));
+        assertEquals(m_d1.getVisibleItemCount(), m_d2.getVisibleItemCount());
+        assertSamePicks();
+    }
+
+    private static BufferedImage save(Display d, int threads)
+        throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(d.saveImage(out, "PNG", 2.5, threads));
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    public void testTiledRendering() throws Exception {
+        Iterator items = m_vis.items();
+        while ( items.hasNext() ) {
+            VisualItem item = (VisualItem)items.next();
+            item.setStrokeColor(ColorLib.rgba(50,50,50,200));
+            item.setFillColor(ColorLib.rgb(255,120,80));
+            item.setSize(1 + m_rand.nextInt(3));
+        }
+        m_vis.repaint();
+        BufferedImage serial = save(m_d1, 1);
+        assertSameImage(serial, save(m_d1, 3));
+        assertSameImage(serial, save(m_d2, 4));
+
+        // text labels, with tiles that split many of them
+        LabelRenderer lr = new LabelRenderer("label");
+        lr.setRoundedCorner(8, 8);
+        m_vis.setRendererFactory(new DefaultRendererFactory(lr));
+        Iterator nodes = m_vis.items("g.nodes");
+        while ( nodes.hasNext() ) {
+            VisualItem item = (VisualItem)nodes.next();
+            item.setTextColor(ColorLib.gray(0));
+        }
+        m_vis.repaint();
+        serial = save(m_d1, 1);
+        TiledImageRenderer r = new TiledImageRenderer(m_d1, 4);
+        r.setTileHeight(37);
+        assertSameImage(serial, r.render(2.5));
+        assertEquals(1.0, m_d1.getScale(), 1e-9);
+        assertFalse(m_d1.isHighQuality());
+    }
+
+    public void testRenderLayers() {
+        final int[] nodeRenders = { 0 };
+        m_vis.setRendererFactory(new DefaultRendererFactory(
+            new ShapeRenderer() {
+                public void render(Graphics2D g, VisualItem item) {
+                    ++nodeRenders[0];
+                    super.render(g, item);
+                }
+            }));
+        Iterator items = m_vis.items();
+        while ( items.hasNext() ) {
+            VisualItem item = (VisualItem)items.next();
+            item.setStrokeColor(ColorLib.gray(50));
+            item.setFillColor(ColorLib.rgb(255,120,80));
+        }
+        m_vis.repaint();
+
+        // cache the nodes in a layer, drawn beneath the edges
+        ItemSorter sorter = new ItemSorter() {
+            public int score(VisualItem item) {
+                return item.isInGroup("g.nodes") ? 0 : 1;
+            }
+        };
+        m_d1.setItemSorter(sorter);
+        m_d2.setItemSorter(sorter);
+        m_d1.addRenderLayer("g.nodes");
+        assertEquals(1, m_d1.getRenderLayerCount());
+        BufferedImage img1 = paint(m_d1);
+        assertSameImage(paint(m_d2), img1);
+
+        // damage to edges does not re-render the node layer
+        Iterator edges = m_vis.items("g.edges");
+        for ( int i=0; edges.hasNext(); ++i ) {
+            VisualItem item = (VisualItem)edges.next();
+            if ( i % 10 == 0 )
+                item.setStrokeColor(ColorLib.rgb(0,200,0));
+        }
+        m_vis.repaint();
+        nodeRenders[0] = 0;
+        update(m_d1, img1);
+        assertEquals(0, nodeRenders[0]);
+        assertSameImage(paint(m_d2), img1);
+
+        // damage to a node re-renders the damaged part of the layer
+        VisualItem node = (VisualItem)m_vis.items("g.nodes").next();
+        node.setFillColor(ColorLib.rgb(0,0,255));
+        m_vis.repaint();
+        nodeRenders[0] = 0;
+        update(m_d1, img1);
+        assertTrue(nodeRenders[0] > 0);
+        assertTrue(nodeRenders[0] < m_vis.size("g.nodes"));
+        assertSameImage(paint(m_d2), img1);
+
+        // an item leaving a layer is cleared from the layer image
+        m_d1.clearRenderLayers();
+        m_d1.addRenderLayer(ExpressionParser.predicate(
+            "INGROUP('g.nodes') && _highlight == false"));
+        img1 = paint(m_d1);
+        node.setHighlighted(true);
+        m_vis.repaint();
+        update(m_d1, img1);
+        node.setX(node.getX() + 40);
+        node.setY(node.getY() + 40);
+        m_vis.repaint();
+        update(m_d1, img1);
+        assertSameImage(paint(m_d1), img1);
+
+        m_d1.clearRenderLayers();
+        assertEquals(0, m_d1.getRenderLayerCount());
+        assertSameImage(paint(m_d2), paint(m_d1));
+    }
+
+    public void testRenderingQueueOrder() {
+        final int[] k = { 0 };
+        RenderingQueue q = new RenderingQueue();
+        q.sort = new ItemSorter() {
+            public int score(VisualItem item) {
+                return (item.getRow()*7919) % k[0];
+            }
+        };
+        int[] counts = { 1, 3, 20, 100 };
+        for ( int c=0; c<counts.length; ++c ) {
+            k[0] = counts[c];
+            ArrayList expected = new ArrayList();
+            q.clear();
+            Iterator items = m_vis.items();
+            while ( items.hasNext() ) {
+                VisualItem item = (VisualItem)items.next();
+                q.addToRenderQueue(item);
+                expected.add(item);
+            }
+            Collections.sort(expected, q.sort); // stable
+            q.sortRenderQueue();
+            assertEquals(expected.size(), q.rsize);
+            for ( int i=0; i<q.rsize; ++i ) {
+                assertSame(expected.get(i), q.ritems[i]);
+                assertEquals(q.sort.score(q.ritems[i]), q.rscores[i]);
+            }
+            // sorting again leaves the queue unchanged
+            q.sortRenderQueue();
+            for ( int i=0; i<q.rsize; ++i )
+                assertSame(expected.get(i), q.ritems[i]);
+        }
+    }
+
+    public void testLevelOfDetail() {
+        Iterator items = m_vis.items();
+        while ( items.hasNext() ) {
+            VisualItem item = (VisualItem)items.next();
+            item.setStrokeColor(ColorLib.rgba(50,50,50,200));
+            item.setFillColor(ColorLib.rgb(255,120,80));
+        }
+        m_vis.repaint();
+
+        // no items are below the threshold at full size
+        m_d1.setLevelOfDetailThreshold(0.5);
+        assertSameImage(paint(m_d1), paint(m_d2));
+        assertEquals(0, m_d1.getReducedItemCount());
+
+        // zoomed out, every item is drawn into the density raster
+        m_d1.zoom(new Point2D.Double(0,0), 0.1);
+        m_d1.setLevelOfDetailThreshold(4);
+        BufferedImage img = paint(m_d1);
+        assertEquals(m_d1.getVisibleItemCount(), m_d1.getReducedItemCount());
+        int bg = img.getRGB(SIZE-1, SIZE-1), drawn = 0;
+        for ( int x=0; x<SIZE/10; ++x )
+            for ( int y=0; y<SIZE/10; ++y )
+                if ( img.getRGB(x,y) != bg ) ++drawn;
+        assertTrue(drawn > 100);
+
+        // larger items between reduced ones flush the raster, whose image
+        // is reused without leaving pixels from earlier flushes
+        items = m_vis.items();
+        for ( int i=0; items.hasNext(); ++i ) {
+            VisualItem item = (VisualItem)items.next();
+            if ( i % 5 == 0 ) item.setSize(100);
+        }
+        m_vis.repaint();
+        img = paint(m_d1);
+        int reduced = m_d1.getReducedItemCount();
+        assertTrue(reduced > 0);
+        assertTrue(reduced < m_d1.getVisibleItemCount());
+        assertSameImage(img, paint(m_d1));
+        assertEquals(reduced, m_d1.getReducedItemCount());
+
+        // disabling level-of-detail restores full rendering
+        m_d1.setLevelOfDetailThreshold(0);
+        m_d2.zoom(new Point2D.Double(0,0), 0.1);
+        assertSameImage(paint(m_d2), paint(m_d1));
+        assertEquals(0, m_d1.getReducedItemCount());
+    }
+
+}